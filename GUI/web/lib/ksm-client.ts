@@ -16,6 +16,8 @@ export interface PQCSignature {
   algorithm: string;
   signatureSize: number;
   timestamp: number;
+  classicalSignature?: string; // Base64 r||s, hybrid mode only
+  digest?: string; // 0x keccak256 digest both halves sign, hybrid mode only
 }
 
 export interface SignedTransaction {
@@ -65,13 +67,16 @@ export class KSMClient {
 
   /**
    * Generate PQC key pair for an entity
+   *
+   * algorithm (optional): e.g. 'FALCON_512' for compact on-chain signatures;
+   * the entity keeps signing with this algorithm until its key is rotated.
    */
-  async generateKey(entityId: string): Promise<PQCKeyPair> {
+  async generateKey(entityId: string, algorithm?: string): Promise<PQCKeyPair> {
     try {
       const response = await this.fetchWithTimeout(`${this.baseURL}/generateKey`, {
         method: 'POST',
         headers: { 'Content-Type': 'application/json' },
-        body: JSON.stringify({ entityId })
+        body: JSON.stringify({ entityId, algorithm })
       });
 
       const data = await response.json();
@@ -93,13 +98,16 @@ export class KSMClient {
 
   /**
    * Sign a transaction or message
+   *
+   * hybrid: also return an ECDSA-secp256k1 signature over the same keccak256 digest,
+   * computed in the same call (no second round-trip for the classical signature).
    */
-  async sign(entityId: string, message: string): Promise<PQCSignature> {
+  async sign(entityId: string, message: string, hybrid: boolean = false): Promise<PQCSignature> {
     try {
       const response = await this.fetchWithTimeout(`${this.baseURL}/sign`, {
         method: 'POST',
         headers: { 'Content-Type': 'application/json' },
-        body: JSON.stringify({ entityId, message })
+        body: JSON.stringify({ entityId, message, hybrid })
       });
 
       const data = await response.json();
@@ -112,7 +120,9 @@ export class KSMClient {
         signature: data.signature,
         algorithm: data.algorithm,
         signatureSize: data.signatureSize,
-        timestamp: data.timestamp
+        timestamp: data.timestamp,
+        classicalSignature: data.classicalSignature,
+        digest: data.digest
       };
     } catch (error) {
       console.error('[KSM Client] Signing failed:', error);
@@ -127,13 +137,14 @@ export class KSMClient {
     entityId: string,
     message: string,
     signature: string,
-    algorithm: string = 'Dilithium3'
+    algorithm: string = 'Dilithium3',
+    classicalSignature?: string
   ): Promise<boolean> {
     try {
       const response = await this.fetchWithTimeout(`${this.baseURL}/verify`, {
         method: 'POST',
         headers: { 'Content-Type': 'application/json' },
-        body: JSON.stringify({ entityId, message, signature, algorithm })
+        body: JSON.stringify({ entityId, message, signature, algorithm, classicalSignature })
       });
 
       const data = await response.json();
@@ -151,18 +162,22 @@ export class KSMClient {
 
   /**
    * Create a signed transaction
+   *
+   * Pass the same requestId when retrying (e.g. after a timeout) to get back the
+   * originally signed transaction instead of a second, different signature.
    */
   async createSignedTransaction(
     from: string,
     to: string,
     amount: number,
-    description: string
+    description: string,
+    requestId?: string
   ): Promise<SignedTransaction> {
     try {
       const response = await this.fetchWithTimeout(`${this.baseURL}/createSignedTransaction`, {
         method: 'POST',
         headers: { 'Content-Type': 'application/json' },
-        body: JSON.stringify({ from, to, amount, description })
+        body: JSON.stringify({ from, to, amount, description, requestId })
       });
 
       const data = await response.json();
@@ -213,8 +228,17 @@ export class KSMClient {
     const timeoutId = setTimeout(() => controller.abort(), this.timeout);
 
     try {
+      // Tell KSM how long we will wait so it can shed requests we have already given up on
+      const headers = new Headers(options?.headers);
+      headers.set('X-Request-Timeout-Ms', String(this.timeout));
+      // W3C trace context: KSM's spans join the caller's trace, or start a new one per call
+      if (!headers.has('traceparent')) {
+        headers.set('traceparent', newTraceparent());
+      }
+
       const response = await fetch(url, {
         ...options,
+        headers,
         signal: controller.signal
       });
 
@@ -237,6 +261,22 @@ export class KSMClient {
   }
 }
 
+/**
+ * traceparent header for a new sampled trace: 00-<32 hex trace id>-<16 hex span id>-01
+ */
+function newTraceparent(): string {
+  const hex = (byteCount: number) => {
+    const bytes = new Uint8Array(byteCount);
+    if (globalThis.crypto?.getRandomValues) {
+      globalThis.crypto.getRandomValues(bytes);
+    } else {
+      for (let i = 0; i < byteCount; i++) bytes[i] = Math.floor(Math.random() * 256);
+    }
+    return Array.from(bytes, b => b.toString(16).padStart(2, '0')).join('');
+  };
+  return `00-${hex(16)}-${hex(8)}-01`;
+}
+
 // Singleton instance
 let ksmClientInstance: KSMClient | null = null;
 
@@ -0,0 +1,138 @@
+package com.nt219.ksm.loadtest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HTTP client tối giản cho KSM REST API
+ * 
+ * Giữ chữ ký gần nhất của mỗi entity để các request verify có dữ liệu hợp lệ.
+ */
+public class KsmClient {
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+
+    private final String baseUrl;
+    private final Duration timeout;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, SignedMessage> lastSignatures = new ConcurrentHashMap<>();
+    private final String onboardPrefix;
+    private final AtomicLong onboardCounter = new AtomicLong();
+
+    public KsmClient(String baseUrl, int timeoutMs, String entityPrefix) {
+        this.baseUrl = baseUrl;
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.httpClient = HttpClient.newBuilder()
+            .connectTimeout(timeout)
+            .version(HttpClient.Version.HTTP_1_1)
+            .build();
+        this.onboardPrefix = entityPrefix + "_onboard_" + Long.toString(System.currentTimeMillis(), 36) + "_";
+    }
+
+    /**
+     * Thực hiện một thao tác
+     * @param entityId Entity chính (người ký / người gửi)
+     * @param counterpartyId Entity nhận (cho createSignedTransaction)
+     * @return true nếu KSM trả về success
+     */
+    public boolean execute(Operation operation, String entityId, String counterpartyId) throws Exception {
+        switch (operation) {
+            case GENERATE_KEY:
+                // Onboarding: mỗi lần là một entity mới, không đụng tới entity đã có khóa
+                return generateKey(onboardPrefix + onboardCounter.incrementAndGet());
+            case SIGN:
+                return sign(entityId);
+            case VERIFY:
+                return verify(entityId);
+            case CREATE_SIGNED_TRANSACTION:
+                return createSignedTransaction(entityId, counterpartyId);
+            default:
+                throw new IllegalArgumentException("Unsupported operation: " + operation);
+        }
+    }
+
+    public boolean generateKey(String entityId) throws Exception {
+        Map<String, Object> body = new HashMap<>();
+        body.put("entityId", entityId);
+        return isSuccess(post("/ksm/generateKey", body));
+    }
+
+    public boolean sign(String entityId) throws Exception {
+        String message = "LOADTEST|" + entityId + "|" + ThreadLocalRandom.current().nextLong();
+        Map<String, Object> body = new HashMap<>();
+        body.put("entityId", entityId);
+        body.put("message", message);
+
+        Map<String, Object> response = post("/ksm/sign", body);
+        if (!isSuccess(response)) {
+            return false;
+        }
+        lastSignatures.put(entityId, new SignedMessage(message,
+            (String) response.get("signature"), String.valueOf(response.get("algorithm"))));
+        return true;
+    }
+
+    public boolean verify(String entityId) throws Exception {
+        SignedMessage signed = lastSignatures.get(entityId);
+        if (signed == null) {
+            return false;
+        }
+        Map<String, Object> body = new HashMap<>();
+        body.put("entityId", entityId);
+        body.put("message", signed.message);
+        body.put("signature", signed.signature);
+        body.put("algorithm", signed.algorithm);
+        // Simulated crypto có thể trả valid=false; tính thành công theo "success" của API
+        return isSuccess(post("/ksm/verify", body));
+    }
+
+    public boolean createSignedTransaction(String from, String to) throws Exception {
+        Map<String, Object> body = new HashMap<>();
+        body.put("from", from);
+        body.put("to", to);
+        body.put("amount", ThreadLocalRandom.current().nextInt(1, 100_000_000));
+        body.put("description", "Load test transfer");
+        return isSuccess(post("/ksm/createSignedTransaction", body));
+    }
+
+    private Map<String, Object> post(String path, Map<String, Object> body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .timeout(timeout)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+            .build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            return null;
+        }
+        return objectMapper.readValue(response.body(), MAP_TYPE);
+    }
+
+    private static boolean isSuccess(Map<String, Object> response) {
+        return response != null && Boolean.TRUE.equals(response.get("success"));
+    }
+
+    private static final class SignedMessage {
+        final String message;
+        final String signature;
+        final String algorithm;
+
+        SignedMessage(String message, String signature, String algorithm) {
+            this.message = message;
+            this.signature = signature;
+            this.algorithm = algorithm;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.nt219.ksm.loadtest;
+
+import java.util.Map;
+
+/**
+ * Entry point của KSM load generator
+ * 
+ * Ví dụ:
+ *   java -jar target/ksm-loadtest-1.0.0.jar --mode=open --rate=500 --duration=60 --zipf=1.1
+ */
+public class KsmLoadTest {
+
+    public static void main(String[] args) {
+        LoadTestConfig config;
+        try {
+            config = LoadTestConfig.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.err.println(LoadTestConfig.usage());
+            System.exit(2);
+            return;
+        }
+
+        try {
+            KsmClient client = new KsmClient(config.getBaseUrl(), config.getTimeoutMs(), config.getEntityPrefix());
+            LatencyRecorder recorder = new LatencyRecorder();
+            LoadGenerator generator = new LoadGenerator(config, client, recorder);
+
+            System.out.println("[LoadTest] Target: " + config.getBaseUrl() + " " + config.toMap());
+            System.out.println("[LoadTest] Setting up " + config.getEntities() + " entities...");
+            generator.setup(!config.isReuseKeys());
+
+            System.out.println("[LoadTest] Running " + config.getWarmupSec() + "s warmup + "
+                + config.getDurationSec() + "s measurement...");
+            double measuredSeconds = generator.run();
+
+            ReportWriter writer = new ReportWriter(config, recorder, generator.getMix());
+            Map<String, Object> report = writer.buildReport(measuredSeconds, generator.getMaxBacklog());
+            printSummary(report);
+            writer.write(report);
+        } catch (Exception e) {
+            System.err.println("[LoadTest] Failed: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void printSummary(Map<String, Object> report) {
+        System.out.println();
+        System.out.printf("%-26s %10s %8s %10s %10s %10s %10s %10s%n",
+            "operation", "count", "errors", "ops/s", "p50(us)", "p99(us)", "p99.9(us)", "max(us)");
+        Map<String, Object> rows = new java.util.LinkedHashMap<>((Map<String, Object>) report.get("operations"));
+        rows.put("total", report.get("total"));
+        for (Map.Entry<String, Object> row : rows.entrySet()) {
+            Map<String, Object> stats = (Map<String, Object>) row.getValue();
+            Map<String, Object> rt = (Map<String, Object>) stats.get("responseTimeUs");
+            System.out.printf("%-26s %10s %8s %10s %10s %10s %10s %10s%n",
+                row.getKey(), stats.get("count"), stats.get("errors"), stats.get("throughput"),
+                rt.get("p50"), rt.get("p99"), rt.get("p99_9"), rt.get("max"));
+        }
+        System.out.println();
+    }
+}
@@ -0,0 +1,70 @@
+package com.nt219.ksm.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ghi latency theo từng thao tác vào HdrHistogram (đơn vị micro giây)
+ * 
+ * - responseTime: tính từ intended start time (đã hiệu chỉnh coordinated omission)
+ * - serviceTime: tính từ lúc thực sự gửi request
+ * Mẫu có intended start time trước khi hết warmup bị bỏ qua.
+ */
+public class LatencyRecorder {
+
+    private static final long HIGHEST_TRACKABLE_US = TimeUnit.MINUTES.toMicros(10);
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+    private volatile long measureFromNanos;
+
+    public LatencyRecorder() {
+        for (Operation op : Operation.values()) {
+            stats.put(op, new OperationStats());
+        }
+    }
+
+    public void setMeasureFrom(long nanoTime) {
+        this.measureFromNanos = nanoTime;
+    }
+
+    public void record(Operation operation, long intendedStartNanos, long sendNanos, long doneNanos, boolean success) {
+        if (intendedStartNanos < measureFromNanos) {
+            return;
+        }
+        OperationStats s = stats.get(operation);
+        if (success) {
+            s.responseTime.recordValue(clamp((doneNanos - intendedStartNanos) / 1000));
+            s.serviceTime.recordValue(clamp((doneNanos - sendNanos) / 1000));
+        } else {
+            s.errors.incrementAndGet();
+        }
+    }
+
+    public Histogram getResponseTime(Operation operation) {
+        return stats.get(operation).responseTime;
+    }
+
+    public Histogram getServiceTime(Operation operation) {
+        return stats.get(operation).serviceTime;
+    }
+
+    public long getErrors(Operation operation) {
+        return stats.get(operation).errors.get();
+    }
+
+    private static long clamp(long micros) {
+        return Math.max(0, Math.min(micros, HIGHEST_TRACKABLE_US));
+    }
+
+    private static final class OperationStats {
+        final Histogram responseTime = new ConcurrentHistogram(HIGHEST_TRACKABLE_US, SIGNIFICANT_DIGITS);
+        final Histogram serviceTime = new ConcurrentHistogram(HIGHEST_TRACKABLE_US, SIGNIFICANT_DIGITS);
+        final AtomicLong errors = new AtomicLong();
+    }
+}
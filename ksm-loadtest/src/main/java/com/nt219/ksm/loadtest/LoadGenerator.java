@@ -0,0 +1,164 @@
+package com.nt219.ksm.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sinh tải lên KSM theo open-loop hoặc closed-loop
+ * 
+ * - Open-loop: request đến theo lịch cố định (rate ops/s) bất kể server phản hồi nhanh hay chậm;
+ *   request chờ trong hàng đợi khi mọi worker bận, và thời gian chờ đó được tính vào response time.
+ * - Closed-loop: mỗi worker gửi request tiếp theo sau khi nhận phản hồi; nếu có --rate thì mỗi
+ *   worker được pacing theo lịch rate/concurrency và response time tính từ lịch đó.
+ */
+public class LoadGenerator {
+
+    private final LoadTestConfig config;
+    private final KsmClient client;
+    private final OperationMix mix;
+    private final ZipfDistribution entityDistribution;
+    private final LatencyRecorder recorder;
+    private final AtomicInteger maxBacklog = new AtomicInteger();
+
+    public LoadGenerator(LoadTestConfig config, KsmClient client, LatencyRecorder recorder) {
+        this.config = config;
+        this.client = client;
+        this.recorder = recorder;
+        this.mix = OperationMix.parse(config.getMix());
+        this.entityDistribution = new ZipfDistribution(config.getEntities(), config.getZipfExponent());
+    }
+
+    /**
+     * Tạo khóa (nếu cần) và một chữ ký ban đầu cho toàn bộ entity, để verify có dữ liệu (không đo)
+     */
+    public void setup(boolean generateKeys) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(config.getConcurrency());
+        AtomicInteger failures = new AtomicInteger();
+        for (int i = 0; i < config.getEntities(); i++) {
+            String entityId = entityId(i);
+            pool.execute(() -> {
+                try {
+                    if ((generateKeys && !client.generateKey(entityId)) || !client.sign(entityId)) {
+                        failures.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.HOURS);
+        if (failures.get() > 0) {
+            System.err.println("[LoadTest] Setup failed for " + failures.get() + " entities");
+        }
+    }
+
+    /**
+     * Chạy warmup + đo, trả về thời gian đo thực tế (giây)
+     */
+    public double run() throws InterruptedException {
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(config.getWarmupSec());
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(config.getDurationSec());
+        recorder.setMeasureFrom(measureFrom);
+
+        if (config.getMode() == LoadTestConfig.Mode.OPEN) {
+            runOpenLoop(start, end);
+        } else {
+            runClosedLoop(start, end);
+        }
+        return (System.nanoTime() - measureFrom) / 1e9;
+    }
+
+    public int getMaxBacklog() {
+        return maxBacklog.get();
+    }
+
+    private void runOpenLoop(long start, long end) throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(config.getConcurrency());
+        AtomicInteger backlog = new AtomicInteger();
+        double intervalNanos = 1e9 / config.getRate();
+
+        for (long i = 0; ; i++) {
+            long intended = start + (long) (i * intervalNanos);
+            if (intended >= end) {
+                break;
+            }
+            waitUntil(intended);
+
+            Operation operation = mix.next();
+            maxBacklog.accumulateAndGet(backlog.incrementAndGet(), Math::max);
+            workers.execute(() -> {
+                backlog.decrementAndGet();
+                execute(operation, intended);
+            });
+        }
+
+        workers.shutdown();
+        workers.awaitTermination(config.getTimeoutMs() + 60_000L, TimeUnit.MILLISECONDS);
+    }
+
+    private void runClosedLoop(long start, long end) throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        double perWorkerIntervalNanos = config.getRate() > 0 ? 1e9 * config.getConcurrency() / config.getRate() : 0;
+
+        for (int w = 0; w < config.getConcurrency(); w++) {
+            // Lệch pha các worker để không gửi dồn cùng một thời điểm
+            long workerStart = start + (long) (perWorkerIntervalNanos * w / config.getConcurrency());
+            Thread thread = new Thread(() -> {
+                for (long k = 0; ; k++) {
+                    long intended;
+                    if (perWorkerIntervalNanos > 0) {
+                        intended = workerStart + (long) (k * perWorkerIntervalNanos);
+                        waitUntil(intended);
+                    } else {
+                        intended = System.nanoTime();
+                    }
+                    if (intended >= end) {
+                        break;
+                    }
+                    execute(mix.next(), intended);
+                }
+            }, "loadtest-worker-" + w);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private void execute(Operation operation, long intendedStart) {
+        String entityId = entityId(entityDistribution.sample());
+        String counterparty = entityId(ThreadLocalRandom.current().nextInt(config.getEntities()));
+        long send = System.nanoTime();
+        boolean success;
+        try {
+            success = client.execute(operation, entityId, counterparty);
+        } catch (Exception e) {
+            success = false;
+        }
+        recorder.record(operation, intendedStart, send, System.nanoTime(), success);
+    }
+
+    private String entityId(int index) {
+        return config.getEntityPrefix() + "_" + index;
+    }
+
+    private static void waitUntil(long nanoTime) {
+        long remaining;
+        while ((remaining = nanoTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    public OperationMix getMix() {
+        return mix;
+    }
+}
@@ -0,0 +1,125 @@
+package com.nt219.ksm.loadtest;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cấu hình một lần chạy load test, đọc từ tham số dòng lệnh dạng --key=value
+ */
+public class LoadTestConfig {
+
+    public enum Mode { OPEN, CLOSED }
+
+    private String baseUrl = "http://localhost:8080";
+    private Mode mode = Mode.CLOSED;
+    private double rate = 0;              // ops/s; bắt buộc với open-loop, tùy chọn (pacing) với closed-loop
+    private int concurrency = 16;         // số worker thread
+    private int durationSec = 60;
+    private int warmupSec = 10;
+    private int entities = 1000;
+    private double zipfExponent = 1.0;
+    private String entityPrefix = "LOAD";
+    private String mix = "sign=60,verify=30,createSignedTransaction=8,generateKey=2";
+    private String out = "results/run-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+    private String format = "json,csv";
+    private boolean reuseKeys = false;
+    private int timeoutMs = 30_000;
+
+    public static LoadTestConfig parse(String[] args) {
+        LoadTestConfig config = new LoadTestConfig();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            String[] kv = arg.substring(2).split("=", 2);
+            String key = kv[0];
+            String value = kv.length > 1 ? kv[1] : "true";
+            switch (key) {
+                case "baseUrl": config.baseUrl = value.endsWith("/") ? value.substring(0, value.length() - 1) : value; break;
+                case "mode": config.mode = Mode.valueOf(value.toUpperCase()); break;
+                case "rate": config.rate = Double.parseDouble(value); break;
+                case "concurrency": config.concurrency = Integer.parseInt(value); break;
+                case "duration": config.durationSec = Integer.parseInt(value); break;
+                case "warmup": config.warmupSec = Integer.parseInt(value); break;
+                case "entities": config.entities = Integer.parseInt(value); break;
+                case "zipf": config.zipfExponent = Double.parseDouble(value); break;
+                case "entityPrefix": config.entityPrefix = value; break;
+                case "mix": config.mix = value; break;
+                case "out": config.out = value; break;
+                case "format": config.format = value; break;
+                case "reuseKeys": config.reuseKeys = Boolean.parseBoolean(value); break;
+                case "timeoutMs": config.timeoutMs = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown option: --" + key);
+            }
+        }
+        config.validate();
+        return config;
+    }
+
+    private void validate() {
+        if (mode == Mode.OPEN && rate <= 0) {
+            throw new IllegalArgumentException("--rate is required for open-loop mode");
+        }
+        if (concurrency <= 0 || durationSec <= 0 || warmupSec < 0 || entities < 2) {
+            throw new IllegalArgumentException("concurrency/duration must be positive, warmup >= 0, entities >= 2");
+        }
+    }
+
+    /**
+     * Closed-loop không pacing thì không có "intended start time" để hiệu chỉnh coordinated omission
+     */
+    public boolean isCoordinatedOmissionCorrected() {
+        return mode == Mode.OPEN || rate > 0;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("baseUrl", baseUrl);
+        map.put("mode", mode.name().toLowerCase());
+        map.put("rate", rate);
+        map.put("concurrency", concurrency);
+        map.put("durationSec", durationSec);
+        map.put("warmupSec", warmupSec);
+        map.put("entities", entities);
+        map.put("zipfExponent", zipfExponent);
+        map.put("entityPrefix", entityPrefix);
+        map.put("mix", mix);
+        map.put("coordinatedOmissionCorrected", isCoordinatedOmissionCorrected());
+        return map;
+    }
+
+    public static String usage() {
+        return String.join("\n",
+            "Usage: java -jar ksm-loadtest-1.0.0.jar [options]",
+            "  --baseUrl=http://localhost:8080   KSM base URL",
+            "  --mode=closed|open                closed: fixed workers; open: fixed arrival rate",
+            "  --rate=500                        target ops/s (required for open, pacing for closed)",
+            "  --concurrency=16                  worker threads",
+            "  --duration=60 --warmup=10         seconds measured / discarded",
+            "  --entities=1000 --zipf=1.0        entity population and skew (0 = uniform)",
+            "  --entityPrefix=LOAD               entity id prefix",
+            "  --mix=sign=60,verify=30,createSignedTransaction=8,generateKey=2",
+            "  --out=results/run                 output path prefix (.json/.csv appended)",
+            "  --format=json,csv                 report formats",
+            "  --reuseKeys=true                  skip key generation, reuse keys from a previous run",
+            "  --timeoutMs=30000                 per-request timeout");
+    }
+
+    // Getters
+    public String getBaseUrl() { return baseUrl; }
+    public Mode getMode() { return mode; }
+    public double getRate() { return rate; }
+    public int getConcurrency() { return concurrency; }
+    public int getDurationSec() { return durationSec; }
+    public int getWarmupSec() { return warmupSec; }
+    public int getEntities() { return entities; }
+    public double getZipfExponent() { return zipfExponent; }
+    public String getEntityPrefix() { return entityPrefix; }
+    public String getMix() { return mix; }
+    public String getOut() { return out; }
+    public String getFormat() { return format; }
+    public boolean isReuseKeys() { return reuseKeys; }
+    public int getTimeoutMs() { return timeoutMs; }
+}
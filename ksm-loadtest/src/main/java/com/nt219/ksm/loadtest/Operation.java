@@ -0,0 +1,35 @@
+package com.nt219.ksm.loadtest;
+
+/**
+ * Các thao tác KSM mà load generator có thể sinh ra
+ */
+public enum Operation {
+    GENERATE_KEY("generateKey"),
+    SIGN("sign"),
+    VERIFY("verify"),
+    CREATE_SIGNED_TRANSACTION("createSignedTransaction");
+
+    private final String name;
+
+    Operation(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static Operation fromName(String name) {
+        for (Operation op : values()) {
+            if (op.name.equalsIgnoreCase(name) || op.name().equalsIgnoreCase(name)) {
+                return op;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation: " + name);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
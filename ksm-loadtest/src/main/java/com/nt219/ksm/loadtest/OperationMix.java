@@ -0,0 +1,68 @@
+package com.nt219.ksm.loadtest;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Tỷ lệ các thao tác trong tải, ví dụ "sign=60,verify=30,generateKey=5,createSignedTransaction=5"
+ */
+public class OperationMix {
+
+    private final Operation[] operations;
+    private final double[] cumulative;
+    private final Map<Operation, Double> weights;
+
+    public OperationMix(Map<Operation, Double> weights) {
+        double total = weights.values().stream().mapToDouble(Double::doubleValue).sum();
+        if (weights.isEmpty() || total <= 0) {
+            throw new IllegalArgumentException("Operation mix must have a positive total weight");
+        }
+
+        this.weights = new EnumMap<>(weights);
+        this.operations = weights.keySet().toArray(new Operation[0]);
+        this.cumulative = new double[operations.length];
+        double sum = 0;
+        for (int i = 0; i < operations.length; i++) {
+            sum += weights.get(operations[i]) / total;
+            cumulative[i] = sum;
+        }
+        cumulative[operations.length - 1] = 1.0;
+    }
+
+    public static OperationMix parse(String spec) {
+        Map<Operation, Double> weights = new EnumMap<>(Operation.class);
+        for (String part : spec.split(",")) {
+            if (part.isBlank()) {
+                continue;
+            }
+            String[] kv = part.split("=");
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("Invalid mix entry: " + part);
+            }
+            double weight = Double.parseDouble(kv[1].trim());
+            if (weight > 0) {
+                weights.put(Operation.fromName(kv[0].trim()), weight);
+            }
+        }
+        return new OperationMix(weights);
+    }
+
+    public Operation next() {
+        double r = ThreadLocalRandom.current().nextDouble();
+        for (int i = 0; i < cumulative.length; i++) {
+            if (r < cumulative[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    public Map<Operation, Double> getWeights() {
+        return weights;
+    }
+
+    public boolean contains(Operation operation) {
+        return weights.containsKey(operation);
+    }
+}
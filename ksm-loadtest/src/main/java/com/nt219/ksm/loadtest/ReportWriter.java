@@ -0,0 +1,144 @@
+package com.nt219.ksm.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Xuất kết quả load test ra JSON/CSV để so sánh giữa các lần chạy
+ */
+public class ReportWriter {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private final LoadTestConfig config;
+    private final LatencyRecorder recorder;
+    private final OperationMix mix;
+
+    public ReportWriter(LoadTestConfig config, LatencyRecorder recorder, OperationMix mix) {
+        this.config = config;
+        this.recorder = recorder;
+        this.mix = mix;
+    }
+
+    public Map<String, Object> buildReport(double measuredSeconds, int maxBacklog) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("timestamp", Instant.now().toString());
+        report.put("config", config.toMap());
+        report.put("measuredSeconds", measuredSeconds);
+        report.put("maxBacklog", maxBacklog);
+
+        Histogram totalResponse = new Histogram(3);
+        Histogram totalService = new Histogram(3);
+        long totalErrors = 0;
+
+        Map<String, Object> operations = new LinkedHashMap<>();
+        for (Operation op : Operation.values()) {
+            if (!mix.contains(op)) {
+                continue;
+            }
+            Histogram response = recorder.getResponseTime(op);
+            Histogram service = recorder.getServiceTime(op);
+            long errors = recorder.getErrors(op);
+            operations.put(op.getName(), operationStats(response, service, errors, measuredSeconds));
+
+            totalResponse.add(response);
+            totalService.add(service);
+            totalErrors += errors;
+        }
+        report.put("operations", operations);
+        report.put("total", operationStats(totalResponse, totalService, totalErrors, measuredSeconds));
+        return report;
+    }
+
+    public void write(Map<String, Object> report) throws IOException {
+        File base = new File(config.getOut());
+        if (base.getParentFile() != null) {
+            base.getParentFile().mkdirs();
+        }
+        for (String format : config.getFormat().split(",")) {
+            switch (format.trim().toLowerCase()) {
+                case "json":
+                    writeJson(report, new File(base.getPath() + ".json"));
+                    break;
+                case "csv":
+                    writeCsv(report, new File(base.getPath() + ".csv"));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown report format: " + format);
+            }
+        }
+    }
+
+    private static Map<String, Object> operationStats(Histogram response, Histogram service, long errors, double seconds) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("count", response.getTotalCount());
+        stats.put("errors", errors);
+        stats.put("throughput", round(response.getTotalCount() / seconds));
+        stats.put("responseTimeUs", latencyStats(response));
+        stats.put("serviceTimeUs", latencyStats(service));
+        return stats;
+    }
+
+    private static Map<String, Object> latencyStats(Histogram histogram) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mean", round(histogram.getMean()));
+        for (double p : PERCENTILES) {
+            stats.put("p" + formatPercentile(p), histogram.getValueAtPercentile(p));
+        }
+        stats.put("max", histogram.getMaxValue());
+        return stats;
+    }
+
+    private static void writeJson(Map<String, Object> report, File file) throws IOException {
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, report);
+        System.out.println("[LoadTest] JSON report: " + file.getPath());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeCsv(Map<String, Object> report, File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            StringBuilder header = new StringBuilder("operation,count,errors,throughput");
+            for (String prefix : new String[]{"rt", "st"}) {
+                header.append(',').append(prefix).append("_mean_us");
+                for (double p : PERCENTILES) {
+                    header.append(',').append(prefix).append("_p").append(formatPercentile(p)).append("_us");
+                }
+                header.append(',').append(prefix).append("_max_us");
+            }
+            out.println(header);
+
+            Map<String, Object> rows = new LinkedHashMap<>((Map<String, Object>) report.get("operations"));
+            rows.put("total", report.get("total"));
+            for (Map.Entry<String, Object> row : rows.entrySet()) {
+                Map<String, Object> stats = (Map<String, Object>) row.getValue();
+                StringBuilder line = new StringBuilder(row.getKey());
+                line.append(',').append(stats.get("count"))
+                    .append(',').append(stats.get("errors"))
+                    .append(',').append(stats.get("throughput"));
+                for (String key : new String[]{"responseTimeUs", "serviceTimeUs"}) {
+                    for (Object value : ((Map<String, Object>) stats.get(key)).values()) {
+                        line.append(',').append(value);
+                    }
+                }
+                out.println(line);
+            }
+        }
+        System.out.println("[LoadTest] CSV report: " + file.getPath());
+    }
+
+    private static String formatPercentile(double p) {
+        return p == Math.floor(p) ? String.valueOf((int) p) : String.valueOf(p).replace(".", "_");
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+}
@@ -0,0 +1,45 @@
+package com.nt219.ksm.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Phân phối Zipf trên [0, n) để mô phỏng entity "nóng" (vài ngân hàng lớn chiếm phần lớn giao dịch)
+ * 
+ * P(k) tỷ lệ với 1 / (k+1)^exponent; exponent = 0 là phân phối đều.
+ * CDF được tính trước, mỗi lần sample là một binary search O(log n).
+ */
+public class ZipfDistribution {
+
+    private final double[] cdf;
+
+    public ZipfDistribution(int n, double exponent) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be positive");
+        }
+        if (exponent < 0) {
+            throw new IllegalArgumentException("exponent must be >= 0");
+        }
+
+        this.cdf = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1.0 / Math.pow(k + 1, exponent);
+            cdf[k] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cdf[k] /= sum;
+        }
+        cdf[n - 1] = 1.0;
+    }
+
+    public int sample() {
+        double r = ThreadLocalRandom.current().nextDouble();
+        int index = Arrays.binarySearch(cdf, r);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    public int size() {
+        return cdf.length;
+    }
+}
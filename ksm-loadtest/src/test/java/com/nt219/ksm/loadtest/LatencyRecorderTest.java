@@ -0,0 +1,52 @@
+package com.nt219.ksm.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho LatencyRecorder (coordinated omission, warmup, lỗi)
+ */
+public class LatencyRecorderTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testResponseTimeIncludesQueueingBeforeSend() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        // Dự định gửi lúc 0, bị trễ tới 40 ms (generator nghẽn), server trả lời sau 10 ms
+        recorder.record(Operation.SIGN, 0, 40 * MS, 50 * MS, true);
+
+        assertEquals(50_000, recorder.getResponseTime(Operation.SIGN).getMaxValue(), 50);
+        assertEquals(10_000, recorder.getServiceTime(Operation.SIGN).getMaxValue(), 10);
+        assertEquals(0, recorder.getResponseTime(Operation.VERIFY).getTotalCount());
+    }
+
+    @Test
+    public void testWarmupSamplesAndErrorsAreSeparated() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        recorder.setMeasureFrom(100 * MS);
+        recorder.record(Operation.VERIFY, 99 * MS, 99 * MS, 120 * MS, true);  // thuộc warmup
+        recorder.record(Operation.VERIFY, 99 * MS, 99 * MS, 120 * MS, false);
+        recorder.record(Operation.VERIFY, 100 * MS, 100 * MS, 102 * MS, true);
+        recorder.record(Operation.VERIFY, 101 * MS, 101 * MS, 105 * MS, false);
+
+        assertEquals(1, recorder.getResponseTime(Operation.VERIFY).getTotalCount());
+        assertEquals(1, recorder.getErrors(Operation.VERIFY));
+    }
+
+    @Test
+    public void testOutOfRangeLatenciesAreClamped() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        // Đồng hồ lệch (done trước send) và latency quá 10 phút không làm hỏng histogram
+        recorder.record(Operation.GENERATE_KEY, 10 * MS, 10 * MS, 5 * MS, true);
+        recorder.record(Operation.GENERATE_KEY, 0, 0, TimeUnit.MINUTES.toNanos(20), true);
+
+        assertEquals(2, recorder.getResponseTime(Operation.GENERATE_KEY).getTotalCount());
+        assertEquals(0, recorder.getResponseTime(Operation.GENERATE_KEY).getMinValue());
+        assertEquals(TimeUnit.MINUTES.toMicros(10),
+            recorder.getResponseTime(Operation.GENERATE_KEY).getMaxValue(), TimeUnit.MINUTES.toMicros(10) / 1000);
+    }
+}
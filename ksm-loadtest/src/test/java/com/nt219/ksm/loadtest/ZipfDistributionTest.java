@@ -0,0 +1,57 @@
+package com.nt219.ksm.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho ZipfDistribution
+ */
+public class ZipfDistributionTest {
+
+    private static final int SAMPLES = 200_000;
+
+    private static int[] histogram(ZipfDistribution zipf) {
+        int[] counts = new int[zipf.size()];
+        for (int i = 0; i < SAMPLES; i++) {
+            counts[zipf.sample()]++;
+        }
+        return counts;
+    }
+
+    @Test
+    public void testRejectsInvalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new ZipfDistribution(0, 1.0));
+        assertThrows(IllegalArgumentException.class, () -> new ZipfDistribution(10, -0.5));
+        ZipfDistribution single = new ZipfDistribution(1, 1.0);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, single.sample());
+        }
+    }
+
+    @Test
+    public void testFrequenciesFollowPowerLaw() {
+        int n = 100;
+        double exponent = 1.0;
+        int[] counts = histogram(new ZipfDistribution(n, exponent));
+
+        double harmonic = 0;
+        for (int k = 1; k <= n; k++) {
+            harmonic += 1.0 / Math.pow(k, exponent);
+        }
+        // Entity nóng nhất: P(0) = 1 / H(n), sai số lấy mẫu ~1%
+        double expectedTop = SAMPLES / harmonic;
+        assertEquals(expectedTop, counts[0], expectedTop * 0.05);
+        // P(0) / P(1) = 2 với exponent 1
+        assertEquals(2.0, (double) counts[0] / counts[1], 0.1);
+        assertTrue(counts[0] > counts[9] && counts[9] > counts[99]);
+    }
+
+    @Test
+    public void testZeroExponentIsUniform() {
+        int[] counts = histogram(new ZipfDistribution(10, 0));
+        for (int count : counts) {
+            assertEquals(SAMPLES / 10.0, count, SAMPLES / 10.0 * 0.05);
+        }
+    }
+}
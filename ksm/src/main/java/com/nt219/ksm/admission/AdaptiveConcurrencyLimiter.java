@@ -0,0 +1,188 @@
+package com.nt219.ksm.admission;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Giới hạn số request đồng thời cho một loại thao tác, tự điều chỉnh theo latency đo được (AIMD)
+ *
+ * - Latency làm mượt (EWMA, không tính thời gian chờ) <= minRtt * tolerance và đang dùng
+ *   >= 1/2 limit → tăng limit thêm 1/limit (≈ +1 mỗi "vòng" limit request)
+ * - Latency làm mượt > minRtt * tolerance → giảm limit * backoffRatio, tối đa một lần mỗi minRtt
+ * - minRtt được làm mới định kỳ để theo kịp thay đổi của tải nền
+ *
+ * Request vượt limit chờ trong hàng đợi giới hạn (FIFO) cho tới deadline của chính nó;
+ * hàng đợi đầy → OVERLOADED, deadline đã qua → DEADLINE_EXCEEDED. Không tốn CPU ký/sinh khóa
+ * cho request mà client đã bỏ cuộc.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    public enum Admission { ADMITTED, OVERLOADED, DEADLINE_EXCEEDED }
+
+    private static final long MIN_RTT_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double SMOOTHING = 0.1;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final double tolerance;
+    private final LongSupplier nanoClock;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition permitReleased = lock.newCondition();
+
+    // Các field dưới đây được bảo vệ bởi lock
+    private double limit;
+    private int inFlight;
+    private int queued;
+    private long minRttNanos = Long.MAX_VALUE;
+    private double smoothedRttNanos;
+    private long windowMinRttNanos = Long.MAX_VALUE;
+    private long windowStartNanos;
+    private long lastDecreaseNanos;
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong shedOverload = new AtomicLong();
+    private final AtomicLong shedDeadline = new AtomicLong();
+    private volatile double avgLatencyMillis;
+
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+                                      int maxQueue, double tolerance) {
+        this(name, initialLimit, minLimit, maxLimit, maxQueue, tolerance, System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock Nguồn thời gian thay cho System.nanoTime (test điều khiển cửa sổ minRtt)
+     */
+    AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+                               int maxQueue, double tolerance, LongSupplier nanoClock) {
+        if (minLimit <= 0 || maxLimit < minLimit || maxQueue < 0 || tolerance <= 1.0) {
+            throw new IllegalArgumentException("Invalid limiter settings for " + name);
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueue = maxQueue;
+        this.tolerance = tolerance;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.nanoClock = nanoClock;
+        this.windowStartNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * Xin phép thực hiện một request
+     *
+     * @param deadlineNanos Thời điểm (System.nanoTime) mà sau đó client không còn chờ kết quả
+     */
+    public Admission acquire(long deadlineNanos) throws InterruptedException {
+        if (nanoClock.getAsLong() >= deadlineNanos) {
+            shedDeadline.incrementAndGet();
+            return Admission.DEADLINE_EXCEEDED;
+        }
+
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                admitted.incrementAndGet();
+                return Admission.ADMITTED;
+            }
+            if (queued >= maxQueue) {
+                shedOverload.incrementAndGet();
+                return Admission.OVERLOADED;
+            }
+
+            queued++;
+            try {
+                while (inFlight >= (int) limit) {
+                    long remaining = deadlineNanos - nanoClock.getAsLong();
+                    if (remaining <= 0) {
+                        shedDeadline.incrementAndGet();
+                        return Admission.DEADLINE_EXCEEDED;
+                    }
+                    permitReleased.awaitNanos(remaining);
+                }
+            } finally {
+                queued--;
+            }
+            inFlight++;
+            admitted.incrementAndGet();
+            return Admission.ADMITTED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Trả permit và cập nhật limit theo latency của request vừa xong
+     *
+     * @param latencyNanos Thời gian xử lý (từ lúc được admit)
+     */
+    public void release(long latencyNanos) {
+        long now = nanoClock.getAsLong();
+        lock.lock();
+        try {
+            int inFlightBefore = inFlight;
+            inFlight--;
+            updateLimit(latencyNanos, inFlightBefore, now);
+            permitReleased.signal();
+        } finally {
+            lock.unlock();
+        }
+        avgLatencyMillis = avgLatencyMillis * 0.95 + (latencyNanos / 1e6) * 0.05;
+    }
+
+    private void updateLimit(long latencyNanos, int inFlightBefore, long now) {
+        windowMinRttNanos = Math.min(windowMinRttNanos, latencyNanos);
+        if (now - windowStartNanos > MIN_RTT_WINDOW_NANOS) {
+            minRttNanos = windowMinRttNanos;
+            windowMinRttNanos = latencyNanos;
+            windowStartNanos = now;
+        } else {
+            minRttNanos = Math.min(minRttNanos, latencyNanos);
+        }
+
+        smoothedRttNanos = smoothedRttNanos == 0
+            ? latencyNanos
+            : smoothedRttNanos * (1 - SMOOTHING) + latencyNanos * SMOOTHING;
+
+        if (smoothedRttNanos > minRttNanos * tolerance) {
+            if (now - lastDecreaseNanos > minRttNanos) {
+                limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+                lastDecreaseNanos = now;
+            }
+        } else if (inFlightBefore >= limit / 2) {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        lock.lock();
+        try {
+            stats.put("limit", (int) limit);
+            stats.put("inFlight", inFlight);
+            stats.put("queueDepth", queued);
+            stats.put("minRttMillis", minRttNanos == Long.MAX_VALUE ? null : minRttNanos / 1e6);
+        } finally {
+            lock.unlock();
+        }
+        stats.put("maxQueue", maxQueue);
+        stats.put("admitted", admitted.get());
+        stats.put("shedOverload", shedOverload.get());
+        stats.put("shedDeadline", shedDeadline.get());
+        stats.put("avgLatencyMillis", Math.round(avgLatencyMillis * 100.0) / 100.0);
+        return stats;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,149 @@
+package com.nt219.ksm.admission;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Áp dụng admission control trước khi request vào KSMController
+ *
+ * - Quá tải (hàng đợi đầy) → 429 Too Many Requests
+ * - Deadline đã qua (trước hoặc trong lúc chờ) → 503 Service Unavailable
+ * Permit được trả trong afterCompletion cùng latency xử lý để limiter tự điều chỉnh.
+ *
+ * Khi bật bulkhead theo tenant, tenant nằm trong body (entityId, hoặc field khác tùy endpoint - xem
+ * {@link AdmissionControlService#tenantFieldForPath}) nên preHandle chỉ ghi lại limiter và deadline;
+ * {@link TenantAdmissionAdvice} gọi {@link #admitTenant} ngay sau khi đọc body.
+ */
+@Component
+public class AdmissionControlInterceptor implements HandlerInterceptor {
+
+    private static final String LIMITER_ATTRIBUTE = AdmissionControlInterceptor.class.getName() + ".limiter";
+    private static final String START_ATTRIBUTE = AdmissionControlInterceptor.class.getName() + ".start";
+    private static final String BULKHEAD_ATTRIBUTE = AdmissionControlInterceptor.class.getName() + ".bulkhead";
+    private static final String PENDING_ATTRIBUTE = AdmissionControlInterceptor.class.getName() + ".pending";
+    private static final String DEADLINE_ATTRIBUTE = AdmissionControlInterceptor.class.getName() + ".deadline";
+
+    private final AdmissionControlService admissionService;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public AdmissionControlInterceptor(AdmissionControlService admissionService, ObjectMapper objectMapper) {
+        this.admissionService = admissionService;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!admissionService.isEnabled() || !"POST".equals(request.getMethod())) {
+            return true;
+        }
+        AdaptiveConcurrencyLimiter limiter = admissionService.limiterForPath(request.getRequestURI());
+        if (limiter == null) {
+            return true;
+        }
+
+        long deadline = admissionService.deadlineNanos(
+            request.getHeader(AdmissionControlService.DEADLINE_HEADER),
+            request.getHeader(AdmissionControlService.TIMEOUT_HEADER));
+
+        if (admissionService.isTenantIsolationEnabled()) {
+            // Tenant nằm trong body: admit sau khi đọc body (TenantAdmissionAdvice)
+            request.setAttribute(PENDING_ATTRIBUTE, limiter);
+            request.setAttribute(DEADLINE_ATTRIBUTE, deadline);
+            return true;
+        }
+        try {
+            admit(request, limiter, null, deadline);
+            return true;
+        } catch (AdmissionRejectedException e) {
+            reject(response, e.getStatus(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Admit request đã đọc body: bulkhead của tenant trước, limiter của thao tác sau
+     *
+     * @param body Request body đã đọc (tenant lấy từ field của endpoint)
+     * @throws AdmissionRejectedException Nếu tenant hoặc thao tác quá tải / deadline đã qua
+     */
+    void admitTenant(HttpServletRequest request, Object body) throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = (AdaptiveConcurrencyLimiter) request.getAttribute(PENDING_ATTRIBUTE);
+        if (limiter == null) {
+            return;
+        }
+        request.removeAttribute(PENDING_ATTRIBUTE);
+        String field = admissionService.tenantFieldForPath(request.getRequestURI());
+        Object entityId = field != null && body instanceof Map<?, ?> map ? map.get(field) : null;
+        TenantBulkhead bulkhead = admissionService.bulkheadFor(
+            request.getHeader(AdmissionControlService.TENANT_HEADER), entityId instanceof String ? (String) entityId : null);
+        admit(request, limiter, bulkhead, (Long) request.getAttribute(DEADLINE_ATTRIBUTE));
+    }
+
+    private void admit(HttpServletRequest request, AdaptiveConcurrencyLimiter limiter, TenantBulkhead bulkhead,
+                       long deadline) throws InterruptedException {
+        if (bulkhead != null) {
+            AdaptiveConcurrencyLimiter.Admission admission = bulkhead.acquire(deadline);
+            if (admission != AdaptiveConcurrencyLimiter.Admission.ADMITTED) {
+                throw AdmissionRejectedException.of(admission, "tenant " + bulkhead.getTenant());
+            }
+        }
+        AdaptiveConcurrencyLimiter.Admission admission;
+        try {
+            admission = limiter.acquire(deadline);
+        } catch (InterruptedException e) {
+            if (bulkhead != null) {
+                bulkhead.release();
+            }
+            throw e;
+        }
+        if (admission != AdaptiveConcurrencyLimiter.Admission.ADMITTED) {
+            if (bulkhead != null) {
+                bulkhead.release();
+            }
+            throw AdmissionRejectedException.of(admission, limiter.getName());
+        }
+        request.setAttribute(LIMITER_ATTRIBUTE, limiter);
+        request.setAttribute(BULKHEAD_ATTRIBUTE, bulkhead);
+        request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        AdaptiveConcurrencyLimiter limiter = (AdaptiveConcurrencyLimiter) request.getAttribute(LIMITER_ATTRIBUTE);
+        if (limiter != null) {
+            long latency = System.nanoTime() - (Long) request.getAttribute(START_ATTRIBUTE);
+            limiter.release(latency);
+            TenantBulkhead bulkhead = (TenantBulkhead) request.getAttribute(BULKHEAD_ATTRIBUTE);
+            if (bulkhead != null) {
+                bulkhead.release(latency);
+            }
+        }
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, String message) throws Exception {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        if (status == HttpStatus.TOO_MANY_REQUESTS) {
+            response.setHeader("Retry-After", "1");
+        }
+        objectMapper.writeValue(response.getOutputStream(), errorBody(message));
+    }
+
+    static Map<String, Object> errorBody(String message) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("success", false);
+        error.put("error", message);
+        error.put("timestamp", System.currentTimeMillis());
+        return error;
+    }
+}
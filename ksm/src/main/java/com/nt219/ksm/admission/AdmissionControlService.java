@@ -0,0 +1,175 @@
+package com.nt219.ksm.admission;
+
+import com.nt219.ksm.config.KSMConfig;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control cho các thao tác tốn CPU (sign, verify, keygen)
+ *
+ * Mỗi thao tác có một AdaptiveConcurrencyLimiter riêng. Deadline của request lấy từ header
+ * X-Request-Deadline (epoch millis) hoặc X-Request-Timeout-Ms, mặc định KSM_ADMISSION_TIMEOUT_MS.
+ *
+ * Cấu hình:
+ * - KSM_ADMISSION_ENABLED (mặc định true)
+ * - KSM_ADMISSION_INITIAL_LIMIT / MIN_LIMIT / MAX_LIMIT (mặc định 2×CPU / 1 / 256)
+ * - KSM_ADMISSION_MAX_QUEUE (mặc định 64 request chờ mỗi thao tác)
+ * - KSM_ADMISSION_LATENCY_TOLERANCE (mặc định 2.0 × minRtt)
+ * - KSM_ADMISSION_TIMEOUT_MS (mặc định 5000)
+ *
+ * Bulkhead theo tenant (ngân hàng, xem {@link TenantBulkheads}): request phải qua bulkhead của tenant
+ * trước rồi mới tới limiter của thao tác, nên request đang chờ của một tenant không giữ permit toàn cục.
+ * - KSM_TENANT_ISOLATION_ENABLED (mặc định true)
+ * - KSM_TENANT_MAX_CONCURRENCY (mặc định số CPU thao tác đồng thời mỗi tenant)
+ * - KSM_TENANT_WEIGHTS (vd. "vietcombank=2,bidv=1.5", nhân với KSM_TENANT_MAX_CONCURRENCY)
+ * - KSM_TENANT_MAX_QUEUE (mặc định 16 request chờ mỗi tenant)
+ * - KSM_TENANT_DELIMITERS (mặc định ":/", tenant = entityId tới ký tự phân cách đầu tiên)
+ * - KSM_TENANT_MAX_TENANTS (mặc định 1024)
+ */
+@Service
+public class AdmissionControlService {
+
+    public static final String DEADLINE_HEADER = "X-Request-Deadline";
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+    public static final String TENANT_HEADER = "X-Tenant-Id";
+
+    public static final String SIGN = "sign";
+    public static final String VERIFY = "verify";
+    public static final String KEYGEN = "keygen";
+
+    private static final boolean ENABLED = KSMConfig.getBoolean("KSM_ADMISSION_ENABLED", "ksm.admission.enabled", true);
+    private static final int INITIAL_LIMIT = KSMConfig.getInt("KSM_ADMISSION_INITIAL_LIMIT", "ksm.admission.initialLimit",
+        2 * Runtime.getRuntime().availableProcessors());
+    private static final int MIN_LIMIT = KSMConfig.getInt("KSM_ADMISSION_MIN_LIMIT", "ksm.admission.minLimit", 1);
+    private static final int MAX_LIMIT = KSMConfig.getInt("KSM_ADMISSION_MAX_LIMIT", "ksm.admission.maxLimit", 256);
+    private static final int MAX_QUEUE = KSMConfig.getInt("KSM_ADMISSION_MAX_QUEUE", "ksm.admission.maxQueue", 64);
+    private static final double TOLERANCE = Double.parseDouble(
+        KSMConfig.get("KSM_ADMISSION_LATENCY_TOLERANCE", "ksm.admission.latencyTolerance", "2.0"));
+    private static final long DEFAULT_TIMEOUT_MS = KSMConfig.getLong("KSM_ADMISSION_TIMEOUT_MS", "ksm.admission.timeoutMs", 5000);
+
+    private static final boolean TENANT_ISOLATION = KSMConfig.getBoolean("KSM_TENANT_ISOLATION_ENABLED", "ksm.tenant.isolationEnabled", true);
+    private static final int TENANT_MAX_CONCURRENCY = KSMConfig.getInt("KSM_TENANT_MAX_CONCURRENCY", "ksm.tenant.maxConcurrency",
+        Runtime.getRuntime().availableProcessors());
+    private static final String TENANT_WEIGHTS = KSMConfig.get("KSM_TENANT_WEIGHTS", "ksm.tenant.weights", "");
+    private static final int TENANT_MAX_QUEUE = KSMConfig.getInt("KSM_TENANT_MAX_QUEUE", "ksm.tenant.maxQueue", 16);
+    private static final String TENANT_DELIMITERS = KSMConfig.get("KSM_TENANT_DELIMITERS", "ksm.tenant.delimiters", ":/");
+    private static final int TENANT_MAX_TENANTS = KSMConfig.getInt("KSM_TENANT_MAX_TENANTS", "ksm.tenant.maxTenants", 1024);
+
+    private final Map<String, AdaptiveConcurrencyLimiter> limiters = new LinkedHashMap<>();
+    private final TenantBulkheads tenants = new TenantBulkheads(TENANT_MAX_CONCURRENCY, TENANT_MAX_QUEUE,
+        TENANT_MAX_TENANTS, TENANT_DELIMITERS, TenantBulkheads.parseWeights(TENANT_WEIGHTS));
+
+    public AdmissionControlService() {
+        for (String operation : new String[]{SIGN, VERIFY, KEYGEN}) {
+            limiters.put(operation, new AdaptiveConcurrencyLimiter(
+                operation, INITIAL_LIMIT, MIN_LIMIT, MAX_LIMIT, MAX_QUEUE, TOLERANCE));
+        }
+        System.out.println("[Admission] " + (ENABLED ? "Enabled" : "Disabled")
+            + " (initialLimit=" + INITIAL_LIMIT + ", maxQueue=" + MAX_QUEUE + ")");
+        if (TENANT_ISOLATION) {
+            System.out.println("[Admission] Tenant bulkheads: " + TENANT_MAX_CONCURRENCY + " concurrent, queue "
+                + TENANT_MAX_QUEUE + " per tenant" + (TENANT_WEIGHTS.isBlank() ? "" : ", weights " + TENANT_WEIGHTS));
+        }
+    }
+
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    public boolean isTenantIsolationEnabled() {
+        return ENABLED && TENANT_ISOLATION;
+    }
+
+    /**
+     * Bulkhead của tenant sở hữu request
+     *
+     * @param tenantHeader Header X-Tenant-Id (có thể null)
+     * @param entityId entityId trong body (có thể null)
+     */
+    public TenantBulkhead bulkheadFor(String tenantHeader, String entityId) {
+        return tenants.get(tenants.tenantOf(tenantHeader, entityId));
+    }
+
+    /**
+     * Field của body chứa entity quyết định tenant, theo endpoint
+     * createSignedTransaction ký bằng khóa của "from"; /ksm/publicKeys/verify dùng public key do client
+     * gửi, không gắn với entity nào (null: tenant chỉ lấy từ header X-Tenant-Id)
+     */
+    public String tenantFieldForPath(String path) {
+        if (path.endsWith("/ksm/createSignedTransaction")) {
+            return "from";
+        } else if (path.endsWith("/ksm/publicKeys/verify")) {
+            return null;
+        }
+        return "entityId";
+    }
+
+    /**
+     * Chờ permit cho một dòng bulk sign trong bulkhead của tenant sở hữu entityId (không bị từ chối)
+     * Gọi trên thread đọc của luồng trước khi giao dòng cho worker, nên dòng đang chờ tenant bận
+     * không giữ worker ksm-bulk-sign-* dùng chung với luồng của tenant khác.
+     *
+     * @return Trả permit khi dòng ký xong, hoặc null nếu không bật bulkhead theo tenant
+     */
+    public Runnable acquireBulk(String entityId) throws InterruptedException {
+        if (!isTenantIsolationEnabled()) {
+            return null;
+        }
+        TenantBulkhead bulkhead = bulkheadFor(null, entityId);
+        bulkhead.acquireBulk();
+        return bulkhead::release;
+    }
+
+    /**
+     * Limiter cho request path, hoặc null nếu path không bị giới hạn
+     */
+    public AdaptiveConcurrencyLimiter limiterForPath(String path) {
+        if (path.endsWith("/ksm/sign") || path.endsWith("/ksm/createSignedTransaction")) {
+            return limiters.get(SIGN);
+        } else if (path.endsWith("/ksm/verify") || path.endsWith("/ksm/publicKeys/verify")) {
+            return limiters.get(VERIFY);
+        } else if (path.endsWith("/ksm/generateKey")) {
+            return limiters.get(KEYGEN);
+        }
+        return null;
+    }
+
+    /**
+     * Tính deadline (System.nanoTime) từ header của request
+     */
+    public long deadlineNanos(String deadlineHeader, String timeoutHeader) {
+        long nowNanos = System.nanoTime();
+        try {
+            if (deadlineHeader != null) {
+                long remainingMs = Long.parseLong(deadlineHeader.trim()) - System.currentTimeMillis();
+                return nowNanos + TimeUnit.MILLISECONDS.toNanos(remainingMs);
+            }
+            if (timeoutHeader != null) {
+                return nowNanos + TimeUnit.MILLISECONDS.toNanos(Long.parseLong(timeoutHeader.trim()));
+            }
+        } catch (NumberFormatException e) {
+            // Header không hợp lệ - dùng timeout mặc định
+        }
+        return nowNanos + TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIMEOUT_MS);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", ENABLED);
+        stats.put("defaultTimeoutMs", DEFAULT_TIMEOUT_MS);
+        Map<String, Object> perOperation = new HashMap<>();
+        for (AdaptiveConcurrencyLimiter limiter : limiters.values()) {
+            perOperation.put(limiter.getName(), limiter.getStats());
+        }
+        stats.put("operations", perOperation);
+        stats.put("tenantIsolation", isTenantIsolationEnabled());
+        if (isTenantIsolationEnabled()) {
+            stats.put("tenants", tenants.getStats());
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,26 @@
+package com.nt219.ksm.admission;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Request bị admission control từ chối: 429 khi hàng đợi đầy, 503 khi deadline đã qua
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final HttpStatus status;
+
+    public AdmissionRejectedException(HttpStatus status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    static AdmissionRejectedException of(AdaptiveConcurrencyLimiter.Admission admission, String name) {
+        return admission == AdaptiveConcurrencyLimiter.Admission.OVERLOADED
+            ? new AdmissionRejectedException(HttpStatus.TOO_MANY_REQUESTS, name + " is overloaded, retry later")
+            : new AdmissionRejectedException(HttpStatus.SERVICE_UNAVAILABLE, "Request deadline exceeded before " + name + " started");
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+}
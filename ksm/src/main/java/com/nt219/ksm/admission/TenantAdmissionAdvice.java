@@ -0,0 +1,72 @@
+package com.nt219.ksm.admission;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdviceAdapter;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+
+/**
+ * Admit request vào bulkhead của tenant ngay sau khi đọc @RequestBody (lúc đó mới biết entity của
+ * request), trước khi controller chạy
+ *
+ * Bị từ chối thì ném {@link AdmissionRejectedException}; exception handler bên dưới trả 429 / 503
+ * cùng định dạng lỗi với {@link AdmissionControlInterceptor}.
+ */
+@ControllerAdvice
+public class TenantAdmissionAdvice extends RequestBodyAdviceAdapter {
+
+    private final AdmissionControlInterceptor admissionInterceptor;
+
+    public TenantAdmissionAdvice(AdmissionControlInterceptor admissionInterceptor) {
+        this.admissionInterceptor = admissionInterceptor;
+    }
+
+    @Override
+    public boolean supports(MethodParameter methodParameter, Type targetType,
+                            Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object afterBodyRead(Object body, HttpInputMessage inputMessage, MethodParameter parameter, Type targetType,
+                                Class<? extends HttpMessageConverter<?>> converterType) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes servletAttributes) {
+            HttpServletRequest request = servletAttributes.getRequest();
+            try {
+                admissionInterceptor.admitTenant(request, body);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AdmissionRejectedException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while waiting for admission");
+            }
+        }
+        return body;
+    }
+
+    @Override
+    public Object handleEmptyBody(Object body, HttpInputMessage inputMessage, MethodParameter parameter, Type targetType,
+                                  Class<? extends HttpMessageConverter<?>> converterType) {
+        return afterBodyRead(body, inputMessage, parameter, targetType, converterType);
+    }
+
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<Map<String, Object>> rejected(AdmissionRejectedException e) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(e.getStatus());
+        if (e.getStatus() == HttpStatus.TOO_MANY_REQUESTS) {
+            response.header(HttpHeaders.RETRY_AFTER, "1");
+        }
+        return response.body(AdmissionControlInterceptor.errorBody(e.getMessage()));
+    }
+}
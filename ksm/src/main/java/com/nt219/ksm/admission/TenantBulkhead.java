@@ -0,0 +1,147 @@
+package com.nt219.ksm.admission;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulkhead của một tenant (ngân hàng): số thao tác đồng thời tối đa và hàng đợi riêng
+ *
+ * Request của tenant chỉ chờ sau request của chính tenant đó (FIFO), nên một tenant gửi dồn dập
+ * chỉ làm đầy hàng đợi của nó (→ OVERLOADED) thay vì đẩy p99 của các tenant khác lên.
+ * Dòng của bulk sign stream chờ permit không giới hạn hàng đợi (window của stream đã giới hạn số dòng)
+ * và không tính vào latency của tenant.
+ *
+ * Latency (p50/p99/max) tính trên {@value #LATENCY_SAMPLES} request gần nhất.
+ */
+public class TenantBulkhead {
+
+    static final int LATENCY_SAMPLES = 1024;
+
+    private final String tenant;
+    private final int maxConcurrent;
+    private final int maxQueue;
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong bulkAdmitted = new AtomicLong();
+    private final AtomicLong shedOverload = new AtomicLong();
+    private final AtomicLong shedDeadline = new AtomicLong();
+
+    // Vòng latency gần nhất, bảo vệ bởi synchronized (latencies)
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private long recorded;
+
+    public TenantBulkhead(String tenant, int maxConcurrent, int maxQueue) {
+        if (maxConcurrent <= 0 || maxQueue < 0) {
+            throw new IllegalArgumentException("Invalid bulkhead settings for tenant " + tenant);
+        }
+        this.tenant = tenant;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueue = maxQueue;
+        this.permits = new Semaphore(maxConcurrent, true);
+    }
+
+    /**
+     * Xin permit cho một request, chờ tối đa tới deadline
+     *
+     * @param deadlineNanos Thời điểm (System.nanoTime) mà sau đó client không còn chờ kết quả
+     */
+    public AdaptiveConcurrencyLimiter.Admission acquire(long deadlineNanos) throws InterruptedException {
+        if (System.nanoTime() >= deadlineNanos) {
+            shedDeadline.incrementAndGet();
+            return AdaptiveConcurrencyLimiter.Admission.DEADLINE_EXCEEDED;
+        }
+        // tryAcquire có timeout (kể cả 0) tôn trọng thứ tự FIFO của semaphore, tryAcquire() thì không
+        if (permits.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+            admitted.incrementAndGet();
+            return AdaptiveConcurrencyLimiter.Admission.ADMITTED;
+        }
+        if (queued.incrementAndGet() > maxQueue) {
+            queued.decrementAndGet();
+            shedOverload.incrementAndGet();
+            return AdaptiveConcurrencyLimiter.Admission.OVERLOADED;
+        }
+        try {
+            if (permits.tryAcquire(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                admitted.incrementAndGet();
+                return AdaptiveConcurrencyLimiter.Admission.ADMITTED;
+            }
+            shedDeadline.incrementAndGet();
+            return AdaptiveConcurrencyLimiter.Admission.DEADLINE_EXCEEDED;
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    /**
+     * Trả permit của request và ghi latency xử lý (từ lúc được admit)
+     */
+    public void release(long latencyNanos) {
+        permits.release();
+        synchronized (latencies) {
+            latencies[(int) (recorded++ % LATENCY_SAMPLES)] = latencyNanos;
+        }
+    }
+
+    /**
+     * Chờ permit cho một dòng bulk sign (không giới hạn hàng đợi, không deadline)
+     */
+    public void acquireBulk() throws InterruptedException {
+        permits.acquire();
+        bulkAdmitted.incrementAndGet();
+    }
+
+    /**
+     * Trả permit không ghi latency (dòng bulk sign, hoặc request bị từ chối ở limiter toàn cục)
+     */
+    public void release() {
+        permits.release();
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public Map<String, Object> getStats() {
+        long[] sorted;
+        synchronized (latencies) {
+            sorted = Arrays.copyOf(latencies, (int) Math.min(recorded, LATENCY_SAMPLES));
+        }
+        Arrays.sort(sorted);
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("inFlight", maxConcurrent - permits.availablePermits());
+        stats.put("queueDepth", queued.get());
+        stats.put("maxQueue", maxQueue);
+        stats.put("admitted", admitted.get());
+        stats.put("bulkAdmitted", bulkAdmitted.get());
+        stats.put("shedOverload", shedOverload.get());
+        stats.put("shedDeadline", shedDeadline.get());
+        stats.put("p50Millis", percentileMillis(sorted, 50));
+        stats.put("p99Millis", percentileMillis(sorted, 99));
+        stats.put("maxMillis", percentileMillis(sorted, 100));
+        return stats;
+    }
+
+    /**
+     * Nearest-rank percentile trên mảng đã sort (null nếu chưa có mẫu)
+     */
+    static Double percentileMillis(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return null;
+        }
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return Math.round(sorted[Math.max(0, rank - 1)] / 1e4) / 100.0;
+    }
+}
@@ -0,0 +1,108 @@
+package com.nt219.ksm.admission;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bulkhead theo tenant, tạo khi tenant gửi request đầu tiên
+ *
+ * - Tenant = header X-Tenant-Id nếu có, ngược lại là phần đầu của entityId tới ký tự phân cách đầu tiên
+ *   ("vietcombank:teller-07" → "vietcombank"), viết thường; request không có entityId thuộc tenant
+ *   {@value #SHARED_TENANT}
+ * - Concurrency của tenant = maxConcurrent × weight của tenant (mặc định 1)
+ * - Tối đa {@code maxTenants} bulkhead; tenant mới vượt quá số đó dùng chung bulkhead
+ *   {@value #SHARED_TENANT} (entityId do client đặt nên không để map tăng vô hạn)
+ */
+public class TenantBulkheads {
+
+    public static final String SHARED_TENANT = "shared";
+
+    private final int maxConcurrent;
+    private final int maxQueue;
+    private final int maxTenants;
+    private final String delimiters;
+    private final Map<String, Double> weights;
+    private final Map<String, TenantBulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    public TenantBulkheads(int maxConcurrent, int maxQueue, int maxTenants, String delimiters, Map<String, Double> weights) {
+        if (maxConcurrent <= 0 || maxQueue < 0 || maxTenants <= 0) {
+            throw new IllegalArgumentException("Invalid tenant bulkhead settings");
+        }
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueue = maxQueue;
+        this.maxTenants = maxTenants;
+        this.delimiters = delimiters;
+        this.weights = weights;
+        bulkheads.put(SHARED_TENANT, create(SHARED_TENANT));
+    }
+
+    /**
+     * Tenant của request
+     *
+     * @param tenantHeader Giá trị header X-Tenant-Id (có thể null)
+     * @param entityId entityId trong body (có thể null)
+     */
+    public String tenantOf(String tenantHeader, String entityId) {
+        String source = tenantHeader != null && !tenantHeader.isBlank() ? tenantHeader.trim() : entityId;
+        if (source == null || source.isEmpty()) {
+            return SHARED_TENANT;
+        }
+        int end = source.length();
+        for (int i = 0; i < source.length(); i++) {
+            if (delimiters.indexOf(source.charAt(i)) >= 0) {
+                end = i;
+                break;
+            }
+        }
+        return end == 0 ? SHARED_TENANT : source.substring(0, end).toLowerCase(Locale.ROOT);
+    }
+
+    public TenantBulkhead get(String tenant) {
+        TenantBulkhead bulkhead = bulkheads.get(tenant);
+        if (bulkhead != null) {
+            return bulkhead;
+        }
+        if (bulkheads.size() >= maxTenants) {
+            return bulkheads.get(SHARED_TENANT);
+        }
+        return bulkheads.computeIfAbsent(tenant, this::create);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        for (TenantBulkhead bulkhead : bulkheads.values()) {
+            stats.put(bulkhead.getTenant(), bulkhead.getStats());
+        }
+        return stats;
+    }
+
+    /**
+     * Parse KSM_TENANT_WEIGHTS: "vietcombank=2,bidv=1.5"
+     */
+    public static Map<String, Double> parseWeights(String spec) {
+        if (spec == null || spec.isBlank()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Double> weights = new HashMap<>();
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid tenant weight: " + entry);
+            }
+            double weight = Double.parseDouble(parts[1].trim());
+            if (weight <= 0) {
+                throw new IllegalArgumentException("Tenant weight must be positive: " + entry);
+            }
+            weights.put(parts[0].trim().toLowerCase(Locale.ROOT), weight);
+        }
+        return weights;
+    }
+
+    private TenantBulkhead create(String tenant) {
+        double weight = weights.getOrDefault(tenant, 1.0);
+        return new TenantBulkhead(tenant, Math.max(1, (int) Math.round(maxConcurrent * weight)), maxQueue);
+    }
+}
@@ -0,0 +1,520 @@
+package com.nt219.ksm.archive;
+
+import com.nt219.ksm.crypto.Keccak;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Kho chữ ký off-chain, content-addressed: key = keccak256(signature ‖ algorithm),
+ * đúng hash mà PQCSignatureRegistry tính (abi.encodePacked(bytes, string)), nên on-chain chỉ cần lưu hash.
+ *
+ * Lưu trữ: các segment append-only sig-&lt;id&gt;.seg (mmap, tối đa 2 GB), bản ghi căn 8 byte:
+ * [len (4)][crc32c (4)][hash (32)][algLen (2)][algorithm UTF-8][signature]
+ * Segment đầy được đóng (truncate đúng kích thước, map read-only) và ghi kèm hint sig-&lt;id&gt;.hint
+ * ([hash (32)][offset (4)] mỗi bản ghi + crc32c) để khởi động chỉ đọc hint thay vì quét toàn bộ chữ ký.
+ *
+ * Tra cứu: {@link SignatureIndex} trong RAM cho ra (segment, offset), đọc bản ghi trực tiếp từ mmap
+ * (không syscall). Người đọc không khóa (StampedLock optimistic read), chỉ lần ghi index là độc quyền.
+ *
+ * Độ bền: bản ghi nằm trong page cache ngay khi {@link #put} trả về (an toàn khi process crash);
+ * {@link #flush()} (gọi định kỳ) đẩy xuống đĩa. Phần đuôi ghi dở sau khi mất điện bị cắt khi mở lại.
+ */
+public class SignatureArchive implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "sig-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String HINT_SUFFIX = ".hint";
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int HASH_BYTES = 32;
+    private static final int HINT_ENTRY_BYTES = HASH_BYTES + 4;
+    private static final int OFFSET_BITS = 28; // offset / 8 → segment tối đa 2 GB
+    private static final int MAX_SEGMENT_ID = 0xFFFF;
+    public static final long MAX_SEGMENT_BYTES = (1L << (OFFSET_BITS + 3)) - 8;
+
+    /**
+     * Chữ ký đã lưu
+     */
+    public static final class Entry {
+        private final byte[] signature;
+        private final String algorithm;
+
+        Entry(byte[] signature, String algorithm) {
+            this.signature = signature;
+            this.algorithm = algorithm;
+        }
+
+        public byte[] getSignature() { return signature; }
+        public String getAlgorithm() { return algorithm; }
+    }
+
+    private static final class Segment {
+        final int id;
+        final Path path;
+        FileChannel channel; // chỉ segment đang ghi
+        volatile MappedByteBuffer buffer;
+        int end;
+
+        Segment(int id, Path path) {
+            this.id = id;
+            this.path = path;
+        }
+    }
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final SignatureIndex index;
+    private final StampedLock indexLock = new StampedLock();
+    private volatile Segment[] segments = new Segment[1]; // theo id, id bắt đầu từ 1
+    private Segment active;
+    private long sealedBytes;
+    private boolean dirty;
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong lookupNanos = new AtomicLong();
+    private final AtomicLong appends = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final long recoveredEntries;
+    private final long openMillis;
+
+    /**
+     * Mở (hoặc tạo) kho: nạp hint của các segment đã đóng, quét segment cuối và cắt phần đuôi ghi dở
+     *
+     * @param segmentBytes Kích thước tối đa của một segment (≤ {@link #MAX_SEGMENT_BYTES})
+     * @param expectedEntries Dung lượng ban đầu của index (tự tăng gấp đôi khi đầy)
+     */
+    public SignatureArchive(Path dir, long segmentBytes, long expectedEntries) throws IOException {
+        if (segmentBytes < 4096 || segmentBytes > MAX_SEGMENT_BYTES) {
+            throw new IllegalArgumentException("Segment size must be between 4096 and " + MAX_SEGMENT_BYTES + " bytes");
+        }
+        long start = System.currentTimeMillis();
+        this.dir = dir;
+        this.segmentBytes = segmentBytes & ~7L;
+        Files.createDirectories(dir);
+
+        List<Integer> ids = listSegmentIds();
+        long hinted = 0;
+        for (int i = 0; i < ids.size() - 1; i++) {
+            hinted += hintEntryCount(ids.get(i));
+        }
+        this.index = new SignatureIndex(Math.max(expectedEntries, hinted * 2));
+
+        for (int i = 0; i < ids.size() - 1; i++) {
+            openSealed(ids.get(i));
+        }
+        if (ids.isEmpty()) {
+            openActive(1);
+        } else {
+            openActive(ids.get(ids.size() - 1));
+        }
+        this.recoveredEntries = index.size();
+        this.openMillis = System.currentTimeMillis() - start;
+        System.out.println("[KSM] Signature archive: " + recoveredEntries + " signatures in " + ids.size()
+            + " segment(s), opened in " + openMillis + "ms");
+    }
+
+    /**
+     * keccak256(signature ‖ UTF-8(algorithm)) - như keccak256(abi.encodePacked(pqcSignature, algorithm))
+     */
+    public static byte[] hashOf(byte[] signature, String algorithm) {
+        byte[] algorithmBytes = algorithm.getBytes(StandardCharsets.UTF_8);
+        byte[] packed = Arrays.copyOf(signature, signature.length + algorithmBytes.length);
+        System.arraycopy(algorithmBytes, 0, packed, signature.length, algorithmBytes.length);
+        return Keccak.keccak256(packed);
+    }
+
+    /**
+     * Lưu chữ ký (idempotent: chữ ký đã có thì không ghi lại)
+     *
+     * @return hash (32 byte) dùng làm key
+     */
+    public byte[] put(byte[] signature, String algorithm) throws IOException {
+        byte[] hash = hashOf(signature, algorithm);
+        if (findLocation(hash) != 0) {
+            duplicates.incrementAndGet();
+            return hash;
+        }
+        byte[] algorithmBytes = algorithm.getBytes(StandardCharsets.UTF_8);
+        if (algorithmBytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Algorithm name too long");
+        }
+        byte[] body = new byte[HASH_BYTES + 2 + algorithmBytes.length + signature.length];
+        ByteBuffer.wrap(body).put(hash).putShort((short) algorithmBytes.length).put(algorithmBytes).put(signature);
+        CRC32C crc = new CRC32C();
+        crc.update(body);
+        int recordBytes = align(RECORD_HEADER_BYTES + body.length);
+        if (recordBytes > segmentBytes) {
+            throw new IllegalArgumentException("Signature of " + signature.length + " bytes does not fit a segment");
+        }
+
+        synchronized (this) {
+            // Hai request cùng chữ ký: chỉ request đầu ghi
+            if (findLocation(hash) != 0) {
+                duplicates.incrementAndGet();
+                return hash;
+            }
+            if (active.channel == null) {
+                throw new IllegalStateException("Signature archive is closed");
+            }
+            if (active.end + recordBytes > segmentBytes) {
+                roll();
+            }
+            int offset = active.end;
+            MappedByteBuffer buffer = active.buffer;
+            buffer.putInt(offset, body.length);
+            buffer.putInt(offset + 4, (int) crc.getValue());
+            buffer.put(offset + RECORD_HEADER_BYTES, body);
+            active.end += recordBytes;
+            dirty = true;
+
+            long stamp = indexLock.writeLock();
+            try {
+                index.insert(hash, location(active.id, offset));
+            } finally {
+                indexLock.unlockWrite(stamp);
+            }
+            appends.incrementAndGet();
+        }
+        return hash;
+    }
+
+    /**
+     * @return Chữ ký có hash tương ứng, null nếu không có trong kho
+     */
+    public Entry get(byte[] hash) {
+        long begin = System.nanoTime();
+        try {
+            long location = hash.length == HASH_BYTES ? findLocation(hash) : 0;
+            if (location == 0) {
+                return null;
+            }
+            Entry entry = read(location, hash);
+            hits.incrementAndGet();
+            return entry;
+        } finally {
+            lookups.incrementAndGet();
+            lookupNanos.addAndGet(System.nanoTime() - begin);
+        }
+    }
+
+    public boolean contains(byte[] hash) {
+        return hash.length == HASH_BYTES && findLocation(hash) != 0;
+    }
+
+    private long findLocation(byte[] hash) {
+        long stamp = indexLock.tryOptimisticRead();
+        long location;
+        try {
+            location = index.find(hash, candidate -> hashMatches(candidate, hash));
+        } catch (RuntimeException e) {
+            location = 0; // đọc trúng lúc index đang ghi, thử lại dưới read lock
+        }
+        if (!indexLock.validate(stamp)) {
+            stamp = indexLock.readLock();
+            try {
+                location = index.find(hash, candidate -> hashMatches(candidate, hash));
+            } finally {
+                indexLock.unlockRead(stamp);
+            }
+        }
+        return location;
+    }
+
+    private boolean hashMatches(long location, byte[] hash) {
+        ByteBuffer buffer = bufferOf(location);
+        int offset = offsetOf(location);
+        if (buffer == null || offset + RECORD_HEADER_BYTES + HASH_BYTES > buffer.capacity()) {
+            return false;
+        }
+        for (int i = 0; i < HASH_BYTES; i++) {
+            if (buffer.get(offset + RECORD_HEADER_BYTES + i) != hash[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Entry read(long location, byte[] hash) {
+        ByteBuffer buffer = bufferOf(location);
+        int offset = offsetOf(location);
+        int length = buffer.getInt(offset);
+        byte[] body = new byte[length];
+        buffer.get(offset + RECORD_HEADER_BYTES, body);
+        CRC32C crc = new CRC32C();
+        crc.update(body);
+        if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+            throw new IllegalStateException("Corrupted signature record " + Long.toHexString(location));
+        }
+        ByteBuffer record = ByteBuffer.wrap(body, HASH_BYTES, body.length - HASH_BYTES);
+        int algorithmLength = record.getShort() & 0xFFFF;
+        String algorithm = new String(body, HASH_BYTES + 2, algorithmLength, StandardCharsets.UTF_8);
+        byte[] signature = Arrays.copyOfRange(body, HASH_BYTES + 2 + algorithmLength, body.length);
+        return new Entry(signature, algorithm);
+    }
+
+    private ByteBuffer bufferOf(long location) {
+        int segmentId = (int) (location >>> OFFSET_BITS);
+        Segment[] current = segments;
+        Segment segment = segmentId < current.length ? current[segmentId] : null;
+        return segment != null ? segment.buffer : null;
+    }
+
+    private static int offsetOf(long location) {
+        return (int) ((location & ((1L << OFFSET_BITS) - 1)) << 3);
+    }
+
+    private static long location(int segmentId, int offset) {
+        return ((long) segmentId << OFFSET_BITS) | (offset >>> 3);
+    }
+
+    private static int align(int bytes) {
+        return (bytes + 7) & ~7;
+    }
+
+    // ---- Segment ----
+
+    private Path segmentPath(int id) {
+        return dir.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    private Path hintPath(int id) {
+        return dir.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, id, HINT_SUFFIX));
+    }
+
+    private List<Integer> listSegmentIds() throws IOException {
+        List<Integer> ids = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(path -> path.getFileName().toString())
+                .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                .forEach(name -> ids.add(Integer.parseInt(
+                    name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()))));
+        }
+        ids.sort(null);
+        return ids;
+    }
+
+    private void register(Segment segment) {
+        Segment[] current = segments;
+        if (segment.id >= current.length) {
+            current = Arrays.copyOf(current, Math.max(segment.id + 1, current.length * 2));
+        } else {
+            current = current.clone();
+        }
+        current[segment.id] = segment;
+        segments = current;
+    }
+
+    private long hintEntryCount(int id) throws IOException {
+        Path hint = hintPath(id);
+        return Files.exists(hint) ? Files.size(hint) / HINT_ENTRY_BYTES : 0;
+    }
+
+    private void openSealed(int id) throws IOException {
+        Segment segment = new Segment(id, segmentPath(id));
+        try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+            segment.end = (int) channel.size();
+            segment.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        register(segment);
+        sealedBytes += segment.end;
+        if (!loadHint(segment)) {
+            scan(segment, segment.end);
+            writeHint(segment);
+        }
+    }
+
+    private void openActive(int id) throws IOException {
+        Segment segment = new Segment(id, segmentPath(id));
+        segment.channel = FileChannel.open(segment.path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = segment.channel.size();
+        if (size > 0) {
+            MappedByteBuffer existing = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            segment.buffer = existing;
+            register(segment);
+            int end = scan(segment, (int) Math.min(size, segmentBytes));
+            if (end < size) {
+                // Phần sau bản ghi hợp lệ cuối cùng (vùng chưa ghi hoặc ghi dở): cắt để vùng map mới toàn số 0
+                segment.channel.truncate(end);
+            }
+            segment.end = end;
+        }
+        segment.buffer = segment.channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        register(segment);
+        active = segment;
+    }
+
+    /**
+     * Quét bản ghi từ đầu segment, thêm vào index
+     *
+     * @return Vị trí ngay sau bản ghi hợp lệ cuối cùng
+     */
+    private int scan(Segment segment, int limit) {
+        ByteBuffer buffer = segment.buffer;
+        int offset = 0;
+        CRC32C crc = new CRC32C();
+        while (offset + RECORD_HEADER_BYTES + HASH_BYTES <= limit) {
+            int length = buffer.getInt(offset);
+            if (length < HASH_BYTES + 2 || offset + RECORD_HEADER_BYTES + (long) length > limit) {
+                break;
+            }
+            byte[] body = new byte[length];
+            buffer.get(offset + RECORD_HEADER_BYTES, body);
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+                break;
+            }
+            byte[] hash = Arrays.copyOf(body, HASH_BYTES);
+            if (index.find(hash, candidate -> hashMatches(candidate, hash)) == 0) {
+                index.insert(hash, location(segment.id, offset));
+            }
+            offset += align(RECORD_HEADER_BYTES + length);
+        }
+        if (offset < limit && buffer.getInt(offset) != 0) {
+            System.err.println("[KSM] Signature segment " + segment.path.getFileName()
+                + ": ignoring invalid data after offset " + offset);
+        }
+        return offset;
+    }
+
+    private boolean loadHint(Segment segment) throws IOException {
+        Path hint = hintPath(segment.id);
+        if (!Files.exists(hint)) {
+            return false;
+        }
+        byte[] data = Files.readAllBytes(hint);
+        int entries = (data.length - 4) / HINT_ENTRY_BYTES;
+        CRC32C crc = new CRC32C();
+        crc.update(data, 0, Math.max(0, data.length - 4));
+        if (data.length < 4 || (data.length - 4) % HINT_ENTRY_BYTES != 0
+                || (int) crc.getValue() != ByteBuffer.wrap(data, data.length - 4, 4).getInt()) {
+            System.err.println("[KSM] Invalid hint file " + hint.getFileName() + ", scanning segment instead");
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        for (int i = 0; i < entries; i++) {
+            byte[] hash = new byte[HASH_BYTES];
+            buffer.get(hash);
+            index.insert(hash, location(segment.id, buffer.getInt()));
+        }
+        return true;
+    }
+
+    private void writeHint(Segment segment) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(Math.toIntExact((long) countRecords(segment) * HINT_ENTRY_BYTES + 4));
+        ByteBuffer buffer = segment.buffer;
+        for (int offset = 0; offset < segment.end; ) {
+            int length = buffer.getInt(offset);
+            byte[] hash = new byte[HASH_BYTES];
+            buffer.get(offset + RECORD_HEADER_BYTES, hash);
+            out.put(hash).putInt(offset);
+            offset += align(RECORD_HEADER_BYTES + length);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(out.array(), 0, out.position());
+        out.putInt((int) crc.getValue());
+
+        Path hint = hintPath(segment.id);
+        Path temp = hint.resolveSibling(hint.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.flip();
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, hint, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private int countRecords(Segment segment) {
+        int count = 0;
+        for (int offset = 0; offset < segment.end; count++) {
+            offset += align(RECORD_HEADER_BYTES + segment.buffer.getInt(offset));
+        }
+        return count;
+    }
+
+    /**
+     * Đóng segment đang ghi (fsync, cắt đúng kích thước, map read-only, ghi hint) và mở segment mới
+     */
+    private void roll() throws IOException {
+        if (active.id >= MAX_SEGMENT_ID) {
+            throw new IOException("Signature archive is full (" + MAX_SEGMENT_ID + " segments)");
+        }
+        seal(active);
+        openActive(active.id + 1);
+    }
+
+    private void seal(Segment segment) throws IOException {
+        segment.buffer.force();
+        segment.channel.truncate(segment.end);
+        segment.channel.force(true);
+        segment.buffer = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.end);
+        segment.channel.close();
+        segment.channel = null;
+        sealedBytes += segment.end;
+        writeHint(segment);
+    }
+
+    /**
+     * Đẩy các bản ghi mới xuống đĩa (msync segment đang ghi)
+     */
+    public synchronized void flush() {
+        if (dirty && active != null) {
+            active.buffer.force();
+            dirty = false;
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long lookupCount = lookups.get();
+        stats.put("signatures", index.size());
+        stats.put("segments", Arrays.stream(segments).filter(segment -> segment != null).count());
+        stats.put("bytes", sealedBytes + active.end);
+        stats.put("appends", appends.get());
+        stats.put("duplicates", duplicates.get());
+        stats.put("lookups", lookupCount);
+        stats.put("hits", hits.get());
+        stats.put("averageLookupMicros", lookupCount == 0 ? 0.0 : lookupNanos.get() / 1000.0 / lookupCount);
+        stats.put("indexCapacity", index.capacity());
+        stats.put("indexBytes", index.memoryBytes());
+        stats.put("recoveredSignatures", recoveredEntries);
+        stats.put("openMillis", openMillis);
+        return stats;
+    }
+
+    /**
+     * Flush và cắt segment đang ghi về đúng kích thước (vẫn là segment đang ghi khi mở lại)
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (active == null || active.channel == null) {
+            return;
+        }
+        active.buffer.force();
+        active.channel.truncate(active.end);
+        active.channel.force(true);
+        active.channel.close();
+        active.channel = null;
+    }
+}
@@ -0,0 +1,93 @@
+package com.nt219.ksm.archive;
+
+import com.nt219.ksm.config.KSMConfig;
+import com.nt219.ksm.crypto.Codec;
+import com.nt219.ksm.crypto.PQCSignature;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lưu mọi chữ ký PQC mà KSM trả ra vào {@link SignatureArchive}, để on-chain chỉ cần hash
+ * keccak256(signature ‖ algorithm); auditor lấy lại chữ ký đầy đủ qua GET /ksm/signatures/{hash}.
+ */
+@Service
+public class SignatureArchiveService {
+
+    private static final boolean ENABLED = KSMConfig.getBoolean("KSM_SIGNATURE_ARCHIVE_ENABLED", "ksm.signatureArchive.enabled", true);
+    private static final String STORAGE_DIR = KSMConfig.get("KSM_STORAGE_DIR", "ksm.storage.dir", "./ksm-data");
+    private static final String ARCHIVE_DIR = KSMConfig.get("KSM_SIGNATURE_ARCHIVE_DIR", "ksm.signatureArchive.dir", STORAGE_DIR + "/signatures");
+    private static final long SEGMENT_BYTES = KSMConfig.getLong("KSM_SIGNATURE_ARCHIVE_SEGMENT_BYTES", "ksm.signatureArchive.segmentBytes", 1024L * 1024 * 1024);
+    private static final long EXPECTED_SIGNATURES = KSMConfig.getLong("KSM_SIGNATURE_ARCHIVE_EXPECTED", "ksm.signatureArchive.expected", 1_000_000);
+    private static final long FLUSH_INTERVAL_MS = KSMConfig.getLong("KSM_SIGNATURE_ARCHIVE_FLUSH_MS", "ksm.signatureArchive.flushMs", 1000);
+
+    private final SignatureArchive archive;
+    private final ScheduledExecutorService flusher;
+
+    public SignatureArchiveService() throws IOException {
+        if (!ENABLED) {
+            this.archive = null;
+            this.flusher = null;
+            System.out.println("[KSM] Signature archive disabled");
+            return;
+        }
+        this.archive = new SignatureArchive(Paths.get(ARCHIVE_DIR), SEGMENT_BYTES, EXPECTED_SIGNATURES);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ksm-signature-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(archive::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isEnabled() {
+        return archive != null;
+    }
+
+    /**
+     * Lưu nửa PQC của chữ ký (chữ ký hybrid: phần ECDSA không lưu, registry chỉ giữ chữ ký PQC)
+     *
+     * @return "0x" + hash hex, null nếu archive tắt
+     */
+    public String archive(PQCSignature signature) throws IOException {
+        if (archive == null) {
+            return null;
+        }
+        return "0x" + Codec.toHex(archive.put(signature.getSignature(), signature.getAlgorithm()));
+    }
+
+    /**
+     * @param hashHex Hash 32 byte dạng hex (có hoặc không có 0x)
+     * @return Chữ ký, null nếu không có
+     */
+    public SignatureArchive.Entry find(String hashHex) {
+        if (archive == null) {
+            throw new IllegalStateException("Signature archive is disabled");
+        }
+        return archive.get(Codec.fromHex(hashHex));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", isEnabled());
+        if (archive != null) {
+            stats.putAll(archive.getStats());
+        }
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (archive != null) {
+            flusher.shutdownNow();
+            archive.close();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.nt219.ksm.archive;
+
+/**
+ * Bảng băm open addressing (linear probing): hash chữ ký → vị trí bản ghi trong segment
+ *
+ * Mỗi slot là 2 long liền nhau [8 byte đầu của hash, vị trí] trong các chunk long[] (không có object cho mỗi entry,
+ * vượt được giới hạn 2^31 phần tử của một mảng). Load factor tối đa 0.75 → 21-43 byte heap cho mỗi chữ ký,
+ * so với ~200 byte của HashMap&lt;String, Long&gt;.
+ *
+ * Keccak phân bố đều nên 8 byte đầu vừa là key vừa chọn slot; khi hai hash trùng 8 byte đầu,
+ * matcher so sánh đủ 32 byte với bản ghi. Không thread-safe: {@link SignatureArchive} đồng bộ ghi;
+ * người đọc lấy {@link Table} hiện tại một lần nên luôn thấy mask và chunk khớp nhau.
+ */
+final class SignatureIndex {
+
+    private static final int CHUNK_SHIFT = 20; // 2^20 long (8 MB) mỗi chunk = 2^19 slot
+    private static final int CHUNK_LONGS = 1 << CHUNK_SHIFT;
+    private static final int MIN_CAPACITY = 1 << 10;
+    private static final double MAX_LOAD = 0.75;
+
+    /**
+     * Kiểm tra bản ghi tại vị trí có đúng là hash đang tìm không (so sánh đủ 32 byte)
+     */
+    interface Matcher {
+        boolean matches(long location);
+    }
+
+    private volatile Table table;
+    private long size;
+
+    SignatureIndex(long expectedEntries) {
+        long capacity = MIN_CAPACITY;
+        while (capacity * MAX_LOAD < expectedEntries) {
+            capacity <<= 1;
+        }
+        this.table = new Table(capacity);
+    }
+
+    static long key(byte[] hash) {
+        long key = 0;
+        for (int i = 0; i < 8; i++) {
+            key = (key << 8) | (hash[i] & 0xff);
+        }
+        return key == 0 ? 1 : key; // 0 = slot trống
+    }
+
+    /**
+     * @return Vị trí bản ghi, 0 nếu không có
+     */
+    long find(byte[] hash, Matcher matcher) {
+        Table current = table;
+        long key = key(hash);
+        for (long slot = key & current.mask; ; slot = (slot + 1) & current.mask) {
+            long slotKey = current.key(slot);
+            if (slotKey == 0) {
+                return 0;
+            }
+            if (slotKey == key) {
+                long location = current.location(slot);
+                if (matcher.matches(location)) {
+                    return location;
+                }
+            }
+        }
+    }
+
+    /**
+     * Thêm entry (hash chưa có trong index); location phải khác 0
+     */
+    void insert(byte[] hash, long location) {
+        if (size + 1 > table.capacity * MAX_LOAD) {
+            table = table.grow();
+        }
+        table.put(key(hash), location);
+        size++;
+    }
+
+    long size() {
+        return size;
+    }
+
+    long capacity() {
+        return table.capacity;
+    }
+
+    long memoryBytes() {
+        return table.capacity * 16;
+    }
+
+    static final class Table {
+        final long capacity;
+        final long mask;
+        final long[][] chunks;
+
+        Table(long capacity) {
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            long longs = capacity * 2;
+            int chunkCount = (int) ((longs + CHUNK_LONGS - 1) >>> CHUNK_SHIFT);
+            this.chunks = new long[chunkCount][];
+            for (int i = 0; i < chunkCount; i++) {
+                chunks[i] = new long[(int) Math.min(CHUNK_LONGS, longs - ((long) i << CHUNK_SHIFT))];
+            }
+        }
+
+        long key(long slot) {
+            long index = slot << 1;
+            return chunks[(int) (index >>> CHUNK_SHIFT)][(int) (index & (CHUNK_LONGS - 1))];
+        }
+
+        long location(long slot) {
+            long index = (slot << 1) + 1;
+            return chunks[(int) (index >>> CHUNK_SHIFT)][(int) (index & (CHUNK_LONGS - 1))];
+        }
+
+        void put(long key, long location) {
+            long slot = key & mask;
+            while (key(slot) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            long index = slot << 1;
+            long[] chunk = chunks[(int) (index >>> CHUNK_SHIFT)];
+            int offset = (int) (index & (CHUNK_LONGS - 1));
+            chunk[offset + 1] = location;
+            chunk[offset] = key;
+        }
+
+        Table grow() {
+            Table bigger = new Table(capacity << 1);
+            for (long slot = 0; slot < capacity; slot++) {
+                long key = key(slot);
+                if (key != 0) {
+                    bigger.put(key, location(slot));
+                }
+            }
+            return bigger;
+        }
+    }
+}
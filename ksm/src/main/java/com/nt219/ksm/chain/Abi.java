@@ -0,0 +1,128 @@
+package com.nt219.ksm.chain;
+
+import com.nt219.ksm.crypto.Codec;
+import com.nt219.ksm.crypto.Keccak;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Mã hóa lời gọi hàm Solidity (ABI v2) cho các kiểu mà InterbankTransfer dùng:
+ * address (hex String), uint256 (BigInteger / Long), string, bytes (byte[]) và mảng động T[] (List)
+ */
+public final class Abi {
+
+    private Abi() {
+    }
+
+    /**
+     * 4 byte đầu của keccak256(chữ ký hàm), ví dụ "transfer(address,uint256)"
+     */
+    public static byte[] selector(String signature) {
+        return Arrays.copyOf(Keccak.keccak256(signature.getBytes(StandardCharsets.US_ASCII)), 4);
+    }
+
+    /**
+     * topic0 của event, ví dụ "Transfer(uint256,address,address,uint256,string,string,string,uint256)"
+     */
+    public static String eventTopic(String signature) {
+        return "0x" + Codec.toHex(Keccak.keccak256(signature.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    /**
+     * selector + tham số đã mã hóa
+     *
+     * @param signature Chữ ký hàm, kiểu tham số lấy từ đây
+     */
+    public static byte[] encodeCall(String signature, Object... args) {
+        String params = signature.substring(signature.indexOf('(') + 1, signature.lastIndexOf(')'));
+        List<String> types = params.isEmpty() ? Collections.emptyList() : Arrays.asList(params.split(","));
+        if (types.size() != args.length) {
+            throw new IllegalArgumentException("Expected " + types.size() + " arguments for " + signature);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(selector(signature));
+        out.writeBytes(encodeTuple(types, Arrays.asList(args)));
+        return out.toByteArray();
+    }
+
+    private static byte[] encodeTuple(List<String> types, List<?> values) {
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        ByteArrayOutputStream tail = new ByteArrayOutputStream();
+        int headSize = 32 * types.size();
+        for (int i = 0; i < types.size(); i++) {
+            String type = types.get(i);
+            if (isDynamic(type)) {
+                head.writeBytes(word(BigInteger.valueOf(headSize + tail.size())));
+                tail.writeBytes(encodeDynamic(type, values.get(i)));
+            } else {
+                head.writeBytes(encodeStatic(type, values.get(i)));
+            }
+        }
+        head.writeBytes(tail.toByteArray());
+        return head.toByteArray();
+    }
+
+    private static boolean isDynamic(String type) {
+        return type.endsWith("[]") || type.equals("string") || type.equals("bytes");
+    }
+
+    private static byte[] encodeDynamic(String type, Object value) {
+        if (type.endsWith("[]")) {
+            List<?> elements = (List<?>) value;
+            String elementType = type.substring(0, type.length() - 2);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.writeBytes(word(BigInteger.valueOf(elements.size())));
+            out.writeBytes(encodeTuple(Collections.nCopies(elements.size(), elementType), elements));
+            return out.toByteArray();
+        }
+        byte[] bytes = type.equals("string")
+            ? ((String) value).getBytes(StandardCharsets.UTF_8)
+            : (byte[]) value;
+        byte[] out = new byte[32 + (bytes.length + 31) / 32 * 32];
+        System.arraycopy(word(BigInteger.valueOf(bytes.length)), 0, out, 0, 32);
+        System.arraycopy(bytes, 0, out, 32, bytes.length);
+        return out;
+    }
+
+    private static byte[] encodeStatic(String type, Object value) {
+        switch (type) {
+            case "address":
+                byte[] address = Codec.fromHex((String) value);
+                if (address.length != 20) {
+                    throw new IllegalArgumentException("Invalid address: " + value);
+                }
+                byte[] out = new byte[32];
+                System.arraycopy(address, 0, out, 12, 20);
+                return out;
+            case "uint256":
+                return word(value instanceof BigInteger ? (BigInteger) value : BigInteger.valueOf(((Number) value).longValue()));
+            case "bool":
+                return word(Boolean.TRUE.equals(value) ? BigInteger.ONE : BigInteger.ZERO);
+            default:
+                throw new IllegalArgumentException("Unsupported ABI type: " + type);
+        }
+    }
+
+    private static byte[] word(BigInteger value) {
+        if (value.signum() < 0 || value.bitLength() > 256) {
+            throw new IllegalArgumentException("Value does not fit uint256: " + value);
+        }
+        byte[] bytes = value.toByteArray();
+        byte[] out = new byte[32];
+        int length = Math.min(bytes.length, 32);
+        System.arraycopy(bytes, bytes.length - length, out, 32 - length, length);
+        return out;
+    }
+
+    /**
+     * Đọc word 32 byte tại byteOffset của phần tham số (sau selector) dưới dạng số nguyên
+     */
+    public static BigInteger readWord(byte[] callData, int byteOffset) {
+        return new BigInteger(1, Arrays.copyOfRange(callData, 4 + byteOffset, 4 + byteOffset + 32));
+    }
+}
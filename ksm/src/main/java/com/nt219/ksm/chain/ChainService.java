@@ -0,0 +1,118 @@
+package com.nt219.ksm.chain;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nt219.ksm.config.KSMConfig;
+import com.nt219.ksm.crypto.Codec;
+import com.nt219.ksm.process.SignedTransaction;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Gửi chuyển khoản đã ký PQC lên mạng Besu qua {@link ChainSubmitter}
+ *
+ * Bật khi có KSM_CHAIN_RPC_URL; KSM_CHAIN_SENDER_KEY (hex) là khóa secp256k1 của tài khoản ngân hàng gửi,
+ * KSM_CHAIN_CONTRACT là địa chỉ InterbankTransfer. Submitter khởi động ở chuyển khoản đầu tiên,
+ * để KSM không phụ thuộc vào việc node Besu đã chạy hay chưa.
+ *
+ * Chỉ nhận transaction vừa được KSM ký trong cùng request (/ksm/chain/transfer), nên không qua ReplayGuard:
+ * client không đưa SignedTransaction có sẵn vào được, không có gì để replay.
+ */
+@Service
+public class ChainService {
+
+    private static final String RPC_URL = KSMConfig.get("KSM_CHAIN_RPC_URL", "ksm.chain.rpcUrl", "");
+    private static final String SENDER_KEY = KSMConfig.get("KSM_CHAIN_SENDER_KEY", "ksm.chain.senderKey", "");
+    private static final String CONTRACT = KSMConfig.get("KSM_CHAIN_CONTRACT", "ksm.chain.contract", "");
+    private static final long CHAIN_ID = KSMConfig.getLong("KSM_CHAIN_ID", "ksm.chain.id", 1337);
+    private static final long GAS_PRICE = KSMConfig.getLong("KSM_CHAIN_GAS_PRICE", "ksm.chain.gasPrice", 0);
+    private static final long GAS_BUDGET = KSMConfig.getLong("KSM_CHAIN_GAS_BUDGET", "ksm.chain.gasBudget", 15_000_000);
+    private static final long GAS_PER_TRANSFER = KSMConfig.getLong("KSM_CHAIN_GAS_PER_TRANSFER", "ksm.chain.gasPerTransfer", 150_000);
+    private static final long BATCH_DELAY_MS = KSMConfig.getLong("KSM_CHAIN_BATCH_DELAY_MS", "ksm.chain.batchDelayMs", 20);
+    private static final int MAX_IN_FLIGHT = KSMConfig.getInt("KSM_CHAIN_MAX_IN_FLIGHT", "ksm.chain.maxInFlight", 16);
+    private static final int QUEUE_CAPACITY = KSMConfig.getInt("KSM_CHAIN_QUEUE_CAPACITY", "ksm.chain.queueCapacity", 10_000);
+    private static final long RECEIPT_POLL_MS = KSMConfig.getLong("KSM_CHAIN_RECEIPT_POLL_MS", "ksm.chain.receiptPollMs", 250);
+    private static final long RECEIPT_TIMEOUT_MS = KSMConfig.getLong("KSM_CHAIN_RECEIPT_TIMEOUT_MS", "ksm.chain.receiptTimeoutMs", 60_000);
+    private static final long RPC_TIMEOUT_MS = KSMConfig.getLong("KSM_CHAIN_RPC_TIMEOUT_MS", "ksm.chain.rpcTimeoutMs", 10_000);
+    // amount của SignedTransaction tính bằng VND; contract lưu số dư theo wei (1 VND = 10^12 wei như GUI)
+    private static final long WEI_PER_VND = KSMConfig.getLong("KSM_CHAIN_WEI_PER_VND", "ksm.chain.weiPerVnd", 1_000_000_000_000L);
+
+    private final ChainSubmitter submitter;
+    private volatile boolean started;
+
+    @Autowired
+    public ChainService(ObjectMapper objectMapper) {
+        if (RPC_URL.isEmpty()) {
+            this.submitter = null;
+            System.out.println("[KSM] Chain submission disabled (KSM_CHAIN_RPC_URL not set)");
+            return;
+        }
+        if (SENDER_KEY.isEmpty() || CONTRACT.isEmpty()) {
+            throw new IllegalStateException("KSM_CHAIN_SENDER_KEY and KSM_CHAIN_CONTRACT are required when KSM_CHAIN_RPC_URL is set");
+        }
+        JsonRpcClient rpc = new JsonRpcClient(RPC_URL, objectMapper, Duration.ofMillis(RPC_TIMEOUT_MS));
+        this.submitter = new ChainSubmitter(rpc, Codec.fromHex(SENDER_KEY), CONTRACT, CHAIN_ID,
+            BigInteger.valueOf(GAS_PRICE), GAS_BUDGET, GAS_PER_TRANSFER, BATCH_DELAY_MS, MAX_IN_FLIGHT,
+            QUEUE_CAPACITY, RECEIPT_POLL_MS, RECEIPT_TIMEOUT_MS);
+        System.out.println("[KSM] Chain submission via " + RPC_URL + " (sender " + submitter.getSenderAddress() + ")");
+    }
+
+    public boolean isEnabled() {
+        return submitter != null;
+    }
+
+    /**
+     * Đưa transaction đã ký vào pipeline batchTransfer
+     *
+     * @param toAddress Địa chỉ Ethereum của ngân hàng nhận
+     * @return Future hoàn tất khi batch chứa chuyển khoản được mined
+     */
+    public CompletableFuture<TransferReceipt> submit(SignedTransaction transaction, String toAddress, String toBankCode)
+            throws IOException {
+        if (submitter == null) {
+            throw new IllegalStateException("Chain submission is disabled (KSM_CHAIN_RPC_URL not set)");
+        }
+        ensureStarted();
+        BigInteger amountWei = BigDecimal.valueOf(transaction.getAmount())
+            .multiply(BigDecimal.valueOf(WEI_PER_VND))
+            .toBigInteger();
+        String description = transaction.getDescription() != null ? transaction.getDescription() : "";
+        return submitter.submit(new ChainTransfer(transaction, toAddress, amountWei, toBankCode, description));
+    }
+
+    private void ensureStarted() throws IOException {
+        if (!started) {
+            synchronized (this) {
+                if (!started) {
+                    submitter.start();
+                    started = true;
+                }
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", isEnabled());
+        if (submitter != null) {
+            stats.put("started", started);
+            stats.putAll(submitter.getStats());
+        }
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (submitter != null && started) {
+            submitter.close();
+        }
+    }
+}
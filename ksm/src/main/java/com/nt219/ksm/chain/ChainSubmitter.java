@@ -0,0 +1,573 @@
+package com.nt219.ksm.chain;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.nt219.ksm.crypto.Codec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pipeline đưa chuyển khoản đã ký lên InterbankTransfer qua batchTransfer
+ *
+ * - {@link #submit(ChainTransfer)} chỉ đưa chuyển khoản vào hàng đợi (có giới hạn) và trả Future của receipt.
+ * - Thread packer gom chuyển khoản thành một lời gọi batchTransfer: tối đa 50 (giới hạn của contract) và
+ *   tổng gas ước lượng không vượt gasBudget; chờ thêm tối đa maxDelay sau chuyển khoản đầu tiên.
+ * - Nonce quản lý cục bộ (khởi tạo từ eth_getTransactionCount "pending"), nên tối đa maxInFlight giao dịch
+ *   được gửi mà không chờ block. Hết slot thì packer chờ, hàng đợi đầy dần và submit bị từ chối (backpressure).
+ * - Thread receipt hỏi receipt của MỌI giao dịch đang chờ trong một batch JSON-RPC mỗi pollInterval,
+ *   đọc các event Transfer (topic1 = transactionId, theo thứ tự trong batch) để hoàn tất từng Future.
+ *
+ * Giao dịch revert → mọi chuyển khoản trong batch thất bại. Node từ chối giao dịch → thất bại, và nonce được
+ * đồng bộ lại từ node trước batch kế tiếp.
+ *
+ * Giao dịch không được mined trong receiptTimeout vẫn có thể được mined sau đó, nên chưa báo thất bại ngay:
+ * submitter gửi giao dịch hủy cùng nonce (0 wei tới chính nó, gas price cao hơn) và chờ một trong hai được mined.
+ * Giao dịch gốc mined → thành công như thường; giao dịch hủy mined → thất bại (chắc chắn không chuyển khoản nào
+ * được thực hiện). Sau thêm receiptTimeout mà vẫn chưa rõ → {@link ReceiptTimeoutException}: kết quả UNKNOWN,
+ * kèm hash giao dịch để đối soát.
+ */
+public class ChainSubmitter implements Closeable {
+
+    public static final int MAX_TRANSFERS_PER_BATCH = 50;
+    static final String BATCH_TRANSFER = "batchTransfer(address[],uint256[],string[],string[])";
+    static final String TRANSFER_EVENT =
+        Abi.eventTopic("Transfer(uint256,address,address,uint256,string,string,string,uint256)");
+
+    // Ước lượng gas: intrinsic + phần cố định của batchTransfer + mỗi chuyển khoản
+    // (logic + event, ghi string vào storage, calldata tính 16 gas/byte như byte khác 0)
+    private static final long TX_BASE_GAS = 21_000;
+    private static final long BATCH_BASE_GAS = 50_000;
+    private static final long STORAGE_WORD_GAS = 22_100;
+    private static final long CALLDATA_BYTE_GAS = 16;
+
+    private final JsonRpcClient rpc;
+    private final byte[] senderKey;
+    private final String senderAddress;
+    private final String contractAddress;
+    private final long chainId;
+    private final BigInteger gasPrice;
+    private final long gasBudget;
+    private final long gasPerTransfer;
+    private final long maxDelayNanos;
+    private final int maxInFlight;
+    private final long receiptPollMillis;
+    private final long receiptTimeoutMillis;
+
+    private final LinkedBlockingQueue<Pending> queue;
+    private final Semaphore inFlightSlots;
+    private final Map<String, Batch> inFlight = new ConcurrentHashMap<>();
+    private final Thread packer;
+    private final ScheduledExecutorService receiptPoller;
+    private volatile boolean running;
+    private volatile boolean nonceStale;
+    private volatile long nextNonce;
+    private Pending carry;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong confirmed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong batchedTransfers = new AtomicLong();
+    private final AtomicLong reverted = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong unknown = new AtomicLong();
+    private final AtomicLong nonceResyncs = new AtomicLong();
+    private final AtomicLong latencyMillis = new AtomicLong();
+    private volatile long firstSubmitNanos;
+    private volatile long lastConfirmNanos;
+
+    /**
+     * @param senderPrivateKey Khóa secp256k1 của tài khoản ngân hàng gửi (msg.sender của batchTransfer)
+     * @param queueCapacity Số chuyển khoản tối đa chờ trong hàng đợi trước khi submit bị từ chối
+     */
+    public ChainSubmitter(
+            JsonRpcClient rpc,
+            byte[] senderPrivateKey,
+            String contractAddress,
+            long chainId,
+            BigInteger gasPrice,
+            long gasBudget,
+            long gasPerTransfer,
+            long maxDelayMillis,
+            int maxInFlight,
+            int queueCapacity,
+            long receiptPollMillis,
+            long receiptTimeoutMillis) {
+        this.rpc = rpc;
+        this.senderKey = senderPrivateKey.clone();
+        this.senderAddress = EthTransaction.addressOf(senderKey);
+        this.contractAddress = contractAddress;
+        this.chainId = chainId;
+        this.gasPrice = gasPrice;
+        this.gasBudget = gasBudget;
+        this.gasPerTransfer = gasPerTransfer;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.maxInFlight = maxInFlight;
+        this.receiptPollMillis = receiptPollMillis;
+        this.receiptTimeoutMillis = receiptTimeoutMillis;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.inFlightSlots = new Semaphore(maxInFlight);
+
+        this.packer = new Thread(this::packLoop, "ksm-chain-packer");
+        this.packer.setDaemon(true);
+        this.receiptPoller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ksm-chain-receipts");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Lấy nonce hiện tại của tài khoản gửi rồi chạy packer và receipt poller
+     */
+    public void start() throws IOException {
+        nextNonce = fetchPendingNonce();
+        running = true;
+        packer.start();
+        receiptPoller.scheduleWithFixedDelay(this::pollReceipts, receiptPollMillis, receiptPollMillis, TimeUnit.MILLISECONDS);
+        System.out.println("[KSM] Chain submitter started: sender " + senderAddress + ", nonce " + nextNonce
+            + ", contract " + contractAddress);
+    }
+
+    /**
+     * Đưa chuyển khoản vào hàng đợi
+     *
+     * @return Future hoàn tất khi giao dịch batch chứa chuyển khoản được mined (hoặc thất bại)
+     */
+    public CompletableFuture<TransferReceipt> submit(ChainTransfer transfer) {
+        if (!running) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Chain submitter is not running"));
+        }
+        // Một chuyển khoản không hợp lệ sẽ revert cả batch: kiểm tra các require của contract trước
+        if (transfer.getAmountWei().signum() <= 0) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Amount must be greater than 0"));
+        }
+        byte[] recipient = Codec.fromHex(transfer.getToAddress());
+        if (recipient.length != 20 || Arrays.equals(recipient, new byte[20])) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Invalid recipient address: " + transfer.getToAddress()));
+        }
+        if (transfer.getToAddress().equalsIgnoreCase(senderAddress)) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Cannot transfer to yourself"));
+        }
+        long gas = estimateGas(transfer);
+        if (TX_BASE_GAS + BATCH_BASE_GAS + gas > gasBudget) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException(
+                "Transfer needs ~" + gas + " gas, exceeds gas budget " + gasBudget));
+        }
+
+        Pending pending = new Pending(transfer, gas);
+        if (!queue.offer(pending)) {
+            rejected.incrementAndGet();
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Chain submission queue is full"));
+        }
+        if (submitted.getAndIncrement() == 0) {
+            firstSubmitNanos = System.nanoTime();
+        }
+        return pending.future;
+    }
+
+    private long estimateGas(ChainTransfer transfer) {
+        long bankWords = words(transfer.getToBankCode());
+        long descriptionWords = words(transfer.getDescription());
+        // address + amount + 2 offset string (head các mảng) + 2 word độ dài + nội dung string
+        long calldataBytes = 32 * (6 + bankWords + descriptionWords);
+        return gasPerTransfer + STORAGE_WORD_GAS * (bankWords + descriptionWords) + CALLDATA_BYTE_GAS * calldataBytes;
+    }
+
+    private static long words(String value) {
+        return (value.getBytes(StandardCharsets.UTF_8).length + 31) / 32;
+    }
+
+    private void packLoop() {
+        while (running || carry != null || !queue.isEmpty()) {
+            try {
+                // Giữ slot trước khi gom: khi mọi slot bận, chuyển khoản tích lũy lại và batch kế tiếp sẽ đầy hơn
+                inFlightSlots.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            // Slot chỉ còn bị giữ khi batch đã nằm trong inFlight (trả lại lúc có receipt)
+            boolean sent = false;
+            List<Pending> batch = null;
+            try {
+                batch = nextBatch();
+                sent = !batch.isEmpty() && send(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("[KSM] Chain packer error: " + e.getMessage());
+                if (batch != null) {
+                    fail(batch, new SubmissionException("Batch could not be sent: " + e.getMessage()));
+                }
+            } finally {
+                if (!sent) {
+                    inFlightSlots.release();
+                }
+            }
+        }
+    }
+
+    private List<Pending> nextBatch() throws InterruptedException {
+        List<Pending> batch = new ArrayList<>();
+        Pending first = carry != null ? carry : queue.poll(100, TimeUnit.MILLISECONDS);
+        carry = null;
+        if (first == null) {
+            return batch;
+        }
+        batch.add(first);
+        long gas = TX_BASE_GAS + BATCH_BASE_GAS + first.gas;
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (batch.size() < MAX_TRANSFERS_PER_BATCH) {
+            long remaining = deadline - System.nanoTime();
+            Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+            if (next == null) {
+                break;
+            }
+            if (gas + next.gas > gasBudget) {
+                carry = next;
+                break;
+            }
+            batch.add(next);
+            gas += next.gas;
+        }
+        return batch;
+    }
+
+    /**
+     * @return true nếu batch đã gửi và chờ receipt trong inFlight; false nếu node từ chối (batch đã bị fail)
+     */
+    private boolean send(List<Pending> batch) {
+        long gasLimit = TX_BASE_GAS + BATCH_BASE_GAS;
+        List<Object> recipients = new ArrayList<>(batch.size());
+        List<Object> amounts = new ArrayList<>(batch.size());
+        List<Object> bankCodes = new ArrayList<>(batch.size());
+        List<Object> descriptions = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            gasLimit += pending.gas;
+            recipients.add(pending.transfer.getToAddress());
+            amounts.add(pending.transfer.getAmountWei());
+            bankCodes.add(pending.transfer.getToBankCode());
+            descriptions.add(pending.transfer.getDescription());
+        }
+        byte[] data = Abi.encodeCall(BATCH_TRANSFER, recipients, amounts, bankCodes, descriptions);
+
+        for (int attempt = 0; ; attempt++) {
+            String hash;
+            try {
+                if (nonceStale) {
+                    resyncNonce();
+                }
+                byte[] raw = new EthTransaction(nextNonce, gasPrice, Math.min(gasLimit, gasBudget), contractAddress,
+                    BigInteger.ZERO, data, chainId).sign(senderKey);
+                hash = EthTransaction.hashOf(raw);
+                try {
+                    rpc.call("eth_sendRawTransaction", "0x" + Codec.toHex(raw));
+                } catch (IOException e) {
+                    // Không biết node đã nhận hay chưa: coi như đã gửi, receipt (hoặc timeout) sẽ quyết định
+                    System.err.println("[KSM] eth_sendRawTransaction " + hash + " uncertain: " + e.getMessage());
+                }
+            } catch (JsonRpcClient.JsonRpcException | IOException e) {
+                // Node từ chối giao dịch: nonce chưa được dùng. Lỗi nonce (ví dụ giao dịch gửi ngoài KSM) → đồng bộ lại và thử một lần nữa
+                nonceStale = true;
+                if (attempt == 0 && String.valueOf(e.getMessage()).toLowerCase().contains("nonce")) {
+                    continue;
+                }
+                fail(batch, new SubmissionException("Batch transaction rejected: " + e.getMessage()));
+                return false;
+            }
+
+            inFlight.put(hash, new Batch(hash, nextNonce, batch));
+            nextNonce++;
+            batches.incrementAndGet();
+            batchedTransfers.addAndGet(batch.size());
+            return true;
+        }
+    }
+
+    private void resyncNonce() throws IOException {
+        long nonce = fetchPendingNonce();
+        if (nonce != nextNonce) {
+            System.out.println("[KSM] Chain nonce resynced: " + nextNonce + " -> " + nonce);
+        }
+        nextNonce = nonce;
+        nonceStale = false;
+        nonceResyncs.incrementAndGet();
+    }
+
+    private long fetchPendingNonce() throws IOException {
+        return hexToLong(rpc.call("eth_getTransactionCount", senderAddress, "pending"));
+    }
+
+    private void pollReceipts() {
+        try {
+            if (inFlight.isEmpty()) {
+                return;
+            }
+            List<Batch> waiting = new ArrayList<>(inFlight.values());
+            List<Object[]> params = new ArrayList<>(waiting.size());
+            for (Batch batch : waiting) {
+                params.add(new Object[] {batch.hash});
+                if (batch.cancelHash != null) {
+                    params.add(new Object[] {batch.cancelHash});
+                }
+            }
+            List<JsonNode> receipts;
+            try {
+                receipts = rpc.batch("eth_getTransactionReceipt", params);
+            } catch (IOException | JsonRpcClient.JsonRpcException e) {
+                System.err.println("[KSM] Receipt poll failed: " + e.getMessage());
+                receipts = new ArrayList<>();
+            }
+
+            long now = System.currentTimeMillis();
+            int next = 0;
+            for (Batch batch : waiting) {
+                JsonNode receipt = receiptAt(receipts, next++);
+                JsonNode cancelReceipt = batch.cancelHash != null ? receiptAt(receipts, next++) : null;
+                if (receipt != null) {
+                    settle(batch, receipt);
+                } else if (cancelReceipt != null) {
+                    // Nonce đã bị giao dịch hủy chiếm: giao dịch gốc không bao giờ được mined nữa
+                    finish(batch);
+                    cancelled.incrementAndGet();
+                    fail(batch.transfers, new SubmissionException("Batch transaction " + batch.hash + " (nonce "
+                        + batch.nonce + ") not mined within " + receiptTimeoutMillis + "ms, cancelled by " + batch.cancelHash));
+                } else if (batch.cancelSentAt == 0 && now - batch.sentAt > receiptTimeoutMillis) {
+                    cancel(batch);
+                } else if (batch.cancelSentAt != 0 && now - batch.cancelSentAt > receiptTimeoutMillis) {
+                    finish(batch);
+                    nonceStale = true;
+                    unknown.incrementAndGet();
+                    fail(batch.transfers, new ReceiptTimeoutException(batch.hash, batch.nonce, "Batch transaction "
+                        + batch.hash + " (nonce " + batch.nonce + ") neither mined nor cancelled, outcome unknown"));
+                }
+            }
+        } catch (RuntimeException e) {
+            // Không để exception hủy lịch poll
+            System.err.println("[KSM] Receipt poller error: " + e.getMessage());
+        }
+    }
+
+    private static JsonNode receiptAt(List<JsonNode> receipts, int index) {
+        JsonNode receipt = index < receipts.size() ? receipts.get(index) : null;
+        return receipt != null && !receipt.isNull() ? receipt : null;
+    }
+
+    /**
+     * Gửi giao dịch hủy cùng nonce với batch quá hạn (slot in-flight vẫn giữ tới khi một trong hai được mined)
+     */
+    private void cancel(Batch batch) {
+        batch.cancelSentAt = System.currentTimeMillis();
+        // Node chỉ thay giao dịch trong mempool khi gas price cao hơn (thường >= 10%)
+        BigInteger replacementGasPrice = gasPrice.multiply(BigInteger.valueOf(5)).divide(BigInteger.valueOf(4)).add(BigInteger.ONE);
+        byte[] raw = new EthTransaction(batch.nonce, replacementGasPrice, TX_BASE_GAS, senderAddress,
+            BigInteger.ZERO, new byte[0], chainId).sign(senderKey);
+        batch.cancelHash = EthTransaction.hashOf(raw);
+        try {
+            rpc.call("eth_sendRawTransaction", "0x" + Codec.toHex(raw));
+            System.err.println("[KSM] Batch transaction " + batch.hash + " not mined within " + receiptTimeoutMillis
+                + "ms, sent cancellation " + batch.cancelHash + " at nonce " + batch.nonce);
+        } catch (JsonRpcClient.JsonRpcException e) {
+            // Thường vì nonce đã được dùng (giao dịch gốc vừa mined): tiếp tục chờ receipt của giao dịch gốc
+            System.err.println("[KSM] Cancellation of " + batch.hash + " rejected: " + e.getMessage());
+            batch.cancelHash = null;
+        } catch (IOException e) {
+            // Không biết node đã nhận hay chưa: receipt của một trong hai giao dịch sẽ quyết định
+            System.err.println("[KSM] Cancellation of " + batch.hash + " uncertain: " + e.getMessage());
+        }
+    }
+
+    private void settle(Batch batch, JsonNode receipt) {
+        finish(batch);
+        long blockNumber = hexToLong(receipt.path("blockNumber"));
+        if (!"0x1".equals(receipt.path("status").asText())) {
+            reverted.incrementAndGet();
+            fail(batch.transfers, new SubmissionException(
+                "Batch transaction " + batch.hash + " reverted in block " + blockNumber));
+            return;
+        }
+
+        List<BigInteger> transactionIds = new ArrayList<>(batch.transfers.size());
+        for (JsonNode log : receipt.path("logs")) {
+            JsonNode topics = log.path("topics");
+            if (contractAddress.equalsIgnoreCase(log.path("address").asText())
+                    && topics.size() > 1 && TRANSFER_EVENT.equalsIgnoreCase(topics.get(0).asText())) {
+                transactionIds.add(new BigInteger(topics.get(1).asText().substring(2), 16));
+            }
+        }
+        if (transactionIds.size() != batch.transfers.size()) {
+            fail(batch.transfers, new SubmissionException("Batch transaction " + batch.hash + " emitted "
+                + transactionIds.size() + " Transfer events for " + batch.transfers.size() + " transfers"));
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        confirmed.addAndGet(batch.transfers.size());
+        lastConfirmNanos = System.nanoTime();
+        for (Pending pending : batch.transfers) {
+            latencyMillis.addAndGet(now - pending.submittedAt);
+        }
+        for (int i = 0; i < batch.transfers.size(); i++) {
+            Pending pending = batch.transfers.get(i);
+            pending.future.complete(new TransferReceipt(batch.hash, blockNumber, transactionIds.get(i),
+                batch.transfers.size(), i, now - pending.submittedAt));
+        }
+    }
+
+    private void finish(Batch batch) {
+        if (inFlight.remove(batch.hash) != null) {
+            inFlightSlots.release();
+        }
+    }
+
+    private void fail(List<Pending> transfers, Throwable cause) {
+        failed.addAndGet(transfers.size());
+        for (Pending pending : transfers) {
+            pending.future.completeExceptionally(cause);
+        }
+    }
+
+    private static long hexToLong(JsonNode value) {
+        String hex = value.asText();
+        return hex.startsWith("0x") ? Long.parseLong(hex.substring(2), 16) : Long.parseLong(hex);
+    }
+
+    public String getSenderAddress() {
+        return senderAddress;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long batchCount = batches.get();
+        long confirmedCount = confirmed.get();
+        stats.put("sender", senderAddress);
+        stats.put("contract", contractAddress);
+        stats.put("submitted", submitted.get());
+        stats.put("confirmed", confirmedCount);
+        stats.put("failed", failed.get());
+        stats.put("rejected", rejected.get());
+        stats.put("batches", batchCount);
+        stats.put("averageBatchSize", batchCount == 0 ? 0.0 : (double) batchedTransfers.get() / batchCount);
+        stats.put("revertedBatches", reverted.get());
+        stats.put("cancelledBatches", cancelled.get());
+        stats.put("unknownBatches", unknown.get());
+        stats.put("inFlight", inFlight.size());
+        stats.put("maxInFlight", maxInFlight);
+        stats.put("queueDepth", queue.size());
+        stats.put("nextNonce", nextNonce);
+        stats.put("nonceResyncs", nonceResyncs.get());
+        stats.put("averageLatencyMs", confirmedCount == 0 ? 0 : latencyMillis.get() / confirmedCount);
+        double seconds = (lastConfirmNanos - firstSubmitNanos) / 1e9;
+        stats.put("transfersPerSecond", confirmedCount == 0 || seconds <= 0 ? 0.0 : confirmedCount / seconds);
+        stats.put("gasBudget", gasBudget);
+        return stats;
+    }
+
+    /**
+     * Ngừng nhận chuyển khoản, gửi nốt hàng đợi và chờ receipt của các giao dịch đang chờ (tối đa receiptTimeout)
+     */
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            packer.join(receiptTimeoutMillis);
+            long deadline = System.currentTimeMillis() + receiptTimeoutMillis;
+            while (!inFlight.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(receiptPollMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        packer.interrupt();
+        receiptPoller.shutdownNow();
+
+        List<Pending> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        fail(abandoned, new SubmissionException("Chain submitter closed"));
+        // Giao dịch đã gửi vẫn có thể được mined sau khi đóng
+        for (Batch batch : inFlight.values()) {
+            unknown.incrementAndGet();
+            fail(batch.transfers, new ReceiptTimeoutException(batch.hash, batch.nonce,
+                "Chain submitter closed while batch transaction " + batch.hash + " was pending, outcome unknown"));
+        }
+        inFlight.clear();
+        Arrays.fill(senderKey, (byte) 0);
+    }
+
+    private static final class Pending {
+        final ChainTransfer transfer;
+        final long gas;
+        final long submittedAt = System.currentTimeMillis();
+        final CompletableFuture<TransferReceipt> future = new CompletableFuture<>();
+
+        Pending(ChainTransfer transfer, long gas) {
+            this.transfer = transfer;
+            this.gas = gas;
+        }
+    }
+
+    private static final class Batch {
+        final String hash;
+        final long nonce;
+        final List<Pending> transfers;
+        final long sentAt = System.currentTimeMillis();
+        // Giao dịch hủy cùng nonce (chỉ thread receipt đọc / ghi)
+        String cancelHash;
+        long cancelSentAt;
+
+        Batch(String hash, long nonce, List<Pending> transfers) {
+            this.hash = hash;
+            this.nonce = nonce;
+            this.transfers = transfers;
+        }
+    }
+
+    /**
+     * Chuyển khoản không lên được chain (node từ chối, revert, timeout)
+     */
+    public static class SubmissionException extends RuntimeException {
+        public SubmissionException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Không xác định được giao dịch batch có được mined hay không: chuyển khoản có thể vẫn được thực hiện,
+     * cần đối soát theo transaction hash trước khi gửi lại
+     */
+    public static class ReceiptTimeoutException extends SubmissionException {
+        private final String transactionHash;
+        private final long nonce;
+
+        public ReceiptTimeoutException(String transactionHash, long nonce, String message) {
+            super(message);
+            this.transactionHash = transactionHash;
+            this.nonce = nonce;
+        }
+
+        public String getTransactionHash() { return transactionHash; }
+        public long getNonce() { return nonce; }
+    }
+}
@@ -0,0 +1,38 @@
+package com.nt219.ksm.chain;
+
+import com.nt219.ksm.process.SignedTransaction;
+
+import java.math.BigInteger;
+
+/**
+ * Một chuyển khoản đã ký PQC, chờ đưa lên InterbankTransfer qua batchTransfer
+ *
+ * Chữ ký PQC không nằm trong batchTransfer; KSM giữ nó off-chain và gắn với transactionId on-chain qua receipt.
+ */
+public class ChainTransfer {
+    private final SignedTransaction signedTransaction;
+    private final String toAddress;
+    private final BigInteger amountWei;
+    private final String toBankCode;
+    private final String description;
+
+    public ChainTransfer(
+            SignedTransaction signedTransaction,
+            String toAddress,
+            BigInteger amountWei,
+            String toBankCode,
+            String description) {
+        this.signedTransaction = signedTransaction;
+        this.toAddress = toAddress;
+        this.amountWei = amountWei;
+        this.toBankCode = toBankCode;
+        this.description = description;
+    }
+
+    // Getters
+    public SignedTransaction getSignedTransaction() { return signedTransaction; }
+    public String getToAddress() { return toAddress; }
+    public BigInteger getAmountWei() { return amountWei; }
+    public String getToBankCode() { return toBankCode; }
+    public String getDescription() { return description; }
+}
@@ -0,0 +1,78 @@
+package com.nt219.ksm.chain;
+
+import com.nt219.ksm.crypto.Codec;
+import com.nt219.ksm.crypto.Keccak;
+import com.nt219.ksm.crypto.impl.EcdsaSecp256k1Service;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Giao dịch Ethereum legacy, ký theo EIP-155 (chainId trong chữ ký, chống replay giữa các mạng)
+ *
+ * Besu của mạng liên ngân hàng dùng gasPrice = 0 như GUI; chỉ cần nonce, gasLimit, to và data.
+ */
+public final class EthTransaction {
+
+    private static final EcdsaSecp256k1Service ECDSA = new EcdsaSecp256k1Service();
+
+    private final long nonce;
+    private final BigInteger gasPrice;
+    private final long gasLimit;
+    private final String to;
+    private final BigInteger value;
+    private final byte[] data;
+    private final long chainId;
+
+    public EthTransaction(long nonce, BigInteger gasPrice, long gasLimit, String to, BigInteger value, byte[] data, long chainId) {
+        this.nonce = nonce;
+        this.gasPrice = gasPrice;
+        this.gasLimit = gasLimit;
+        this.to = to;
+        this.value = value;
+        this.data = data;
+        this.chainId = chainId;
+    }
+
+    /**
+     * @return Giao dịch đã ký, RLP-encoded (tham số của eth_sendRawTransaction)
+     */
+    public byte[] sign(byte[] privateKey) {
+        byte[] signingHash = Keccak.keccak256(Rlp.encode(fields(Rlp.integer(chainId), new byte[0], new byte[0])));
+        byte[] signature = ECDSA.signRecoverable(signingHash, privateKey);
+        long v = signature[64] + 35 + 2 * chainId;
+        return Rlp.encode(fields(Rlp.integer(v),
+            Rlp.integer(new BigInteger(1, Arrays.copyOfRange(signature, 0, 32))),
+            Rlp.integer(new BigInteger(1, Arrays.copyOfRange(signature, 32, 64)))));
+    }
+
+    private List<Object> fields(byte[] v, byte[] r, byte[] s) {
+        return List.of(Rlp.integer(nonce), Rlp.integer(gasPrice), Rlp.integer(gasLimit), Codec.fromHex(to),
+            Rlp.integer(value), data, v, r, s);
+    }
+
+    /**
+     * Transaction hash = keccak256(raw transaction)
+     */
+    public static String hashOf(byte[] rawTransaction) {
+        return "0x" + Codec.toHex(Keccak.keccak256(rawTransaction));
+    }
+
+    /**
+     * Địa chỉ Ethereum của private key: 20 byte cuối của keccak256(public key không có tiền tố 0x04)
+     */
+    public static String addressOf(byte[] privateKey) {
+        byte[] publicKey = ECDSA.publicKeyOf(privateKey);
+        byte[] hash = Keccak.keccak256(Arrays.copyOfRange(publicKey, 1, publicKey.length));
+        return "0x" + Codec.toHex(hash, 12, 20);
+    }
+
+    public long getNonce() {
+        return nonce;
+    }
+
+    public long getGasLimit() {
+        return gasLimit;
+    }
+}
@@ -0,0 +1,141 @@
+package com.nt219.ksm.chain;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client JSON-RPC 2.0 tối giản cho Besu (HTTP, hỗ trợ batch request)
+ */
+public class JsonRpcClient {
+
+    private final URI endpoint;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final Duration timeout;
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    public JsonRpcClient(String url, ObjectMapper objectMapper, Duration timeout) {
+        this.endpoint = URI.create(url);
+        this.objectMapper = objectMapper;
+        this.timeout = timeout;
+        this.httpClient = HttpClient.newBuilder().connectTimeout(timeout).build();
+    }
+
+    /**
+     * @throws JsonRpcException Node trả lỗi JSON-RPC (lời gọi đã bị từ chối)
+     * @throws IOException Lỗi mạng / timeout (không biết node đã nhận lời gọi hay chưa)
+     */
+    public JsonNode call(String method, Object... params) throws IOException {
+        try {
+            return callAsync(method, params).join();
+        } catch (java.util.concurrent.CompletionException e) {
+            if (e.getCause() instanceof JsonRpcException) {
+                throw (JsonRpcException) e.getCause();
+            }
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * @return Future của trường "result"; lỗi JSON-RPC → {@link JsonRpcException}
+     */
+    public CompletableFuture<JsonNode> callAsync(String method, Object... params) {
+        ObjectNode request = request(method, params);
+        return send(request).thenApply(response -> result(response, method));
+    }
+
+    /**
+     * Nhiều lời gọi trong một HTTP request (ví dụ eth_getTransactionReceipt cho mọi giao dịch đang chờ)
+     *
+     * @return Kết quả theo đúng thứ tự lời gọi (null nếu lời gọi đó lỗi)
+     */
+    public List<JsonNode> batch(String method, List<Object[]> paramsList) throws IOException {
+        if (paramsList.isEmpty()) {
+            return new ArrayList<>();
+        }
+        ArrayNode requests = objectMapper.createArrayNode();
+        for (Object[] params : paramsList) {
+            requests.add(request(method, params));
+        }
+        JsonNode responses;
+        try {
+            responses = send(requests).join();
+        } catch (java.util.concurrent.CompletionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+
+        Map<Long, JsonNode> byId = new HashMap<>();
+        for (JsonNode response : responses) {
+            byId.put(response.path("id").asLong(), response.has("error") ? null : response.get("result"));
+        }
+        List<JsonNode> results = new ArrayList<>(paramsList.size());
+        for (JsonNode request : requests) {
+            results.add(byId.get(request.get("id").asLong()));
+        }
+        return results;
+    }
+
+    private ObjectNode request(String method, Object[] params) {
+        ObjectNode request = objectMapper.createObjectNode();
+        request.put("jsonrpc", "2.0");
+        request.put("id", nextId.getAndIncrement());
+        request.put("method", method);
+        request.set("params", objectMapper.valueToTree(params));
+        return request;
+    }
+
+    private CompletableFuture<JsonNode> send(JsonNode body) {
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(endpoint)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).thenApply(response -> {
+            if (response.statusCode() != 200) {
+                throw new JsonRpcException("HTTP " + response.statusCode() + " from " + endpoint);
+            }
+            try {
+                return objectMapper.readTree(response.body());
+            } catch (IOException e) {
+                throw new JsonRpcException("Invalid JSON-RPC response: " + e.getMessage());
+            }
+        });
+    }
+
+    private static JsonNode result(JsonNode response, String method) {
+        JsonNode error = response.get("error");
+        if (error != null) {
+            throw new JsonRpcException(method + " failed: " + error.path("message").asText(error.toString()));
+        }
+        return response.get("result");
+    }
+
+    /**
+     * Lỗi JSON-RPC (node từ chối lời gọi, ví dụ nonce quá thấp) hoặc phản hồi không hợp lệ
+     */
+    public static class JsonRpcException extends RuntimeException {
+        public JsonRpcException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.nt219.ksm.chain;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Recursive Length Prefix (RLP) - định dạng tuần tự hóa giao dịch Ethereum
+ *
+ * Phần tử là byte[] hoặc List (lồng nhau). Số nguyên được mã hóa big-endian không có byte 0 đầu.
+ */
+public final class Rlp {
+
+    private Rlp() {
+    }
+
+    public static byte[] encode(Object item) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encodeTo(item, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Số nguyên không âm → byte[] tối giản (0 → rỗng)
+     */
+    public static byte[] integer(BigInteger value) {
+        if (value.signum() < 0) {
+            throw new IllegalArgumentException("RLP integers must be non-negative");
+        }
+        byte[] bytes = value.toByteArray();
+        int start = 0;
+        while (start < bytes.length && bytes[start] == 0) {
+            start++;
+        }
+        return Arrays.copyOfRange(bytes, start, bytes.length);
+    }
+
+    public static byte[] integer(long value) {
+        return integer(BigInteger.valueOf(value));
+    }
+
+    private static void encodeTo(Object item, ByteArrayOutputStream out) {
+        if (item instanceof byte[]) {
+            byte[] bytes = (byte[]) item;
+            if (bytes.length == 1 && (bytes[0] & 0xff) < 0x80) {
+                out.write(bytes[0]);
+                return;
+            }
+            writeLength(bytes.length, 0x80, out);
+            out.writeBytes(bytes);
+        } else if (item instanceof List) {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            for (Object element : (List<?>) item) {
+                encodeTo(element, payload);
+            }
+            writeLength(payload.size(), 0xc0, out);
+            out.writeBytes(payload.toByteArray());
+        } else {
+            throw new IllegalArgumentException("RLP item must be byte[] or List: " + item);
+        }
+    }
+
+    private static void writeLength(int length, int offset, ByteArrayOutputStream out) {
+        if (length < 56) {
+            out.write(offset + length);
+            return;
+        }
+        byte[] lengthBytes = integer(length);
+        out.write(offset + 55 + lengthBytes.length);
+        out.writeBytes(lengthBytes);
+    }
+
+    /**
+     * Giải mã một phần tử RLP (byte[] hoặc List lồng nhau)
+     */
+    public static Object decode(byte[] encoded) {
+        int[] position = {0};
+        Object item = decodeAt(encoded, position);
+        if (position[0] != encoded.length) {
+            throw new IllegalArgumentException("Trailing bytes after RLP item");
+        }
+        return item;
+    }
+
+    private static Object decodeAt(byte[] data, int[] position) {
+        int prefix = data[position[0]++] & 0xff;
+        if (prefix < 0x80) {
+            return new byte[] {(byte) prefix};
+        }
+        boolean list = prefix >= 0xc0;
+        int shortLimit = list ? 0xf7 : 0xb7;
+        int base = list ? 0xc0 : 0x80;
+        int length;
+        if (prefix <= shortLimit) {
+            length = prefix - base;
+        } else {
+            int lengthOfLength = prefix - shortLimit;
+            length = new BigInteger(1, Arrays.copyOfRange(data, position[0], position[0] + lengthOfLength)).intValueExact();
+            position[0] += lengthOfLength;
+        }
+        int end = position[0] + length;
+        if (end > data.length) {
+            throw new IllegalArgumentException("RLP item exceeds input");
+        }
+        if (!list) {
+            byte[] bytes = Arrays.copyOfRange(data, position[0], end);
+            position[0] = end;
+            return bytes;
+        }
+        List<Object> items = new ArrayList<>();
+        while (position[0] < end) {
+            items.add(decodeAt(data, position));
+        }
+        return items;
+    }
+}
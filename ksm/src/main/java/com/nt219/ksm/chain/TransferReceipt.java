@@ -0,0 +1,44 @@
+package com.nt219.ksm.chain;
+
+import java.math.BigInteger;
+
+/**
+ * Kết quả on-chain của một chuyển khoản: giao dịch batch chứa nó và transactionId do contract cấp
+ */
+public class TransferReceipt {
+    private final String transactionHash;
+    private final long blockNumber;
+    private final BigInteger transactionId;
+    private final int batchSize;
+    private final int indexInBatch;
+    private final long latencyMillis;
+
+    public TransferReceipt(
+            String transactionHash,
+            long blockNumber,
+            BigInteger transactionId,
+            int batchSize,
+            int indexInBatch,
+            long latencyMillis) {
+        this.transactionHash = transactionHash;
+        this.blockNumber = blockNumber;
+        this.transactionId = transactionId;
+        this.batchSize = batchSize;
+        this.indexInBatch = indexInBatch;
+        this.latencyMillis = latencyMillis;
+    }
+
+    // Getters
+    public String getTransactionHash() { return transactionHash; }
+    public long getBlockNumber() { return blockNumber; }
+    public BigInteger getTransactionId() { return transactionId; }
+    public int getBatchSize() { return batchSize; }
+    public int getIndexInBatch() { return indexInBatch; }
+    public long getLatencyMillis() { return latencyMillis; }
+
+    @Override
+    public String toString() {
+        return String.format("TransferReceipt{tx=%s, block=%d, transactionId=%s, batch=%d/%d, latency=%dms}",
+            transactionHash, blockNumber, transactionId, indexInBatch + 1, batchSize, latencyMillis);
+    }
+}
@@ -0,0 +1,675 @@
+package com.nt219.ksm.cluster;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nt219.ksm.config.KSMConfig;
+import com.nt219.ksm.crypto.Codec;
+import com.nt219.ksm.process.PQCProcessService;
+import com.nt219.ksm.storage.EntityPage;
+import com.nt219.ksm.storage.ExportedKeyRecord;
+import com.nt219.ksm.storage.KeyStoreService;
+import com.nt219.ksm.storage.PublicKeyRecord;
+import com.nt219.ksm.tracing.KsmTracing;
+import io.opentelemetry.context.Context;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cluster mode: phân vùng entity giữa nhiều KSM node bằng consistent hashing
+ *
+ * - Membership lấy từ file cấu hình tĩnh (KSM_CLUSTER_CONFIG), ví dụ:
+ *   <pre>
+ *   virtualNodes=128
+ *   node.node1=http://localhost:8081
+ *   node.node2=http://localhost:8082
+ *   </pre>
+ * - Node hiện tại xác định bởi KSM_CLUSTER_NODE_ID (hoặc key "self" trong file)
+ * - Request cho entity thuộc node khác được forward tới owner
+ * - Khi membership thay đổi (reload), các entity không còn thuộc node này được
+ *   stream sang owner mới theo từng batch NDJSON qua /ksm/cluster/migrate.
+ *   Bản ghi vẫn encrypted với master key nên mọi node phải dùng chung master.key.
+ * - Handoff khi membership đổi: owner mới chưa có khóa của entity thì lấy bản ghi từ owner theo ring cũ
+ *   (/ksm/cluster/handoff) trước khi phục vụ, nên không tạo khóa trùng trong lúc migrate chưa xong.
+ *   Owner cũ chỉ trả bản ghi sau khi chính nó đã chuyển sang ring mới (không còn ký bằng khóa đó);
+ *   trước đó request ở owner mới bị từ chối thay vì tạo khóa mới.
+ * - Request giữa các node (/ksm/cluster/migrate, /ksm/cluster/handoff) được xác thực bằng HMAC-SHA256 với secret chung
+ *   (KSM_CLUSTER_SECRET, bắt buộc trong cluster mode) trên node gửi, method, path, timestamp và
+ *   SHA-256 của body; timestamp lệch quá 5 phút bị từ chối.
+ *
+ * Không cấu hình KSM_CLUSTER_CONFIG thì chạy single-node như trước.
+ */
+@Service
+public class ClusterService {
+
+    public static final String FORWARDED_HEADER = "X-KSM-Forwarded-By";
+    public static final String MASTER_KEY_HEADER = "X-KSM-Master-Key-Id";
+    public static final String AUTH_HEADER = "X-KSM-Cluster-Auth";
+
+    private static final String CONFIG_FILE = KSMConfig.get("KSM_CLUSTER_CONFIG", "ksm.cluster.config", "");
+    private static final String NODE_ID = KSMConfig.get("KSM_CLUSTER_NODE_ID", "ksm.cluster.nodeId", "");
+    private static final String SECRET = KSMConfig.get("KSM_CLUSTER_SECRET", "ksm.cluster.secret", "");
+    private static final long AUTH_MAX_SKEW_MS = 5 * 60 * 1000;
+    private static final int DEFAULT_VIRTUAL_NODES = 128;
+    private static final int MIGRATION_BATCH_SIZE = KSMConfig.getInt("KSM_CLUSTER_MIGRATION_BATCH", "ksm.cluster.migrationBatch", 256);
+    private static final String MIGRATE_PATH = "/ksm/cluster/migrate";
+    private static final String HANDOFF_PATH = "/ksm/cluster/handoff";
+    private static final int HANDOFF_LOCK_STRIPES = 64;
+    private static final long FORWARD_TIMEOUT_MS = KSMConfig.getLong("KSM_CLUSTER_FORWARD_TIMEOUT_MS", "ksm.cluster.forwardTimeoutMs", 10_000);
+
+    private final KeyStoreService keyStoreService;
+    private final PQCProcessService pqcService;
+    private final ObjectMapper objectMapper;
+    private final String configFile;
+    private final String nodeId;
+    private final SecretKeySpec authKey;
+    private final HttpClient httpClient;
+    private final ExecutorService migrationExecutor;
+
+    private volatile ClusterView view;
+    // Ring (signature) mà node này đã migrate hết các entity không thuộc về nó
+    private volatile String drainedRing;
+    // Owner cũ đã báo không còn giữ khóa nào của node này (chỉ có nghĩa với previousRing hiện tại)
+    private final Set<String> drainedPeers = ConcurrentHashMap.newKeySet();
+    private final Object[] handoffLocks = new Object[HANDOFF_LOCK_STRIPES];
+    private final AtomicInteger pendingMigrations = new AtomicInteger();
+    private final AtomicLong forwarded = new AtomicLong();
+    private final AtomicLong migratedOut = new AtomicLong();
+    private final AtomicLong migratedIn = new AtomicLong();
+    private final AtomicLong migrationConflicts = new AtomicLong();
+    private final AtomicLong handedOff = new AtomicLong();
+
+    @Autowired
+    public ClusterService(KeyStoreService keyStoreService, PQCProcessService pqcService, ObjectMapper objectMapper) {
+        this(keyStoreService, pqcService, objectMapper, CONFIG_FILE, NODE_ID, SECRET);
+    }
+
+    ClusterService(KeyStoreService keyStoreService, PQCProcessService pqcService, ObjectMapper objectMapper,
+                   String configFile, String nodeId, String secret) {
+        this.keyStoreService = keyStoreService;
+        this.pqcService = pqcService;
+        this.objectMapper = objectMapper;
+        this.configFile = configFile;
+        this.nodeId = nodeId;
+        this.authKey = !secret.isEmpty() ? new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256") : null;
+        this.httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofMillis(FORWARD_TIMEOUT_MS))
+            .build();
+        this.migrationExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "ksm-cluster-migration");
+            t.setDaemon(true);
+            return t;
+        });
+        for (int i = 0; i < handoffLocks.length; i++) {
+            handoffLocks[i] = new Object();
+        }
+
+        if (!configFile.isEmpty()) {
+            if (authKey == null) {
+                throw new IllegalStateException("KSM_CLUSTER_SECRET must be set in cluster mode");
+            }
+            try {
+                ClusterView loaded = loadView();
+                if (loaded.ring.size() > 1) {
+                    // Không biết ring trước khi khởi động: coi như node vừa join (các node khác sở hữu phần của nó)
+                    List<String> others = new ArrayList<>(loaded.ring.getNodeIds());
+                    others.remove(loaded.selfId);
+                    loaded = loaded.withPrevious(new ConsistentHashRing(others, loaded.ring.getVirtualNodes()), loaded.nodeUrls);
+                }
+                this.view = loaded;
+                System.out.println("[Cluster] Node " + view.selfId + " joined ring of " + view.ring.getNodeIds());
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to load cluster config: " + configFile, e);
+            }
+            // Khóa không còn thuộc node này (membership đổi trong lúc node tắt) được chuyển đi như khi reload
+            startMigration();
+        } else {
+            System.out.println("[Cluster] Single-node mode (KSM_CLUSTER_CONFIG not set)");
+        }
+    }
+
+    public boolean isEnabled() {
+        return view != null;
+    }
+
+    /**
+     * Node sở hữu entity (null nếu single-node)
+     */
+    public String ownerOf(String entityId) {
+        ClusterView current = view;
+        return current != null ? current.ring.ownerOf(entityId) : null;
+    }
+
+    public boolean isLocal(String entityId) {
+        ClusterView current = view;
+        return current == null || current.selfId.equals(current.ring.ownerOf(entityId));
+    }
+
+    /**
+     * Forward request tới owner của entity nếu owner là node khác
+     *
+     * @param entityId Entity quyết định owner
+     * @param forwardedBy Giá trị header FORWARDED_HEADER của request đến (chống forward vòng)
+     * @param method HTTP method (GET/POST/DELETE)
+     * @param path Path bắt đầu bằng /ksm
+     * @param body Request body (null với GET/DELETE)
+     * @return Response của owner, hoặc null nếu request phải xử lý tại node này
+     */
+    public Map<String, Object> routeIfRemote(String entityId, String forwardedBy, String method,
+                                             String path, Object body) throws Exception {
+        ClusterView current = view;
+        if (current == null || entityId == null) {
+            return null;
+        }
+        String owner = current.ring.ownerOf(entityId);
+        if (current.selfId.equals(owner)) {
+            ensureLocal(current, entityId);
+            return null;
+        }
+        return forward(current, owner, entityId, forwardedBy, method, path, body);
+    }
+
+    /**
+     * Như routeIfRemote, cho trạng thái theo node không nằm trong KeyStore (vd. phạm vi replay "key:&lt;fingerprint&gt;"
+     * của /ksm/publicKeys/verify): mọi node đưa cùng scope về một owner, không có handoff khóa.
+     * Trạng thái đó không chuyển theo khi ring đổi - owner mới bắt đầu từ trạng thái của chính nó.
+     *
+     * @return Response của owner, hoặc null nếu request phải xử lý tại node này
+     */
+    public Map<String, Object> routeScopeIfRemote(String scope, String forwardedBy, String method,
+                                                  String path, Object body) throws Exception {
+        ClusterView current = view;
+        if (current == null || scope == null) {
+            return null;
+        }
+        String owner = current.ring.ownerOf(scope);
+        if (current.selfId.equals(owner)) {
+            return null;
+        }
+        return forward(current, owner, scope, forwardedBy, method, path, body);
+    }
+
+    private Map<String, Object> forward(ClusterView current, String owner, String entityId, String forwardedBy,
+                                        String method, String path, Object body) throws Exception {
+        if (forwardedBy != null) {
+            // Các node đang dùng membership khác nhau - không forward tiếp để tránh vòng lặp
+            throw new IllegalStateException("Entity " + entityId + " forwarded by " + forwardedBy
+                + " but owned by " + owner + " according to " + current.selfId);
+        }
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(current.nodeUrls.get(owner) + path))
+            .timeout(Duration.ofMillis(FORWARD_TIMEOUT_MS))
+            .header(FORWARDED_HEADER, current.selfId)
+            .header("Content-Type", "application/json");
+        if (body != null) {
+            builder.method(method, HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)));
+        } else {
+            builder.method(method, HttpRequest.BodyPublishers.noBody());
+        }
+        // Owner tiếp tục cùng trace (span SERVER của owner là con của span request ở node này)
+        KsmTracing.propagator().inject(Context.current(), builder, HttpRequest.Builder::header);
+
+        forwarded.incrementAndGet();
+        HttpResponse<byte[]> response = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+        Map<String, Object> result = objectMapper.readValue(response.body(), new TypeReference<Map<String, Object>>() {});
+        result.put("servedBy", owner);
+        return result;
+    }
+
+    /**
+     * Encode entityId để dùng trong path khi forward
+     */
+    public static String pathSegment(String entityId) {
+        return URLEncoder.encode(entityId, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    /**
+     * Đọc lại file cấu hình cluster, thay ring và bắt đầu migrate các entity
+     * không còn thuộc node này (chạy nền)
+     */
+    public synchronized Map<String, Object> reload() throws Exception {
+        if (configFile.isEmpty()) {
+            throw new IllegalStateException("Cluster mode is not enabled");
+        }
+        ClusterView previous = view;
+        ClusterView loaded = loadView();
+        if (loaded.signature.equals(previous.signature)) {
+            loaded = loaded.withPrevious(previous.previousRing, previous.previousNodeUrls);
+        } else {
+            // Entity chưa có ở đây được lấy từ owner theo ring cũ (kể cả node vừa bị bỏ khỏi ring)
+            Map<String, String> urls = new LinkedHashMap<>(previous.nodeUrls);
+            urls.putAll(loaded.nodeUrls);
+            loaded = loaded.withPrevious(previous.ring, urls);
+            drainedPeers.clear();
+        }
+        this.view = loaded;
+        System.out.println("[Cluster] Membership reloaded: " + previous.ring.getNodeIds() + " → " + view.ring.getNodeIds());
+
+        startMigration();
+
+        Map<String, Object> result = getStatus();
+        result.put("migrationStarted", true);
+        return result;
+    }
+
+    /**
+     * Xếp một lượt migrate cho ring hiện tại (các lượt chạy tuần tự trên ksm-cluster-migration,
+     * lượt xếp sau reload luôn thấy ring mới nhất)
+     */
+    private void startMigration() {
+        pendingMigrations.incrementAndGet();
+        migrationExecutor.execute(() -> {
+            try {
+                migrateOutgoing();
+            } finally {
+                pendingMigrations.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Stream các entity không còn thuộc node này sang owner mới
+     * Duyệt entity index theo trang nên không giữ toàn bộ danh sách trong bộ nhớ.
+     * Chỉ xóa bản sao local sau khi owner xác nhận import.
+     */
+    void migrateOutgoing() {
+        ClusterView current = view;
+        if (current.signature.equals(drainedRing)) {
+            return;
+        }
+        Map<String, List<String>> batches = new HashMap<>();
+        String cursor = null;
+        long conflicts = 0;
+
+        try {
+            do {
+                EntityPage page = keyStoreService.listEntities(null, cursor, MIGRATION_BATCH_SIZE);
+                for (String entityId : page.getEntities()) {
+                    String owner = current.ring.ownerOf(entityId);
+                    if (current.selfId.equals(owner)) {
+                        continue;
+                    }
+                    List<String> batch = batches.computeIfAbsent(owner, k -> new ArrayList<>());
+                    batch.add(entityId);
+                    if (batch.size() >= MIGRATION_BATCH_SIZE) {
+                        conflicts += sendBatch(current, owner, batch);
+                        batch.clear();
+                    }
+                }
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+
+            for (Map.Entry<String, List<String>> entry : batches.entrySet()) {
+                if (!entry.getValue().isEmpty()) {
+                    conflicts += sendBatch(current, entry.getKey(), entry.getValue());
+                }
+            }
+            if (conflicts == 0) {
+                drainedRing = current.signature; // Không còn giữ khóa nào của node khác
+            }
+            System.out.println("[Cluster] Migration finished, " + migratedOut.get() + " keys moved out in total");
+        } catch (Exception e) {
+            System.err.println("[Cluster] Migration failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return Số entity owner không nhận (vẫn còn ở node này)
+     */
+    private int sendBatch(ClusterView current, String owner, List<String> entityIds) throws Exception {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        List<String> sent = new ArrayList<>(entityIds.size());
+        for (String entityId : entityIds) {
+            ExportedKeyRecord exported = keyStoreService.exportRecord(entityId);
+            if (exported == null) {
+                continue; // Đã bị xóa trong lúc migrate
+            }
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("entityId", entityId);
+            line.put("record", exported.getRecord());
+            line.put("archived", exported.getArchived()); // phiên bản cũ: keyId cũ vẫn verify được ở owner mới
+            body.write(objectMapper.writeValueAsBytes(line));
+            body.write('\n');
+            sent.add(entityId);
+        }
+        if (sent.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, Object> result = postSigned(current, current.nodeUrls.get(owner), MIGRATE_PATH,
+            "application/x-ndjson", body.toByteArray(), FORWARD_TIMEOUT_MS * 6);
+        if (!Boolean.TRUE.equals(result.get("success"))) {
+            throw new IOException("Node " + owner + " rejected migration batch: " + result.get("error"));
+        }
+
+        @SuppressWarnings("unchecked")
+        List<String> accepted = (List<String>) result.get("accepted");
+        for (String entityId : accepted) {
+            pqcService.deleteKeyPair(entityId);
+        }
+        migratedOut.addAndGet(accepted.size());
+        migrationConflicts.addAndGet(sent.size() - accepted.size());
+        System.out.println("[Cluster] Moved " + accepted.size() + "/" + sent.size() + " keys to " + owner);
+        return sent.size() - accepted.size();
+    }
+
+    /**
+     * POST request ký HMAC tới node khác, trả về JSON response
+     */
+    private Map<String, Object> postSigned(ClusterView current, String nodeUrl, String path, String contentType,
+                                           byte[] body, long timeoutMs) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(nodeUrl + path))
+            .timeout(Duration.ofMillis(timeoutMs))
+            .header("Content-Type", contentType)
+            .header(FORWARDED_HEADER, current.selfId)
+            .header(MASTER_KEY_HEADER, keyStoreService.getMasterKeyId())
+            .header(AUTH_HEADER, authorization(current.selfId, "POST", path, body, System.currentTimeMillis()))
+            .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+            .build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        return objectMapper.readValue(response.body(), new TypeReference<Map<String, Object>>() {});
+    }
+
+    /**
+     * Owner mới chưa có khóa của entity: lấy bản ghi từ owner theo ring cũ trước khi phục vụ
+     * found=false từ owner cũ là chắc chắn (owner cũ chỉ xóa bản sao sau khi node này đã import),
+     * nên sau đó entity được xử lý local như bình thường.
+     *
+     * @throws IllegalStateException Nếu owner cũ chưa chuyển sang ring mới hoặc không liên lạc được
+     */
+    private void ensureLocal(ClusterView current, String entityId) throws Exception {
+        ConsistentHashRing previousRing = current.previousRing;
+        if (previousRing == null || keyStoreService.keyExists(entityId)) {
+            return;
+        }
+        String previousOwner = previousRing.ownerOf(entityId);
+        if (current.selfId.equals(previousOwner) || drainedPeers.contains(previousOwner)) {
+            return;
+        }
+
+        synchronized (handoffLocks[Math.floorMod(entityId.hashCode(), handoffLocks.length)]) {
+            if (keyStoreService.keyExists(entityId)) {
+                return;
+            }
+            Map<String, Object> request = new LinkedHashMap<>();
+            request.put("entityId", entityId);
+            request.put("ring", current.signature);
+            Map<String, Object> result;
+            try {
+                result = postSigned(current, current.previousNodeUrls.get(previousOwner), HANDOFF_PATH,
+                    "application/json", objectMapper.writeValueAsBytes(request), FORWARD_TIMEOUT_MS);
+            } catch (IOException e) {
+                throw new IllegalStateException("Key handoff of " + entityId + " from " + previousOwner
+                    + " failed: " + e.getMessage(), e);
+            }
+            if (!Boolean.TRUE.equals(result.get("success")) || !Boolean.TRUE.equals(result.get("ready"))) {
+                throw new IllegalStateException("Key handoff of " + entityId + " from " + previousOwner
+                    + " is pending (" + (result.get("error") != null ? result.get("error") : "previous owner has not switched rings yet") + ")");
+            }
+
+            if (Boolean.TRUE.equals(result.get("found"))) {
+                @SuppressWarnings("unchecked")
+                Map<String, String> archived = (Map<String, String>) result.get("archived");
+                // false: batch migrate của owner cũ vừa import trước - cùng bản ghi
+                keyStoreService.importRecord(entityId, new ExportedKeyRecord((String) result.get("record"),
+                    archived != null ? archived : Map.of()));
+                handedOff.incrementAndGet();
+                System.out.println("[Cluster] Pulled key of " + entityId + " from previous owner " + previousOwner);
+            } else if (Boolean.TRUE.equals(result.get("drained"))) {
+                markDrained(current, previousOwner);
+            }
+        }
+    }
+
+    private synchronized void markDrained(ClusterView current, String peer) {
+        if (view != current) {
+            return; // reload trong lúc handoff
+        }
+        drainedPeers.add(peer);
+        for (String node : current.previousRing.getNodeIds()) {
+            if (!node.equals(current.selfId) && !drainedPeers.contains(node)) {
+                return;
+            }
+        }
+        this.view = current.withPrevious(null, current.nodeUrls);
+        System.out.println("[Cluster] Handoff complete, previous owners hold no keys of " + current.selfId);
+    }
+
+    /**
+     * Trả bản ghi khóa cho owner mới của entity (handoff, xem ensureLocal)
+     *
+     * @param sender Node yêu cầu (header FORWARDED_HEADER), phải là owner của entity theo ring của node này
+     * @return ready=false nếu node này chưa dùng cùng ring với sender; found + record/archived;
+     *         drained=true nếu node này đã migrate hết khóa không thuộc về nó
+     * @throws SecurityException Nếu request không được ký bằng secret của cluster
+     */
+    public Map<String, Object> handoff(String sender, byte[] body, String authorization) throws Exception {
+        ClusterView current = view;
+        if (current == null) {
+            throw new IllegalStateException("Cluster mode is not enabled");
+        }
+        authenticate(current, sender, "POST", HANDOFF_PATH, body, authorization);
+        HandoffRequest request = objectMapper.readValue(body, HandoffRequest.class);
+
+        Map<String, Object> response = new HashMap<>();
+        boolean ready = current.signature.equals(request.ring)
+            && sender.equals(current.ring.ownerOf(request.entityId));
+        response.put("ready", ready);
+        if (!ready) {
+            return response;
+        }
+        ExportedKeyRecord exported = keyStoreService.exportRecord(request.entityId);
+        response.put("found", exported != null);
+        if (exported != null) {
+            response.put("record", exported.getRecord());
+            response.put("archived", exported.getArchived());
+        }
+        response.put("drained", current.signature.equals(drainedRing));
+        return response;
+    }
+
+    /**
+     * Nhận một batch NDJSON bản ghi khóa từ node khác
+     *
+     * @param sender Node gửi (header FORWARDED_HEADER)
+     * @param authorization Header AUTH_HEADER của request
+     * @return Danh sách entity đã import (sender chỉ xóa bản sao local của các entity này)
+     * @throws SecurityException Nếu request không được ký bằng secret của cluster
+     */
+    public List<String> acceptMigration(String sender, byte[] ndjson, String masterKeyId, String authorization) throws Exception {
+        ClusterView current = view;
+        if (current == null) {
+            throw new IllegalStateException("Cluster mode is not enabled");
+        }
+        authenticate(current, sender, "POST", MIGRATE_PATH, ndjson, authorization);
+        if (!keyStoreService.getMasterKeyId().equals(masterKeyId)) {
+            throw new IllegalStateException("Master key mismatch - cluster nodes must share master.key");
+        }
+
+        List<String> accepted = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(ndjson), StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            MigratedKey entry = objectMapper.readValue(line, MigratedKey.class);
+            String entityId = entry.entityId;
+            if (!current.selfId.equals(current.ring.ownerOf(entityId))) {
+                System.err.println("[Cluster] Rejected migrated key for " + entityId + " (not owned by " + current.selfId + ")");
+                continue;
+            }
+            ExportedKeyRecord exported = new ExportedKeyRecord(entry.record,
+                entry.archived != null ? entry.archived : Map.of());
+            if (keyStoreService.importRecord(entityId, exported)) {
+                accepted.add(entityId);
+            } else if (hasKeyVersion(entityId, exported.getKeyId())) {
+                accepted.add(entityId); // Đã lấy qua handoff (có thể đã rotate sau đó): sender xóa bản sao
+            } else {
+                migrationConflicts.incrementAndGet();
+                System.err.println("[Cluster] Migrated key for " + entityId + " conflicts with an existing key, kept local one");
+            }
+        }
+        migratedIn.addAndGet(accepted.size());
+        return accepted;
+    }
+
+    private boolean hasKeyVersion(String entityId, String keyId) throws IOException {
+        PublicKeyRecord local = keyId != null ? keyStoreService.findPublicKey(keyId) : null;
+        return local != null && entityId.equals(local.getEntityId());
+    }
+
+    /**
+     * Giá trị header AUTH_HEADER: "<timestamp>:<HMAC-SHA256 hex>"
+     */
+    String authorization(String sender, String method, String path, byte[] body, long timestamp) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(authKey);
+            mac.update((sender + "\n" + method + "\n" + path + "\n" + timestamp + "\n").getBytes(StandardCharsets.UTF_8));
+            mac.update(MessageDigest.getInstance("SHA-256").digest(body));
+            return timestamp + ":" + Codec.toHex(mac.doFinal());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    private void authenticate(ClusterView current, String sender, String method, String path, byte[] body,
+                              String authorization) {
+        int separator = authorization != null ? authorization.indexOf(':') : -1;
+        if (separator <= 0 || sender == null || !current.nodeUrls.containsKey(sender)) {
+            throw new SecurityException("Missing or invalid cluster authentication");
+        }
+        long timestamp;
+        try {
+            timestamp = Long.parseLong(authorization.substring(0, separator));
+        } catch (NumberFormatException e) {
+            throw new SecurityException("Missing or invalid cluster authentication");
+        }
+        if (Math.abs(System.currentTimeMillis() - timestamp) > AUTH_MAX_SKEW_MS) {
+            throw new SecurityException("Cluster request from " + sender + " is outside the allowed clock skew");
+        }
+        byte[] expected = authorization(sender, method, path, body, timestamp).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, authorization.getBytes(StandardCharsets.US_ASCII))) {
+            throw new SecurityException("Invalid cluster authentication from " + sender);
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        ClusterView current = view;
+        status.put("enabled", current != null);
+        if (current != null) {
+            status.put("self", current.selfId);
+            status.put("nodes", current.nodeUrls);
+            status.put("virtualNodes", current.ring.getVirtualNodes());
+            status.put("ownershipShares", current.ring.ownershipShares());
+            status.put("drained", current.signature.equals(drainedRing));
+        }
+        status.put("migrating", pendingMigrations.get() > 0);
+        status.put("handoffPending", current != null && current.previousRing != null);
+        status.put("handedOffIn", handedOff.get());
+        status.put("forwardedRequests", forwarded.get());
+        status.put("migratedOut", migratedOut.get());
+        status.put("migratedIn", migratedIn.get());
+        status.put("migrationConflicts", migrationConflicts.get());
+        return status;
+    }
+
+    private ClusterView loadView() throws IOException {
+        Properties props = new Properties();
+        try (FileInputStream in = new FileInputStream(configFile)) {
+            props.load(in);
+        }
+
+        Map<String, String> nodeUrls = new LinkedHashMap<>();
+        for (String key : props.stringPropertyNames()) {
+            if (key.startsWith("node.")) {
+                String url = props.getProperty(key).trim();
+                nodeUrls.put(key.substring("node.".length()), url.endsWith("/") ? url.substring(0, url.length() - 1) : url);
+            }
+        }
+        String selfId = !nodeId.isEmpty() ? nodeId : props.getProperty("self", "").trim();
+        if (!nodeUrls.containsKey(selfId)) {
+            throw new IllegalArgumentException("Node id '" + selfId + "' is not listed in " + configFile);
+        }
+        int virtualNodes = Integer.parseInt(props.getProperty("virtualNodes", String.valueOf(DEFAULT_VIRTUAL_NODES)).trim());
+
+        return new ClusterView(selfId, nodeUrls, new ConsistentHashRing(nodeUrls.keySet(), virtualNodes));
+    }
+
+    /**
+     * Một dòng NDJSON của batch migrate (archived không có ở node phiên bản cũ)
+     */
+    static final class MigratedKey {
+        public String entityId;
+        public String record;
+        public Map<String, String> archived;
+    }
+
+    /**
+     * Body của /ksm/cluster/handoff
+     */
+    static final class HandoffRequest {
+        public String entityId;
+        public String ring;
+    }
+
+    private static final class ClusterView {
+        final String selfId;
+        final Map<String, String> nodeUrls;
+        final ConsistentHashRing ring;
+        final String signature; // Các node + virtualNodes: hai node cùng signature có cùng ring
+        // Ring trước lần đổi membership gần nhất (null khi handoff đã xong)
+        final ConsistentHashRing previousRing;
+        final Map<String, String> previousNodeUrls;
+
+        ClusterView(String selfId, Map<String, String> nodeUrls, ConsistentHashRing ring) {
+            this(selfId, nodeUrls, ring, null, nodeUrls);
+        }
+
+        private ClusterView(String selfId, Map<String, String> nodeUrls, ConsistentHashRing ring,
+                            ConsistentHashRing previousRing, Map<String, String> previousNodeUrls) {
+            this.selfId = selfId;
+            this.nodeUrls = nodeUrls;
+            this.ring = ring;
+            this.signature = new TreeSet<>(ring.getNodeIds()) + "/" + ring.getVirtualNodes();
+            this.previousRing = previousRing;
+            this.previousNodeUrls = previousNodeUrls;
+        }
+
+        ClusterView withPrevious(ConsistentHashRing previousRing, Map<String, String> previousNodeUrls) {
+            return new ClusterView(selfId, nodeUrls, ring, previousRing, previousNodeUrls);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.nt219.ksm.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Consistent hash ring với virtual nodes để phân vùng entity giữa các KSM node
+ * 
+ * Mỗi node được đặt tại {@code virtualNodes} vị trí trên ring (hash của "nodeId#i").
+ * Entity thuộc về node có vị trí đầu tiên >= hash(entityId) (vòng lại đầu ring).
+ * Thêm/bớt một node chỉ làm di chuyển khoảng 1/N entity.
+ * 
+ * Immutable - khi membership thay đổi thì tạo ring mới.
+ */
+public final class ConsistentHashRing {
+    
+    private static final double RING_SIZE = Math.pow(2, 64);
+    
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+    private final TreeSet<String> nodeIds = new TreeSet<>();
+    private final int virtualNodes;
+    
+    public ConsistentHashRing(Collection<String> nodeIds, int virtualNodes) {
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("virtualNodes must be positive");
+        }
+        this.virtualNodes = virtualNodes;
+        for (String nodeId : nodeIds) {
+            this.nodeIds.add(nodeId);
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(nodeId + "#" + i), nodeId);
+            }
+        }
+    }
+    
+    /**
+     * Node sở hữu entity, hoặc null nếu ring rỗng
+     */
+    public String ownerOf(String entityId) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        SortedMap<Long, String> tail = ring.tailMap(hash(entityId));
+        return tail.isEmpty() ? ring.firstEntry().getValue() : tail.get(tail.firstKey());
+    }
+    
+    public Collection<String> getNodeIds() {
+        return Collections.unmodifiableSet(nodeIds);
+    }
+    
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+    
+    public int size() {
+        return nodeIds.size();
+    }
+    
+    /**
+     * Tỷ lệ không gian hash mà mỗi node sở hữu (để kiểm tra phân bố)
+     */
+    public Map<String, Double> ownershipShares() {
+        Map<String, Double> shares = new TreeMap<>();
+        if (ring.isEmpty()) {
+            return shares;
+        }
+        long previous = ring.lastKey();
+        for (Map.Entry<Long, String> entry : ring.entrySet()) {
+            // Khoảng (previous, current] thuộc node tại current; hiệu mod 2^64 xử lý wrap-around
+            long delta = entry.getKey() - previous;
+            double span = delta == 0 ? RING_SIZE : unsignedToDouble(delta);
+            shares.merge(entry.getValue(), span / RING_SIZE, Double::sum);
+            previous = entry.getKey();
+        }
+        return shares;
+    }
+    
+    private static double unsignedToDouble(long value) {
+        double d = (double) (value >>> 1) * 2.0;
+        return d + (value & 1L);
+    }
+    
+    /**
+     * 64 bit đầu của MD5 - phân bố đều, ổn định giữa các node và các lần chạy
+     */
+    static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long h = 0;
+            for (int i = 0; i < 8; i++) {
+                h = (h << 8) | (digest[i] & 0xff);
+            }
+            return h;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+    }
+}
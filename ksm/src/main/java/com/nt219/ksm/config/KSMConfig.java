@@ -0,0 +1,49 @@
+package com.nt219.ksm.config;
+
+/**
+ * Đọc cấu hình KSM từ environment variable, fallback sang system property
+ * rồi giá trị mặc định (cùng quy ước với KSM_STORAGE_DIR / ksm.storage.dir)
+ */
+public final class KSMConfig {
+    
+    private KSMConfig() {
+    }
+    
+    public static String get(String envName, String propertyName, String defaultValue) {
+        return System.getenv().getOrDefault(envName, System.getProperty(propertyName, defaultValue));
+    }
+    
+    public static int getInt(String envName, String propertyName, int defaultValue) {
+        String value = get(envName, propertyName, null);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("[KSM] Invalid integer for " + envName + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+    
+    public static long getLong(String envName, String propertyName, long defaultValue) {
+        String value = get(envName, propertyName, null);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("[KSM] Invalid number for " + envName + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+    
+    public static boolean getBoolean(String envName, String propertyName, boolean defaultValue) {
+        String value = get(envName, propertyName, null);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+}
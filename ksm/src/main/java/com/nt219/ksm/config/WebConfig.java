@@ -0,0 +1,26 @@
+package com.nt219.ksm.config;
+
+import com.nt219.ksm.admission.AdmissionControlInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Đăng ký interceptor cho KSM REST API
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+    
+    private final AdmissionControlInterceptor admissionControlInterceptor;
+    
+    @Autowired
+    public WebConfig(AdmissionControlInterceptor admissionControlInterceptor) {
+        this.admissionControlInterceptor = admissionControlInterceptor;
+    }
+    
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(admissionControlInterceptor).addPathPatterns("/ksm/**");
+    }
+}
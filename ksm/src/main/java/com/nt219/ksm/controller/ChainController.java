@@ -0,0 +1,126 @@
+package com.nt219.ksm.controller;
+
+import com.nt219.ksm.archive.SignatureArchiveService;
+import com.nt219.ksm.chain.ChainService;
+import com.nt219.ksm.chain.ChainSubmitter;
+import com.nt219.ksm.chain.TransferReceipt;
+import com.nt219.ksm.crypto.Codec;
+import com.nt219.ksm.process.PQCProcessService;
+import com.nt219.ksm.process.SignedTransaction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * REST API Controller: ký transaction PQC rồi đưa lên InterbankTransfer qua pipeline batchTransfer
+ */
+@RestController
+@RequestMapping("/ksm/chain")
+@CrossOrigin(origins = "*")
+public class ChainController {
+
+    private final PQCProcessService pqcService;
+    private final ChainService chainService;
+    private final SignatureArchiveService signatureArchive;
+
+    @Autowired
+    public ChainController(PQCProcessService pqcService, ChainService chainService, SignatureArchiveService signatureArchive) {
+        this.pqcService = pqcService;
+        this.chainService = chainService;
+        this.signatureArchive = signatureArchive;
+    }
+
+    /**
+     * Ký và submit chuyển khoản; response trả về khi batch chứa nó được mined
+     * POST /ksm/chain/transfer
+     * Body: {
+     *   "from": "vietcombank",
+     *   "to": "vietinbank",
+     *   "toAddress": "0x6ecbe1db...",
+     *   "toBankCode": "VTB",
+     *   "amount": 1000000,
+     *   "description": "Transfer",
+     *   "hybrid": true                 (optional)
+     * }
+     */
+    @PostMapping("/transfer")
+    public CompletableFuture<Map<String, Object>> transfer(@RequestBody Map<String, Object> request) {
+        SignedTransaction tx;
+        String signatureHash;
+        CompletableFuture<TransferReceipt> receipt;
+        try {
+            String from = (String) request.get("from");
+            String to = (String) request.get("to");
+            String toAddress = (String) request.get("toAddress");
+            String toBankCode = (String) request.getOrDefault("toBankCode", to);
+            Number amount = (Number) request.get("amount");
+            String description = (String) request.getOrDefault("description", "");
+            boolean hybrid = Boolean.TRUE.equals(request.get("hybrid"));
+
+            if (from == null || to == null || toAddress == null || amount == null) {
+                return CompletableFuture.completedFuture(createErrorResponse("from, to, toAddress and amount are required"));
+            }
+
+            tx = pqcService.createSignedTransaction(from, to, amount.doubleValue(), description, hybrid);
+            signatureHash = signatureArchive.archive(tx.getSignature());
+            receipt = chainService.submit(tx, toAddress, toBankCode);
+        } catch (Exception e) {
+            System.err.println("[KSM] Error submitting chain transfer: " + e.getMessage());
+            return CompletableFuture.completedFuture(createErrorResponse("Chain transfer failed: " + e.getMessage()));
+        }
+
+        return receipt.handle((result, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                System.err.println("[KSM] Chain transfer failed: " + cause.getMessage());
+                Map<String, Object> response = createErrorResponse("Chain transfer failed: " + cause.getMessage());
+                if (cause instanceof ChainSubmitter.ReceiptTimeoutException) {
+                    // Có thể vẫn được mined: client đối soát theo hash, không được gửi lại như thất bại
+                    response.put("status", "UNKNOWN");
+                    response.put("transactionHash", ((ChainSubmitter.ReceiptTimeoutException) cause).getTransactionHash());
+                }
+                return response;
+            }
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("transactionId", result.getTransactionId().toString());
+            response.put("transactionHash", result.getTransactionHash());
+            response.put("blockNumber", result.getBlockNumber());
+            response.put("batchSize", result.getBatchSize());
+            response.put("indexInBatch", result.getIndexInBatch());
+            response.put("latencyMs", result.getLatencyMillis());
+            response.put("signature", Codec.toBase64(tx.getSignature().getSignature()));
+            response.put("algorithm", tx.getAlgorithm());
+            response.put("keyId", tx.getKeyId());
+            if (signatureHash != null) {
+                response.put("signatureHash", signatureHash);
+            }
+            response.put("transactionData", tx.getTransactionData());
+            return response;
+        });
+    }
+
+    /**
+     * Pipeline metrics: batch size trung bình, số giao dịch in-flight, nonce, throughput
+     * GET /ksm/chain/stats
+     */
+    @GetMapping("/stats")
+    public Map<String, Object> stats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.putAll(chainService.getStats());
+        return response;
+    }
+
+    private Map<String, Object> createErrorResponse(String message) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("success", false);
+        error.put("error", message);
+        error.put("timestamp", System.currentTimeMillis());
+        return error;
+    }
+}
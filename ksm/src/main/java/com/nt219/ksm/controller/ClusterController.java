@@ -0,0 +1,116 @@
+package com.nt219.ksm.controller;
+
+import com.nt219.ksm.cluster.ClusterService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * REST API Controller cho cluster mode (membership, key migration)
+ */
+@RestController
+@RequestMapping("/ksm/cluster")
+public class ClusterController {
+    
+    private final ClusterService clusterService;
+    
+    @Autowired
+    public ClusterController(ClusterService clusterService) {
+        this.clusterService = clusterService;
+    }
+    
+    /**
+     * Cluster status: membership, ownership shares, migration counters
+     * GET /ksm/cluster/status
+     */
+    @GetMapping("/status")
+    public Map<String, Object> status() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.putAll(clusterService.getStatus());
+        return response;
+    }
+    
+    /**
+     * Reload membership từ file cấu hình và migrate các key không còn thuộc node này
+     * POST /ksm/cluster/reload
+     */
+    @PostMapping("/reload")
+    public Map<String, Object> reload() {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.putAll(clusterService.reload());
+            return response;
+        } catch (Exception e) {
+            return createErrorResponse("Failed to reload cluster config: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Nhận một batch bản ghi khóa (NDJSON) từ node khác
+     * POST /ksm/cluster/migrate (chỉ chấp nhận request ký HMAC bằng KSM_CLUSTER_SECRET)
+     */
+    @PostMapping(value = "/migrate", consumes = "application/x-ndjson")
+    public Map<String, Object> migrate(
+            HttpServletRequest request,
+            HttpServletResponse httpResponse,
+            @RequestHeader(value = ClusterService.FORWARDED_HEADER, required = false) String sender,
+            @RequestHeader(value = ClusterService.MASTER_KEY_HEADER, required = false) String masterKeyId,
+            @RequestHeader(value = ClusterService.AUTH_HEADER, required = false) String authorization) {
+        try {
+            List<String> accepted = clusterService.acceptMigration(sender, request.getInputStream().readAllBytes(),
+                masterKeyId, authorization);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("accepted", accepted);
+            response.put("count", accepted.size());
+            return response;
+        } catch (SecurityException e) {
+            System.err.println("[KSM] Rejected key migration: " + e.getMessage());
+            httpResponse.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            return createErrorResponse("Key migration rejected: " + e.getMessage());
+        } catch (Exception e) {
+            System.err.println("[KSM] Error accepting key migration: " + e.getMessage());
+            return createErrorResponse("Key migration failed: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Trả bản ghi khóa của một entity cho owner mới (owner mới gọi khi chưa có khóa sau khi membership đổi)
+     * POST /ksm/cluster/handoff (chỉ chấp nhận request ký HMAC bằng KSM_CLUSTER_SECRET)
+     */
+    @PostMapping(value = "/handoff", consumes = "application/json")
+    public Map<String, Object> handoff(
+            HttpServletRequest request,
+            HttpServletResponse httpResponse,
+            @RequestHeader(value = ClusterService.FORWARDED_HEADER, required = false) String sender,
+            @RequestHeader(value = ClusterService.AUTH_HEADER, required = false) String authorization) {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.putAll(clusterService.handoff(sender, request.getInputStream().readAllBytes(), authorization));
+            return response;
+        } catch (SecurityException e) {
+            System.err.println("[KSM] Rejected key handoff: " + e.getMessage());
+            httpResponse.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            return createErrorResponse("Key handoff rejected: " + e.getMessage());
+        } catch (Exception e) {
+            System.err.println("[KSM] Error handing off key: " + e.getMessage());
+            return createErrorResponse("Key handoff failed: " + e.getMessage());
+        }
+    }
+    
+    private Map<String, Object> createErrorResponse(String message) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("success", false);
+        error.put("error", message);
+        error.put("timestamp", System.currentTimeMillis());
+        return error;
+    }
+}
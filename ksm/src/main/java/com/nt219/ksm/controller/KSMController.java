@@ -1,12 +1,26 @@
 package com.nt219.ksm.controller;
 
+import com.nt219.ksm.admission.AdmissionControlService;
+import com.nt219.ksm.archive.SignatureArchiveService;
+import com.nt219.ksm.cluster.ClusterService;
 import com.nt219.ksm.crypto.*;
+import com.nt219.ksm.crypto.impl.EcdsaSecp256k1Service;
+import com.nt219.ksm.process.BulkSignService;
+import com.nt219.ksm.process.IdempotencyCache;
 import com.nt219.ksm.process.PQCProcessService;
 import com.nt219.ksm.process.SignedTransaction;
+import com.nt219.ksm.replay.ReplayGuard;
+import com.nt219.ksm.replay.ReplayProtectionService;
+import com.nt219.ksm.storage.EntityPage;
+import com.nt219.ksm.tracing.KsmTracing;
+import io.opentelemetry.api.trace.Span;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Base64;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -18,11 +32,26 @@ import java.util.Map;
 @CrossOrigin(origins = "*") // Allow requests from GUI
 public class KSMController {
     
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    
     private final PQCProcessService pqcService;
+    private final ClusterService clusterService;
+    private final AdmissionControlService admissionService;
+    private final SignatureArchiveService signatureArchive;
+    private final BulkSignService bulkSignService;
+    private final ReplayProtectionService replayProtection;
     
     @Autowired
-    public KSMController(PQCProcessService pqcService) {
+    public KSMController(PQCProcessService pqcService, ClusterService clusterService,
+                         AdmissionControlService admissionService, SignatureArchiveService signatureArchive,
+                         BulkSignService bulkSignService, ReplayProtectionService replayProtection) {
         this.pqcService = pqcService;
+        this.clusterService = clusterService;
+        this.admissionService = admissionService;
+        this.signatureArchive = signatureArchive;
+        this.bulkSignService = bulkSignService;
+        this.replayProtection = replayProtection;
         System.out.println("[KSM] Controller initialized with PQC Process Service");
     }
     
@@ -35,11 +64,8 @@ public class KSMController {
         response.put("status", "UP");
         response.put("service", "KSM - Key Simulation Module");
         response.put("version", "1.0.0");
-        response.put("algorithms", new String[]{
-            "DILITHIUM2", "DILITHIUM3", "DILITHIUM5",
-            "KYBER512", "KYBER768", "KYBER1024"
-        });
-        response.put("defaultSignature", "DILITHIUM3");
+        response.put("algorithms", Arrays.stream(PQCAlgorithm.values()).map(Enum::name).toArray(String[]::new));
+        response.put("defaultSignature", pqcService.getDefaultSignatureAlgorithm().name());
         response.put("defaultEncryption", "KYBER768");
         return response;
     }
@@ -48,10 +74,14 @@ public class KSMController {
      * Generate PQC key pair for an entity
      * 
      * POST /ksm/generateKey
-     * Body: { "entityId": "vietcombank" }
+     * Body: { "entityId": "vietcombank", "algorithm": "FALCON_512" }
+     * 
+     * algorithm (optional): thuật toán chữ ký của entity, mặc định KSM_SIGNATURE_ALGORITHM
      */
     @PostMapping("/generateKey")
-    public Map<String, Object> generateKey(@RequestBody Map<String, String> request) {
+    public Map<String, Object> generateKey(
+            @RequestBody Map<String, String> request,
+            @RequestHeader(value = ClusterService.FORWARDED_HEADER, required = false) String forwardedBy) {
         try {
             String entityId = request.get("entityId");
             
@@ -59,16 +89,26 @@ public class KSMController {
                 return createErrorResponse("entityId is required");
             }
             
+            Map<String, Object> routed = clusterService.routeIfRemote(entityId, forwardedBy, "POST", "/ksm/generateKey", request);
+            if (routed != null) {
+                return routed;
+            }
+            
             System.out.println("[KSM] Generating key pair for entity: " + entityId);
             
-            PQCKeyPair keyPair = pqcService.generateKeyPairForEntity(entityId);
+            String algorithm = request.get("algorithm");
+            PQCKeyPair keyPair = algorithm != null
+                ? pqcService.generateKeyPairForEntity(entityId, PQCAlgorithm.fromName(algorithm))
+                : pqcService.generateKeyPairForEntity(entityId);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("entityId", entityId);
-            response.put("publicKey", Base64.getEncoder().encodeToString(keyPair.getPublicKey()));
+            response.put("publicKey", Codec.toBase64(keyPair.getPublicKey()));
             response.put("algorithm", keyPair.getAlgorithm());
             response.put("publicKeySize", keyPair.getPublicKey().length);
+            response.put("keyId", keyPair.getKeyId());
+            response.put("version", keyPair.getVersion());
             response.put("message", "Key pair generated successfully");
             
             System.out.println("[KSM] ✓ Key pair generated for " + entityId);
@@ -86,11 +126,14 @@ public class KSMController {
      * POST /ksm/sign
      * Body: { 
      *   "entityId": "vietcombank",
-     *   "message": "Transaction data here"
+     *   "message": "Transaction data here",
+     *   "hybrid": true   (optional: thêm chữ ký ECDSA secp256k1 trên cùng digest keccak256)
      * }
      */
     @PostMapping("/sign")
-    public Map<String, Object> sign(@RequestBody Map<String, String> request) {
+    public Map<String, Object> sign(
+            @RequestBody Map<String, String> request,
+            @RequestHeader(value = ClusterService.FORWARDED_HEADER, required = false) String forwardedBy) {
         try {
             String entityId = request.get("entityId");
             String message = request.get("message");
@@ -99,18 +142,18 @@ public class KSMController {
                 return createErrorResponse("entityId and message are required");
             }
             
+            Map<String, Object> routed = clusterService.routeIfRemote(entityId, forwardedBy, "POST", "/ksm/sign", request);
+            if (routed != null) {
+                return routed;
+            }
+            
             System.out.println("[KSM] Signing message for entity: " + entityId);
             
-            PQCSignature signature = pqcService.signTransaction(entityId, message);
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("entityId", entityId);
-            response.put("signature", Base64.getEncoder().encodeToString(signature.getSignature()));
-            response.put("algorithm", signature.getAlgorithm());
-            response.put("signatureSize", signature.getSignature().length);
-            response.put("timestamp", System.currentTimeMillis());
-            response.put("message", "Transaction signed successfully");
+            boolean hybrid = Boolean.parseBoolean(request.get("hybrid"));
+            Span.current()
+                .setAttribute(KsmTracing.ENTITY_ID, entityId)
+                .setAttribute(KsmTracing.HYBRID, hybrid);
+            Map<String, Object> response = signMessage(entityId, message, hybrid);
             
             System.out.println("[KSM] ✓ Transaction signed for " + entityId);
             return response;
@@ -121,6 +164,93 @@ public class KSMController {
         }
     }
     
+    /**
+     * Ký hàng loạt qua NDJSON (batch cuối ngày)
+     * 
+     * POST /ksm/sign/stream
+     * Body (application/x-ndjson), mỗi dòng một request như POST /ksm/sign, "id" tùy chọn:
+     *   {"id":"tx-1","entityId":"vietcombank","message":"..."}
+     *   {"id":"tx-2","entityId":"techcombank","message":"...","hybrid":true}
+     * Response (application/x-ndjson), mỗi dòng một kết quả theo thứ tự ký xong:
+     *   {"line":2,"id":"tx-2","success":true,"signature":"...",...}
+     *   {"line":1,"id":"tx-1","success":true,"signature":"...",...}
+     *   {"summary":true,"lines":2,"succeeded":2,"failed":0,"elapsedMs":41}
+     * 
+     * Số dòng đang ký bị giới hạn (KSM_BULK_SIGN_WINDOW): server ngừng đọc body khi đủ window,
+     * nên client gửi file lớn bị chặn ở TCP thay vì server đệm cả file.
+     * Không qua admission control theo request, nhưng mỗi dòng local chờ permit trong bulkhead của tenant
+     * sở hữu entityId (trên thread đọc, trước khi vào worker); dòng của entity thuộc node khác được
+     * chuyển tiếp như /sign.
+     */
+    @PostMapping("/sign/stream")
+    public void signStream(
+            HttpServletRequest httpRequest, HttpServletResponse httpResponse,
+            @RequestHeader(value = ClusterService.FORWARDED_HEADER, required = false) String forwardedBy)
+            throws IOException, InterruptedException {
+        httpResponse.setContentType("application/x-ndjson");
+        httpResponse.setCharacterEncoding("UTF-8");
+        long lines = bulkSignService.sign(httpRequest.getInputStream(), httpResponse.getOutputStream(), request -> {
+            String entityId = request.get("entityId");
+            return entityId != null && clusterService.isLocal(entityId) ? admissionService.acquireBulk(entityId) : null;
+        }, request -> {
+            String entityId = request.get("entityId");
+            String message = request.get("message");
+            if (entityId == null || message == null) {
+                return createErrorResponse("entityId and message are required");
+            }
+            Map<String, Object> routed = clusterService.routeIfRemote(entityId, forwardedBy, "POST", "/ksm/sign", request);
+            if (routed != null) {
+                return routed;
+            }
+            return signMessage(entityId, message, Boolean.parseBoolean(request.get("hybrid")));
+        });
+        System.out.println("[KSM] ✓ Bulk sign stream finished: " + lines + " lines");
+    }
+    
+    /**
+     * Bulk sign stream statistics
+     * 
+     * GET /ksm/sign/stream/stats
+     */
+    @GetMapping("/sign/stream/stats")
+    public Map<String, Object> signStreamStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.putAll(bulkSignService.getStats());
+        return response;
+    }
+    
+    /**
+     * Ký message bằng khóa của entity, response của POST /ksm/sign
+     */
+    private Map<String, Object> signMessage(String entityId, String message, boolean hybrid) throws Exception {
+        PQCSignature signature = hybrid
+            ? pqcService.signHybrid(entityId, message)
+            : pqcService.signTransaction(entityId, message);
+        Span.current().setAttribute(KsmTracing.ALGORITHM, signature.getAlgorithm());
+        
+        String encodedSignature = KsmTracing.inSpan("codec.base64", span -> {
+            span.setAttribute(KsmTracing.BYTES, (long) signature.getSignature().length);
+            return Codec.toBase64(signature.getSignature());
+        });
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("entityId", entityId);
+        response.put("signature", encodedSignature);
+        response.put("algorithm", signature.getAlgorithm());
+        response.put("signatureSize", signature.getSignature().length);
+        response.put("keyId", signature.getKeyId());
+        putSignatureHash(response, signature);
+        if (signature.isHybrid()) {
+            putClassicalSignature(response, signature);
+            response.put("digest", "0x" + Codec.toHex(PQCProcessService.canonicalDigest(message)));
+        }
+        response.put("timestamp", System.currentTimeMillis());
+        response.put("message", "Transaction signed successfully");
+        return response;
+    }
+    
     /**
      * Verify a signature
      * 
@@ -129,37 +259,73 @@ public class KSMController {
      *   "entityId": "vietcombank",
      *   "message": "Transaction data here",
      *   "signature": "base64_signature",
-     *   "algorithm": "Dilithium3"
+     *   "algorithm": "Dilithium3",
+     *   "keyId": "3fa2c1d4e5b6a7f8-v1",   (optional, từ response của /sign)
+     *   "classicalSignature": "base64",    (optional: chữ ký hybrid, cả hai nửa phải hợp lệ)
+     *   "consume": "true"                  (optional: chống replay, xem dưới)
      * }
+     * 
+     * Có keyId thì chữ ký ký trước khi rotate vẫn verify được bằng phiên bản khóa cũ
+     * 
+     * consume = "true": bên nhận sắp thực hiện transaction. Chữ ký hợp lệ còn phải qua ReplayGuard:
+     * message (transactionData của /createSignedTransaction) phải có TIMESTAMP trong cửa sổ và chưa từng
+     * được consume; ngược lại valid = false và "replay" cho biết lý do (DUPLICATE, STALE, ...).
+     * Không có consume, verify chỉ kiểm tra chữ ký và có thể lặp lại (audit).
      */
     @PostMapping("/verify")
-    public Map<String, Object> verify(@RequestBody Map<String, String> request) {
+    public Map<String, Object> verify(
+            @RequestBody Map<String, String> request,
+            @RequestHeader(value = ClusterService.FORWARDED_HEADER, required = false) String forwardedBy) {
         try {
             String entityId = request.get("entityId");
             String message = request.get("message");
             String signatureBase64 = request.get("signature");
             String algorithm = request.get("algorithm");
+            String keyId = request.get("keyId");
             
             if (entityId == null || message == null || signatureBase64 == null) {
                 return createErrorResponse("entityId, message, and signature are required");
             }
             
+            Map<String, Object> routed = clusterService.routeIfRemote(entityId, forwardedBy, "POST", "/ksm/verify", request);
+            if (routed != null) {
+                return routed;
+            }
+            
             System.out.println("[KSM] Verifying signature for entity: " + entityId);
             
-            byte[] signatureBytes = Base64.getDecoder().decode(signatureBase64);
-            PQCSignature signature = new PQCSignature(signatureBytes, algorithm);
+            byte[] signatureBytes = Codec.fromBase64(signatureBase64);
+            PQCSignature signature = new PQCSignature(signatureBytes, algorithm, keyId);
+            String classicalSignature = request.get("classicalSignature");
+            if (classicalSignature != null) {
+                signature = signature.withClassical(Codec.fromBase64(classicalSignature),
+                    EcdsaSecp256k1Service.ALGORITHM);
+            }
             
             boolean isValid = pqcService.verifyTransaction(entityId, message, signature);
+            ReplayGuard.Verdict replay = null;
+            if (isValid && Boolean.parseBoolean(request.get("consume"))) {
+                replay = replayProtection.check(entityId, message);
+                isValid = replay == ReplayGuard.Verdict.ACCEPTED;
+            }
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("entityId", entityId);
             response.put("valid", isValid);
+            if (replay != null) {
+                response.put("replay", replay.name());
+            }
             response.put("algorithm", algorithm);
+            if (keyId != null) {
+                response.put("keyId", keyId);
+            }
+            response.put("hybrid", signature.isHybrid());
             response.put("timestamp", System.currentTimeMillis());
-            response.put("message", isValid ? "Signature is valid" : "Signature is invalid");
+            response.put("message", isValid ? "Signature is valid"
+                : replay != null ? "Transaction rejected by replay protection: " + replay : "Signature is invalid");
             
-            System.out.println("[KSM] ✓ Verification result: " + isValid);
+            System.out.println("[KSM] ✓ Verification result: " + isValid + (replay != null ? " (replay " + replay + ")" : ""));
             return response;
             
         } catch (Exception e) {
@@ -176,39 +342,71 @@ public class KSMController {
      *   "from": "vietcombank",
      *   "to": "vietinbank",
      *   "amount": 1000000,
-     *   "description": "Transfer"
+     *   "description": "Transfer",
+     *   "requestId": "b7f3c1e2-...",   (optional, hoặc header Idempotency-Key)
+     *   "hybrid": true                 (optional: chữ ký ECDSA + PQC trong cùng một lần gọi)
      * }
+     * 
+     * Retry cùng requestId trả lại đúng transaction đã ký, không ký lại
      */
     @PostMapping("/createSignedTransaction")
-    public Map<String, Object> createSignedTransaction(@RequestBody Map<String, Object> request) {
+    public Map<String, Object> createSignedTransaction(
+            @RequestBody Map<String, Object> request,
+            @RequestHeader(value = ClusterService.FORWARDED_HEADER, required = false) String forwardedBy,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         try {
+            if (idempotencyKey != null && !request.containsKey("requestId")) {
+                request.put("requestId", idempotencyKey); // giữ key khi forward sang owner node
+            }
+            String requestId = (String) request.get("requestId");
             String from = (String) request.get("from");
             String to = (String) request.get("to");
             double amount = ((Number) request.get("amount")).doubleValue();
             String description = (String) request.get("description");
+            boolean hybrid = Boolean.TRUE.equals(request.get("hybrid"));
             
             if (from == null || to == null) {
                 return createErrorResponse("from and to are required");
             }
             
+            Map<String, Object> routed = clusterService.routeIfRemote(from, forwardedBy, "POST", "/ksm/createSignedTransaction", request);
+            if (routed != null) {
+                return routed;
+            }
+            
             System.out.println("[KSM] Creating signed transaction: " + from + " → " + to);
             
-            SignedTransaction tx = pqcService.createSignedTransaction(from, to, amount, description);
+            IdempotencyCache.Outcome<SignedTransaction> outcome =
+                pqcService.createSignedTransaction(requestId, from, to, amount, description, hybrid);
+            SignedTransaction tx = outcome.getValue();
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
+            if (requestId != null) {
+                response.put("requestId", requestId);
+                response.put("duplicate", outcome.isDuplicate());
+            }
             response.put("transaction", Map.of(
                 "from", tx.getFrom(),
                 "to", tx.getTo(),
                 "amount", tx.getAmount(),
                 "description", tx.getDescription(),
-                "timestamp", tx.getTimestamp()
+                "timestamp", tx.getTimestamp(),
+                "nonce", tx.getNonce()
             ));
-            response.put("signature", Base64.getEncoder().encodeToString(tx.getSignature().getSignature()));
+            response.put("transactionData", tx.getTransactionData());
+            response.put("signature", Codec.toBase64(tx.getSignature().getSignature()));
             response.put("algorithm", tx.getAlgorithm());
+            response.put("keyId", tx.getKeyId());
+            putSignatureHash(response, tx.getSignature());
+            if (tx.getSignature().isHybrid()) {
+                putClassicalSignature(response, tx.getSignature());
+            }
             response.put("message", "Signed transaction created successfully");
             
-            System.out.println("[KSM] ✓ Signed transaction created");
+            System.out.println(outcome.isDuplicate()
+                ? "[KSM] ✓ Duplicate request " + requestId + ", returned original signed transaction"
+                : "[KSM] ✓ Signed transaction created");
             return response;
             
         } catch (Exception e) {
@@ -217,14 +415,71 @@ public class KSMController {
         }
     }
     
+    /**
+     * Rotate key pair for an entity
+     * Phiên bản cũ được archive, chữ ký cũ vẫn verify được bằng keyId
+     * 
+     * POST /ksm/rotateKey
+     * Body: { "entityId": "vietcombank", "algorithm": "FALCON_512" }
+     * 
+     * algorithm (optional): chuyển entity sang thuật toán khác, mặc định giữ thuật toán hiện tại
+     */
+    @PostMapping("/rotateKey")
+    public Map<String, Object> rotateKey(
+            @RequestBody Map<String, String> request,
+            @RequestHeader(value = ClusterService.FORWARDED_HEADER, required = false) String forwardedBy) {
+        try {
+            String entityId = request.get("entityId");
+            
+            if (entityId == null || entityId.trim().isEmpty()) {
+                return createErrorResponse("entityId is required");
+            }
+            
+            Map<String, Object> routed = clusterService.routeIfRemote(entityId, forwardedBy, "POST", "/ksm/rotateKey", request);
+            if (routed != null) {
+                return routed;
+            }
+            
+            System.out.println("[KSM] Rotating key pair for entity: " + entityId);
+            
+            String algorithm = request.get("algorithm");
+            PQCKeyPair keyPair = pqcService.rotateKeyPair(entityId,
+                algorithm != null ? PQCAlgorithm.fromName(algorithm) : null);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("entityId", entityId);
+            response.put("publicKey", Codec.toBase64(keyPair.getPublicKey()));
+            response.put("algorithm", keyPair.getAlgorithm());
+            response.put("keyId", keyPair.getKeyId());
+            response.put("version", keyPair.getVersion());
+            response.put("message", "Key pair rotated successfully");
+            
+            System.out.println("[KSM] ✓ Key rotated for " + entityId + " → " + keyPair.getKeyId());
+            return response;
+            
+        } catch (Exception e) {
+            System.err.println("[KSM] Error rotating key: " + e.getMessage());
+            return createErrorResponse("Key rotation failed: " + e.getMessage());
+        }
+    }
+    
     /**
      * Get public key for an entity
      * 
      * GET /ksm/publicKey/{entityId}
      */
     @GetMapping("/publicKey/{entityId}")
-    public Map<String, Object> getPublicKey(@PathVariable String entityId) {
+    public Map<String, Object> getPublicKey(
+            @PathVariable String entityId,
+            @RequestHeader(value = ClusterService.FORWARDED_HEADER, required = false) String forwardedBy) {
         try {
+            Map<String, Object> routed = clusterService.routeIfRemote(entityId, forwardedBy, "GET",
+                "/ksm/publicKey/" + ClusterService.pathSegment(entityId), null);
+            if (routed != null) {
+                return routed;
+            }
+            
             PQCKeyPair keyPair = pqcService.getKeyPairForEntity(entityId);
             
             if (keyPair == null) {
@@ -234,9 +489,16 @@ public class KSMController {
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("entityId", entityId);
-            response.put("publicKey", Base64.getEncoder().encodeToString(keyPair.getPublicKey()));
+            response.put("publicKey", Codec.toBase64(keyPair.getPublicKey()));
             response.put("algorithm", keyPair.getAlgorithm());
             response.put("publicKeySize", keyPair.getPublicKey().length);
+            response.put("keyId", keyPair.getKeyId());
+            response.put("version", keyPair.getVersion());
+            byte[] classicalPublicKey = pqcService.getClassicalPublicKey(entityId);
+            if (classicalPublicKey != null) {
+                response.put("classicalPublicKey", "0x" + Codec.toHex(classicalPublicKey));
+                response.put("classicalAlgorithm", EcdsaSecp256k1Service.ALGORITHM);
+            }
             
             return response;
             
@@ -246,18 +508,31 @@ public class KSMController {
     }
     
     /**
-     * List all entities with keys
+     * List entities with keys (cursor-paginated)
+     * Trong cluster mode chỉ liệt kê entity lưu tại node này
      * 
-     * GET /ksm/entities
+     * GET /ksm/entities?prefix=VCB&cursor=VCB_user100&limit=100
+     * - prefix: chỉ lấy entity bắt đầu bằng prefix (ví dụ bank code)
+     * - cursor: giá trị nextCursor của trang trước
+     * - limit: số entity mỗi trang (mặc định 100, tối đa 1000)
      */
     @GetMapping("/entities")
-    public Map<String, Object> listEntities() {
+    public Map<String, Object> listEntities(
+            @RequestParam(required = false) String prefix,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
         try {
-            String[] entities = pqcService.listEntities();
+            if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+                return createErrorResponse("limit must be between 1 and " + MAX_PAGE_SIZE);
+            }
+            
+            EntityPage page = pqcService.listEntities(prefix, cursor, limit);
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("entities", entities);
-            response.put("count", entities.length);
+            response.put("entities", page.getEntities());
+            response.put("count", page.getEntities().size());
+            response.put("nextCursor", page.getNextCursor());
+            response.put("hasMore", page.hasMore());
             return response;
         } catch (Exception e) {
             return createErrorResponse("Failed to list entities: " + e.getMessage());
@@ -269,8 +544,16 @@ public class KSMController {
      * DELETE /ksm/deleteKey/{entityId}
      */
     @DeleteMapping("/deleteKey/{entityId}")
-    public Map<String, Object> deleteKey(@PathVariable String entityId) {
+    public Map<String, Object> deleteKey(
+            @PathVariable String entityId,
+            @RequestHeader(value = ClusterService.FORWARDED_HEADER, required = false) String forwardedBy) {
         try {
+            Map<String, Object> routed = clusterService.routeIfRemote(entityId, forwardedBy, "DELETE",
+                "/ksm/deleteKey/" + ClusterService.pathSegment(entityId), null);
+            if (routed != null) {
+                return routed;
+            }
+            
             boolean deleted = pqcService.deleteKeyPair(entityId);
             Map<String, Object> response = new HashMap<>();
             response.put("success", deleted);
@@ -298,6 +581,99 @@ public class KSMController {
         }
     }
     
+    /**
+     * Ghi snapshot nhị phân của key store ngay (bình thường chạy định kỳ)
+     * POST /ksm/storage/snapshot
+     */
+    @PostMapping("/storage/snapshot")
+    public Map<String, Object> writeSnapshot() {
+        try {
+            long start = System.nanoTime();
+            int entities = pqcService.writeSnapshot();
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("entities", entities);
+            response.put("durationMs", (System.nanoTime() - start) / 1_000_000);
+            return response;
+        } catch (Exception e) {
+            return createErrorResponse("Failed to write snapshot: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Rotate master key: bản ghi mới dùng version mới ngay, bản ghi cũ được wrap lại ở nền
+     * POST /ksm/masterKey/rotate (tiến độ: GET /ksm/storage/stats → masterKey.rewrap)
+     */
+    @PostMapping("/masterKey/rotate")
+    public Map<String, Object> rotateMasterKey() {
+        try {
+            int version = pqcService.rotateMasterKey();
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("masterKeyVersion", version);
+            response.put("message", "Master key rotated; data keys are being rewrapped in the background");
+            return response;
+        } catch (Exception e) {
+            return createErrorResponse("Failed to rotate master key: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Get key pair pool metrics
+     * GET /ksm/keypool/stats
+     */
+    @GetMapping("/keypool/stats")
+    public Map<String, Object> getKeyPoolStats() {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.putAll(pqcService.getKeyPoolStats());
+            return response;
+        } catch (Exception e) {
+            return createErrorResponse("Failed to get key pool stats: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Get idempotency cache metrics for createSignedTransaction
+     * GET /ksm/idempotency/stats
+     */
+    @GetMapping("/idempotency/stats")
+    public Map<String, Object> getIdempotencyStats() {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.putAll(pqcService.getIdempotencyStats());
+            return response;
+        } catch (Exception e) {
+            return createErrorResponse("Failed to get idempotency stats: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Get admission control metrics (limit, in-flight, queue depth, shed counts)
+     * GET /ksm/admission/stats
+     */
+    @GetMapping("/admission/stats")
+    public Map<String, Object> getAdmissionStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.putAll(admissionService.getStats());
+        return response;
+    }
+    
+    /**
+     * Get replay protection metrics (verdicts, Bloom false positives, live generations)
+     * GET /ksm/replay/stats
+     */
+    @GetMapping("/replay/stats")
+    public Map<String, Object> getReplayStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.putAll(replayProtection.getStats());
+        return response;
+    }
+    
     // Helper methods
     
     private Map<String, Object> createErrorResponse(String message) {
@@ -307,5 +683,20 @@ public class KSMController {
         error.put("timestamp", System.currentTimeMillis());
         return error;
     }
+    
+    /**
+     * Lưu chữ ký vào kho off-chain; signatureHash là giá trị on-chain cần lưu thay cho chữ ký đầy đủ
+     */
+    private void putSignatureHash(Map<String, Object> response, PQCSignature signature) throws Exception {
+        String hash = signatureArchive.archive(signature);
+        if (hash != null) {
+            response.put("signatureHash", hash);
+        }
+    }
+    
+    private void putClassicalSignature(Map<String, Object> response, PQCSignature signature) {
+        response.put("classicalSignature", Codec.toBase64(signature.getClassicalSignature()));
+        response.put("classicalAlgorithm", signature.getClassicalAlgorithm());
+    }
 }
 
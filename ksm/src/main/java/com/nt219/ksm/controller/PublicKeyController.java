@@ -0,0 +1,251 @@
+package com.nt219.ksm.controller;
+
+import com.nt219.ksm.cluster.ClusterService;
+import com.nt219.ksm.crypto.Codec;
+import com.nt219.ksm.crypto.KeyId;
+import com.nt219.ksm.crypto.PQCSignature;
+import com.nt219.ksm.crypto.impl.EcdsaSecp256k1Service;
+import com.nt219.ksm.replay.ReplayGuard;
+import com.nt219.ksm.replay.ReplayProtectionService;
+import com.nt219.ksm.verify.PublicKeyVerificationService;
+import com.nt219.ksm.verify.TrustedPublicKey;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * REST API Controller: đăng ký public key của ngân hàng khác và verify chữ ký chỉ bằng public key
+ */
+@RestController
+@RequestMapping("/ksm/publicKeys")
+@CrossOrigin(origins = "*")
+public class PublicKeyController {
+
+    private final PublicKeyVerificationService verificationService;
+    private final ReplayProtectionService replayProtection;
+    private final ClusterService clusterService;
+
+    @Autowired
+    public PublicKeyController(PublicKeyVerificationService verificationService, ReplayProtectionService replayProtection,
+                               ClusterService clusterService) {
+        this.verificationService = verificationService;
+        this.replayProtection = replayProtection;
+        this.clusterService = clusterService;
+    }
+
+    /**
+     * Đăng ký public key (vd. đọc từ PKIRegistry.getUserPublicKey)
+     *
+     * POST /ksm/publicKeys/register
+     * Body: {
+     *   "publicKey": "base64",
+     *   "algorithm": "Dilithium3",
+     *   "classicalPublicKey": "base64",   (optional: khóa ECDSA secp256k1 cho chữ ký hybrid)
+     *   "owner": "0x6ecbe1db..."          (optional: địa chỉ on-chain / mã ngân hàng)
+     * }
+     */
+    @PostMapping("/register")
+    public Map<String, Object> register(@RequestBody Map<String, String> request) {
+        try {
+            String publicKey = request.get("publicKey");
+            String algorithm = request.get("algorithm");
+            if (publicKey == null || algorithm == null) {
+                return createErrorResponse("publicKey and algorithm are required");
+            }
+            String classicalPublicKey = request.get("classicalPublicKey");
+            TrustedPublicKey key = verificationService.register(Codec.fromBase64(publicKey), algorithm,
+                classicalPublicKey != null ? Codec.fromBase64(classicalPublicKey) : null, request.get("owner"));
+
+            Map<String, Object> response = describe(key);
+            response.put("success", true);
+            return response;
+        } catch (Exception e) {
+            System.err.println("[KSM] Error registering public key: " + e.getMessage());
+            return createErrorResponse("Public key registration failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * GET /ksm/publicKeys/{fingerprint}
+     */
+    @GetMapping("/{fingerprint}")
+    public Map<String, Object> get(@PathVariable String fingerprint) {
+        try {
+            TrustedPublicKey key = verificationService.find(fingerprint);
+            if (key == null) {
+                return createErrorResponse("Public key not registered: " + fingerprint);
+            }
+            Map<String, Object> response = describe(key);
+            response.put("success", true);
+            response.put("publicKey", Codec.toBase64(key.getPublicKey()));
+            if (key.getClassicalPublicKey() != null) {
+                response.put("classicalPublicKey", Codec.toBase64(key.getClassicalPublicKey()));
+            }
+            return response;
+        } catch (Exception e) {
+            return createErrorResponse("Public key lookup failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * DELETE /ksm/publicKeys/{fingerprint}
+     */
+    @DeleteMapping("/{fingerprint}")
+    public Map<String, Object> remove(@PathVariable String fingerprint) {
+        try {
+            if (!verificationService.remove(fingerprint)) {
+                return createErrorResponse("Public key not registered: " + fingerprint);
+            }
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("fingerprint", fingerprint);
+            response.put("message", "Public key removed");
+            return response;
+        } catch (Exception e) {
+            return createErrorResponse("Public key removal failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Verify chữ ký bằng public key, không tra private key
+     *
+     * POST /ksm/publicKeys/verify
+     * Body: {
+     *   "message": "Transaction data here",
+     *   "signature": "base64_signature",
+     *   "publicKey": "base64",             (hoặc fingerprint / keyId của khóa đã đăng ký)
+     *   "algorithm": "Dilithium3",         (bắt buộc khi gửi publicKey)
+     *   "fingerprint": "3fa2c1d4e5b6a7f8",
+     *   "keyId": "3fa2c1d4e5b6a7f8-v1",
+     *   "classicalSignature": "base64",    (optional: chữ ký hybrid)
+     *   "classicalPublicKey": "base64",    (optional: khi khóa không đăng ký kèm khóa ECDSA)
+     *   "consume": "true"                  (optional: chống replay như /ksm/verify, theo fingerprint của khóa)
+     * }
+     *
+     * Cluster: request "consume" được forward tới owner của "key:&lt;fingerprint&gt;" trên ring (kèm public key đã
+     * resolve, owner không cần đăng ký khóa), để mọi node dùng chung một ReplayGuard cho mỗi khóa.
+     */
+    @PostMapping("/verify")
+    public Map<String, Object> verify(@RequestBody Map<String, String> request,
+            @RequestHeader(value = ClusterService.FORWARDED_HEADER, required = false) String forwardedBy) {
+        try {
+            String message = request.get("message");
+            String signatureBase64 = request.get("signature");
+            String publicKey = request.get("publicKey");
+            String algorithm = request.get("algorithm");
+            String keyId = request.get("keyId");
+            String fingerprint = request.get("fingerprint");
+            if (fingerprint == null && keyId != null) {
+                fingerprint = KeyId.fingerprintOf(keyId);
+            }
+
+            if (message == null || signatureBase64 == null) {
+                return createErrorResponse("message and signature are required");
+            }
+
+            TrustedPublicKey key;
+            if (publicKey != null) {
+                if (algorithm == null) {
+                    return createErrorResponse("algorithm is required with publicKey");
+                }
+                key = verificationService.parse(Codec.fromBase64(publicKey), algorithm);
+                if (fingerprint != null && !fingerprint.equals(key.getFingerprint())) {
+                    return createErrorResponse("publicKey does not match fingerprint " + fingerprint);
+                }
+            } else if (fingerprint != null) {
+                key = verificationService.find(fingerprint);
+                if (key == null) {
+                    return createErrorResponse("Public key not registered: " + fingerprint);
+                }
+                if (algorithm != null && !key.getAlgorithm().getName().equalsIgnoreCase(algorithm)
+                        && !key.getAlgorithm().name().equalsIgnoreCase(algorithm)) {
+                    return createErrorResponse("Key " + fingerprint + " is " + key.getAlgorithm() + ", not " + algorithm);
+                }
+            } else {
+                return createErrorResponse("publicKey, fingerprint or keyId is required");
+            }
+
+            boolean consume = Boolean.parseBoolean(request.get("consume"));
+            // Phạm vi replay là khóa ký; tiền tố để không trùng với entityId của /ksm/verify
+            String replayScope = "key:" + key.getFingerprint();
+            if (consume) {
+                Map<String, String> forwarded = new HashMap<>(request);
+                forwarded.put("publicKey", Codec.toBase64(key.getPublicKey()));
+                forwarded.put("algorithm", key.getAlgorithm().getName());
+                if (key.getClassicalPublicKey() != null && !forwarded.containsKey("classicalPublicKey")) {
+                    forwarded.put("classicalPublicKey", Codec.toBase64(key.getClassicalPublicKey()));
+                }
+                Map<String, Object> routed = clusterService.routeScopeIfRemote(replayScope, forwardedBy, "POST",
+                    "/ksm/publicKeys/verify", forwarded);
+                if (routed != null) {
+                    return routed;
+                }
+            }
+
+            PQCSignature signature = new PQCSignature(Codec.fromBase64(signatureBase64), key.getAlgorithm().getName(), keyId);
+            String classicalSignature = request.get("classicalSignature");
+            if (classicalSignature != null) {
+                signature = signature.withClassical(Codec.fromBase64(classicalSignature), EcdsaSecp256k1Service.ALGORITHM);
+            }
+            String classicalPublicKey = request.get("classicalPublicKey");
+
+            boolean isValid = verificationService.verify(message, signature, key,
+                classicalPublicKey != null ? Codec.fromBase64(classicalPublicKey) : null);
+
+            ReplayGuard.Verdict replay = null;
+            if (isValid && consume) {
+                replay = replayProtection.check(replayScope, message);
+                isValid = replay == ReplayGuard.Verdict.ACCEPTED;
+            }
+
+            Map<String, Object> response = describe(key);
+            response.put("success", true);
+            response.put("valid", isValid);
+            if (replay != null) {
+                response.put("replay", replay.name());
+            }
+            response.put("hybrid", signature.isHybrid());
+            response.put("timestamp", System.currentTimeMillis());
+            response.put("message", isValid ? "Signature is valid"
+                : replay != null ? "Transaction rejected by replay protection: " + replay : "Signature is invalid");
+            return response;
+        } catch (Exception e) {
+            System.err.println("[KSM] Error verifying signature by public key: " + e.getMessage());
+            return createErrorResponse("Verification failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Số khóa đăng ký, cache hit/miss, số lần verify
+     * GET /ksm/publicKeys/stats
+     */
+    @GetMapping("/stats")
+    public Map<String, Object> stats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.putAll(verificationService.getStats());
+        return response;
+    }
+
+    private Map<String, Object> describe(TrustedPublicKey key) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("fingerprint", key.getFingerprint());
+        response.put("keyHash", key.getKeyHash());
+        response.put("algorithm", key.getAlgorithm().getName());
+        response.put("registered", key.isRegistered());
+        if (key.getOwner() != null) {
+            response.put("owner", key.getOwner());
+        }
+        return response;
+    }
+
+    private Map<String, Object> createErrorResponse(String message) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("success", false);
+        error.put("error", message);
+        error.put("timestamp", System.currentTimeMillis());
+        return error;
+    }
+}
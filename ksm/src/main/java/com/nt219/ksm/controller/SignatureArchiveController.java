@@ -0,0 +1,69 @@
+package com.nt219.ksm.controller;
+
+import com.nt219.ksm.archive.SignatureArchive;
+import com.nt219.ksm.archive.SignatureArchiveService;
+import com.nt219.ksm.crypto.Codec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * REST API Controller cho kho chữ ký off-chain (tra cứu chữ ký đầy đủ từ hash lưu on-chain)
+ */
+@RestController
+@RequestMapping("/ksm/signatures")
+@CrossOrigin(origins = "*")
+public class SignatureArchiveController {
+
+    private final SignatureArchiveService archiveService;
+
+    @Autowired
+    public SignatureArchiveController(SignatureArchiveService archiveService) {
+        this.archiveService = archiveService;
+    }
+
+    /**
+     * Lấy chữ ký theo hash keccak256(signature ‖ algorithm) (= PQCSignatureRegistry.getPQCSignatureHash)
+     * GET /ksm/signatures/{hash}
+     */
+    @GetMapping("/{hash}")
+    public Map<String, Object> get(@PathVariable String hash) {
+        try {
+            SignatureArchive.Entry entry = archiveService.find(hash);
+            if (entry == null) {
+                return createErrorResponse("Signature not found: " + hash);
+            }
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("signatureHash", hash);
+            response.put("signature", Codec.toBase64(entry.getSignature()));
+            response.put("algorithm", entry.getAlgorithm());
+            response.put("signatureSize", entry.getSignature().length);
+            return response;
+        } catch (Exception e) {
+            return createErrorResponse("Signature lookup failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Số chữ ký, dung lượng, kích thước index, độ trễ tra cứu trung bình
+     * GET /ksm/signatures/stats
+     */
+    @GetMapping("/stats")
+    public Map<String, Object> stats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.putAll(archiveService.getStats());
+        return response;
+    }
+
+    private Map<String, Object> createErrorResponse(String message) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("success", false);
+        error.put("error", message);
+        error.put("timestamp", System.currentTimeMillis());
+        return error;
+    }
+}
@@ -0,0 +1,195 @@
+package com.nt219.ksm.crypto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Hex / Base64 codec dùng chung cho khóa, chữ ký và digest
+ *
+ * - Hex: bảng tra 256 entry (mỗi byte → 2 ký tự), không qua Formatter như String.format("%02x")
+ * - Base64: String/byte[] dùng encoder/decoder của JDK (đã table-driven và được JIT intrinsic hóa);
+ *   biến thể ghi thẳng vào buffer có sẵn (offset bất kỳ) dùng bảng tra riêng
+ * - {@link #hexPreview}: chỉ render vài byte đầu, và chỉ khi log thực sự gọi toString()
+ */
+public final class Codec {
+
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    // byte → 2 ký tự hex ASCII, ghép thành một short: high byte = ký tự đầu
+    private static final short[] HEX_PAIRS = new short[256];
+
+    // ký tự ASCII → giá trị nibble, -1 nếu không phải hex
+    private static final byte[] HEX_VALUES = new byte[128];
+
+    private static final byte[] BASE64_ALPHABET =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+
+    private static final Base64.Encoder BASE64_ENCODER = Base64.getEncoder();
+    private static final Base64.Decoder BASE64_DECODER = Base64.getDecoder();
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            HEX_PAIRS[i] = (short) ((HEX_DIGITS[i >>> 4] << 8) | HEX_DIGITS[i & 0x0F]);
+        }
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            HEX_VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            HEX_VALUES['a' + i] = (byte) (10 + i);
+            HEX_VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    private Codec() {
+    }
+
+    // ==================== Hex ====================
+
+    public static String toHex(byte[] bytes) {
+        return toHex(bytes, 0, bytes.length);
+    }
+
+    public static String toHex(byte[] bytes, int offset, int length) {
+        byte[] out = new byte[length * 2];
+        encodeHex(bytes, offset, length, out, 0);
+        // Chỉ có ký tự ASCII: String dùng luôn mảng Latin-1, không decode lại
+        return new String(out, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Ghi hex (ASCII, chữ thường) của bytes[offset, offset + length) vào dst, không cấp phát
+     *
+     * @return Số byte đã ghi (= 2 × length)
+     */
+    public static int encodeHex(byte[] bytes, int offset, int length, byte[] dst, int dstOffset) {
+        for (int i = 0; i < length; i++) {
+            short pair = HEX_PAIRS[bytes[offset + i] & 0xFF];
+            dst[dstOffset++] = (byte) (pair >>> 8);
+            dst[dstOffset++] = (byte) pair;
+        }
+        return length * 2;
+    }
+
+    /**
+     * Decode hex (chấp nhận tiền tố 0x và chữ hoa)
+     * @throws IllegalArgumentException Nếu độ dài lẻ hoặc có ký tự không phải hex
+     */
+    public static byte[] fromHex(CharSequence hex) {
+        int start = hex.length() >= 2 && hex.charAt(0) == '0' && (hex.charAt(1) == 'x' || hex.charAt(1) == 'X') ? 2 : 0;
+        int length = hex.length() - start;
+        if ((length & 1) != 0) {
+            throw new IllegalArgumentException("Hex string has odd length: " + hex.length());
+        }
+        byte[] out = new byte[length / 2];
+        for (int i = 0; i < out.length; i++) {
+            int high = nibble(hex.charAt(start + 2 * i));
+            int low = nibble(hex.charAt(start + 2 * i + 1));
+            out[i] = (byte) ((high << 4) | low);
+        }
+        return out;
+    }
+
+    private static int nibble(char c) {
+        int value = c < 128 ? HEX_VALUES[c] : -1;
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid hex character: " + c);
+        }
+        return value;
+    }
+
+    // ==================== Base64 ====================
+
+    public static String toBase64(byte[] bytes) {
+        return BASE64_ENCODER.encodeToString(bytes);
+    }
+
+    public static byte[] fromBase64(String base64) {
+        return BASE64_DECODER.decode(base64);
+    }
+
+    /**
+     * Ghi Base64 (chuẩn, có padding) của bytes[offset, offset + length) vào dst, không cấp phát
+     * (dst cần ít nhất {@link #base64Length} byte)
+     *
+     * @return Số byte đã ghi
+     */
+    public static int encodeBase64(byte[] bytes, int offset, int length, byte[] dst, int dstOffset) {
+        int d = dstOffset;
+        int end = offset + length - length % 3;
+        for (int i = offset; i < end; i += 3) {
+            int bits = (bytes[i] & 0xFF) << 16 | (bytes[i + 1] & 0xFF) << 8 | (bytes[i + 2] & 0xFF);
+            dst[d++] = BASE64_ALPHABET[bits >>> 18];
+            dst[d++] = BASE64_ALPHABET[(bits >>> 12) & 0x3F];
+            dst[d++] = BASE64_ALPHABET[(bits >>> 6) & 0x3F];
+            dst[d++] = BASE64_ALPHABET[bits & 0x3F];
+        }
+        int remaining = length % 3;
+        if (remaining > 0) {
+            int bits = (bytes[end] & 0xFF) << 16 | (remaining == 2 ? (bytes[end + 1] & 0xFF) << 8 : 0);
+            dst[d++] = BASE64_ALPHABET[bits >>> 18];
+            dst[d++] = BASE64_ALPHABET[(bits >>> 12) & 0x3F];
+            dst[d++] = remaining == 2 ? BASE64_ALPHABET[(bits >>> 6) & 0x3F] : (byte) '=';
+            dst[d++] = '=';
+        }
+        return d - dstOffset;
+    }
+
+    public static int base64Length(int byteCount) {
+        return 4 * ((byteCount + 2) / 3);
+    }
+
+    // ==================== Log rendering ====================
+
+    /**
+     * Hex rút gọn cho log: chỉ maxBytes byte đầu + "...", render khi toString() được gọi
+     * (log bị tắt / lọc thì không tốn gì)
+     */
+    public static CharSequence hexPreview(byte[] bytes, int maxBytes) {
+        return new HexPreview(bytes, maxBytes);
+    }
+
+    private static final class HexPreview implements CharSequence {
+        private final byte[] bytes;
+        private final int maxBytes;
+        private String rendered;
+
+        HexPreview(byte[] bytes, int maxBytes) {
+            this.bytes = bytes;
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public String toString() {
+            if (rendered == null) {
+                if (bytes == null) {
+                    rendered = "null";
+                } else if (bytes.length <= maxBytes) {
+                    rendered = toHex(bytes);
+                } else {
+                    byte[] out = new byte[maxBytes * 2 + 3];
+                    int n = encodeHex(bytes, 0, maxBytes, out, 0);
+                    out[n] = out[n + 1] = out[n + 2] = '.';
+                    rendered = new String(out, StandardCharsets.ISO_8859_1);
+                }
+            }
+            return rendered;
+        }
+
+        @Override
+        public int length() {
+            return toString().length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return toString().charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+    }
+}
@@ -13,6 +13,17 @@ public interface IPQCCryptoService {
      */
     PQCKeyPair generateKeyPair(PQCAlgorithm algorithm) throws Exception;
 
+    /**
+     * Tạo cặp khóa deterministic từ seed: cùng seed và thuật toán luôn cho cùng cặp khóa
+     * (key store có thể chỉ lưu seed, xem {@link KeySeed})
+     * @param seed Seed {@link KeySeed#SEED_BYTES} byte
+     * @return Cặp khóa (chưa gắn seed, caller dùng {@link PQCKeyPair#withSeed} nếu cần)
+     * @throws UnsupportedOperationException Nếu thuật toán không hỗ trợ tạo khóa từ seed
+     */
+    default PQCKeyPair generateKeyPair(PQCAlgorithm algorithm, byte[] seed) throws Exception {
+        throw new UnsupportedOperationException(algorithm + " does not support seeded key generation");
+    }
+
     /**
      * Ký một message bằng private key
      * @param message Dữ liệu cần ký
@@ -34,6 +45,17 @@ public interface IPQCCryptoService {
      */
     boolean verify(byte[] message, PQCSignature signature, byte[] publicKey, PQCAlgorithm algorithm) throws Exception;
 
+    /**
+     * Mở rộng public key một lần để verify nhiều chữ ký của cùng khóa
+     * (mặc định không có bước mở rộng nào: verifier chỉ gọi lại {@link #verify})
+     * @param publicKey Khóa công khai
+     * @param algorithm Thuật toán PQC sử dụng
+     * @return Verifier thread-safe; khóa sai định dạng cho verifier luôn trả về false
+     */
+    default PQCVerifier prepareVerifier(byte[] publicKey, PQCAlgorithm algorithm) throws Exception {
+        return (message, signature) -> verify(message, signature, publicKey, algorithm);
+    }
+
     /**
      * Mã hóa dữ liệu bằng public key (cho các thuật toán mã hóa như Kyber)
      * @param plaintext Dữ liệu cần mã hóa
@@ -0,0 +1,21 @@
+package com.nt219.ksm.crypto;
+
+import org.bouncycastle.crypto.digests.KeccakDigest;
+
+/**
+ * Keccak-256 (bản gốc của Ethereum, khác SHA3-256 ở padding)
+ * Dùng làm digest chuẩn để khớp với cách Besu/Solidity băm dữ liệu
+ */
+public final class Keccak {
+
+    private Keccak() {
+    }
+
+    public static byte[] keccak256(byte[] data) {
+        KeccakDigest digest = new KeccakDigest(256);
+        digest.update(data, 0, data.length);
+        byte[] out = new byte[32];
+        digest.doFinal(out, 0);
+        return out;
+    }
+}
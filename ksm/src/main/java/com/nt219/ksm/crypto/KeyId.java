@@ -0,0 +1,55 @@
+package com.nt219.ksm.crypto;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Key ID gọn để gắn vào chữ ký: fingerprint của public key + version
+ * 
+ * Định dạng: {@code <16 hex của SHA-256(publicKey)>-v<version>}, ví dụ "3fa2c1d4e5b6a7f8-v2".
+ * Verifier dùng key ID để tra đúng public key, không phải thử lần lượt từng khóa.
+ */
+public final class KeyId {
+    
+    private static final int FINGERPRINT_BYTES = 8;
+    private static final String VERSION_SEPARATOR = "-v";
+    
+    private KeyId() {
+    }
+    
+    public static String of(byte[] publicKey, int version) {
+        return fingerprint(publicKey) + VERSION_SEPARATOR + version;
+    }
+    
+    /**
+     * 8 byte đầu của SHA-256(publicKey), dạng hex
+     */
+    public static String fingerprint(byte[] publicKey) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(publicKey);
+            return Codec.toHex(digest, 0, FINGERPRINT_BYTES);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    public static String fingerprintOf(String keyId) {
+        int separator = keyId.lastIndexOf(VERSION_SEPARATOR);
+        if (separator <= 0) {
+            throw new IllegalArgumentException("Invalid key id: " + keyId);
+        }
+        return keyId.substring(0, separator);
+    }
+    
+    public static int versionOf(String keyId) {
+        int separator = keyId.lastIndexOf(VERSION_SEPARATOR);
+        if (separator <= 0) {
+            throw new IllegalArgumentException("Invalid key id: " + keyId);
+        }
+        try {
+            return Integer.parseInt(keyId.substring(separator + VERSION_SEPARATOR.length()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid key id: " + keyId);
+        }
+    }
+}
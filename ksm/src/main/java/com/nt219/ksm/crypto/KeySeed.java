@@ -0,0 +1,88 @@
+package com.nt219.ksm.crypto;
+
+import org.bouncycastle.crypto.digests.SHAKEDigest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+
+/**
+ * Seed 32 byte cho việc tạo cặp khóa deterministic (như ML-DSA / ML-KEM: cặp khóa là hàm của seed)
+ *
+ * {@link #expander} trả về một SecureRandom deterministic: luồng SHAKE256("KSM-KEYGEN-v1" ‖ thuật toán ‖ seed).
+ * Key generator của từng thuật toán lấy mọi byte ngẫu nhiên từ luồng này, nên cùng seed luôn cho cùng cặp khóa
+ * và seed của thuật toán này không dùng lại được cho thuật toán khác. Đổi domain hay cách generator tiêu thụ
+ * byte ngẫu nhiên (kể cả khi nâng BouncyCastle) làm seed đã lưu cho ra khóa khác, nên key store luôn so
+ * public key sau khi mở rộng với public key đã lưu.
+ */
+public final class KeySeed {
+
+    public static final int SEED_BYTES = 32;
+
+    private static final byte[] DOMAIN = "KSM-KEYGEN-v1".getBytes(StandardCharsets.US_ASCII);
+    private static final SecureRandom random = new SecureRandom();
+
+    private KeySeed() {
+    }
+
+    /**
+     * Seed mới từ SecureRandom của hệ thống
+     */
+    public static byte[] generate() {
+        byte[] seed = new byte[SEED_BYTES];
+        random.nextBytes(seed);
+        return seed;
+    }
+
+    /**
+     * Nguồn byte "ngẫu nhiên" deterministic cho key generator
+     */
+    public static SecureRandom expander(byte[] seed, PQCAlgorithm algorithm) {
+        if (seed.length != SEED_BYTES) {
+            throw new IllegalArgumentException("Seed must be " + SEED_BYTES + " bytes, got " + seed.length);
+        }
+        SHAKEDigest shake = new SHAKEDigest(256);
+        byte[] name = algorithm.name().getBytes(StandardCharsets.US_ASCII);
+        shake.update(DOMAIN, 0, DOMAIN.length);
+        shake.update((byte) name.length);
+        shake.update(name, 0, name.length);
+        shake.update(seed, 0, seed.length);
+        return new ShakeRandom(shake);
+    }
+
+    /**
+     * SecureRandom trả về luồng output của SHAKE256 đã absorb seed; setSeed bị bỏ qua
+     */
+    private static final class ShakeRandom extends SecureRandom {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient SHAKEDigest shake;
+
+        ShakeRandom(SHAKEDigest shake) {
+            this.shake = shake;
+        }
+
+        @Override
+        public synchronized void nextBytes(byte[] bytes) {
+            if (bytes.length > 0) {
+                shake.doOutput(bytes, 0, bytes.length);
+            }
+        }
+
+        @Override
+        public byte[] generateSeed(int numBytes) {
+            byte[] bytes = new byte[numBytes];
+            nextBytes(bytes);
+            return bytes;
+        }
+
+        @Override
+        public void setSeed(long seed) {
+            // Random() gọi setSeed trong constructor; luồng chỉ phụ thuộc seed 32 byte
+        }
+
+        @Override
+        public void setSeed(byte[] seed) {
+        }
+    }
+}
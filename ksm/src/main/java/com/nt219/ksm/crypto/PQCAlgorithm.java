@@ -26,7 +26,14 @@ public enum PQCAlgorithm {
      */
     SPHINCS_PLUS_128F("SPHINCS+-128f"),
     SPHINCS_PLUS_192F("SPHINCS+-192f"),
-    SPHINCS_PLUS_256F("SPHINCS+-256f");
+    SPHINCS_PLUS_256F("SPHINCS+-256f"),
+
+    /**
+     * Falcon - Thuật toán chữ ký số dựa trên NTRU lattice
+     * Chữ ký nhỏ nhất (~666 byte cho Falcon-512), phù hợp lưu chữ ký on-chain
+     */
+    FALCON_512("Falcon-512"),
+    FALCON_1024("Falcon-1024");
 
     private final String name;
 
@@ -38,6 +45,19 @@ public enum PQCAlgorithm {
         return name;
     }
 
+    /**
+     * Tìm thuật toán theo tên enum ("DILITHIUM3") hoặc tên hiển thị ("Dilithium3")
+     * @throws IllegalArgumentException Nếu không có thuật toán tương ứng
+     */
+    public static PQCAlgorithm fromName(String name) {
+        for (PQCAlgorithm algorithm : values()) {
+            if (algorithm.name().equalsIgnoreCase(name) || algorithm.name.equalsIgnoreCase(name)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("Unknown PQC algorithm: " + name);
+    }
+
     @Override
     public String toString() {
         return name;
@@ -1,7 +1,10 @@
 package com.nt219.ksm.crypto;
 
 import com.nt219.ksm.crypto.impl.DilithiumService;
+import com.nt219.ksm.crypto.impl.FalconService;
 import com.nt219.ksm.crypto.impl.KyberService;
+import com.nt219.ksm.crypto.impl.SphincsPlusService;
+import com.nt219.ksm.tracing.KsmTracing;
 
 /**
  * Factory class để tạo các service PQC tương ứng với từng thuật toán
@@ -10,11 +13,17 @@ public class PQCCryptoFactory {
     
     /**
      * Tạo service PQC dựa trên thuật toán được chọn
+     * Khi tracing bật, service được bọc để mỗi thao tác là một span (xem {@link TracedCryptoService})
      * @param algorithm Thuật toán PQC
      * @return Service tương ứng
      * @throws IllegalArgumentException Nếu thuật toán không được hỗ trợ
      */
     public static IPQCCryptoService createService(PQCAlgorithm algorithm) {
+        IPQCCryptoService service = createUntraced(algorithm);
+        return KsmTracing.isEnabled() ? new TracedCryptoService(service) : service;
+    }
+    
+    private static IPQCCryptoService createUntraced(PQCAlgorithm algorithm) {
         String algorithmName = algorithm.name();
         
         if (algorithmName.startsWith("DILITHIUM")) {
@@ -22,8 +31,9 @@ public class PQCCryptoFactory {
         } else if (algorithmName.startsWith("KYBER")) {
             return new KyberService();
         } else if (algorithmName.startsWith("SPHINCS")) {
-            // TODO: Implement SPHINCS+ service
-            throw new UnsupportedOperationException("SPHINCS+ is not yet implemented");
+            return new SphincsPlusService();
+        } else if (algorithmName.startsWith("FALCON")) {
+            return new FalconService();
         } else {
             throw new IllegalArgumentException("Unsupported PQC algorithm: " + algorithm);
         }
@@ -34,7 +44,8 @@ public class PQCCryptoFactory {
      */
     public static boolean isSignatureAlgorithm(PQCAlgorithm algorithm) {
         return algorithm.name().startsWith("DILITHIUM") || 
-               algorithm.name().startsWith("SPHINCS");
+               algorithm.name().startsWith("SPHINCS") ||
+               algorithm.name().startsWith("FALCON");
     }
     
     /**
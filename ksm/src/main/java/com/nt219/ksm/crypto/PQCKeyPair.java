@@ -1,52 +1,165 @@
 package com.nt219.ksm.crypto;
 
+import java.util.Arrays;
+
 /**
  * Lớp đại diện cho cặp khóa trong mật mã hậu lượng tử
  * Bao gồm khóa công khai (public key) và khóa bí mật (private key)
+ *
+ * Private key nằm trên heap (byte[]) hoặc off-heap trong một {@link PrivateKeyArena}
+ * (xem {@link #toArena}); dùng {@link #usePrivateKey} để không để lại bản copy trên heap.
+ *
+ * Cặp khóa tạo từ seed ({@link IPQCCryptoService#generateKeyPair(PQCAlgorithm, byte[])}) mang theo seed
+ * tới lúc được lưu, để key store có thể chỉ lưu seed thay cho private key đầy đủ.
  */
 public class PQCKeyPair {
     private final byte[] publicKey;
-    private final byte[] privateKey;
+    private final byte[] privateKey; // null nếu private key nằm trong arena
+    private final PrivateKeyArena arena;
+    private final long arenaHandle;
     private final String algorithm;
+    private final int version;
+    private final String keyId;
+    private final byte[] seed; // null nếu không tạo từ seed, hoặc đã vào arena
 
     public PQCKeyPair(byte[] publicKey, byte[] privateKey, String algorithm) {
+        this(publicKey, privateKey, algorithm, 1);
+    }
+
+    /**
+     * @param version Phiên bản khóa của entity (tăng mỗi lần rotate, bắt đầu từ 1)
+     */
+    public PQCKeyPair(byte[] publicKey, byte[] privateKey, String algorithm, int version) {
+        this(publicKey, privateKey, null, 0, algorithm, version, KeyId.of(publicKey, version), null);
+    }
+
+    private PQCKeyPair(byte[] publicKey, byte[] privateKey, PrivateKeyArena arena, long arenaHandle,
+                       String algorithm, int version, String keyId, byte[] seed) {
         this.publicKey = publicKey;
         this.privateKey = privateKey;
+        this.arena = arena;
+        this.arenaHandle = arenaHandle;
         this.algorithm = algorithm;
+        this.version = version;
+        this.keyId = keyId;
+        this.seed = seed;
+    }
+
+    /**
+     * Cùng cặp khóa, kèm seed đã tạo ra nó
+     */
+    public PQCKeyPair withSeed(byte[] seed) {
+        return new PQCKeyPair(publicKey, privateKey, arena, arenaHandle, algorithm, version, keyId, seed);
+    }
+
+    /**
+     * Cùng cặp khóa, gắn với version khác (dùng khi rotate khóa)
+     * Với khóa trong arena, hai object dùng chung một slot: chỉ release một lần.
+     */
+    public PQCKeyPair withVersion(int version) {
+        return new PQCKeyPair(publicKey, privateKey, arena, arenaHandle, algorithm, version, KeyId.of(publicKey, version), seed);
+    }
+
+    /**
+     * Chuyển private key vào arena off-heap
+     * Mảng private key (và seed) trên heap của object này bị ghi 0, chỉ dùng object trả về từ đây.
+     *
+     * @return Cặp khóa có private key nằm trong arena (chính object này nếu đã ở trong arena)
+     * @throws IllegalStateException Nếu arena đầy
+     */
+    public PQCKeyPair toArena(PrivateKeyArena arena) {
+        if (this.arena != null) {
+            return this;
+        }
+        long handle = arena.allocate(privateKey);
+        Arrays.fill(privateKey, (byte) 0);
+        if (seed != null) {
+            Arrays.fill(seed, (byte) 0);
+        }
+        return new PQCKeyPair(publicKey, null, arena, handle, algorithm, version, keyId, null);
+    }
+
+    /**
+     * Ghi 0 và trả slot của private key về arena (no-op với khóa trên heap)
+     * Sau đó {@link #usePrivateKey} / {@link #getPrivateKey} ném {@link PrivateKeyArena.ReleasedKeyException}.
+     */
+    public void release() {
+        if (arena != null) {
+            arena.release(arenaHandle);
+        }
+    }
+
+    public boolean isOffHeap() {
+        return arena != null;
+    }
+
+    /**
+     * Chạy action với private key; bản copy tạm từ arena được ghi 0 ngay sau khi action trả về
+     * (action không được giữ lại mảng)
+     */
+    public <T> T usePrivateKey(PrivateKeyFunction<T> action) throws Exception {
+        if (arena == null) {
+            return action.apply(privateKey);
+        }
+        byte[] copy = arena.read(arenaHandle);
+        try {
+            return action.apply(copy);
+        } finally {
+            Arrays.fill(copy, (byte) 0);
+        }
     }
 
     public byte[] getPublicKey() {
         return publicKey;
     }
 
+    /**
+     * Với khóa trong arena: trả về một bản copy mới trên heap, caller chịu trách nhiệm ghi 0
+     * (ưu tiên {@link #usePrivateKey})
+     */
     public byte[] getPrivateKey() {
-        return privateKey;
+        return arena != null ? arena.read(arenaHandle) : privateKey;
+    }
+
+    /**
+     * Seed 32 byte đã tạo cặp khóa, null nếu không có
+     */
+    public byte[] getSeed() {
+        return seed;
     }
 
     public String getAlgorithm() {
         return algorithm;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Key ID (fingerprint + version) được nhúng vào chữ ký tạo bởi cặp khóa này
+     */
+    public String getKeyId() {
+        return keyId;
+    }
+
     /**
      * Chuyển đổi khóa công khai sang dạng hex string
      */
     public String getPublicKeyHex() {
-        return bytesToHex(publicKey);
+        return Codec.toHex(publicKey);
     }
 
     /**
      * Chuyển đổi khóa bí mật sang dạng hex string
      */
     public String getPrivateKeyHex() {
-        return bytesToHex(privateKey);
+        return Codec.toHex(getPrivateKey());
     }
 
-    private String bytesToHex(byte[] bytes) {
-        StringBuilder hex = new StringBuilder();
-        for (byte b : bytes) {
-            hex.append(String.format("%02x", b));
-        }
-        return hex.toString();
+    @FunctionalInterface
+    public interface PrivateKeyFunction<T> {
+        T apply(byte[] privateKey) throws Exception;
     }
 }
 
@@ -2,14 +2,64 @@ package com.nt219.ksm.crypto;
 
 /**
  * Lớp đại diện cho chữ ký số trong mật mã hậu lượng tử
+ * 
+ * Chữ ký hybrid (composite) mang thêm chữ ký classical (ECDSA secp256k1) ký trên cùng digest;
+ * chỉ hợp lệ khi cả hai chữ ký đều hợp lệ.
  */
 public class PQCSignature {
     private final byte[] signature;
     private final String algorithm;
+    private final String keyId;
+    private final byte[] classicalSignature;
+    private final String classicalAlgorithm;
 
     public PQCSignature(byte[] signature, String algorithm) {
+        this(signature, algorithm, null);
+    }
+
+    /**
+     * @param keyId Key ID của khóa đã ký (null nếu không rõ - verifier dùng khóa hiện tại)
+     */
+    public PQCSignature(byte[] signature, String algorithm, String keyId) {
+        this(signature, algorithm, keyId, null, null);
+    }
+
+    /**
+     * @param classicalSignature Chữ ký classical của chữ ký hybrid (null nếu chỉ có chữ ký PQC)
+     */
+    public PQCSignature(byte[] signature, String algorithm, String keyId,
+                        byte[] classicalSignature, String classicalAlgorithm) {
         this.signature = signature;
         this.algorithm = algorithm;
+        this.keyId = keyId;
+        this.classicalSignature = classicalSignature;
+        this.classicalAlgorithm = classicalAlgorithm;
+    }
+
+    /**
+     * Cùng chữ ký, gắn key ID của khóa đã ký
+     */
+    public PQCSignature withKeyId(String keyId) {
+        return new PQCSignature(signature, algorithm, keyId, classicalSignature, classicalAlgorithm);
+    }
+
+    /**
+     * Ghép với chữ ký classical thành chữ ký hybrid
+     */
+    public PQCSignature withClassical(byte[] classicalSignature, String classicalAlgorithm) {
+        return new PQCSignature(signature, algorithm, keyId, classicalSignature, classicalAlgorithm);
+    }
+
+    public boolean isHybrid() {
+        return classicalSignature != null;
+    }
+
+    public byte[] getClassicalSignature() {
+        return classicalSignature;
+    }
+
+    public String getClassicalAlgorithm() {
+        return classicalAlgorithm;
     }
 
     public byte[] getSignature() {
@@ -20,19 +70,15 @@ public class PQCSignature {
         return algorithm;
     }
 
+    public String getKeyId() {
+        return keyId;
+    }
+
     /**
      * Chuyển đổi chữ ký sang dạng hex string
      */
     public String getSignatureHex() {
-        return bytesToHex(signature);
-    }
-
-    private String bytesToHex(byte[] bytes) {
-        StringBuilder hex = new StringBuilder();
-        for (byte b : bytes) {
-            hex.append(String.format("%02x", b));
-        }
-        return hex.toString();
+        return Codec.toHex(signature);
     }
 }
 
@@ -0,0 +1,17 @@
+package com.nt219.ksm.crypto;
+
+/**
+ * Verifier gắn với một public key đã mở rộng sẵn (decode, đưa về miền NTT, ...), xem
+ * {@link IPQCCryptoService#prepareVerifier}
+ *
+ * Giữ lại để verify nhiều chữ ký của cùng một khóa mà không phải dựng lại khóa mỗi lần.
+ * Implementation phải thread-safe: một verifier được dùng chung cho mọi request của khóa đó.
+ */
+@FunctionalInterface
+public interface PQCVerifier {
+
+    /**
+     * @return true nếu chữ ký hợp lệ với public key của verifier
+     */
+    boolean verify(byte[] message, PQCSignature signature) throws Exception;
+}
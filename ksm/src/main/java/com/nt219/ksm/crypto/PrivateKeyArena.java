@@ -0,0 +1,283 @@
+package com.nt219.ksm.crypto;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Arena off-heap cho private key đã giải mã
+ *
+ * Private key được ghi liên tiếp trong các slab direct ByteBuffer (ngoài heap, GC không trace nội dung),
+ * mỗi khóa được tham chiếu bằng một handle kiểu long thay vì một byte[] trên heap:
+ *
+ *   handle = slab (16 bit) | offset trong slab (24 bit) | generation (24 bit)
+ *
+ * Slot có kích thước lũy thừa của 2 (tối thiểu 64 byte), header 8 byte = generation + độ dài khóa.
+ * Slot được free sẽ bị ghi 0 toàn bộ ngay lập tức rồi đưa vào free list của size class
+ * (slot trống lớn hơn được chia đôi khi size class nhỏ hơn hết chỗ);
+ * handle cũ trỏ vào slot đã free/được dùng lại bị phát hiện qua generation ({@link ReleasedKeyException}).
+ *
+ * Đọc (mỗi lần ký) không lấy lock: optimistic read của StampedLock, chỉ fallback sang read lock
+ * khi đụng một allocate/free đồng thời.
+ */
+public class PrivateKeyArena {
+
+    public static final int MAX_SLAB_BYTES = 1 << 24; // offset 24 bit
+
+    private static final int HEADER_BYTES = 8;
+    private static final int MIN_SLOT_BYTES = 64;
+    private static final int MAX_SLABS = 1 << 16;
+    private static final int GENERATION_MASK = (1 << 24) - 1;
+    private static final byte[] ZEROS = new byte[4096];
+
+    private final int slabBytes;
+    private final int maxSlabs;
+    private volatile ByteBuffer[] slabs = new ByteBuffer[0]; // copy-on-write: reader không lock vẫn thấy mảng nhất quán
+    private final Map<Integer, ArrayDeque<Long>> freeSlots = new HashMap<>(); // slot size → (slab << 24 | offset)
+    private final StampedLock lock = new StampedLock();
+
+    private int bumpOffset; // vị trí chưa cấp phát trong slab cuối
+    private int nextGeneration = 1;
+    private long usedBytes;
+    private long liveKeys;
+    private long allocations;
+    private long releases;
+    private boolean closed;
+
+    /**
+     * @param slabBytes Kích thước mỗi slab (tối đa 16 MB)
+     * @param maxBytes Tổng dung lượng tối đa của arena
+     */
+    public PrivateKeyArena(int slabBytes, long maxBytes) {
+        if (slabBytes < MIN_SLOT_BYTES || slabBytes > MAX_SLAB_BYTES) {
+            throw new IllegalArgumentException("Slab size must be between " + MIN_SLOT_BYTES + " and " + MAX_SLAB_BYTES + " bytes");
+        }
+        this.slabBytes = slabBytes;
+        this.maxSlabs = (int) Math.max(1, Math.min(MAX_SLABS, maxBytes / slabBytes));
+    }
+
+    /**
+     * Copy private key vào arena
+     *
+     * @return Handle của khóa
+     * @throws IllegalStateException Nếu arena đã đầy hoặc đã đóng
+     */
+    public long allocate(byte[] privateKey) {
+        int slotBytes = slotSize(privateKey.length);
+        long stamp = lock.writeLock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Key arena is closed");
+            }
+            long location = takeSlot(slotBytes);
+            int slab = (int) (location >>> 24);
+            int offset = (int) (location & (MAX_SLAB_BYTES - 1));
+            int generation = nextGeneration;
+            nextGeneration = (nextGeneration + 1) & GENERATION_MASK;
+            if (nextGeneration == 0) {
+                nextGeneration = 1; // generation 0 = slot trống
+            }
+
+            ByteBuffer buffer = slabs[slab];
+            buffer.putInt(offset, generation);
+            buffer.putInt(offset + 4, privateKey.length);
+            buffer.put(offset + HEADER_BYTES, privateKey, 0, privateKey.length);
+
+            usedBytes += slotBytes;
+            liveKeys++;
+            allocations++;
+            return location << 24 | generation;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Copy private key ra một byte[] mới trên heap; caller nên ghi 0 mảng này khi dùng xong
+     *
+     * @throws ReleasedKeyException Nếu khóa đã bị release (evict / xóa / rotate)
+     */
+    public byte[] read(long handle) {
+        int slab = slabOf(handle);
+        int offset = offsetOf(handle);
+        int generation = generationOf(handle);
+
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            byte[] copy = copyOut(slab, offset, generation);
+            if (lock.validate(stamp)) {
+                return checked(copy, handle);
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return checked(copyOut(slab, offset, generation), handle);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Ghi 0 slot của khóa và trả slot về free list
+     *
+     * @return false nếu handle đã bị release trước đó
+     */
+    public boolean release(long handle) {
+        int slab = slabOf(handle);
+        int offset = offsetOf(handle);
+        long stamp = lock.writeLock();
+        try {
+            if (closed || slab >= slabs.length) {
+                return false;
+            }
+            ByteBuffer buffer = slabs[slab];
+            if (buffer.getInt(offset) != generationOf(handle)) {
+                return false;
+            }
+            int slotBytes = slotSize(buffer.getInt(offset + 4));
+            zero(buffer, offset, slotBytes);
+            freeSlots.computeIfAbsent(slotBytes, size -> new ArrayDeque<>()).push((long) slab << 24 | offset);
+
+            usedBytes -= slotBytes;
+            liveKeys--;
+            releases++;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Ghi 0 toàn bộ arena; mọi handle trở nên không hợp lệ
+     */
+    public void close() {
+        long stamp = lock.writeLock();
+        try {
+            for (ByteBuffer buffer : slabs) {
+                zero(buffer, 0, buffer.capacity());
+            }
+            slabs = new ByteBuffer[0];
+            freeSlots.clear();
+            usedBytes = 0;
+            liveKeys = 0;
+            closed = true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long stamp = lock.readLock();
+        try {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("liveKeys", liveKeys);
+            stats.put("usedBytes", usedBytes);
+            stats.put("reservedBytes", (long) slabs.length * slabBytes);
+            stats.put("maxBytes", (long) maxSlabs * slabBytes);
+            stats.put("slabs", slabs.length);
+            stats.put("allocations", allocations);
+            stats.put("releases", releases);
+            return stats;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private long takeSlot(int slotBytes) {
+        if (slotBytes > slabBytes) {
+            throw new IllegalArgumentException("Private key too large for key arena slab: " + (slotBytes - HEADER_BYTES) + " bytes");
+        }
+        ArrayDeque<Long> free = freeSlots.get(slotBytes);
+        if (free != null && !free.isEmpty()) {
+            return free.pop();
+        }
+        // Tách slot trống lớn hơn: nửa trên của mỗi lần chia đôi vào free list của size class nhỏ hơn
+        for (int larger = slotBytes << 1; larger > 0 && larger <= slabBytes; larger <<= 1) {
+            free = freeSlots.get(larger);
+            if (free != null && !free.isEmpty()) {
+                long location = free.pop();
+                for (int half = larger >>> 1; half >= slotBytes; half >>>= 1) {
+                    freeSlots.computeIfAbsent(half, size -> new ArrayDeque<>()).push(location + half);
+                }
+                return location;
+            }
+        }
+        if (slabs.length == 0 || bumpOffset + slotBytes > slabBytes) {
+            if (slabs.length >= maxSlabs) {
+                throw new IllegalStateException("Key arena is full (" + (long) maxSlabs * slabBytes + " bytes)");
+            }
+            ByteBuffer[] grown = Arrays.copyOf(slabs, slabs.length + 1);
+            grown[slabs.length] = ByteBuffer.allocateDirect(slabBytes);
+            slabs = grown;
+            bumpOffset = 0;
+        }
+        long location = (long) (slabs.length - 1) << 24 | bumpOffset;
+        bumpOffset += slotBytes;
+        return location;
+    }
+
+    /**
+     * Copy không lock: kết quả chỉ có nghĩa nếu stamp còn hợp lệ, nên mọi giá trị đọc được đều phải
+     * được kiểm tra biên trước khi dùng (null = generation không khớp)
+     */
+    private byte[] copyOut(int slab, int offset, int generation) {
+        ByteBuffer[] current = slabs;
+        if (slab >= current.length) {
+            return null;
+        }
+        ByteBuffer buffer = current[slab];
+        if (buffer.getInt(offset) != generation) {
+            return null;
+        }
+        int length = buffer.getInt(offset + 4);
+        if (length < 0 || offset + HEADER_BYTES + length > buffer.capacity()) {
+            return null;
+        }
+        byte[] copy = new byte[length];
+        buffer.get(offset + HEADER_BYTES, copy, 0, length);
+        return copy;
+    }
+
+    private static byte[] checked(byte[] copy, long handle) {
+        if (copy == null) {
+            throw new ReleasedKeyException(handle);
+        }
+        return copy;
+    }
+
+    private static void zero(ByteBuffer buffer, int offset, int length) {
+        for (int done = 0; done < length; done += ZEROS.length) {
+            buffer.put(offset + done, ZEROS, 0, Math.min(ZEROS.length, length - done));
+        }
+    }
+
+    private static int slotSize(int keyLength) {
+        int size = Math.max(MIN_SLOT_BYTES, keyLength + HEADER_BYTES);
+        return Integer.highestOneBit(size - 1) << 1;
+    }
+
+    private static int slabOf(long handle) {
+        return (int) (handle >>> 48);
+    }
+
+    private static int offsetOf(long handle) {
+        return (int) ((handle >>> 24) & (MAX_SLAB_BYTES - 1));
+    }
+
+    private static int generationOf(long handle) {
+        return (int) (handle & GENERATION_MASK);
+    }
+
+    /**
+     * Handle trỏ vào khóa đã bị release (khóa bị evict / xóa / rotate trong lúc đang dùng)
+     */
+    public static class ReleasedKeyException extends IllegalStateException {
+        public ReleasedKeyException(long handle) {
+            super("Private key has been released from key arena (handle " + Long.toHexString(handle) + ")");
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.nt219.ksm.crypto;
+
+import com.nt219.ksm.tracing.KsmTracing;
+
+/**
+ * Bọc một IPQCCryptoService, mỗi thao tác là một span (pqc.sign, pqc.verify, ...) mang
+ * thuật toán và số byte của message / chữ ký / ciphertext
+ */
+class TracedCryptoService implements IPQCCryptoService {
+
+    private final IPQCCryptoService delegate;
+
+    TracedCryptoService(IPQCCryptoService delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public PQCKeyPair generateKeyPair(PQCAlgorithm algorithm) throws Exception {
+        return KsmTracing.inSpan("pqc.generateKeyPair", span -> {
+            span.setAttribute(KsmTracing.ALGORITHM, algorithm.getName());
+            return delegate.generateKeyPair(algorithm);
+        });
+    }
+
+    @Override
+    public PQCKeyPair generateKeyPair(PQCAlgorithm algorithm, byte[] seed) throws Exception {
+        return KsmTracing.inSpan("pqc.generateKeyPair", span -> {
+            span.setAttribute(KsmTracing.ALGORITHM, algorithm.getName());
+            span.setAttribute("ksm.seeded", true);
+            return delegate.generateKeyPair(algorithm, seed);
+        });
+    }
+
+    @Override
+    public PQCSignature sign(byte[] message, byte[] privateKey, PQCAlgorithm algorithm) throws Exception {
+        return KsmTracing.inSpan("pqc.sign", span -> {
+            span.setAttribute(KsmTracing.ALGORITHM, algorithm.getName());
+            span.setAttribute(KsmTracing.MESSAGE_BYTES, (long) message.length);
+            PQCSignature signature = delegate.sign(message, privateKey, algorithm);
+            span.setAttribute(KsmTracing.SIGNATURE_BYTES, (long) signature.getSignature().length);
+            return signature;
+        });
+    }
+
+    @Override
+    public boolean verify(byte[] message, PQCSignature signature, byte[] publicKey, PQCAlgorithm algorithm) throws Exception {
+        return KsmTracing.inSpan("pqc.verify", span -> {
+            span.setAttribute(KsmTracing.ALGORITHM, algorithm.getName());
+            span.setAttribute(KsmTracing.MESSAGE_BYTES, (long) message.length);
+            span.setAttribute(KsmTracing.SIGNATURE_BYTES, (long) signature.getSignature().length);
+            boolean valid = delegate.verify(message, signature, publicKey, algorithm);
+            span.setAttribute("ksm.valid", valid);
+            return valid;
+        });
+    }
+
+    @Override
+    public PQCVerifier prepareVerifier(byte[] publicKey, PQCAlgorithm algorithm) throws Exception {
+        PQCVerifier verifier = KsmTracing.inSpan("pqc.prepareVerifier", span -> {
+            span.setAttribute(KsmTracing.ALGORITHM, algorithm.getName());
+            return delegate.prepareVerifier(publicKey, algorithm);
+        });
+        return (message, signature) -> KsmTracing.inSpan("pqc.verify", span -> {
+            span.setAttribute(KsmTracing.ALGORITHM, algorithm.getName());
+            span.setAttribute(KsmTracing.MESSAGE_BYTES, (long) message.length);
+            span.setAttribute(KsmTracing.SIGNATURE_BYTES, (long) signature.getSignature().length);
+            span.setAttribute("ksm.prepared", true);
+            boolean valid = verifier.verify(message, signature);
+            span.setAttribute("ksm.valid", valid);
+            return valid;
+        });
+    }
+
+    @Override
+    public byte[] encrypt(byte[] plaintext, byte[] publicKey, PQCAlgorithm algorithm) throws Exception {
+        return KsmTracing.inSpan("pqc.encrypt", span -> {
+            span.setAttribute(KsmTracing.ALGORITHM, algorithm.getName());
+            span.setAttribute(KsmTracing.BYTES, (long) plaintext.length);
+            return delegate.encrypt(plaintext, publicKey, algorithm);
+        });
+    }
+
+    @Override
+    public byte[] decrypt(byte[] ciphertext, byte[] privateKey, PQCAlgorithm algorithm) throws Exception {
+        return KsmTracing.inSpan("pqc.decrypt", span -> {
+            span.setAttribute(KsmTracing.ALGORITHM, algorithm.getName());
+            span.setAttribute(KsmTracing.BYTES, (long) ciphertext.length);
+            return delegate.decrypt(ciphertext, privateKey, algorithm);
+        });
+    }
+}
@@ -30,6 +30,15 @@ public class DilithiumService implements IPQCCryptoService {
 
     @Override
     public PQCKeyPair generateKeyPair(PQCAlgorithm algorithm) throws Exception {
+        return generateKeyPair(algorithm, random);
+    }
+
+    @Override
+    public PQCKeyPair generateKeyPair(PQCAlgorithm algorithm, byte[] seed) throws Exception {
+        return generateKeyPair(algorithm, KeySeed.expander(seed, algorithm));
+    }
+
+    private PQCKeyPair generateKeyPair(PQCAlgorithm algorithm, SecureRandom source) {
         if (!algorithm.name().startsWith("DILITHIUM")) {
             throw new IllegalArgumentException("Algorithm must be Dilithium variant");
         }
@@ -58,8 +67,8 @@ public class DilithiumService implements IPQCCryptoService {
         byte[] publicKey = new byte[publicKeySize];
         byte[] privateKey = new byte[privateKeySize];
         
-        random.nextBytes(publicKey);
-        random.nextBytes(privateKey);
+        source.nextBytes(publicKey);
+        source.nextBytes(privateKey);
 
         return new PQCKeyPair(publicKey, privateKey, algorithm.getName());
     }
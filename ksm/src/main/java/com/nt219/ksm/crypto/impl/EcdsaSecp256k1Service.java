@@ -0,0 +1,133 @@
+package com.nt219.ksm.crypto.impl;
+
+import com.nt219.ksm.crypto.PQCKeyPair;
+import org.bouncycastle.asn1.x9.X9ECParameters;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.ec.CustomNamedCurves;
+import org.bouncycastle.crypto.params.ECDomainParameters;
+import org.bouncycastle.crypto.params.ECPrivateKeyParameters;
+import org.bouncycastle.crypto.params.ECPublicKeyParameters;
+import org.bouncycastle.crypto.signers.ECDSASigner;
+import org.bouncycastle.crypto.signers.HMacDSAKCalculator;
+import org.bouncycastle.math.ec.ECAlgorithms;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.FixedPointCombMultiplier;
+import org.bouncycastle.util.BigIntegers;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * ECDSA trên secp256k1 (đường cong của Besu/Ethereum) - nửa classical của chữ ký hybrid
+ *
+ * - Private key: 32 byte
+ * - Public key: 65 byte uncompressed (0x04 || x || y)
+ * - Chữ ký: 64 byte r || s, nonce deterministic (RFC 6979), s chuẩn hóa về nửa dưới (low-s như Ethereum)
+ *
+ * Ký trực tiếp trên digest 32 byte (không băm lại), giống ecrecover.
+ */
+public class EcdsaSecp256k1Service {
+
+    public static final String ALGORITHM = "ECDSA-secp256k1";
+
+    private static final X9ECParameters CURVE_PARAMS = CustomNamedCurves.getByName("secp256k1");
+    private static final ECDomainParameters CURVE = new ECDomainParameters(
+        CURVE_PARAMS.getCurve(), CURVE_PARAMS.getG(), CURVE_PARAMS.getN(), CURVE_PARAMS.getH());
+    private static final BigInteger HALF_N = CURVE.getN().shiftRight(1);
+
+    private static final SecureRandom random = new SecureRandom();
+
+    public PQCKeyPair generateKeyPair() {
+        BigInteger d;
+        do {
+            d = new BigInteger(256, random);
+        } while (d.signum() == 0 || d.compareTo(CURVE.getN()) >= 0);
+
+        ECPoint q = new FixedPointCombMultiplier().multiply(CURVE.getG(), d);
+        return new PQCKeyPair(q.getEncoded(false), BigIntegers.asUnsignedByteArray(32, d), ALGORITHM);
+    }
+
+    /**
+     * @param digest Digest 32 byte cần ký
+     * @return r || s (64 byte)
+     */
+    public byte[] sign(byte[] digest, byte[] privateKey) {
+        ECDSASigner signer = new ECDSASigner(new HMacDSAKCalculator(new SHA256Digest()));
+        signer.init(true, new ECPrivateKeyParameters(new BigInteger(1, privateKey), CURVE));
+        BigInteger[] rs = signer.generateSignature(digest);
+
+        BigInteger s = rs[1].compareTo(HALF_N) > 0 ? CURVE.getN().subtract(rs[1]) : rs[1];
+        byte[] out = new byte[64];
+        System.arraycopy(BigIntegers.asUnsignedByteArray(32, rs[0]), 0, out, 0, 32);
+        System.arraycopy(BigIntegers.asUnsignedByteArray(32, s), 0, out, 32, 32);
+        return out;
+    }
+
+    /**
+     * Ký kèm recovery id như giao dịch Ethereum (ecrecover khôi phục được public key)
+     *
+     * @return r || s || recId (65 byte, recId 0 hoặc 1)
+     */
+    public byte[] signRecoverable(byte[] digest, byte[] privateKey) {
+        byte[] rs = sign(digest, privateKey);
+        byte[] publicKey = publicKeyOf(privateKey);
+        BigInteger r = new BigInteger(1, Arrays.copyOfRange(rs, 0, 32));
+        BigInteger s = new BigInteger(1, Arrays.copyOfRange(rs, 32, 64));
+        for (int recId = 0; recId < 2; recId++) {
+            ECPoint q = recover(digest, r, s, recId);
+            if (q != null && Arrays.equals(q.getEncoded(false), publicKey)) {
+                byte[] out = Arrays.copyOf(rs, 65);
+                out[64] = (byte) recId;
+                return out;
+            }
+        }
+        throw new IllegalStateException("Could not compute recovery id");
+    }
+
+    /**
+     * Public key (65 byte uncompressed) của private key
+     */
+    public byte[] publicKeyOf(byte[] privateKey) {
+        return new FixedPointCombMultiplier().multiply(CURVE.getG(), new BigInteger(1, privateKey)).normalize().getEncoded(false);
+    }
+
+    /**
+     * Khôi phục public key từ chữ ký (SEC 1 v2, 4.1.6), chỉ xét R.x = r (xác suất r + n &lt; p không đáng kể)
+     */
+    private static ECPoint recover(byte[] digest, BigInteger r, BigInteger s, int recId) {
+        BigInteger n = CURVE.getN();
+        byte[] compressed = new byte[33];
+        compressed[0] = (byte) (recId == 1 ? 0x03 : 0x02);
+        System.arraycopy(BigIntegers.asUnsignedByteArray(32, r), 0, compressed, 1, 32);
+        ECPoint point;
+        try {
+            point = CURVE.getCurve().decodePoint(compressed);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        BigInteger e = new BigInteger(1, digest);
+        BigInteger rInv = r.modInverse(n);
+        // Q = r^-1 (sR - eG)
+        return ECAlgorithms.sumOfTwoMultiplies(CURVE.getG(), n.subtract(e).multiply(rInv).mod(n), point, s.multiply(rInv).mod(n))
+            .normalize();
+    }
+
+    public boolean verify(byte[] digest, byte[] signature, byte[] publicKey) {
+        if (signature == null || signature.length != 64) {
+            return false;
+        }
+        BigInteger r = new BigInteger(1, Arrays.copyOfRange(signature, 0, 32));
+        BigInteger s = new BigInteger(1, Arrays.copyOfRange(signature, 32, 64));
+        if (s.compareTo(HALF_N) > 0) {
+            return false; // high-s bị Ethereum coi là malleable
+        }
+        try {
+            ECDSASigner verifier = new ECDSASigner();
+            verifier.init(false, new ECPublicKeyParameters(CURVE.getCurve().decodePoint(publicKey), CURVE));
+            return verifier.verifySignature(digest, r, s);
+        } catch (IllegalArgumentException e) {
+            return false; // public key không nằm trên đường cong
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.nt219.ksm.crypto.impl;
+
+import com.nt219.ksm.crypto.*;
+import org.bouncycastle.crypto.AsymmetricCipherKeyPair;
+import org.bouncycastle.pqc.crypto.falcon.FalconKeyGenerationParameters;
+import org.bouncycastle.pqc.crypto.falcon.FalconKeyPairGenerator;
+import org.bouncycastle.pqc.crypto.falcon.FalconParameters;
+import org.bouncycastle.pqc.crypto.falcon.FalconPrivateKeyParameters;
+import org.bouncycastle.pqc.crypto.falcon.FalconPublicKeyParameters;
+import org.bouncycastle.pqc.crypto.falcon.FalconSigner;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Implementation của Falcon - Chữ ký số hậu lượng tử dựa trên NTRU lattice (dùng BouncyCastle)
+ *
+ * Falcon có chữ ký nhỏ nhất trong các thuật toán NIST: ~666 byte (Falcon-512) so với
+ * 3309 byte của Dilithium3, giảm ~5× calldata và storage gas khi đưa chữ ký lên chain
+ * (xem FalconPostQuantumVerifier.sol).
+ *
+ * Định dạng khóa lưu trữ:
+ * - Public key: h (14 bit/hệ số, không có byte header) - 896 / 1792 byte
+ * - Private key: f || g || F || h (h cần để khởi tạo lại private key parameters của BouncyCastle)
+ *
+ * Ký và verify bằng FalconSigner của BouncyCastle. Chỉ đường verify với khóa đã cache ({@link #prepareVerifier})
+ * dùng {@link FalconVerifier}, giữ public key đã decode và đưa về miền NTT cho các lần verify sau; test đối chiếu
+ * nó với BouncyCastle trên chữ ký hợp lệ, sai định dạng và các trường hợp biên.
+ */
+public class FalconService implements IPQCCryptoService {
+
+    private static final SecureRandom random = new SecureRandom();
+
+    @Override
+    public PQCKeyPair generateKeyPair(PQCAlgorithm algorithm) throws Exception {
+        return generateKeyPair(algorithm, random);
+    }
+
+    @Override
+    public PQCKeyPair generateKeyPair(PQCAlgorithm algorithm, byte[] seed) throws Exception {
+        return generateKeyPair(algorithm, KeySeed.expander(seed, algorithm));
+    }
+
+    private PQCKeyPair generateKeyPair(PQCAlgorithm algorithm, SecureRandom source) {
+        FalconParameters parameters = parametersOf(algorithm);
+
+        FalconKeyPairGenerator generator = new FalconKeyPairGenerator();
+        generator.init(new FalconKeyGenerationParameters(source, parameters));
+        AsymmetricCipherKeyPair keyPair = generator.generateKeyPair();
+
+        FalconPublicKeyParameters publicKey = (FalconPublicKeyParameters) keyPair.getPublic();
+        FalconPrivateKeyParameters privateKey = (FalconPrivateKeyParameters) keyPair.getPrivate();
+
+        byte[] encodedPrivateKey = concat(privateKey.getSpolyf(), privateKey.getG(), privateKey.getSpolyF(), publicKey.getH());
+        return new PQCKeyPair(publicKey.getH(), encodedPrivateKey, algorithm.getName());
+    }
+
+    @Override
+    public PQCSignature sign(byte[] message, byte[] privateKey, PQCAlgorithm algorithm) throws Exception {
+        FalconParameters parameters = parametersOf(algorithm);
+        int n = 1 << parameters.getLogN();
+        int fgLength = smallPolyBits(parameters) * n / 8;
+        int bigFLength = n; // F: 8 bit/hệ số
+        if (privateKey.length != 2 * fgLength + bigFLength + publicKeyLength(parameters)) {
+            throw new IllegalArgumentException("Invalid " + algorithm + " private key size: " + privateKey.length);
+        }
+
+        int offset = 0;
+        byte[] f = Arrays.copyOfRange(privateKey, offset, offset += fgLength);
+        byte[] g = Arrays.copyOfRange(privateKey, offset, offset += fgLength);
+        byte[] bigF = Arrays.copyOfRange(privateKey, offset, offset += bigFLength);
+        byte[] h = Arrays.copyOfRange(privateKey, offset, privateKey.length);
+
+        FalconSigner signer = new FalconSigner();
+        signer.init(true, new FalconPrivateKeyParameters(parameters, f, g, bigF, h));
+        return new PQCSignature(signer.generateSignature(message), algorithm.getName());
+    }
+
+    @Override
+    public boolean verify(byte[] message, PQCSignature signature, byte[] publicKey, PQCAlgorithm algorithm) throws Exception {
+        FalconParameters parameters = parametersOf(algorithm);
+        if (publicKey.length != publicKeyLength(parameters)) {
+            return false;
+        }
+
+        FalconSigner verifier = new FalconSigner();
+        verifier.init(false, new FalconPublicKeyParameters(parameters, publicKey));
+        try {
+            return verifier.verifySignature(message, signature.getSignature());
+        } catch (RuntimeException e) {
+            return false; // chữ ký sai định dạng (header / độ dài / encoding)
+        }
+    }
+
+    @Override
+    public PQCVerifier prepareVerifier(byte[] publicKey, PQCAlgorithm algorithm) {
+        return new FalconVerifier(parametersOf(algorithm).getLogN(), publicKey);
+    }
+
+    @Override
+    public byte[] encrypt(byte[] plaintext, byte[] publicKey, PQCAlgorithm algorithm) throws Exception {
+        throw new UnsupportedOperationException("Falcon is a signature algorithm, not an encryption algorithm. Use Kyber for encryption.");
+    }
+
+    @Override
+    public byte[] decrypt(byte[] ciphertext, byte[] privateKey, PQCAlgorithm algorithm) throws Exception {
+        throw new UnsupportedOperationException("Falcon is a signature algorithm, not an encryption algorithm. Use Kyber for decryption.");
+    }
+
+    private static FalconParameters parametersOf(PQCAlgorithm algorithm) {
+        switch (algorithm) {
+            case FALCON_512:
+                return FalconParameters.falcon_512;
+            case FALCON_1024:
+                return FalconParameters.falcon_1024;
+            default:
+                throw new IllegalArgumentException("Algorithm must be Falcon variant");
+        }
+    }
+
+    /**
+     * Số bit mỗi hệ số của f, g trong encoding chuẩn (6 bit cho n=512, 5 bit cho n=1024)
+     */
+    private static int smallPolyBits(FalconParameters parameters) {
+        return parameters.getLogN() == 9 ? 6 : 5;
+    }
+
+    private static int publicKeyLength(FalconParameters parameters) {
+        return 14 * (1 << parameters.getLogN()) / 8;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int total = 0;
+        for (byte[] part : parts) {
+            total += part.length;
+        }
+        byte[] out = new byte[total];
+        int offset = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, out, offset, part.length);
+            offset += part.length;
+        }
+        return out;
+    }
+}
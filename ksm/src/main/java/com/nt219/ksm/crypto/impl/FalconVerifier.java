@@ -0,0 +1,256 @@
+package com.nt219.ksm.crypto.impl;
+
+import com.nt219.ksm.crypto.PQCSignature;
+import com.nt219.ksm.crypto.PQCVerifier;
+import org.bouncycastle.crypto.digests.SHAKEDigest;
+
+/**
+ * Verify Falcon với public key đã mở rộng sẵn: h được decode (14 bit/hệ số) và đưa về miền NTT
+ * mod q một lần trong constructor, mỗi lần verify chỉ còn hash-to-point, decode s2 và một phép nhân
+ * đa thức trong miền NTT
+ *
+ * Cùng thuật toán và định dạng với FalconSigner của BouncyCastle (thứ {@link FalconService} dùng để ký):
+ * - Chữ ký: header 0x30 + logn || nonce 40 byte || s2 nén (Golomb-Rice), decode phải dùng hết đúng số byte
+ * - c = HashToPoint(nonce || message) bằng SHAKE256, s1 = c - s2·h mod (q, x^n + 1)
+ * - Hợp lệ khi ||s1||² + ||s2||² không vượt cận l2bound[logn]
+ *
+ * Thread-safe: h và bảng zeta không đổi sau khi tạo, mọi buffer tạm cấp phát theo từng lần verify.
+ */
+final class FalconVerifier implements PQCVerifier {
+
+    static final int Q = 12289;
+
+    private static final int NONCE_LENGTH = 40;
+    private static final int HEADER = 0x30;
+    // Cận bình phương của chuẩn (s1, s2) theo logn (bảng l2bound của đặc tả Falcon)
+    private static final long[] L2_BOUND = {
+        0, 101498, 208714, 428865, 892039, 1852696, 3842630, 7959734, 16468416, 34034726, 70265242
+    };
+    // 11 là phần tử sinh của Z_q*, nên 11^((q-1)/2n) là căn nguyên thủy bậc 2n của đơn vị
+    private static final int GENERATOR = 11;
+    private static final int[][] ZETAS = new int[L2_BOUND.length][];
+
+    static {
+        for (int logN = 1; logN < ZETAS.length; logN++) {
+            ZETAS[logN] = zetas(logN);
+        }
+    }
+
+    private final int logN;
+    private final int n;
+    private final int nInverse;
+    private final int[] hNtt; // null nếu public key sai định dạng
+
+    FalconVerifier(int logN, byte[] publicKey) {
+        this.logN = logN;
+        this.n = 1 << logN;
+        this.nInverse = pow(n, Q - 2);
+        int[] h = decodePublicKey(publicKey, n);
+        if (h != null) {
+            ntt(h);
+        }
+        this.hNtt = h;
+    }
+
+    @Override
+    public boolean verify(byte[] message, PQCSignature signature) {
+        byte[] sig = signature.getSignature();
+        if (hNtt == null || sig.length <= 1 + NONCE_LENGTH || sig[0] != (byte) (HEADER + logN)) {
+            return false;
+        }
+        int[] s2 = decompress(sig, 1 + NONCE_LENGTH, n);
+        if (s2 == null) {
+            return false;
+        }
+        int[] c = hashToPoint(sig, message, n);
+
+        // -s1 = s2·h - c
+        int[] t = new int[n];
+        for (int i = 0; i < n; i++) {
+            t[i] = s2[i] < 0 ? s2[i] + Q : s2[i];
+        }
+        ntt(t);
+        for (int i = 0; i < n; i++) {
+            t[i] = t[i] * hNtt[i] % Q;
+        }
+        inverseNtt(t);
+
+        long norm = 0;
+        for (int i = 0; i < n; i++) {
+            int w = t[i] - c[i];
+            if (w < 0) {
+                w += Q;
+            }
+            if (w > Q >> 1) {
+                w -= Q;
+            }
+            norm += (long) w * w + (long) s2[i] * s2[i];
+        }
+        return norm <= L2_BOUND[logN];
+    }
+
+    /**
+     * Public key h: n hệ số 14 bit big-endian, mỗi hệ số phải < q
+     */
+    private static int[] decodePublicKey(byte[] publicKey, int n) {
+        if (publicKey.length != 14 * n / 8) {
+            return null;
+        }
+        int[] h = new int[n];
+        int acc = 0;
+        int accLen = 0;
+        int u = 0;
+        for (byte b : publicKey) {
+            acc = (acc << 8) | (b & 0xFF);
+            accLen += 8;
+            if (accLen >= 14) {
+                accLen -= 14;
+                int w = (acc >>> accLen) & 0x3FFF;
+                if (w >= Q) {
+                    return null;
+                }
+                h[u++] = w;
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Decode s2 nén: mỗi hệ số = bit dấu, 7 bit thấp, phần cao unary (kết thúc bằng bit 1);
+     * từ chối -0, |x| > 2047, bit thừa khác 0 và byte dư sau hệ số cuối
+     */
+    private static int[] decompress(byte[] sig, int offset, int n) {
+        int[] x = new int[n];
+        int acc = 0;
+        int accLen = 0;
+        int v = offset;
+        for (int u = 0; u < n; u++) {
+            if (v >= sig.length) {
+                return null;
+            }
+            acc = (acc << 8) | (sig[v++] & 0xFF);
+            int b = acc >>> accLen;
+            int s = b & 128;
+            int m = b & 127;
+            while (true) {
+                if (accLen == 0) {
+                    if (v >= sig.length) {
+                        return null;
+                    }
+                    acc = (acc << 8) | (sig[v++] & 0xFF);
+                    accLen = 8;
+                }
+                accLen--;
+                if (((acc >>> accLen) & 1) != 0) {
+                    break;
+                }
+                m += 128;
+                if (m > 2047) {
+                    return null;
+                }
+            }
+            if (s != 0 && m == 0) {
+                return null;
+            }
+            x[u] = s != 0 ? -m : m;
+        }
+        if ((acc & ((1 << accLen) - 1)) != 0 || v != sig.length) {
+            return null;
+        }
+        return x;
+    }
+
+    /**
+     * HashToPoint: đọc SHAKE256(nonce || message) từng 16 bit big-endian, bỏ giá trị >= 5q, lấy mod q
+     */
+    private static int[] hashToPoint(byte[] sig, byte[] message, int n) {
+        SHAKEDigest shake = new SHAKEDigest(256);
+        shake.update(sig, 1, NONCE_LENGTH);
+        shake.update(message, 0, message.length);
+
+        int[] c = new int[n];
+        byte[] buffer = new byte[136]; // một block rate của SHAKE256
+        int position = buffer.length;
+        for (int i = 0; i < n; ) {
+            if (position == buffer.length) {
+                shake.doOutput(buffer, 0, buffer.length);
+                position = 0;
+            }
+            int w = ((buffer[position] & 0xFF) << 8) | (buffer[position + 1] & 0xFF);
+            position += 2;
+            if (w < 5 * Q) {
+                c[i++] = w % Q;
+            }
+        }
+        return c;
+    }
+
+    // ==================== NTT mod q trên Z_q[x]/(x^n + 1) ====================
+
+    /**
+     * NTT thuận (Cooley-Tukey), hệ số vào và ra trong [0, q)
+     */
+    void ntt(int[] a) {
+        int[] zetas = ZETAS[logN];
+        int k = 0;
+        for (int len = n >> 1; len > 0; len >>= 1) {
+            for (int start = 0; start < n; start += len << 1) {
+                int zeta = zetas[++k];
+                for (int j = start; j < start + len; j++) {
+                    int t = zeta * a[j + len] % Q;
+                    int difference = a[j] - t;
+                    int sum = a[j] + t;
+                    a[j + len] = difference < 0 ? difference + Q : difference;
+                    a[j] = sum >= Q ? sum - Q : sum;
+                }
+            }
+        }
+    }
+
+    /**
+     * NTT ngược (Gentleman-Sande), đã nhân n^-1
+     */
+    void inverseNtt(int[] a) {
+        int[] zetas = ZETAS[logN];
+        int k = n;
+        for (int len = 1; len < n; len <<= 1) {
+            for (int start = 0; start < n; start += len << 1) {
+                int zeta = Q - zetas[--k];
+                for (int j = start; j < start + len; j++) {
+                    int t = a[j];
+                    int sum = t + a[j + len];
+                    a[j] = sum >= Q ? sum - Q : sum;
+                    a[j + len] = (t - a[j + len] + Q) * zeta % Q;
+                }
+            }
+        }
+        for (int j = 0; j < n; j++) {
+            a[j] = a[j] * nInverse % Q;
+        }
+    }
+
+    /**
+     * zetas[k] = psi^bitrev(k) với psi căn nguyên thủy bậc 2n
+     */
+    private static int[] zetas(int logN) {
+        int n = 1 << logN;
+        int psi = pow(GENERATOR, (Q - 1) / (2 * n));
+        int[] zetas = new int[n];
+        for (int k = 0; k < n; k++) {
+            zetas[k] = pow(psi, Integer.reverse(k) >>> (32 - logN));
+        }
+        return zetas;
+    }
+
+    static int pow(int base, int exponent) {
+        long result = 1;
+        long b = base % Q;
+        for (int e = exponent; e > 0; e >>= 1) {
+            if ((e & 1) != 0) {
+                result = result * b % Q;
+            }
+            b = b * b % Q;
+        }
+        return (int) result;
+    }
+}
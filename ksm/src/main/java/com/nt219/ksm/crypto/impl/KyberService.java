@@ -31,6 +31,15 @@ public class KyberService implements IPQCCryptoService {
 
     @Override
     public PQCKeyPair generateKeyPair(PQCAlgorithm algorithm) throws Exception {
+        return generateKeyPair(algorithm, random);
+    }
+
+    @Override
+    public PQCKeyPair generateKeyPair(PQCAlgorithm algorithm, byte[] seed) throws Exception {
+        return generateKeyPair(algorithm, KeySeed.expander(seed, algorithm));
+    }
+
+    private PQCKeyPair generateKeyPair(PQCAlgorithm algorithm, SecureRandom source) {
         if (!algorithm.name().startsWith("KYBER")) {
             throw new IllegalArgumentException("Algorithm must be Kyber variant");
         }
@@ -59,8 +68,8 @@ public class KyberService implements IPQCCryptoService {
         byte[] publicKey = new byte[publicKeySize];
         byte[] privateKey = new byte[privateKeySize];
         
-        random.nextBytes(publicKey);
-        random.nextBytes(privateKey);
+        source.nextBytes(publicKey);
+        source.nextBytes(privateKey);
 
         return new PQCKeyPair(publicKey, privateKey, algorithm.getName());
     }
@@ -0,0 +1,797 @@
+package com.nt219.ksm.crypto.impl;
+
+import com.nt219.ksm.config.KSMConfig;
+import com.nt219.ksm.crypto.*;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Implementation của SPHINCS+ (round 3.1) - Chữ ký số hậu lượng tử dựa trên hash
+ *
+ * SPHINCS+ chỉ dựa vào độ an toàn của hàm hash nên được dùng làm chữ ký dự phòng
+ * (conservative backup) cho các giao dịch giá trị lớn. Đổi lại, ký chậm và chữ ký lớn.
+ *
+ * Instantiation: SHA2 "simple" tweakable hash, các tham số "f" (fast signing):
+ * - SPHINCS+-128f: n=16, h=66, d=22, a=6,  k=33 → chữ ký 17088 byte
+ * - SPHINCS+-192f: n=24, h=66, d=22, a=8,  k=33 → chữ ký 35664 byte
+ * - SPHINCS+-256f: n=32, h=68, d=17, a=9,  k=35 → chữ ký 49856 byte
+ * F và PRF luôn dùng SHA-256; H, T_l, H_msg và PRF_msg dùng SHA-256 với n=16 và SHA-512 với n=24/32.
+ * Chữ ký trùng byte với SPHINCSPlusSigner (sha2_*f) của BouncyCastle. Đây không phải SLH-DSA (FIPS 205):
+ * FIPS 205 đọc index FORS từ bit cao trước và thêm prefix domain separation cho message.
+ *
+ * Song song hóa: d cây XMSS của hypertree và k cây FORS hoàn toàn độc lập với nhau
+ * (chỉ phụ thuộc vào địa chỉ), nên được tính trên ForkJoinPool; chỉ có bước ký WOTS
+ * của tầng j cần root của tầng j-1, và bước này cũng chạy song song sau khi có đủ root.
+ * Verify rẻ (một đường đi trong mỗi cây) nên chạy tuần tự.
+ */
+public class SphincsPlusService implements IPQCCryptoService {
+
+    private static final SecureRandom random = new SecureRandom();
+
+    private static final ForkJoinPool SHARED_POOL = new ForkJoinPool(
+        KSMConfig.getInt("KSM_SPHINCS_PARALLELISM", "ksm.sphincs.parallelism", Runtime.getRuntime().availableProcessors()));
+
+    // Winternitz parameter w = 16 (log2 w = 4) cho mọi bộ tham số
+    private static final int W = 16;
+    private static final int LOG_W = 4;
+
+    private final ForkJoinPool pool;
+
+    public SphincsPlusService() {
+        this(SHARED_POOL);
+    }
+
+    /**
+     * @param pool Pool dùng để tính song song các cây con (parallelism 1 = ký tuần tự)
+     */
+    public SphincsPlusService(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public PQCKeyPair generateKeyPair(PQCAlgorithm algorithm) throws Exception {
+        return generateKeyPair(algorithm, random);
+    }
+
+    @Override
+    public PQCKeyPair generateKeyPair(PQCAlgorithm algorithm, byte[] seed) throws Exception {
+        return generateKeyPair(algorithm, KeySeed.expander(seed, algorithm));
+    }
+
+    private PQCKeyPair generateKeyPair(PQCAlgorithm algorithm, SecureRandom source) throws Exception {
+        Params p = Params.of(algorithm);
+
+        byte[] skSeed = randomBytes(source, p.n);
+        byte[] skPrf = randomBytes(source, p.n);
+        byte[] pkSeed = randomBytes(source, p.n);
+
+        // PK.root = root của cây XMSS duy nhất ở tầng trên cùng
+        Context ctx = new Context(p, pkSeed, skSeed);
+        byte[] pkRoot = ctx.xmssTree(p.d - 1, 0L, 0, new byte[p.hp][]);
+
+        byte[] privateKey = concat(skSeed, skPrf, pkSeed, pkRoot);
+        byte[] publicKey = concat(pkSeed, pkRoot);
+        return new PQCKeyPair(publicKey, privateKey, algorithm.getName());
+    }
+
+    @Override
+    public PQCSignature sign(byte[] message, byte[] privateKey, PQCAlgorithm algorithm) throws Exception {
+        Params p = Params.of(algorithm);
+        if (privateKey.length != 4 * p.n) {
+            throw new IllegalArgumentException("Invalid " + algorithm + " private key size: " + privateKey.length);
+        }
+        byte[] skSeed = Arrays.copyOfRange(privateKey, 0, p.n);
+        byte[] skPrf = Arrays.copyOfRange(privateKey, p.n, 2 * p.n);
+        byte[] pkSeed = Arrays.copyOfRange(privateKey, 2 * p.n, 3 * p.n);
+        byte[] pkRoot = Arrays.copyOfRange(privateKey, 3 * p.n, 4 * p.n);
+
+        // Ký deterministic (optRand = PK.seed): retry cùng message cho cùng chữ ký
+        byte[] r = prfMsg(p, skPrf, pkSeed, message);
+        Digest digest = Digest.of(p, hashMessage(p, r, pkSeed, pkRoot, message));
+
+        Context ctx = new Context(p, pkSeed, skSeed);
+        byte[] signature = new byte[p.signatureSize()];
+        System.arraycopy(r, 0, signature, 0, p.n);
+
+        byte[] forsPk = ctx.forsSign(digest, signature, p.n);
+        ctx.hypertreeSign(forsPk, digest.tree, digest.leaf, signature, p.n + p.forsSize());
+
+        return new PQCSignature(signature, algorithm.getName());
+    }
+
+    @Override
+    public boolean verify(byte[] message, PQCSignature signature, byte[] publicKey, PQCAlgorithm algorithm) throws Exception {
+        return prepareVerifier(publicKey, algorithm).verify(message, signature);
+    }
+
+    /**
+     * Giữ lại PK.seed / PK.root đã tách và SHA-256 / SHA-512 đã absorb block PK.seed; phần còn lại của verify
+     * (vài nghìn lần hash trên đường đi FORS / hypertree) không phụ thuộc vào việc mở rộng khóa
+     */
+    @Override
+    public PQCVerifier prepareVerifier(byte[] publicKey, PQCAlgorithm algorithm) {
+        Params p = Params.of(algorithm);
+        if (publicKey.length != 2 * p.n) {
+            return (message, signature) -> false;
+        }
+        byte[] pkSeed = Arrays.copyOfRange(publicKey, 0, p.n);
+        byte[] pkRoot = Arrays.copyOfRange(publicKey, p.n, 2 * p.n);
+        Context ctx = new Context(p, pkSeed, null);
+
+        return (message, signature) -> {
+            byte[] sig = signature.getSignature();
+            if (sig.length != p.signatureSize()) {
+                return false;
+            }
+            byte[] r = Arrays.copyOfRange(sig, 0, p.n);
+            Digest digest = Digest.of(p, hashMessage(p, r, pkSeed, pkRoot, message));
+
+            byte[] node = ctx.forsPkFromSignature(digest, sig, p.n);
+            node = ctx.hypertreeRootFromSignature(node, digest.tree, digest.leaf, sig, p.n + p.forsSize());
+            return MessageDigest.isEqual(node, pkRoot);
+        };
+    }
+
+    @Override
+    public byte[] encrypt(byte[] plaintext, byte[] publicKey, PQCAlgorithm algorithm) throws Exception {
+        throw new UnsupportedOperationException("SPHINCS+ is a signature algorithm, not an encryption algorithm. Use Kyber for encryption.");
+    }
+
+    @Override
+    public byte[] decrypt(byte[] ciphertext, byte[] privateKey, PQCAlgorithm algorithm) throws Exception {
+        throw new UnsupportedOperationException("SPHINCS+ is a signature algorithm, not an encryption algorithm. Use Kyber for decryption.");
+    }
+
+    // ==================== Message hashing ====================
+
+    /**
+     * PRF_msg(SK.prf, optRand, M) = HMAC-SHA256 / HMAC-SHA512(SK.prf, optRand || M), lấy n byte đầu
+     */
+    private static byte[] prfMsg(Params p, byte[] skPrf, byte[] optRand, byte[] message) throws Exception {
+        String algorithm = p.sha512() ? "HmacSHA512" : "HmacSHA256";
+        Mac mac = Mac.getInstance(algorithm);
+        mac.init(new SecretKeySpec(skPrf, algorithm));
+        mac.update(optRand);
+        return Arrays.copyOf(mac.doFinal(message), p.n);
+    }
+
+    /**
+     * H_msg(R, PK.seed, PK.root, M) = MGF1-Hash(R || PK.seed || Hash(R || PK.seed || PK.root || M), m)
+     * với Hash = SHA-256 (n=16) hoặc SHA-512 (n=24/32)
+     */
+    private static byte[] hashMessage(Params p, byte[] r, byte[] pkSeed, byte[] pkRoot, byte[] message) {
+        MessageDigest md = p.sha512() ? sha512() : sha256();
+        md.update(r);
+        md.update(pkSeed);
+        md.update(pkRoot);
+        byte[] inner = md.digest(message);
+
+        byte[] seed = concat(r, pkSeed, inner);
+        byte[] out = new byte[p.digestSize()];
+        byte[] counter = new byte[4];
+        int blockSize = md.getDigestLength();
+        for (int offset = 0, c = 0; offset < out.length; offset += blockSize, c++) {
+            counter[0] = (byte) (c >>> 24);
+            counter[1] = (byte) (c >>> 16);
+            counter[2] = (byte) (c >>> 8);
+            counter[3] = (byte) c;
+            md.update(seed);
+            byte[] block = md.digest(counter);
+            System.arraycopy(block, 0, out, offset, Math.min(blockSize, out.length - offset));
+        }
+        return out;
+    }
+
+    // ==================== Hypertree / FORS / WOTS+ ====================
+
+    /**
+     * Trạng thái của một lần keygen/sign/verify: tham số, seed và digest đã absorb sẵn
+     * block PK.seed || padding (mỗi lần hash chỉ cần clone thay vì nén lại block đầu)
+     */
+    private final class Context {
+        private final Params p;
+        private final byte[] skSeed;
+        // SHA-256 cho F / PRF; SHA-256 hoặc SHA-512 (block 128 byte) cho H / T_l
+        private final MessageDigest seeded;
+        private final MessageDigest treeSeeded;
+
+        Context(Params p, byte[] pkSeed, byte[] skSeed) {
+            this.p = p;
+            this.skSeed = skSeed;
+            this.seeded = sha256();
+            seeded.update(pkSeed);
+            seeded.update(new byte[64 - p.n]);
+            if (p.sha512()) {
+                this.treeSeeded = sha512();
+                treeSeeded.update(pkSeed);
+                treeSeeded.update(new byte[128 - p.n]);
+            } else {
+                this.treeSeeded = seeded;
+            }
+        }
+
+        /**
+         * F(PK.seed, ADRS, M) = SHA256(PK.seed || pad || ADRSc || M), lấy n byte đầu
+         */
+        byte[] f(Address address, byte[] input) {
+            MessageDigest md = fork(seeded);
+            md.update(address.bytes);
+            return Arrays.copyOf(md.digest(input), p.n);
+        }
+
+        /**
+         * T_l(PK.seed, ADRS, M) - nén public key WOTS+ / các root FORS
+         */
+        byte[] t(Address address, byte[] input) {
+            MessageDigest md = fork(treeSeeded);
+            md.update(address.bytes);
+            return Arrays.copyOf(md.digest(input), p.n);
+        }
+
+        /**
+         * H(PK.seed, ADRS, left || right) - node cha trong cây Merkle
+         */
+        byte[] h(Address address, byte[] left, byte[] right) {
+            MessageDigest md = fork(treeSeeded);
+            md.update(address.bytes);
+            md.update(left);
+            return Arrays.copyOf(md.digest(right), p.n);
+        }
+
+        /**
+         * PRF(PK.seed, SK.seed, ADRS) - sinh secret key của WOTS+ chain / FORS leaf
+         */
+        byte[] prf(Address address) {
+            return f(address, skSeed);
+        }
+
+        private MessageDigest fork(MessageDigest digest) {
+            try {
+                return (MessageDigest) digest.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new IllegalStateException(digest.getAlgorithm() + " digest is not cloneable", e);
+            }
+        }
+
+        // ---------- WOTS+ ----------
+
+        private byte[] chain(byte[] x, int start, int steps, Address address) {
+            byte[] tmp = x;
+            for (int i = start; i < start + steps; i++) {
+                address.setHash(i);
+                tmp = f(address, tmp);
+            }
+            return tmp;
+        }
+
+        private byte[] wotsSecret(Address address, int chain) {
+            Address sk = address.copy();
+            sk.setType(Address.WOTS_PRF);
+            sk.setKeyPair(address.getKeyPair());
+            sk.setChain(chain);
+            return prf(sk);
+        }
+
+        private byte[] wotsCompress(Address address, byte[] chains) {
+            Address pk = address.copy();
+            pk.setType(Address.WOTS_PK);
+            pk.setKeyPair(address.getKeyPair());
+            return t(pk, chains);
+        }
+
+        byte[] wotsPublicKey(Address address) {
+            byte[] chains = new byte[p.len * p.n];
+            for (int i = 0; i < p.len; i++) {
+                address.setChain(i);
+                byte[] end = chain(wotsSecret(address, i), 0, W - 1, address);
+                System.arraycopy(end, 0, chains, i * p.n, p.n);
+            }
+            return wotsCompress(address, chains);
+        }
+
+        void wotsSign(byte[] message, Address address, byte[] out, int offset) {
+            int[] lengths = p.chainLengths(message);
+            for (int i = 0; i < p.len; i++) {
+                address.setChain(i);
+                byte[] value = chain(wotsSecret(address, i), 0, lengths[i], address);
+                System.arraycopy(value, 0, out, offset + i * p.n, p.n);
+            }
+        }
+
+        byte[] wotsPublicKeyFromSignature(byte[] sig, int offset, byte[] message, Address address) {
+            int[] lengths = p.chainLengths(message);
+            byte[] chains = new byte[p.len * p.n];
+            for (int i = 0; i < p.len; i++) {
+                address.setChain(i);
+                byte[] start = Arrays.copyOfRange(sig, offset + i * p.n, offset + (i + 1) * p.n);
+                byte[] end = chain(start, lengths[i], W - 1 - lengths[i], address);
+                System.arraycopy(end, 0, chains, i * p.n, p.n);
+            }
+            return wotsCompress(address, chains);
+        }
+
+        // ---------- XMSS / hypertree ----------
+
+        /**
+         * Tính toàn bộ cây XMSS (2^hp lá WOTS+) tại (layer, tree)
+         *
+         * @param leafIndex Lá cần auth path
+         * @param authPath Output, hp node
+         * @return Root của cây
+         */
+        byte[] xmssTree(int layer, long tree, int leafIndex, byte[][] authPath) {
+            int leaves = 1 << p.hp;
+            byte[][] nodes = new byte[leaves][];
+            parallelFor(leaves, i -> {
+                Address leaf = new Address();
+                leaf.setLayer(layer);
+                leaf.setTree(tree);
+                leaf.setType(Address.WOTS_HASH);
+                leaf.setKeyPair(i);
+                nodes[i] = wotsPublicKey(leaf);
+            });
+
+            Address node = new Address();
+            node.setLayer(layer);
+            node.setTree(tree);
+            node.setType(Address.TREE);
+            return reduce(nodes, leafIndex, 0, node, authPath);
+        }
+
+        /**
+         * Ký hypertree: d cây XMSS tính song song, sau đó ký WOTS+ ở từng tầng (cũng song song)
+         */
+        void hypertreeSign(byte[] message, long idxTree, int idxLeaf, byte[] out, int offset) {
+            long[] trees = new long[p.d];
+            int[] leaves = new int[p.d];
+            trees[0] = idxTree;
+            leaves[0] = idxLeaf;
+            for (int j = 1; j < p.d; j++) {
+                leaves[j] = (int) (trees[j - 1] & ((1L << p.hp) - 1));
+                trees[j] = trees[j - 1] >>> p.hp;
+            }
+
+            int layerSize = (p.len + p.hp) * p.n;
+            byte[][] roots = new byte[p.d][];
+            parallelFor(p.d, j -> {
+                byte[][] auth = new byte[p.hp][];
+                roots[j] = xmssTree(j, trees[j], leaves[j], auth);
+                int authOffset = offset + j * layerSize + p.len * p.n;
+                for (int h = 0; h < p.hp; h++) {
+                    System.arraycopy(auth[h], 0, out, authOffset + h * p.n, p.n);
+                }
+            });
+
+            // Tầng 0 ký FORS public key, tầng j ký root của tầng j-1
+            parallelFor(p.d, j -> {
+                Address address = new Address();
+                address.setLayer(j);
+                address.setTree(trees[j]);
+                address.setType(Address.WOTS_HASH);
+                address.setKeyPair(leaves[j]);
+                wotsSign(j == 0 ? message : roots[j - 1], address, out, offset + j * layerSize);
+            });
+        }
+
+        byte[] hypertreeRootFromSignature(byte[] message, long idxTree, int idxLeaf, byte[] sig, int offset) {
+            int layerSize = (p.len + p.hp) * p.n;
+            byte[] node = message;
+            long tree = idxTree;
+            int leaf = idxLeaf;
+            for (int j = 0; j < p.d; j++) {
+                Address address = new Address();
+                address.setLayer(j);
+                address.setTree(tree);
+                address.setType(Address.WOTS_HASH);
+                address.setKeyPair(leaf);
+                byte[] leafNode = wotsPublicKeyFromSignature(sig, offset + j * layerSize, node, address);
+
+                address.setType(Address.TREE);
+                node = rootFromAuthPath(leafNode, leaf, sig, offset + j * layerSize + p.len * p.n, p.hp, address);
+
+                leaf = (int) (tree & ((1L << p.hp) - 1));
+                tree >>>= p.hp;
+            }
+            return node;
+        }
+
+        // ---------- FORS ----------
+
+        /**
+         * Ký FORS: k cây độc lập, tính song song
+         * @return FORS public key (input cho tầng 0 của hypertree)
+         */
+        byte[] forsSign(Digest digest, byte[] out, int offset) {
+            int t = 1 << p.a;
+            byte[] roots = new byte[p.k * p.n];
+            parallelFor(p.k, i -> {
+                Address base = forsAddress(digest);
+                int treeOffset = i * t;
+                byte[][] leaves = new byte[t][];
+                for (int j = 0; j < t; j++) {
+                    leaves[j] = forsLeaf(base, treeOffset + j);
+                }
+
+                int sigOffset = offset + i * (p.a + 1) * p.n;
+                Address skAddress = base.copy();
+                skAddress.setType(Address.FORS_PRF);
+                skAddress.setKeyPair(base.getKeyPair());
+                skAddress.setTreeIndex(treeOffset + digest.forsIndices[i]);
+                System.arraycopy(prf(skAddress), 0, out, sigOffset, p.n);
+
+                byte[][] auth = new byte[p.a][];
+                byte[] root = reduce(leaves, digest.forsIndices[i], treeOffset, base, auth);
+                for (int h = 0; h < p.a; h++) {
+                    System.arraycopy(auth[h], 0, out, sigOffset + (h + 1) * p.n, p.n);
+                }
+                System.arraycopy(root, 0, roots, i * p.n, p.n);
+            });
+            return forsCompress(digest, roots);
+        }
+
+        byte[] forsPkFromSignature(Digest digest, byte[] sig, int offset) {
+            int t = 1 << p.a;
+            byte[] roots = new byte[p.k * p.n];
+            for (int i = 0; i < p.k; i++) {
+                Address address = forsAddress(digest);
+                int sigOffset = offset + i * (p.a + 1) * p.n;
+                int leafIndex = i * t + digest.forsIndices[i];
+
+                address.setTreeHeight(0);
+                address.setTreeIndex(leafIndex);
+                byte[] leaf = f(address, Arrays.copyOfRange(sig, sigOffset, sigOffset + p.n));
+                byte[] root = rootFromAuthPath(leaf, leafIndex, sig, sigOffset + p.n, p.a, address);
+                System.arraycopy(root, 0, roots, i * p.n, p.n);
+            }
+            return forsCompress(digest, roots);
+        }
+
+        private Address forsAddress(Digest digest) {
+            Address address = new Address();
+            address.setTree(digest.tree);
+            address.setType(Address.FORS_TREE);
+            address.setKeyPair(digest.leaf);
+            return address;
+        }
+
+        private byte[] forsLeaf(Address base, int globalIndex) {
+            Address sk = base.copy();
+            sk.setType(Address.FORS_PRF);
+            sk.setKeyPair(base.getKeyPair());
+            sk.setTreeIndex(globalIndex);
+
+            Address leaf = base.copy();
+            leaf.setTreeHeight(0);
+            leaf.setTreeIndex(globalIndex);
+            return f(leaf, prf(sk));
+        }
+
+        private byte[] forsCompress(Digest digest, byte[] roots) {
+            Address pk = new Address();
+            pk.setTree(digest.tree);
+            pk.setType(Address.FORS_ROOTS);
+            pk.setKeyPair(digest.leaf);
+            return t(pk, roots);
+        }
+
+        // ---------- Merkle helpers ----------
+
+        /**
+         * Gộp các lá thành root, ghi lại auth path của lá leafIndex
+         * @param globalOffset Index toàn cục của lá đầu tiên (FORS dùng index liên tục qua k cây)
+         */
+        private byte[] reduce(byte[][] nodes, int leafIndex, int globalOffset, Address base, byte[][] authPath) {
+            Address address = base.copy();
+            int index = leafIndex;
+            int offset = globalOffset;
+            for (int height = 0; nodes.length > 1; height++) {
+                authPath[height] = nodes[index ^ 1];
+                byte[][] parents = new byte[nodes.length / 2][];
+                offset >>= 1;
+                address.setTreeHeight(height + 1);
+                for (int j = 0; j < parents.length; j++) {
+                    address.setTreeIndex(offset + j);
+                    parents[j] = h(address, nodes[2 * j], nodes[2 * j + 1]);
+                }
+                nodes = parents;
+                index >>= 1;
+            }
+            return nodes[0];
+        }
+
+        private byte[] rootFromAuthPath(byte[] leaf, int leafIndex, byte[] sig, int offset,
+                                        int height, Address address) {
+            byte[] node = leaf;
+            for (int h = 0; h < height; h++) {
+                byte[] sibling = Arrays.copyOfRange(sig, offset + h * p.n, offset + (h + 1) * p.n);
+                address.setTreeHeight(h + 1);
+                address.setTreeIndex(leafIndex >>> (h + 1));
+                node = ((leafIndex >>> h) & 1) == 0
+                    ? h(address, node, sibling)
+                    : h(address, sibling, node);
+            }
+            return node;
+        }
+    }
+
+    /**
+     * Chạy body(0..count-1) trên ForkJoinPool, chia đôi đệ quy đến từng phần tử
+     * (mỗi phần tử là một cây con, đủ lớn để bù chi phí fork)
+     */
+    private void parallelFor(int count, IntConsumer body) {
+        if (pool.getParallelism() == 1) {
+            for (int i = 0; i < count; i++) {
+                body.accept(i);
+            }
+            return;
+        }
+        RecursiveAction task = new RangeTask(0, count, body);
+        if (ForkJoinTask.getPool() == pool) {
+            task.invoke(); // task lồng nhau (cây XMSS bên trong một tầng hypertree)
+        } else {
+            pool.invoke(task);
+        }
+    }
+
+    private static final class RangeTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final IntConsumer body;
+
+        RangeTask(int from, int to, IntConsumer body) {
+            this.from = from;
+            this.to = to;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                body.accept(from);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeTask(from, mid, body), new RangeTask(mid, to, body));
+        }
+    }
+
+    // ==================== Parameters / addresses ====================
+
+    private static final class Params {
+        final int n, h, d, hp, a, k;
+        final int len1, len2, len;
+
+        private Params(int n, int h, int d, int a, int k) {
+            this.n = n;
+            this.h = h;
+            this.d = d;
+            this.hp = h / d;
+            this.a = a;
+            this.k = k;
+            this.len1 = 8 * n / LOG_W;
+            this.len2 = floorLog2(len1 * (W - 1)) / LOG_W + 1;
+            this.len = len1 + len2;
+        }
+
+        static Params of(PQCAlgorithm algorithm) {
+            switch (algorithm) {
+                case SPHINCS_PLUS_128F:
+                    return new Params(16, 66, 22, 6, 33);
+                case SPHINCS_PLUS_192F:
+                    return new Params(24, 66, 22, 8, 33);
+                case SPHINCS_PLUS_256F:
+                    return new Params(32, 68, 17, 9, 35);
+                default:
+                    throw new IllegalArgumentException("Algorithm must be SPHINCS+ variant");
+            }
+        }
+
+        /**
+         * SPHINCS+ 3.1: H, T_l, H_msg, PRF_msg chuyển sang SHA-512 từ mức an toàn 3 (n > 16)
+         */
+        boolean sha512() {
+            return n > 16;
+        }
+
+        int forsSize() {
+            return k * (a + 1) * n;
+        }
+
+        int signatureSize() {
+            return n + forsSize() + d * (len + hp) * n;
+        }
+
+        int treeBits() {
+            return h - hp;
+        }
+
+        int digestSize() {
+            return (k * a + 7) / 8 + (treeBits() + 7) / 8 + (hp + 7) / 8;
+        }
+
+        /**
+         * Biểu diễn base-w của message + checksum: số bước chain cần đi cho từng chain WOTS+
+         */
+        int[] chainLengths(byte[] message) {
+            int[] lengths = new int[len];
+            int checksum = 0;
+            for (int i = 0; i < len1; i++) {
+                int value = (message[i >> 1] >> ((i & 1) == 0 ? 4 : 0)) & 0x0F;
+                lengths[i] = value;
+                checksum += W - 1 - value;
+            }
+            // Checksum dịch trái cho tròn byte, lấy len2 nibble đầu (big-endian)
+            int checksumBits = (len2 * LOG_W + 7) / 8 * 8;
+            checksum <<= checksumBits - len2 * LOG_W;
+            for (int i = 0; i < len2; i++) {
+                lengths[len1 + i] = (checksum >>> (checksumBits - LOG_W * (i + 1))) & 0x0F;
+            }
+            return lengths;
+        }
+
+        private static int floorLog2(int x) {
+            return 31 - Integer.numberOfLeadingZeros(x);
+        }
+    }
+
+    /**
+     * Message digest đã tách: k index FORS, cây và lá hypertree ký FORS public key
+     */
+    private static final class Digest {
+        final int[] forsIndices;
+        final long tree;
+        final int leaf;
+
+        private Digest(int[] forsIndices, long tree, int leaf) {
+            this.forsIndices = forsIndices;
+            this.tree = tree;
+            this.leaf = leaf;
+        }
+
+        static Digest of(Params p, byte[] digest) {
+            int[] indices = new int[p.k];
+            int bit = 0;
+            for (int i = 0; i < p.k; i++) {
+                int index = 0;
+                for (int j = 0; j < p.a; j++, bit++) {
+                    index |= ((digest[bit >> 3] >> (bit & 7)) & 1) << j;
+                }
+                indices[i] = index;
+            }
+
+            int offset = (p.k * p.a + 7) / 8;
+            int treeBytes = (p.treeBits() + 7) / 8;
+            long tree = 0;
+            for (int i = 0; i < treeBytes; i++) {
+                tree = (tree << 8) | (digest[offset + i] & 0xFF);
+            }
+            if (p.treeBits() < 64) {
+                tree &= (1L << p.treeBits()) - 1;
+            }
+            offset += treeBytes;
+
+            int leaf = 0;
+            for (int i = 0; i < (p.hp + 7) / 8; i++) {
+                leaf = (leaf << 8) | (digest[offset + i] & 0xFF);
+            }
+            leaf &= (1 << p.hp) - 1;
+            return new Digest(indices, tree, leaf);
+        }
+    }
+
+    /**
+     * ADRS dạng nén 22 byte (SHA2 instantiation):
+     * layer(1) | tree(8) | type(1) | keyPair(4) | chain/treeHeight(4) | hash/treeIndex(4)
+     */
+    private static final class Address {
+        static final int WOTS_HASH = 0;
+        static final int WOTS_PK = 1;
+        static final int TREE = 2;
+        static final int FORS_TREE = 3;
+        static final int FORS_ROOTS = 4;
+        static final int WOTS_PRF = 5;
+        static final int FORS_PRF = 6;
+
+        final byte[] bytes = new byte[22];
+
+        Address copy() {
+            Address copy = new Address();
+            System.arraycopy(bytes, 0, copy.bytes, 0, bytes.length);
+            return copy;
+        }
+
+        void setLayer(int layer) {
+            bytes[0] = (byte) layer;
+        }
+
+        void setTree(long tree) {
+            for (int i = 0; i < 8; i++) {
+                bytes[1 + i] = (byte) (tree >>> (56 - 8 * i));
+            }
+        }
+
+        /** Đổi type và xóa các trường phía sau */
+        void setType(int type) {
+            bytes[9] = (byte) type;
+            Arrays.fill(bytes, 10, 22, (byte) 0);
+        }
+
+        void setKeyPair(int keyPair) {
+            putInt(10, keyPair);
+        }
+
+        int getKeyPair() {
+            return ((bytes[10] & 0xFF) << 24) | ((bytes[11] & 0xFF) << 16) | ((bytes[12] & 0xFF) << 8) | (bytes[13] & 0xFF);
+        }
+
+        void setChain(int chain) {
+            putInt(14, chain);
+        }
+
+        void setTreeHeight(int height) {
+            putInt(14, height);
+        }
+
+        void setHash(int hash) {
+            putInt(18, hash);
+        }
+
+        void setTreeIndex(int index) {
+            putInt(18, index);
+        }
+
+        private void putInt(int offset, int value) {
+            bytes[offset] = (byte) (value >>> 24);
+            bytes[offset + 1] = (byte) (value >>> 16);
+            bytes[offset + 2] = (byte) (value >>> 8);
+            bytes[offset + 3] = (byte) value;
+        }
+    }
+
+    // ==================== Utilities ====================
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static MessageDigest sha512() {
+        try {
+            return MessageDigest.getInstance("SHA-512");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-512 not available", e);
+        }
+    }
+
+    private static byte[] randomBytes(SecureRandom source, int size) {
+        byte[] bytes = new byte[size];
+        source.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int total = 0;
+        for (byte[] part : parts) {
+            total += part.length;
+        }
+        byte[] out = new byte[total];
+        int offset = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, out, offset, part.length);
+            offset += part.length;
+        }
+        return out;
+    }
+}
@@ -38,8 +38,8 @@ public class PQCExample {
         // Tạo cặp khóa
         System.out.println("Đang tạo cặp khóa Dilithium3...");
         PQCKeyPair keyPair = service.generateKeyPair(PQCAlgorithm.DILITHIUM3);
-        System.out.println("Public Key (hex): " + keyPair.getPublicKeyHex().substring(0, 64) + "...");
-        System.out.println("Private Key (hex): " + keyPair.getPrivateKeyHex().substring(0, 64) + "...");
+        System.out.println("Public Key (hex): " + Codec.hexPreview(keyPair.getPublicKey(), 32));
+        System.out.println("Private Key (hex): " + Codec.hexPreview(keyPair.getPrivateKey(), 32));
         
         // Message cần ký
         String message = "Đây là một transaction quan trọng từ Vietcombank";
@@ -48,7 +48,7 @@ public class PQCExample {
         // Ký message
         System.out.println("\nĐang ký message...");
         PQCSignature signature = service.sign(messageBytes, keyPair.getPrivateKey(), PQCAlgorithm.DILITHIUM3);
-        System.out.println("Signature (hex): " + signature.getSignatureHex().substring(0, 64) + "...");
+        System.out.println("Signature (hex): " + Codec.hexPreview(signature.getSignature(), 32));
         
         // Xác thực chữ ký
         System.out.println("\nĐang xác thực chữ ký...");
@@ -97,7 +97,7 @@ public class PQCExample {
         // Note: In production, PQCProcessService is injected by Spring
         // For this example, we create it manually with a KeyStoreService
         com.nt219.ksm.storage.KeyStoreService keyStoreService = new com.nt219.ksm.storage.KeyStoreService();
-        PQCProcessService processService = new PQCProcessService(keyStoreService);
+        PQCProcessService processService = new PQCProcessService(keyStoreService, new com.nt219.ksm.process.KeyPairPool());
         
         // Tạo khóa cho các ngân hàng
         System.out.println("Đang tạo khóa cho các ngân hàng...");
@@ -0,0 +1,47 @@
+package com.nt219.ksm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Một entry bị bỏ khỏi cache (event tức thời, không có thời lượng)
+ */
+@Name("com.nt219.ksm.CacheEviction")
+@Label("KSM Cache Eviction")
+@Category({"KSM", "Cache"})
+@StackTrace(false)
+public class CacheEvictionEvent extends Event {
+
+    public static final String KEY_PAIR_CACHE = "keyPair";
+    public static final String PUBLIC_KEY_CACHE = "publicKey";
+    public static final String IDEMPOTENCY_CACHE = "idempotency";
+
+    @Label("Cache")
+    String cache;
+
+    @Label("Key")
+    String key;
+
+    @Label("Reason")
+    String reason;
+
+    @Label("Thread Type")
+    String threadType;
+
+    /**
+     * @param reason capacity | expired | replaced | removed
+     */
+    public static void emit(String cache, String key, String reason) {
+        CacheEvictionEvent event = new CacheEvictionEvent();
+        if (event.shouldCommit()) {
+            event.cache = cache;
+            event.key = key;
+            event.reason = reason;
+            event.threadType = ThreadType.current();
+            event.commit();
+        }
+    }
+}
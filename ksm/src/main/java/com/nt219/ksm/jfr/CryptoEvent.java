@@ -0,0 +1,51 @@
+package com.nt219.ksm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Trường chung của các JFR event cho thao tác crypto (keygen, sign, verify, encrypt, decrypt)
+ *
+ * Cách dùng: {@code begin()} trước thao tác, {@link #complete} sau khi thao tác thành công.
+ * Khi không có recording nào bật event, {@code shouldCommit()} trả false ngay và không trường nào được gán.
+ */
+@Category({"KSM", "Crypto"})
+@StackTrace(false)
+public abstract class CryptoEvent extends Event {
+
+    @Label("Entity")
+    String entityId;
+
+    @Label("Algorithm")
+    String algorithm;
+
+    @Label("Payload Size")
+    @DataAmount
+    long payloadSize;
+
+    @Label("Result Size")
+    @DataAmount
+    long resultSize;
+
+    @Label("Thread Type")
+    String threadType;
+
+    /**
+     * @param payloadSize Số byte đầu vào (message, plaintext, ciphertext)
+     * @param resultSize Số byte đầu ra (chữ ký, ciphertext, plaintext, public key)
+     */
+    public void complete(String entityId, String algorithm, long payloadSize, long resultSize) {
+        end();
+        if (shouldCommit()) {
+            this.entityId = entityId;
+            this.algorithm = algorithm;
+            this.payloadSize = payloadSize;
+            this.resultSize = resultSize;
+            this.threadType = ThreadType.current();
+            commit();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.nt219.ksm.jfr;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Giải mã dữ liệu nhạy cảm bằng private key của entity (Kyber)
+ */
+@Name("com.nt219.ksm.Decrypt")
+@Label("KSM Decrypt")
+public class DecryptEvent extends CryptoEvent {
+}
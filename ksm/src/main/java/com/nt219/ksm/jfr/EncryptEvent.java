@@ -0,0 +1,12 @@
+package com.nt219.ksm.jfr;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Mã hóa dữ liệu nhạy cảm bằng public key (Kyber)
+ */
+@Name("com.nt219.ksm.Encrypt")
+@Label("KSM Encrypt")
+public class EncryptEvent extends CryptoEvent {
+}
@@ -0,0 +1,127 @@
+package com.nt219.ksm.jfr;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Tóm tắt các event KSM trong một file JFR: latency (p50/p90/p99/max) theo event, thuật toán và loại thread,
+ * cỡ payload trung bình, tỉ lệ cache hit khi lấy khóa, số eviction theo cache
+ *
+ * Chạy (sau mvn package):
+ *   java -XX:StartFlightRecording=filename=/tmp/ksm.jfr,settings=profile -jar target/ksm-1.0.0.jar
+ *   # ... tải, rồi jcmd <pid> JFR.dump name=1 filename=/tmp/ksm.jfr (hoặc tắt ứng dụng)
+ *   java -cp target/classes com.nt219.ksm.jfr.JfrSummary /tmp/ksm.jfr
+ *
+ * File mở được bằng JDK Mission Control; event nằm trong nhóm "KSM" và có thể đặt cạnh GC, lock, I/O của JVM.
+ */
+public class JfrSummary {
+
+    private static final String EVENT_PREFIX = "com.nt219.ksm.";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: JfrSummary <recording.jfr>");
+            System.exit(2);
+        }
+        System.out.print(summarize(Paths.get(args[0])));
+    }
+
+    public static String summarize(Path recording) throws IOException {
+        Map<String, Operation> operations = new TreeMap<>();
+        Map<String, Long> evictions = new TreeMap<>();
+        long keyLoadHits = 0;
+        long keyLoads = 0;
+
+        for (RecordedEvent event : RecordingFile.readAllEvents(recording)) {
+            String type = event.getEventType().getName();
+            if (!type.startsWith(EVENT_PREFIX)) {
+                continue;
+            }
+            String name = type.substring(EVENT_PREFIX.length());
+            if (name.equals("CacheEviction")) {
+                evictions.merge(event.getString("cache") + " (" + event.getString("reason") + ")", 1L, Long::sum);
+                continue;
+            }
+            if (name.equals("KeyLoad")) {
+                keyLoads++;
+                if (event.getBoolean("cacheHit")) {
+                    keyLoadHits++;
+                    name += " hit";
+                } else {
+                    name += " miss";
+                }
+            }
+            String algorithm = event.hasField("algorithm") && event.getString("algorithm") != null
+                ? event.getString("algorithm") : "-";
+            String threadType = event.hasField("threadType") && event.getString("threadType") != null
+                ? event.getString("threadType") : "-";
+            long payload = event.hasField("payloadSize") ? event.getLong("payloadSize")
+                : event.hasField("recordSize") ? event.getLong("recordSize") : 0;
+            operations.computeIfAbsent(name + "\0" + algorithm + "\0" + threadType,
+                key -> new Operation(key.split("\0")))
+                .add(event.getDuration().toNanos(), payload);
+        }
+
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%-14s %-16s %-20s %9s %10s %10s %10s %10s %12s%n",
+            "event", "algorithm", "thread", "count", "p50(us)", "p90(us)", "p99(us)", "max(us)", "avg bytes"));
+        for (Operation operation : operations.values()) {
+            long[] durations = operation.sortedDurations();
+            out.append(String.format("%-14s %-16s %-20s %9d %10.1f %10.1f %10.1f %10.1f %12d%n",
+                operation.name, operation.algorithm, operation.threadType, durations.length,
+                percentile(durations, 50) / 1e3, percentile(durations, 90) / 1e3, percentile(durations, 99) / 1e3,
+                durations[durations.length - 1] / 1e3, operation.payloadBytes / durations.length));
+        }
+        if (keyLoads > 0) {
+            out.append(String.format("%nkey load cache hit ratio: %.2f%% (%d / %d)%n",
+                100.0 * keyLoadHits / keyLoads, keyLoadHits, keyLoads));
+        }
+        if (!evictions.isEmpty()) {
+            out.append(String.format("%ncache evictions:%n"));
+            evictions.forEach((cache, count) -> out.append(String.format("  %-28s %9d%n", cache, count)));
+        }
+        return out.toString();
+    }
+
+    /**
+     * Nearest-rank percentile trên mảng đã sort
+     */
+    static long percentile(long[] sorted, int percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(rank - 1, 0)];
+    }
+
+    private static final class Operation {
+        final String name;
+        final String algorithm;
+        final String threadType;
+        final List<Long> durations = new ArrayList<>();
+        long payloadBytes;
+
+        Operation(String[] key) {
+            this.name = key[0];
+            this.algorithm = key[1];
+            this.threadType = key[2];
+        }
+
+        void add(long durationNanos, long payload) {
+            durations.add(durationNanos);
+            payloadBytes += payload;
+        }
+
+        long[] sortedDurations() {
+            long[] sorted = durations.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.nt219.ksm.jfr;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Tạo cặp khóa PQC (inline trên request thread hoặc trên thread refill của KeyPairPool)
+ */
+@Name("com.nt219.ksm.KeyGen")
+@Label("KSM Key Generation")
+public class KeyGenEvent extends CryptoEvent {
+}
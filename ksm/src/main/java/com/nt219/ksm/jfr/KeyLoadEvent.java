@@ -0,0 +1,44 @@
+package com.nt219.ksm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Lấy cặp khóa của entity cho một thao tác: cache hit, hoặc miss (đọc snapshot/file + giải mã private key)
+ */
+@Name("com.nt219.ksm.KeyLoad")
+@Label("KSM Key Load")
+@Category({"KSM", "Key Store"})
+@StackTrace(false)
+public class KeyLoadEvent extends Event {
+
+    @Label("Entity")
+    String entityId;
+
+    @Label("Algorithm")
+    String algorithm;
+
+    @Label("Cache Hit")
+    boolean cacheHit;
+
+    @Label("Found")
+    boolean found;
+
+    @Label("Thread Type")
+    String threadType;
+
+    public void complete(String entityId, String algorithm, boolean cacheHit, boolean found) {
+        end();
+        if (shouldCommit()) {
+            this.entityId = entityId;
+            this.algorithm = algorithm;
+            this.cacheHit = cacheHit;
+            this.found = found;
+            this.threadType = ThreadType.current();
+            commit();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.nt219.ksm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Ghi bền cặp khóa mới (file riêng, hoặc chờ group commit của write-ahead log)
+ */
+@Name("com.nt219.ksm.KeySave")
+@Label("KSM Key Save")
+@Category({"KSM", "Key Store"})
+@StackTrace(false)
+public class KeySaveEvent extends Event {
+
+    @Label("Entity")
+    String entityId;
+
+    @Label("Algorithm")
+    String algorithm;
+
+    @Label("Record Size")
+    @DataAmount
+    long recordSize;
+
+    @Label("Group Commit")
+    boolean groupCommit;
+
+    @Label("Thread Type")
+    String threadType;
+
+    public void complete(String entityId, String algorithm, long recordSize, boolean groupCommit) {
+        end();
+        if (shouldCommit()) {
+            this.entityId = entityId;
+            this.algorithm = algorithm;
+            this.recordSize = recordSize;
+            this.groupCommit = groupCommit;
+            this.threadType = ThreadType.current();
+            commit();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.nt219.ksm.jfr;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Ký bằng private key của entity
+ */
+@Name("com.nt219.ksm.Sign")
+@Label("KSM Sign")
+public class SignEvent extends CryptoEvent {
+}
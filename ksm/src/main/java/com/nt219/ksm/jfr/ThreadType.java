@@ -0,0 +1,31 @@
+package com.nt219.ksm.jfr;
+
+/**
+ * Loại thread phát ra event, để tách thao tác trên request thread khỏi việc nền
+ * (refill KeyPairPool, ECDSA song song của hybrid, group commit)
+ */
+final class ThreadType {
+
+    private ThreadType() {
+    }
+
+    static String current() {
+        return of(Thread.currentThread().getName());
+    }
+
+    /**
+     * "http-nio-8080-exec-3" → request, "ksm-hybrid-2" → ksm-hybrid, "ksm-keypool-refill" → ksm-keypool-refill
+     */
+    static String of(String threadName) {
+        if (threadName.startsWith("http-")) {
+            return "request";
+        }
+        if (threadName.startsWith("ksm-")) {
+            return threadName.replaceFirst("-\\d+$", "");
+        }
+        if (threadName.equals("main")) {
+            return "main";
+        }
+        return "other";
+    }
+}
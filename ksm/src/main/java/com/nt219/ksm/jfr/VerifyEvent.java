@@ -0,0 +1,20 @@
+package com.nt219.ksm.jfr;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Verify chữ ký (bằng khóa của entity trong key store hoặc khóa đăng ký / client gửi kèm)
+ */
+@Name("com.nt219.ksm.Verify")
+@Label("KSM Verify")
+public class VerifyEvent extends CryptoEvent {
+
+    @Label("Valid")
+    boolean valid;
+
+    public void complete(String entityId, String algorithm, long payloadSize, long signatureSize, boolean valid) {
+        this.valid = valid;
+        complete(entityId, algorithm, payloadSize, signatureSize);
+    }
+}
@@ -0,0 +1,87 @@
+package com.nt219.ksm.process;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nt219.ksm.config.KSMConfig;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ký hàng loạt qua luồng NDJSON (POST /ksm/sign/stream), cho batch cuối ngày ký hàng triệu bản ghi
+ * mà không cần hàng triệu request hay một body JSON khổng lồ trong bộ nhớ
+ *
+ * Các luồng dùng chung một pool worker; mỗi luồng giới hạn số dòng đang ký bằng window riêng
+ * (xem {@link BulkSignStream}).
+ *
+ * Cấu hình:
+ * - KSM_BULK_SIGN_THREADS (mặc định số CPU)
+ * - KSM_BULK_SIGN_WINDOW (mặc định 256 dòng đang ký mỗi luồng)
+ * - KSM_BULK_SIGN_MAX_LINE_BYTES (mặc định 1 MB)
+ */
+@Service
+public class BulkSignService {
+
+    private static final int THREADS = KSMConfig.getInt("KSM_BULK_SIGN_THREADS", "ksm.bulkSign.threads", Runtime.getRuntime().availableProcessors());
+    private static final int WINDOW = KSMConfig.getInt("KSM_BULK_SIGN_WINDOW", "ksm.bulkSign.window", 256);
+    private static final int MAX_LINE_BYTES = KSMConfig.getInt("KSM_BULK_SIGN_MAX_LINE_BYTES", "ksm.bulkSign.maxLineBytes", 1024 * 1024);
+
+    private final ObjectMapper objectMapper;
+    private final ExecutorService executor;
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    private final AtomicLong streams = new AtomicLong();
+    private final AtomicLong lines = new AtomicLong();
+
+    public BulkSignService(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(THREADS, r -> {
+            Thread t = new Thread(r, "ksm-bulk-sign-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        System.out.println("[KSM] Bulk sign: " + THREADS + " threads, window " + WINDOW + " lines per stream");
+    }
+
+    /**
+     * Ký toàn bộ luồng trên thread hiện tại (thread đọc) và pool worker
+     *
+     * @param admission Cấp permit cho từng dòng trên thread đọc (null: chỉ giới hạn bằng window)
+     * @return Số dòng request đã đọc
+     */
+    public long sign(InputStream input, OutputStream output, BulkSignStream.LineAdmission admission,
+                     BulkSignStream.LineSigner signer) throws IOException, InterruptedException {
+        activeStreams.incrementAndGet();
+        streams.incrementAndGet();
+        try {
+            long count = new BulkSignStream(objectMapper, executor, WINDOW, MAX_LINE_BYTES, admission, signer).run(input, output);
+            lines.addAndGet(count);
+            return count;
+        } finally {
+            activeStreams.decrementAndGet();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("threads", THREADS);
+        stats.put("window", WINDOW);
+        stats.put("activeStreams", activeStreams.get());
+        stats.put("streams", streams.get());
+        stats.put("lines", lines.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,280 @@
+package com.nt219.ksm.process;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ký một luồng NDJSON: mỗi dòng vào là một sign request, mỗi dòng ra là kết quả của nó
+ *
+ * - Tối đa {@code window} dòng đang ký cùng lúc; khi đủ window thread đọc dừng lại, không đọc tiếp
+ *   body nên TCP window của client đóng lại (backpressure tới tận client). Bộ nhớ dùng tỉ lệ với
+ *   window, không phụ thuộc kích thước input.
+ * - Kết quả ghi theo thứ tự hoàn thành (không theo thứ tự input), mang "line" (1-based) và "id"
+ *   của request nếu có để client ghép lại. Client không đọc response thì worker chặn ở lúc ghi,
+ *   window không được giải phóng và việc đọc cũng dừng.
+ * - Output đi qua buffer 64 KB, flush khi buffer đầy, khi window đầy (thread đọc sắp chờ) và khi
+ *   không còn dòng nào đang ký, để client không phải chờ kết quả đã xong.
+ * - Cuối luồng là một dòng tổng kết {"summary":true,"lines":..,"succeeded":..,"failed":..,"elapsedMs":..}.
+ *
+ * - {@link LineAdmission} (nếu có) cấp permit cho từng dòng trên thread đọc, trước khi dòng được giao cho
+ *   worker: dòng đang chờ permit (vd. bulkhead của tenant) chỉ chặn luồng của nó, không giữ worker dùng chung.
+ *
+ * Dòng rỗng bị bỏ qua; dòng không parse được hoặc dài hơn {@code maxLineBytes} có kết quả lỗi riêng,
+ * không làm hỏng cả luồng. Mỗi instance dùng cho một luồng.
+ */
+public class BulkSignStream {
+
+    private static final int OUTPUT_BUFFER_BYTES = 64 * 1024;
+    private static final TypeReference<Map<String, String>> REQUEST_TYPE = new TypeReference<>() {};
+
+    private final ObjectMapper objectMapper;
+    private final Executor executor;
+    private final int window;
+    private final int maxLineBytes;
+    private final LineSigner signer;
+    private final LineAdmission admission;
+
+    private final Semaphore permits;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile IOException writeFailure;
+    private OutputStream out;
+
+    /**
+     * @param signer Ký một request (entityId, message, hybrid, ...), trả về response như POST /ksm/sign
+     */
+    public BulkSignStream(ObjectMapper objectMapper, Executor executor, int window, int maxLineBytes, LineSigner signer) {
+        this(objectMapper, executor, window, maxLineBytes, null, signer);
+    }
+
+    /**
+     * @param admission Cấp permit cho từng dòng trước khi ký (null: không giới hạn ngoài window)
+     */
+    public BulkSignStream(ObjectMapper objectMapper, Executor executor, int window, int maxLineBytes,
+                          LineAdmission admission, LineSigner signer) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("window must be positive");
+        }
+        this.objectMapper = objectMapper;
+        this.executor = executor;
+        this.window = window;
+        this.maxLineBytes = maxLineBytes;
+        this.signer = signer;
+        this.admission = admission;
+        this.permits = new Semaphore(window);
+    }
+
+    /**
+     * Đọc hết input, chờ mọi dòng ký xong rồi ghi dòng tổng kết
+     *
+     * @return Số dòng request đã đọc
+     * @throws IOException Khi đọc input lỗi hoặc client đã đóng kết nối (không ghi được kết quả)
+     */
+    public long run(InputStream input, OutputStream output) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        this.out = new BufferedOutputStream(output, OUTPUT_BUFFER_BYTES);
+        InputStream in = new BufferedInputStream(input, OUTPUT_BUFFER_BYTES);
+        ByteArrayOutputStream line = new ByteArrayOutputStream(1024);
+        long lines = 0;
+        try {
+            int status;
+            while (writeFailure == null && (status = readLine(in, line)) != EOF) {
+                if (status == OK && line.size() == 0) {
+                    continue;
+                }
+                lines++;
+                if (status == TOO_LONG) {
+                    writeError(lines, null, "Line exceeds " + maxLineBytes + " bytes");
+                    continue;
+                }
+                Map<String, String> request;
+                try {
+                    request = objectMapper.readValue(line.toByteArray(), REQUEST_TYPE);
+                } catch (JsonProcessingException e) {
+                    writeError(lines, null, "Invalid JSON: " + e.getOriginalMessage());
+                    continue;
+                }
+                if (request == null) {
+                    writeError(lines, null, "Invalid JSON: null");
+                    continue;
+                }
+                submit(lines, request);
+            }
+        } finally {
+            // Chờ các dòng đang ký (kể cả khi đọc lỗi) để không còn worker ghi vào response
+            permits.acquire(window);
+            permits.release(window);
+        }
+        if (writeFailure != null) {
+            throw writeFailure;
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("summary", true);
+        summary.put("lines", lines);
+        summary.put("succeeded", succeeded.get());
+        summary.put("failed", failed.get());
+        summary.put("elapsedMs", (System.nanoTime() - start) / 1_000_000);
+        write(summary);
+        synchronized (this) {
+            out.flush();
+        }
+        return lines;
+    }
+
+    private void submit(long lineNumber, Map<String, String> request) throws InterruptedException, IOException {
+        if (!permits.tryAcquire()) {
+            // Window đầy: đẩy kết quả đã có cho client trước khi chờ
+            flush();
+            permits.acquire();
+        }
+        Runnable admitted;
+        try {
+            admitted = admission != null ? admission.acquire(request) : null;
+        } catch (InterruptedException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        inFlight.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    writeResult(lineNumber, request.get("id"), signLine(request));
+                } catch (IOException e) {
+                    writeFailure = e;
+                } finally {
+                    release(admitted);
+                }
+            });
+        } catch (RuntimeException e) {
+            release(admitted);
+            throw e;
+        }
+    }
+
+    private Map<String, Object> signLine(Map<String, String> request) {
+        try {
+            return signer.sign(request);
+        } catch (Exception e) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", false);
+            result.put("error", "Signing failed: " + e.getMessage());
+            return result;
+        }
+    }
+
+    private void release(Runnable admitted) {
+        if (admitted != null) {
+            admitted.run();
+        }
+        if (inFlight.decrementAndGet() == 0 && writeFailure == null) {
+            try {
+                flush();
+            } catch (IOException e) {
+                writeFailure = e;
+            }
+        }
+        permits.release();
+    }
+
+    private void writeError(long lineNumber, String id, String error) throws IOException {
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", false);
+        result.put("error", error);
+        writeResult(lineNumber, id, result);
+    }
+
+    private void writeResult(long lineNumber, String id, Map<String, Object> result) throws IOException {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("line", lineNumber);
+        if (id != null) {
+            line.put("id", id);
+        }
+        line.putAll(result);
+        if (Boolean.TRUE.equals(result.get("success"))) {
+            succeeded.incrementAndGet();
+        } else {
+            failed.incrementAndGet();
+        }
+        write(line);
+    }
+
+    private void write(Map<String, Object> line) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(line);
+        synchronized (this) {
+            out.write(json);
+            out.write('\n');
+        }
+    }
+
+    private void flush() throws IOException {
+        synchronized (this) {
+            out.flush();
+        }
+    }
+
+    private static final int OK = 0;
+    private static final int TOO_LONG = 1;
+    private static final int EOF = -1;
+
+    /**
+     * Đọc một dòng (không gồm \n, bỏ \r cuối) vào {@code line}; phần vượt maxLineBytes bị bỏ qua tới hết dòng
+     */
+    private int readLine(InputStream in, ByteArrayOutputStream line) throws IOException {
+        line.reset();
+        boolean tooLong = false;
+        int previous = -1;
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            if (line.size() < maxLineBytes) {
+                line.write(b);
+            } else {
+                tooLong = true;
+            }
+            previous = b;
+        }
+        if (b == -1 && previous == -1) {
+            return EOF;
+        }
+        if (tooLong) {
+            return TOO_LONG;
+        }
+        if (previous == '\r') {
+            byte[] bytes = line.toByteArray();
+            line.reset();
+            line.write(bytes, 0, bytes.length - 1);
+        }
+        return OK;
+    }
+
+    @FunctionalInterface
+    public interface LineAdmission {
+        /**
+         * Chờ permit cho một dòng (gọi trên thread đọc)
+         *
+         * @return Trả permit, gọi khi dòng ký xong (null nếu dòng không cần permit)
+         */
+        Runnable acquire(Map<String, String> request) throws InterruptedException;
+    }
+
+    @FunctionalInterface
+    public interface LineSigner {
+        Map<String, Object> sign(Map<String, String> request) throws Exception;
+    }
+}
@@ -0,0 +1,162 @@
+package com.nt219.ksm.process;
+
+import com.nt219.ksm.jfr.CacheEvictionEvent;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache idempotency key → kết quả (hoặc computation đang chạy), giới hạn theo số entry và thời gian
+ *
+ * - Request trùng key khi computation đầu tiên còn đang chạy sẽ chờ cùng future (coalesce)
+ * - Request trùng key sau khi đã xong nhận lại đúng kết quả cũ, không tính lại
+ * - Computation lỗi (Exception hoặc Error) không được cache, client có thể retry
+ * - Cùng key nhưng payload khác → IllegalArgumentException
+ *
+ * Entry hết hạn sau {@code ttlMillis}; khi vượt {@code maxEntries} thì entry cũ nhất bị loại
+ * (TTL như nhau nên thứ tự insert cũng là thứ tự hết hạn).
+ */
+public class IdempotencyCache<T> {
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final ConcurrentHashMap<String, Entry<T>> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry<T>> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong computed = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    public IdempotencyCache(long ttlMillis, int maxEntries) {
+        if (ttlMillis <= 0 || maxEntries <= 0) {
+            throw new IllegalArgumentException("ttlMillis and maxEntries must be positive");
+        }
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Trả về kết quả đã có cho key, hoặc chạy computation đúng một lần
+     *
+     * @param key Idempotency key (request id do client gửi)
+     * @param fingerprint Đại diện payload của request, để phát hiện key bị dùng lại cho request khác
+     * @param computation Computation thực tế
+     */
+    public Outcome<T> getOrCompute(String key, String fingerprint, Callable<T> computation) throws Exception {
+        while (true) {
+            long now = System.nanoTime();
+            Entry<T> fresh = new Entry<>(key, fingerprint, now);
+            Entry<T> existing = entries.putIfAbsent(key, fresh);
+
+            if (existing == null) {
+                insertionOrder.add(fresh);
+                evictIfNeeded(now);
+                return new Outcome<>(run(fresh, computation), false);
+            }
+            if (existing.isExpired(now, ttlNanos)) {
+                entries.remove(key, existing);
+                continue;
+            }
+            if (!Objects.equals(existing.fingerprint, fingerprint)) {
+                throw new IllegalArgumentException("requestId " + key + " was already used for a different request");
+            }
+
+            if (existing.future.isDone()) {
+                replayed.incrementAndGet();
+            } else {
+                coalesced.incrementAndGet();
+            }
+            try {
+                return new Outcome<>(existing.future.get(), true);
+            } catch (ExecutionException e) {
+                // Computation đầu tiên lỗi và đã bị gỡ khỏi cache - thử lại như request mới
+                entries.remove(key, existing);
+            }
+        }
+    }
+
+    private T run(Entry<T> entry, Callable<T> computation) throws Exception {
+        try {
+            T value = computation.call();
+            computed.incrementAndGet();
+            entry.future.complete(value);
+            return value;
+        } catch (Throwable t) {
+            // Cả Error (OOM, AssertionError từ provider): nếu không, future không bao giờ xong
+            // và mọi retry cùng requestId chờ mãi
+            entries.remove(entry.key, entry);
+            entry.future.completeExceptionally(t);
+            throw t;
+        }
+    }
+
+    private void evictIfNeeded(long now) {
+        Entry<T> oldest;
+        while ((oldest = insertionOrder.peek()) != null
+                && (entries.size() > maxEntries || oldest.isExpired(now, ttlNanos)
+                    || entries.get(oldest.key) != oldest)) {
+            if (insertionOrder.remove(oldest) && entries.remove(oldest.key, oldest)) {
+                evicted.incrementAndGet();
+                CacheEvictionEvent.emit(CacheEvictionEvent.IDEMPOTENCY_CACHE, oldest.key,
+                    oldest.isExpired(now, ttlNanos) ? "expired" : "capacity");
+            }
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlMillis", ttlNanos / 1_000_000L);
+        stats.put("computed", computed.get());
+        stats.put("replayed", replayed.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("evicted", evicted.get());
+        return stats;
+    }
+
+    /**
+     * Kết quả kèm cờ cho biết có phải trả lại từ request trước hay không
+     */
+    public static final class Outcome<T> {
+        private final T value;
+        private final boolean duplicate;
+
+        Outcome(T value, boolean duplicate) {
+            this.value = value;
+            this.duplicate = duplicate;
+        }
+
+        public T getValue() { return value; }
+        public boolean isDuplicate() { return duplicate; }
+    }
+
+    private static final class Entry<T> {
+        final String key;
+        final String fingerprint;
+        final long createdAt;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+
+        Entry(String key, String fingerprint, long createdAt) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.createdAt = createdAt;
+        }
+
+        boolean isExpired(long now, long ttlNanos) {
+            return future.isDone() && now - createdAt > ttlNanos;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.nt219.ksm.process;
+
+import com.nt219.ksm.config.KSMConfig;
+import com.nt219.ksm.crypto.IPQCCryptoService;
+import com.nt219.ksm.crypto.PQCAlgorithm;
+import com.nt219.ksm.crypto.PQCCryptoFactory;
+import com.nt219.ksm.crypto.KeySeed;
+import com.nt219.ksm.crypto.PQCKeyPair;
+import com.nt219.ksm.jfr.KeyGenEvent;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool các cặp khóa PQC được tạo sẵn, để onboarding có latency ổn định
+ * 
+ * - Mỗi PQCAlgorithm có một pool riêng
+ * - Background worker (thread priority thấp) refill khi depth xuống dưới low watermark,
+ *   tạo thêm cho tới high watermark
+ * - take() lấy một cặp khóa từ pool, fallback tạo inline nếu pool rỗng
+ * 
+ * Cấu hình:
+ * - KSM_KEYPOOL_ENABLED (mặc định true)
+ * - KSM_KEYPOOL_ALGORITHMS (mặc định DILITHIUM3)
+ * - KSM_KEYPOOL_LOW_WATERMARK / KSM_KEYPOOL_HIGH_WATERMARK (mặc định 16 / 64)
+ * - KSM_KEYPOOL_CHECK_INTERVAL_MS (mặc định 500)
+ * - KSM_KEY_STORAGE_FORMAT: full (mặc định) | seed - khóa được tạo từ seed 32 byte và mang theo seed,
+ *   key store chỉ lưu seed (encrypted) và mở rộng lại cặp khóa ở lần dùng đầu
+ */
+@Component
+public class KeyPairPool {
+    
+    private static final boolean ENABLED = KSMConfig.getBoolean("KSM_KEYPOOL_ENABLED", "ksm.keypool.enabled", true);
+    private static final String ALGORITHMS = KSMConfig.get("KSM_KEYPOOL_ALGORITHMS", "ksm.keypool.algorithms", "DILITHIUM3");
+    private static final int LOW_WATERMARK = KSMConfig.getInt("KSM_KEYPOOL_LOW_WATERMARK", "ksm.keypool.lowWatermark", 16);
+    private static final int HIGH_WATERMARK = KSMConfig.getInt("KSM_KEYPOOL_HIGH_WATERMARK", "ksm.keypool.highWatermark", 64);
+    private static final long CHECK_INTERVAL_MS = KSMConfig.getLong("KSM_KEYPOOL_CHECK_INTERVAL_MS", "ksm.keypool.checkIntervalMs", 500);
+    static final boolean SEED_KEYS = "seed".equalsIgnoreCase(KSMConfig.get("KSM_KEY_STORAGE_FORMAT", "ksm.keyStorage.format", "full"));
+    
+    private final Map<PQCAlgorithm, AlgorithmPool> pools = new EnumMap<>(PQCAlgorithm.class);
+    private final boolean enabled;
+    private final int lowWatermark;
+    private final int highWatermark;
+    private final ScheduledExecutorService refiller;
+    private final AtomicBoolean refillPending = new AtomicBoolean();
+    private volatile boolean running = true;
+    
+    public KeyPairPool() {
+        this(ENABLED, ALGORITHMS, LOW_WATERMARK, HIGH_WATERMARK, CHECK_INTERVAL_MS);
+    }
+    
+    KeyPairPool(boolean enabled, String algorithms, int lowWatermark, int highWatermark, long checkIntervalMillis) {
+        this.enabled = enabled;
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        if (!enabled) {
+            this.refiller = null;
+            System.out.println("[KeyPairPool] Disabled");
+            return;
+        }
+        if (lowWatermark < 0 || highWatermark < lowWatermark) {
+            throw new IllegalArgumentException("Invalid key pool watermarks: low=" + lowWatermark + ", high=" + highWatermark);
+        }
+        
+        for (String name : algorithms.split(",")) {
+            if (!name.trim().isEmpty()) {
+                PQCAlgorithm algorithm = PQCAlgorithm.valueOf(name.trim());
+                pools.put(algorithm, new AlgorithmPool(algorithm));
+            }
+        }
+        
+        this.refiller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ksm-keypool-refill");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        refiller.scheduleWithFixedDelay(this::refillAll, 0, checkIntervalMillis, TimeUnit.MILLISECONDS);
+        System.out.println("[KeyPairPool] Started for " + pools.keySet()
+            + " (low=" + lowWatermark + ", high=" + highWatermark + ")");
+    }
+    
+    /**
+     * Lấy một cặp khóa đã tạo sẵn; tạo inline nếu thuật toán không được pool hoặc pool rỗng
+     */
+    public PQCKeyPair take(PQCAlgorithm algorithm) throws Exception {
+        AlgorithmPool pool = pools.get(algorithm);
+        if (pool == null) {
+            return generate(algorithm);
+        }
+        
+        PQCKeyPair keyPair = pool.keys.poll();
+        if (keyPair != null) {
+            pool.depth.decrementAndGet();
+            pool.hits.incrementAndGet();
+        } else {
+            pool.misses.incrementAndGet();
+            keyPair = generate(algorithm);
+        }
+        
+        if (pool.depth.get() <= lowWatermark) {
+            requestRefill();
+        }
+        return keyPair;
+    }
+    
+    /**
+     * Số cặp khóa đang có sẵn trong pool của thuật toán
+     */
+    public int depth(PQCAlgorithm algorithm) {
+        AlgorithmPool pool = pools.get(algorithm);
+        return pool != null ? pool.depth.get() : 0;
+    }
+    
+    /**
+     * Metrics: depth, hit/miss và tốc độ refill cho từng pool
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("lowWatermark", lowWatermark);
+        stats.put("highWatermark", highWatermark);
+        
+        Map<String, Object> perAlgorithm = new HashMap<>();
+        for (AlgorithmPool pool : pools.values()) {
+            Map<String, Object> poolStats = new HashMap<>();
+            poolStats.put("depth", pool.depth.get());
+            poolStats.put("hits", pool.hits.get());
+            poolStats.put("misses", pool.misses.get());
+            poolStats.put("refilled", pool.refilled.get());
+            poolStats.put("refillRatePerSec", Math.round(pool.refillRatePerSec * 100.0) / 100.0);
+            perAlgorithm.put(pool.algorithm.name(), poolStats);
+        }
+        stats.put("pools", perAlgorithm);
+        return stats;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (refiller != null) {
+            refiller.shutdownNow();
+        }
+    }
+    
+    private void requestRefill() {
+        if (refiller != null && running && refillPending.compareAndSet(false, true)) {
+            refiller.execute(this::refillAll);
+        }
+    }
+    
+    /**
+     * Chạy trên refill thread: nạp các pool dưới low watermark lên tới high watermark
+     */
+    private void refillAll() {
+        refillPending.set(false);
+        for (AlgorithmPool pool : pools.values()) {
+            if (pool.depth.get() > lowWatermark) {
+                continue;
+            }
+            
+            long start = System.nanoTime();
+            int generated = 0;
+            try {
+                while (running && pool.depth.get() < highWatermark) {
+                    pool.keys.offer(generate(pool.algorithm));
+                    pool.depth.incrementAndGet();
+                    generated++;
+                }
+            } catch (Exception e) {
+                System.err.println("[KeyPairPool] Refill failed for " + pool.algorithm + ": " + e.getMessage());
+            }
+            
+            if (generated > 0) {
+                pool.refilled.addAndGet(generated);
+                double seconds = Math.max(System.nanoTime() - start, 1) / 1_000_000_000.0;
+                pool.refillRatePerSec = generated / seconds;
+            }
+        }
+    }
+    
+    private static PQCKeyPair generate(PQCAlgorithm algorithm) throws Exception {
+        IPQCCryptoService service = PQCCryptoFactory.createService(algorithm);
+        KeyGenEvent event = new KeyGenEvent();
+        event.begin();
+        PQCKeyPair keyPair;
+        if (SEED_KEYS) {
+            byte[] seed = KeySeed.generate();
+            keyPair = service.generateKeyPair(algorithm, seed).withSeed(seed);
+        } else {
+            keyPair = service.generateKeyPair(algorithm);
+        }
+        // Thread type phân biệt tạo inline trên request (pool cạn) với refill nền
+        event.complete(null, algorithm.getName(), 0, keyPair.getPublicKey().length);
+        return keyPair;
+    }
+    
+    private static final class AlgorithmPool {
+        final PQCAlgorithm algorithm;
+        final ConcurrentLinkedQueue<PQCKeyPair> keys = new ConcurrentLinkedQueue<>();
+        final AtomicInteger depth = new AtomicInteger(); // size() của ConcurrentLinkedQueue là O(n)
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+        final AtomicLong refilled = new AtomicLong();
+        volatile double refillRatePerSec;
+        
+        AlgorithmPool(PQCAlgorithm algorithm) {
+            this.algorithm = algorithm;
+        }
+    }
+}
@@ -1,13 +1,34 @@
 package com.nt219.ksm.process;
 
+import com.nt219.ksm.config.KSMConfig;
 import com.nt219.ksm.crypto.*;
+import com.nt219.ksm.crypto.impl.EcdsaSecp256k1Service;
+import com.nt219.ksm.jfr.CacheEvictionEvent;
+import com.nt219.ksm.jfr.DecryptEvent;
+import com.nt219.ksm.jfr.EncryptEvent;
+import com.nt219.ksm.jfr.KeyLoadEvent;
+import com.nt219.ksm.jfr.SignEvent;
+import com.nt219.ksm.jfr.VerifyEvent;
+import com.nt219.ksm.storage.EntityPage;
 import com.nt219.ksm.storage.KeyStoreService;
+import com.nt219.ksm.storage.PublicKeyRecord;
+import com.nt219.ksm.tracing.KsmTracing;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Service để tích hợp PQC vào các process của hệ thống
@@ -16,6 +37,12 @@ import java.util.Map;
  * - Ký và xác thực transactions
  * - Mã hóa và giải mã dữ liệu nhạy cảm
  * - Quản lý khóa PQC với persistent storage
+ * - Chữ ký hybrid ECDSA secp256k1 + PQC trong một lần gọi
+ * 
+ * Private key trong cache nằm off-heap trong PrivateKeyArena (KSM_KEY_ARENA_ENABLED, mặc định bật):
+ * heap và GC pause không tăng theo số khóa được cache, slot được ghi 0 khi khóa bị xóa / rotate.
+ * Cấu hình: KSM_KEY_ARENA_SLAB_BYTES (mặc định 4 MB), KSM_KEY_ARENA_MAX_BYTES (mặc định 1 GB,
+ * cần -XX:MaxDirectMemorySize đủ lớn).
  * 
  * Features:
  * - ✅ Persistent key storage (encrypted private keys)
@@ -26,29 +53,62 @@ import java.util.Map;
 @Service
 public class PQCProcessService {
     
+    private static final long IDEMPOTENCY_TTL_MS = KSMConfig.getLong("KSM_IDEMPOTENCY_TTL_MS", "ksm.idempotency.ttlMs", 10 * 60 * 1000);
+    private static final String SIGNATURE_ALGORITHM = KSMConfig.get("KSM_SIGNATURE_ALGORITHM", "ksm.signature.algorithm", "DILITHIUM3");
+    private static final int IDEMPOTENCY_MAX_ENTRIES = KSMConfig.getInt("KSM_IDEMPOTENCY_MAX_ENTRIES", "ksm.idempotency.maxEntries", 100_000);
+    private static final int HYBRID_THREADS = KSMConfig.getInt("KSM_HYBRID_THREADS", "ksm.hybrid.threads", Runtime.getRuntime().availableProcessors());
+    // Khóa lưu dạng seed được mở rộng lúc load: mặc định không preload để khởi động không phải chạy keygen cho mọi entity
+    private static final boolean PRELOAD_KEYS = KSMConfig.getBoolean("KSM_PRELOAD_KEYS", "ksm.preloadKeys", !KeyPairPool.SEED_KEYS);
+    private static final boolean KEY_ARENA_ENABLED = KSMConfig.getBoolean("KSM_KEY_ARENA_ENABLED", "ksm.keyArena.enabled", true);
+    private static final int KEY_ARENA_SLAB_BYTES = KSMConfig.getInt("KSM_KEY_ARENA_SLAB_BYTES", "ksm.keyArena.slabBytes", 4 * 1024 * 1024);
+    private static final long KEY_ARENA_MAX_BYTES = KSMConfig.getLong("KSM_KEY_ARENA_MAX_BYTES", "ksm.keyArena.maxBytes", 1024L * 1024 * 1024);
+    
     private final Map<String, PQCKeyPair> keyCache; // In-memory cache for performance
     private final PQCAlgorithm defaultSignatureAlgorithm;
     private final PQCAlgorithm defaultEncryptionAlgorithm;
     private final KeyStoreService keyStoreService;
+    private final KeyPairPool keyPairPool;
+    private final IdempotencyCache<SignedTransaction> signedTransactionRequests;
+    private final Map<String, PQCKeyPair> classicalKeyCache = new ConcurrentHashMap<>();
+    private final EcdsaSecp256k1Service ecdsaService = new EcdsaSecp256k1Service();
+    private final ExecutorService hybridExecutor; // nửa ECDSA của chữ ký hybrid chạy song song với nửa PQC
+    private final PrivateKeyArena keyArena; // null = private key giữ trên heap
+    private volatile boolean keyArenaFullLogged;
     
     @Autowired
-    public PQCProcessService(KeyStoreService keyStoreService) {
+    public PQCProcessService(KeyStoreService keyStoreService, KeyPairPool keyPairPool) {
         this.keyStoreService = keyStoreService;
-        this.keyCache = new HashMap<>();
-        this.defaultSignatureAlgorithm = PQCAlgorithm.DILITHIUM3;
+        this.keyPairPool = keyPairPool;
+        this.signedTransactionRequests = new IdempotencyCache<>(IDEMPOTENCY_TTL_MS, IDEMPOTENCY_MAX_ENTRIES);
+        this.keyCache = new ConcurrentHashMap<>(); // rotateKeyPair thay khóa trong khi request khác đang đọc
+        this.defaultSignatureAlgorithm = PQCAlgorithm.fromName(SIGNATURE_ALGORITHM);
         this.defaultEncryptionAlgorithm = PQCAlgorithm.KYBER768;
         
+        AtomicInteger threadCount = new AtomicInteger();
+        // Context.taskWrapping: span ECDSA chạy trên thread khác vẫn là con của span của request
+        this.hybridExecutor = Context.taskWrapping(Executors.newFixedThreadPool(HYBRID_THREADS, r -> {
+            Thread t = new Thread(r, "ksm-hybrid-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }));
+        this.keyArena = KEY_ARENA_ENABLED ? new PrivateKeyArena(KEY_ARENA_SLAB_BYTES, KEY_ARENA_MAX_BYTES) : null;
+        
         // Load existing keys from persistent storage
         loadExistingKeys();
     }
     
     /**
      * Load all existing keys from persistent storage into cache
+     * KSM_PRELOAD_KEYS=false: bỏ qua (giải mã mọi private key là O(n)), khóa được load lazily ở lần dùng đầu
      */
     private void loadExistingKeys() {
+        if (!PRELOAD_KEYS) {
+            System.out.println("[PQCProcessService] Key preload disabled, keys are loaded on first use");
+            return;
+        }
         try {
             Map<String, PQCKeyPair> storedKeys = keyStoreService.loadAllKeyPairs();
-            keyCache.putAll(storedKeys);
+            storedKeys.forEach((entityId, keyPair) -> cacheKeyPair(keyCache, entityId, keyPair));
             System.out.println("[PQCProcessService] Loaded " + storedKeys.size() + " keys from storage");
         } catch (Exception e) {
             System.err.println("[PQCProcessService] Failed to load keys from storage: " + e.getMessage());
@@ -56,32 +116,54 @@ public class PQCProcessService {
         }
     }
     
+    /**
+     * Thuật toán chữ ký mặc định của entity mới (KSM_SIGNATURE_ALGORITHM)
+     */
+    public PQCAlgorithm getDefaultSignatureAlgorithm() {
+        return defaultSignatureAlgorithm;
+    }
+    
     /**
      * Tạo cặp khóa cho một user/entity
      * ✅ Automatically saves to persistent storage
+     * ✅ Lấy cặp khóa tạo sẵn từ KeyPairPool (không tạo inline nếu pool còn khóa)
      * 
      * @param entityId ID của entity (ví dụ: user ID, bank code)
      * @return Cặp khóa được tạo
      */
     public PQCKeyPair generateKeyPairForEntity(String entityId) throws Exception {
+        return generateKeyPairForEntity(entityId, defaultSignatureAlgorithm);
+    }
+    
+    /**
+     * Tạo cặp khóa cho entity với thuật toán chữ ký chỉ định
+     * Thuật toán được lưu cùng khóa, mọi lần ký/verify sau đó của entity dùng thuật toán này
+     * (ví dụ FALCON_512 cho entity cần chữ ký nhỏ để lưu on-chain)
+     * 
+     * @param algorithm Thuật toán chữ ký (DILITHIUM*, FALCON_*, SPHINCS_PLUS_*)
+     */
+    public PQCKeyPair generateKeyPairForEntity(String entityId, PQCAlgorithm algorithm) throws Exception {
+        if (!PQCCryptoFactory.isSignatureAlgorithm(algorithm)) {
+            throw new IllegalArgumentException(algorithm + " is not a signature algorithm");
+        }
+        
         // Check if key already exists
         if (keyStoreService.keyExists(entityId)) {
             System.out.println("[PQCProcessService] Key already exists for: " + entityId);
             return getKeyPair(entityId);
         }
         
-        // Generate new key pair
-        IPQCCryptoService service = PQCCryptoFactory.createService(defaultSignatureAlgorithm);
-        PQCKeyPair keyPair = service.generateKeyPair(defaultSignatureAlgorithm);
+        // Bind a pre-generated key pair to this entity
+        PQCKeyPair keyPair = keyPairPool.take(algorithm);
         
         // Save to persistent storage (encrypted)
         keyStoreService.saveKeyPair(entityId, keyPair);
         
-        // Cache in memory
-        keyCache.put(entityId, keyPair);
+        // Cache in memory (private key chuyển vào arena off-heap)
+        PQCKeyPair cached = cacheKeyPair(keyCache, entityId, keyPair);
         
-        System.out.println("[PQCProcessService] Generated and saved key pair for: " + entityId);
-        return keyPair;
+        System.out.println("[PQCProcessService] Generated and saved " + algorithm + " key pair for: " + entityId);
+        return cached;
     }
     
     /**
@@ -89,17 +171,36 @@ public class PQCProcessService {
      * ✅ Tries cache first, then loads from storage if needed
      */
     public PQCKeyPair getKeyPair(String entityId) {
-        // Try cache first
-        PQCKeyPair cached = keyCache.get(entityId);
-        if (cached != null) {
-            return cached;
+        Span span = KsmTracing.tracer().spanBuilder("ksm.getKeyPair")
+            .setAttribute(KsmTracing.ENTITY_ID, entityId)
+            .startSpan();
+        KeyLoadEvent event = new KeyLoadEvent();
+        event.begin();
+        try (Scope scope = span.makeCurrent()) {
+            // Try cache first
+            PQCKeyPair cached = keyCache.get(entityId);
+            span.setAttribute(KsmTracing.CACHE_HIT, cached != null);
+            PQCKeyPair keyPair = cached != null ? cached : loadKeyPair(entityId);
+            event.complete(entityId, keyPair != null ? keyPair.getAlgorithm() : null, cached != null, keyPair != null);
+            return keyPair;
+        } finally {
+            span.end();
         }
-        
-        // Load from persistent storage
+    }
+    
+    /**
+     * Cache miss: load from persistent storage (giải mã private key) rồi đưa vào cache
+     */
+    private PQCKeyPair loadKeyPair(String entityId) {
         try {
             PQCKeyPair keyPair = keyStoreService.loadKeyPair(entityId);
             if (keyPair != null) {
-                keyCache.put(entityId, keyPair); // Cache it
+                keyPair = toArena(keyPair);
+                PQCKeyPair existing = keyCache.putIfAbsent(entityId, keyPair); // Cache it
+                if (existing != null) {
+                    keyPair.release(); // thread khác đã load cùng entity
+                    return existing;
+                }
                 System.out.println("[PQCProcessService] Loaded key from storage for: " + entityId);
             }
             return keyPair;
@@ -121,10 +222,110 @@ public class PQCProcessService {
      * ✅ Removes from both cache and persistent storage
      */
     public boolean deleteKeyPair(String entityId) {
-        keyCache.remove(entityId);
+        PQCKeyPair removed = keyCache.remove(entityId);
+        if (removed != null) {
+            removed.release();
+            CacheEvictionEvent.emit(CacheEvictionEvent.KEY_PAIR_CACHE, entityId, "removed");
+        }
+        release(classicalKeyCache.remove(entityId));
         return keyStoreService.deleteKeyPair(entityId);
     }
     
+    /**
+     * Rotate khóa của entity
+     * Phiên bản cũ được archive và vẫn dùng để verify các chữ ký đã phát hành (qua keyId),
+     * chữ ký mới dùng phiên bản mới.
+     * 
+     * @return Cặp khóa mới (version = version cũ + 1)
+     */
+    public PQCKeyPair rotateKeyPair(String entityId) throws Exception {
+        return rotateKeyPair(entityId, null);
+    }
+    
+    /**
+     * Rotate khóa, đồng thời có thể chuyển entity sang thuật toán chữ ký khác
+     * 
+     * @param algorithm Thuật toán của phiên bản mới (null = giữ thuật toán hiện tại)
+     */
+    public synchronized PQCKeyPair rotateKeyPair(String entityId, PQCAlgorithm algorithm) throws Exception {
+        PQCKeyPair current = getKeyPair(entityId);
+        if (current == null) {
+            throw new IllegalArgumentException("Key pair not found for entity: " + entityId);
+        }
+        PQCAlgorithm nextAlgorithm = algorithm != null ? algorithm : signatureAlgorithmOf(current);
+        if (!PQCCryptoFactory.isSignatureAlgorithm(nextAlgorithm)) {
+            throw new IllegalArgumentException(nextAlgorithm + " is not a signature algorithm");
+        }
+        
+        PQCKeyPair rotated = keyPairPool.take(nextAlgorithm).withVersion(current.getVersion() + 1);
+        keyStoreService.rotateKeyPair(entityId, rotated);
+        rotated = cacheKeyPair(keyCache, entityId, rotated); // slot của phiên bản cũ được ghi 0
+        
+        System.out.println("[PQCProcessService] Rotated key for " + entityId + ": "
+            + current.getKeyId() + " → " + rotated.getKeyId() + " (" + nextAlgorithm + ")");
+        return rotated;
+    }
+    
+    /**
+     * Đưa cặp khóa vào cache (private key chuyển vào arena), release phiên bản bị thay thế
+     */
+    private PQCKeyPair cacheKeyPair(Map<String, PQCKeyPair> cache, String entityId, PQCKeyPair keyPair) {
+        PQCKeyPair cached = toArena(keyPair);
+        PQCKeyPair previous = cache.put(entityId, cached);
+        if (previous != null && previous != cached) {
+            previous.release();
+            CacheEvictionEvent.emit(CacheEvictionEvent.KEY_PAIR_CACHE, entityId, "replaced");
+        }
+        return cached;
+    }
+    
+    private PQCKeyPair toArena(PQCKeyPair keyPair) {
+        if (keyArena == null) {
+            return keyPair;
+        }
+        try {
+            return keyPair.toArena(keyArena);
+        } catch (IllegalStateException e) {
+            // Arena đầy: vẫn phục vụ được, khóa này ở lại trên heap
+            if (!keyArenaFullLogged) {
+                keyArenaFullLogged = true;
+                System.err.println("[PQCProcessService] " + e.getMessage() + ", keeping further private keys on heap");
+            }
+            return keyPair;
+        }
+    }
+    
+    private static void release(PQCKeyPair keyPair) {
+        if (keyPair != null) {
+            keyPair.release();
+        }
+    }
+    
+    /**
+     * Chạy action với private key hiện tại của entity
+     * Nếu khóa bị rotate / xóa (slot đã release) giữa lúc lấy từ cache và lúc đọc private key thì đọc lại cache một lần.
+     */
+    private <T> T withPrivateKey(String entityId, String notFoundMessage, KeyAction<T> action) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            PQCKeyPair keyPair = getKeyPair(entityId); // Auto-loads from storage if needed
+            if (keyPair == null) {
+                throw new IllegalArgumentException(notFoundMessage);
+            }
+            try {
+                return keyPair.usePrivateKey(privateKey -> action.apply(keyPair, privateKey));
+            } catch (PrivateKeyArena.ReleasedKeyException e) {
+                if (attempt >= 2) {
+                    throw e;
+                }
+            }
+        }
+    }
+    
+    @FunctionalInterface
+    private interface KeyAction<T> {
+        T apply(PQCKeyPair keyPair, byte[] privateKey) throws Exception;
+    }
+    
     /**
      * Get public key only (for sharing)
      */
@@ -140,15 +341,49 @@ public class PQCProcessService {
         return keyStoreService.listEntities();
     }
     
+    /**
+     * List entities theo trang, lọc theo prefix (ví dụ: bank code)
+     */
+    public EntityPage listEntities(String prefix, String cursor, int limit) {
+        return keyStoreService.listEntities(prefix, cursor, limit);
+    }
+    
     /**
      * Get storage statistics
      */
     public Map<String, Object> getStorageStats() {
         Map<String, Object> stats = keyStoreService.getStorageStats();
         stats.put("cachedKeys", keyCache.size());
+        if (keyArena != null) {
+            stats.put("keyArena", keyArena.getStats());
+        }
         return stats;
     }
     
+    /**
+     * Ghi snapshot nhị phân của key store ngay
+     * @return Số entity trong snapshot
+     */
+    public int writeSnapshot() throws Exception {
+        return keyStoreService.writeSnapshot();
+    }
+    
+    /**
+     * Rotate master key; data key của các bản ghi được wrap lại ở nền
+     * Khóa đã cache không bị ảnh hưởng (đã giải mã), ký không bị chặn trong lúc rewrap
+     * @return Version master key mới
+     */
+    public int rotateMasterKey() throws Exception {
+        return keyStoreService.rotateMasterKey();
+    }
+    
+    /**
+     * Get key pair pool metrics (depth, hit/miss, refill rate)
+     */
+    public Map<String, Object> getKeyPoolStats() {
+        return keyPairPool.getStats();
+    }
+    
     /**
      * Ký một transaction hoặc message
      * ✅ Uses private key from persistent storage
@@ -158,32 +393,186 @@ public class PQCProcessService {
      * @return Chữ ký số
      */
     public PQCSignature signTransaction(String entityId, String message) throws Exception {
-        PQCKeyPair keyPair = getKeyPair(entityId); // Auto-loads from storage if needed
-        if (keyPair == null) {
-            throw new IllegalArgumentException("Key pair not found for entity: " + entityId + ". Generate key first!");
-        }
-        
-        IPQCCryptoService service = PQCCryptoFactory.createService(defaultSignatureAlgorithm);
-        byte[] messageBytes = message.getBytes(StandardCharsets.UTF_8);
-        return service.sign(messageBytes, keyPair.getPrivateKey(), defaultSignatureAlgorithm);
+        return KsmTracing.inSpan("ksm.signTransaction", span -> {
+            span.setAttribute(KsmTracing.ENTITY_ID, entityId);
+            byte[] messageBytes = message.getBytes(StandardCharsets.UTF_8);
+            return withPrivateKey(entityId, "Key pair not found for entity: " + entityId + ". Generate key first!",
+                (keyPair, privateKey) -> {
+                    // Ký bằng thuật toán đã chọn cho entity khi tạo khóa
+                    PQCAlgorithm algorithm = signatureAlgorithmOf(keyPair);
+                    IPQCCryptoService service = PQCCryptoFactory.createService(algorithm);
+                    span.setAttribute(KsmTracing.KEY_ID, keyPair.getKeyId());
+                    SignEvent event = new SignEvent();
+                    event.begin();
+                    // Gắn keyId để verifier tìm đúng phiên bản khóa kể cả sau khi rotate
+                    PQCSignature signature = service.sign(messageBytes, privateKey, algorithm)
+                        .withKeyId(keyPair.getKeyId());
+                    event.complete(entityId, algorithm.getName(), messageBytes.length, signature.getSignature().length);
+                    return signature;
+                });
+        });
     }
     
     /**
      * Xác thực chữ ký của transaction
+     * Nếu chữ ký mang keyId thì verify bằng đúng phiên bản khóa đó (kể cả phiên bản đã archive),
+     * ngược lại dùng phiên bản hiện tại của entity.
+     * 
      * @param entityId ID của entity đã ký
      * @param message Dữ liệu gốc
      * @param signature Chữ ký số
      * @return true nếu chữ ký hợp lệ
      */
     public boolean verifyTransaction(String entityId, String message, PQCSignature signature) throws Exception {
+        if (signature.isHybrid()) {
+            return verifyHybrid(entityId, message, signature);
+        }
+        return verifyBytes(entityId, message.getBytes(StandardCharsets.UTF_8), signature);
+    }
+    
+    private boolean verifyBytes(String entityId, byte[] messageBytes, PQCSignature signature) throws Exception {
         PQCKeyPair keyPair = getKeyPair(entityId); // Auto-loads from storage if needed
         if (keyPair == null) {
             throw new IllegalArgumentException("Key pair not found for entity: " + entityId);
         }
         
-        IPQCCryptoService service = PQCCryptoFactory.createService(defaultSignatureAlgorithm);
-        byte[] messageBytes = message.getBytes(StandardCharsets.UTF_8);
-        return service.verify(messageBytes, signature, keyPair.getPublicKey(), defaultSignatureAlgorithm);
+        byte[] publicKey = keyPair.getPublicKey();
+        PQCAlgorithm algorithm = signatureAlgorithmOf(keyPair);
+        String keyId = signature.getKeyId();
+        if (keyId != null && !keyId.equals(keyPair.getKeyId())) {
+            PublicKeyRecord record = keyStoreService.findPublicKey(keyId);
+            if (record == null || !record.getEntityId().equals(entityId)) {
+                System.out.println("[PQCProcessService] Unknown key ID " + keyId + " for entity: " + entityId);
+                return false;
+            }
+            publicKey = record.getPublicKey();
+            algorithm = PQCAlgorithm.fromName(record.getAlgorithm()); // phiên bản cũ có thể dùng thuật toán khác
+        }
+        
+        IPQCCryptoService service = PQCCryptoFactory.createService(algorithm);
+        VerifyEvent event = new VerifyEvent();
+        event.begin();
+        boolean valid = service.verify(messageBytes, signature, publicKey, algorithm);
+        event.complete(entityId, algorithm.getName(), messageBytes.length, signature.getSignature().length, valid);
+        return valid;
+    }
+    
+    /**
+     * Ký hybrid (composite): ECDSA secp256k1 + chữ ký PQC của entity trên cùng digest
+     * keccak256(message), trả về trong một PQCSignature
+     * 
+     * Hai chữ ký chạy song song (ECDSA trên hybridExecutor, PQC trên thread hiện tại) nên
+     * độ trễ ≈ max(ECDSA, PQC) thay vì một round-trip riêng cho mỗi chữ ký.
+     * Khóa ECDSA của entity được tạo ở lần ký hybrid đầu tiên.
+     */
+    public PQCSignature signHybrid(String entityId, String message) throws Exception {
+        return KsmTracing.inSpan("ksm.signHybrid", span -> {
+            span.setAttribute(KsmTracing.ENTITY_ID, entityId);
+            if (getKeyPair(entityId) == null) {
+                throw new IllegalArgumentException("Key pair not found for entity: " + entityId + ". Generate key first!");
+            }
+            PQCKeyPair classicalKeyPair = getClassicalKeyPair(entityId, true);
+            byte[] digest = canonicalDigest(message);
+            
+            CompletableFuture<byte[]> classical = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return KsmTracing.inSpan("ecdsa.sign",
+                        ecdsaSpan -> classicalKeyPair.usePrivateKey(privateKey -> ecdsaService.sign(digest, privateKey)));
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, hybridExecutor);
+            
+            PQCSignature pqc = withPrivateKey(entityId, "Key pair not found for entity: " + entityId,
+                (current, privateKey) -> {
+                    PQCAlgorithm algorithm = signatureAlgorithmOf(current);
+                    span.setAttribute(KsmTracing.KEY_ID, current.getKeyId());
+                    SignEvent event = new SignEvent();
+                    event.begin();
+                    PQCSignature signature = PQCCryptoFactory.createService(algorithm).sign(digest, privateKey, algorithm)
+                        .withKeyId(current.getKeyId());
+                    event.complete(entityId, algorithm.getName(), digest.length, signature.getSignature().length);
+                    return signature;
+                });
+            
+            return pqc.withClassical(await(classical), EcdsaSecp256k1Service.ALGORITHM);
+        });
+    }
+    
+    /**
+     * Verify chữ ký hybrid: hai nửa được verify song song, hợp lệ khi cả hai hợp lệ
+     */
+    private boolean verifyHybrid(String entityId, String message, PQCSignature signature) throws Exception {
+        PQCKeyPair classicalKeyPair = getClassicalKeyPair(entityId, false);
+        if (classicalKeyPair == null) {
+            System.out.println("[PQCProcessService] No classical key for entity: " + entityId);
+            return false;
+        }
+        byte[] digest = canonicalDigest(message);
+        
+        CompletableFuture<Boolean> classical = CompletableFuture.supplyAsync(
+            () -> ecdsaService.verify(digest, signature.getClassicalSignature(), classicalKeyPair.getPublicKey()), hybridExecutor);
+        boolean pqcValid = verifyBytes(entityId, digest, signature);
+        
+        return await(classical) && pqcValid;
+    }
+    
+    /**
+     * Public key ECDSA secp256k1 của entity (null nếu entity chưa ký hybrid lần nào)
+     */
+    public byte[] getClassicalPublicKey(String entityId) throws Exception {
+        PQCKeyPair classicalKeyPair = getClassicalKeyPair(entityId, false);
+        return classicalKeyPair != null ? classicalKeyPair.getPublicKey() : null;
+    }
+    
+    /**
+     * Digest chuẩn mà cả hai nửa của chữ ký hybrid cùng ký: keccak256(UTF-8(message)), như Besu
+     */
+    public static byte[] canonicalDigest(String message) {
+        return Keccak.keccak256(message.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private PQCKeyPair getClassicalKeyPair(String entityId, boolean create) throws Exception {
+        PQCKeyPair cached = classicalKeyCache.get(entityId);
+        if (cached != null) {
+            return cached;
+        }
+        synchronized (classicalKeyCache) {
+            cached = classicalKeyCache.get(entityId);
+            if (cached != null) {
+                return cached;
+            }
+            PQCKeyPair keyPair = keyStoreService.loadClassicalKeyPair(entityId);
+            if (keyPair == null && create) {
+                keyPair = ecdsaService.generateKeyPair();
+                keyStoreService.saveClassicalKeyPair(entityId, keyPair);
+            }
+            if (keyPair != null) {
+                keyPair = cacheKeyPair(classicalKeyCache, entityId, keyPair);
+            }
+            return keyPair;
+        }
+    }
+    
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        hybridExecutor.shutdownNow();
+        if (keyArena != null) {
+            keyArena.close(); // ghi 0 toàn bộ private key off-heap
+        }
+    }
+    
+    private static PQCAlgorithm signatureAlgorithmOf(PQCKeyPair keyPair) {
+        return PQCAlgorithm.fromName(keyPair.getAlgorithm());
     }
     
     /**
@@ -200,7 +589,11 @@ public class PQCProcessService {
         
         IPQCCryptoService service = PQCCryptoFactory.createService(defaultEncryptionAlgorithm);
         byte[] plaintextBytes = plaintext.getBytes(StandardCharsets.UTF_8);
-        return service.encrypt(plaintextBytes, keyPair.getPublicKey(), defaultEncryptionAlgorithm);
+        EncryptEvent event = new EncryptEvent();
+        event.begin();
+        byte[] ciphertext = service.encrypt(plaintextBytes, keyPair.getPublicKey(), defaultEncryptionAlgorithm);
+        event.complete(entityId, defaultEncryptionAlgorithm.getName(), plaintextBytes.length, ciphertext.length);
+        return ciphertext;
     }
     
     /**
@@ -212,13 +605,15 @@ public class PQCProcessService {
      * @return Dữ liệu đã giải mã
      */
     public String decryptSensitiveData(String entityId, byte[] ciphertext) throws Exception {
-        PQCKeyPair keyPair = getKeyPair(entityId); // Auto-loads from storage if needed
-        if (keyPair == null) {
-            throw new IllegalArgumentException("Key pair not found for entity: " + entityId);
-        }
-        
         IPQCCryptoService service = PQCCryptoFactory.createService(defaultEncryptionAlgorithm);
-        byte[] decrypted = service.decrypt(ciphertext, keyPair.getPrivateKey(), defaultEncryptionAlgorithm);
+        byte[] decrypted = withPrivateKey(entityId, "Key pair not found for entity: " + entityId,
+            (keyPair, privateKey) -> {
+                DecryptEvent event = new DecryptEvent();
+                event.begin();
+                byte[] plaintext = service.decrypt(ciphertext, privateKey, defaultEncryptionAlgorithm);
+                event.complete(entityId, defaultEncryptionAlgorithm.getName(), ciphertext.length, plaintext.length);
+                return plaintext;
+            });
         return new String(decrypted, StandardCharsets.UTF_8);
     }
     
@@ -235,15 +630,31 @@ public class PQCProcessService {
             String toEntityId, 
             double amount, 
             String description) throws Exception {
+        return createSignedTransaction(fromEntityId, toEntityId, amount, description, false);
+    }
+    
+    /**
+     * Tạo transaction object, ký hybrid (ECDSA + PQC) nếu hybrid = true
+     */
+    public SignedTransaction createSignedTransaction(
+            String fromEntityId, 
+            String toEntityId, 
+            double amount, 
+            String description,
+            boolean hybrid) throws Exception {
         
-        // Tạo transaction data
+        // Tạo transaction data; TIMESTAMP và NONCE đứng cuối (sau DESC) để ReplayGuard đọc được đúng giá trị đã ký
+        long timestamp = System.currentTimeMillis();
+        long nonce = keyStoreService.nextNonce(fromEntityId);
         String transactionData = String.format(
-            "FROM:%s|TO:%s|AMOUNT:%.2f|DESC:%s|TIMESTAMP:%d",
-            fromEntityId, toEntityId, amount, description, System.currentTimeMillis()
+            "FROM:%s|TO:%s|AMOUNT:%.2f|DESC:%s|TIMESTAMP:%d|NONCE:%d",
+            fromEntityId, toEntityId, amount, description, timestamp, nonce
         );
         
         // Ký transaction
-        PQCSignature signature = signTransaction(fromEntityId, transactionData);
+        PQCSignature signature = hybrid
+            ? signHybrid(fromEntityId, transactionData)
+            : signTransaction(fromEntityId, transactionData);
         
         return new SignedTransaction(
             fromEntityId,
@@ -252,10 +663,55 @@ public class PQCProcessService {
             description,
             transactionData,
             signature,
-            System.currentTimeMillis()
+            timestamp,
+            nonce
         );
     }
     
+    /**
+     * Tạo signed transaction idempotent theo requestId
+     * Client retry cùng requestId (ví dụ sau timeout) nhận lại đúng transaction đã ký lần đầu,
+     * không ký lại; request trùng đang chạy sẽ chờ kết quả của request đầu tiên.
+     * 
+     * @param requestId Idempotency key do client sinh (null = không dedup)
+     */
+    public IdempotencyCache.Outcome<SignedTransaction> createSignedTransaction(
+            String requestId,
+            String fromEntityId,
+            String toEntityId,
+            double amount,
+            String description) throws Exception {
+        return createSignedTransaction(requestId, fromEntityId, toEntityId, amount, description, false);
+    }
+    
+    /**
+     * Như trên, với tùy chọn ký hybrid
+     */
+    public IdempotencyCache.Outcome<SignedTransaction> createSignedTransaction(
+            String requestId,
+            String fromEntityId,
+            String toEntityId,
+            double amount,
+            String description,
+            boolean hybrid) throws Exception {
+        
+        if (requestId == null || requestId.isEmpty()) {
+            return new IdempotencyCache.Outcome<>(
+                createSignedTransaction(fromEntityId, toEntityId, amount, description, hybrid), false);
+        }
+        
+        String fingerprint = String.format("%s|%s|%.2f|%s|%s", fromEntityId, toEntityId, amount, description, hybrid);
+        return signedTransactionRequests.getOrCompute(requestId, fingerprint,
+            () -> createSignedTransaction(fromEntityId, toEntityId, amount, description, hybrid));
+    }
+    
+    /**
+     * Get idempotency cache metrics (computed / replayed / coalesced)
+     */
+    public Map<String, Object> getIdempotencyStats() {
+        return signedTransactionRequests.getStats();
+    }
+    
     /**
      * Xác thực signed transaction
      */
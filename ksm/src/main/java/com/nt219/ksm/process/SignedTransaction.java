@@ -1,5 +1,6 @@
 package com.nt219.ksm.process;
 
+import com.nt219.ksm.crypto.Codec;
 import com.nt219.ksm.crypto.PQCSignature;
 
 /**
@@ -13,6 +14,7 @@ public class SignedTransaction {
     private final String transactionData;
     private final PQCSignature signature;
     private final long timestamp;
+    private final long nonce; // -1 = transactionData không có NONCE
     
     public SignedTransaction(
             String fromEntityId,
@@ -22,6 +24,22 @@ public class SignedTransaction {
             String transactionData,
             PQCSignature signature,
             long timestamp) {
+        this(fromEntityId, toEntityId, amount, description, transactionData, signature, timestamp, -1);
+    }
+    
+    /**
+     * @param timestamp TIMESTAMP đã ký trong transactionData
+     * @param nonce NONCE đã ký trong transactionData (tăng dần theo entity, dùng cho chống replay)
+     */
+    public SignedTransaction(
+            String fromEntityId,
+            String toEntityId,
+            double amount,
+            String description,
+            String transactionData,
+            PQCSignature signature,
+            long timestamp,
+            long nonce) {
         this.fromEntityId = fromEntityId;
         this.toEntityId = toEntityId;
         this.amount = amount;
@@ -29,6 +47,7 @@ public class SignedTransaction {
         this.transactionData = transactionData;
         this.signature = signature;
         this.timestamp = timestamp;
+        this.nonce = nonce;
     }
     
     // Getters
@@ -39,18 +58,20 @@ public class SignedTransaction {
     public String getTransactionData() { return transactionData; }
     public PQCSignature getSignature() { return signature; }
     public long getTimestamp() { return timestamp; }
+    public long getNonce() { return nonce; }
     
     // Alias methods for compatibility
     public String getFrom() { return fromEntityId; }
     public String getTo() { return toEntityId; }
     public String getAlgorithm() { return signature != null ? signature.getAlgorithm() : null; }
+    public String getKeyId() { return signature != null ? signature.getKeyId() : null; }
     
     @Override
     public String toString() {
         return String.format(
-            "SignedTransaction{from=%s, to=%s, amount=%.2f, desc=%s, timestamp=%d, signature=%s}",
-            fromEntityId, toEntityId, amount, description, timestamp, 
-            signature != null ? signature.getSignatureHex().substring(0, 32) + "..." : "null"
+            "SignedTransaction{from=%s, to=%s, amount=%.2f, desc=%s, timestamp=%d, nonce=%d, keyId=%s, signature=%s}",
+            fromEntityId, toEntityId, amount, description, timestamp, nonce, getKeyId(),
+            signature != null ? Codec.hexPreview(signature.getSignature(), 16) : "null"
         );
     }
 }
@@ -0,0 +1,67 @@
+package com.nt219.ksm.replay;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter kích thước cố định, thread-safe (set bit bằng CAS, không khóa)
+ *
+ * Số bit làm tròn lên lũy thừa của 2 để chọn bit bằng mask; k vị trí sinh bằng double hashing
+ * h1 + i·h2 (Kirsch-Mitzenmacher) từ hai long của digest, không hash lại.
+ */
+final class BloomFilter {
+
+    private static final long MAX_BITS = (long) Integer.MAX_VALUE * 64;
+
+    private final AtomicLongArray words;
+    private final long mask;
+    private final int hashes;
+
+    /**
+     * @param expectedEntries Số phần tử dự kiến
+     * @param falsePositiveRate Tỉ lệ false positive mong muốn khi đạt expectedEntries
+     */
+    BloomFilter(long expectedEntries, double falsePositiveRate) {
+        if (expectedEntries <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter settings");
+        }
+        double optimalBits = -expectedEntries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        long bits = 64;
+        while (bits < optimalBits && bits < MAX_BITS) {
+            bits <<= 1;
+        }
+        this.words = new AtomicLongArray((int) (bits >>> 6));
+        this.mask = bits - 1;
+        this.hashes = Math.max(1, (int) Math.round(optimalBits / expectedEntries * Math.log(2)));
+    }
+
+    boolean mightContain(long h1, long h2) {
+        long step = h2 | 1; // lẻ: k vị trí không lặp chu kỳ sớm trên bảng 2^n bit
+        for (int i = 0; i < hashes; i++) {
+            long bit = (h1 + i * step) & mask;
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void put(long h1, long h2) {
+        long step = h2 | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = (h1 + i * step) & mask;
+            int word = (int) (bit >>> 6);
+            long flag = 1L << bit;
+            if ((words.get(word) & flag) == 0) {
+                words.getAndAccumulate(word, flag, (a, b) -> a | b);
+            }
+        }
+    }
+
+    int hashes() {
+        return hashes;
+    }
+
+    long memoryBytes() {
+        return (long) words.length() * 8;
+    }
+}
@@ -0,0 +1,443 @@
+package com.nt219.ksm.replay;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Phát hiện replay của transaction đã ký, bộ nhớ cố định
+ *
+ * Transaction được nhận diện bằng SHA-256(entityId ‖ 0 ‖ transactionData); TIMESTAMP và NONCE đọc từ
+ * chính transactionData (phần đã được ký), không tin field nào ngoài chữ ký.
+ *
+ * 1. Cửa sổ thời gian: chỉ nhận TIMESTAMP trong [now - window, now + maxClockSkew]; transaction cũ hơn
+ *    bị từ chối (STALE) nên chỉ cần nhớ transaction của một cửa sổ.
+ * 2. Generation: TIMESTAMP / window. Mỗi generation có một Bloom filter (heap) và một {@link ReplayIndex}
+ *    (file mmap) cỡ cố định; chỉ 3 generation (g-1, g, g+1) còn sống, generation cũ hơn bị bỏ và xóa file
+ *    → bộ nhớ và đĩa không tăng theo thời gian. Mỗi lần check chỉ chạm một generation.
+ * 3. Nonce theo entity: high-water mark của NONCE đã nhận (cùng TIMESTAMP của transaction đó). NONCE lớn hơn
+ *    high-water → chắc chắn mới, bỏ qua cả Bloom lẫn index. Chỉ áp dụng cho TIMESTAMP sau lúc bắt đầu theo dõi
+ *    entity + maxClockSkew (transaction nhận trước khi theo dõi, vd. trước restart, vẫn đi đường Bloom + index).
+ *    NONCE không lớn hơn high-water chỉ được nhận khi ký không sớm hơn transaction high-water quá maxClockSkew
+ *    (request ký song song đến lệch thứ tự); ký sớm hơn nữa → OUT_OF_ORDER, kể cả khi chưa từng thấy
+ *    (transaction cũ giữ lại rồi gửi sau transaction mới hơn của cùng entity). High-water chỉ nằm trong bộ nhớ:
+ *    sau restart, hoặc với entity vượt maxEntities, chỉ còn cửa sổ thời gian và index.
+ * 4. Bloom negative → mới; Bloom positive → xác nhận bằng index trên đĩa (loại false positive).
+ *
+ * Kiểm tra và ghi nhận của cùng một transaction là nguyên tử (khóa theo stripe của digest), nên hai bản
+ * gửi đồng thời chỉ một bản được nhận. Khởi động lại: Bloom dựng lại từ các file index còn trong cửa sổ.
+ */
+public class ReplayGuard implements Closeable {
+
+    public enum Verdict {
+        ACCEPTED,
+        DUPLICATE,
+        STALE,              // TIMESTAMP ngoài cửa sổ (quá cũ)
+        FUTURE,             // TIMESTAMP vượt quá now + maxClockSkew
+        MALFORMED,          // transactionData không có TIMESTAMP
+        CAPACITY_EXCEEDED,  // index của generation đã đầy: từ chối thay vì nhận mà không nhớ được
+        OUT_OF_ORDER        // NONCE ≤ high-water của entity và ký sớm hơn transaction high-water quá maxClockSkew
+    }
+
+    public static final String TIMESTAMP_FIELD = "|TIMESTAMP:";
+    public static final String NONCE_FIELD = "|NONCE:";
+
+    private static final String FILE_PREFIX = "replay-";
+    private static final String FILE_SUFFIX = ".idx";
+    private static final int GENERATIONS = 3;
+    private static final int STRIPES = 256;
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private static final class Generation {
+        final long id;
+        final BloomFilter bloom;
+        final ReplayIndex index;
+
+        Generation(long id, BloomFilter bloom, ReplayIndex index) {
+            this.id = id;
+            this.bloom = bloom;
+            this.index = index;
+        }
+    }
+
+    private static final class EntityNonce {
+        final long trackedSince;
+        // Đọc / ghi khi giữ lock của chính EntityNonce
+        long highWater = -1;
+        long highWaterTimestamp;
+
+        EntityNonce(long trackedSince) {
+            this.trackedSince = trackedSince;
+        }
+
+        synchronized boolean isOutOfOrder(long nonce, long timestamp, long toleranceMillis) {
+            return nonce <= highWater && timestamp < highWaterTimestamp - toleranceMillis;
+        }
+
+        synchronized boolean isAbove(long nonce) {
+            return nonce > highWater;
+        }
+
+        synchronized void advance(long nonce, long timestamp) {
+            if (nonce > highWater) {
+                highWater = nonce;
+                highWaterTimestamp = timestamp;
+            }
+        }
+    }
+
+    private final Path dir;
+    private final long windowMillis;
+    private final long maxClockSkewMillis;
+    private final long expectedPerWindow;
+    private final double falsePositiveRate;
+    private final int maxEntities;
+    private final LongSupplier clock;
+    private final AtomicReferenceArray<Generation> generations = new AtomicReferenceArray<>(GENERATIONS);
+    private final Map<String, EntityNonce> nonces = new ConcurrentHashMap<>();
+    private final Object[] stripes = new Object[STRIPES];
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+    private final AtomicLong future = new AtomicLong();
+    private final AtomicLong malformed = new AtomicLong();
+    private final AtomicLong capacityExceeded = new AtomicLong();
+    private final AtomicLong outOfOrder = new AtomicLong();
+    private final AtomicLong nonceFastPath = new AtomicLong();
+    private final AtomicLong bloomPositives = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+    private final AtomicLong rotations = new AtomicLong();
+
+    /**
+     * @param dir Thư mục chứa file index replay-&lt;window&gt;-&lt;generation&gt;.idx
+     * @param windowMillis Độ dài cửa sổ (và của một generation)
+     * @param maxClockSkewMillis TIMESTAMP được phép vượt đồng hồ local tối đa bao nhiêu (≤ window)
+     * @param expectedPerWindow Số transaction dự kiến trong một cửa sổ (kích thước Bloom và index)
+     * @param falsePositiveRate Tỉ lệ Bloom positive phải tra index khi đạt expectedPerWindow
+     * @param maxEntities Số entity theo dõi nonce tối đa (entity mới hơn chỉ đi đường Bloom + index)
+     */
+    public ReplayGuard(Path dir, long windowMillis, long maxClockSkewMillis, long expectedPerWindow,
+                       double falsePositiveRate, int maxEntities, LongSupplier clock) throws IOException {
+        if (windowMillis <= 0 || maxClockSkewMillis < 0 || maxClockSkewMillis > windowMillis
+                || expectedPerWindow <= 0 || maxEntities < 0) {
+            throw new IllegalArgumentException("Invalid replay guard settings");
+        }
+        this.dir = dir;
+        this.windowMillis = windowMillis;
+        this.maxClockSkewMillis = maxClockSkewMillis;
+        this.expectedPerWindow = expectedPerWindow;
+        this.falsePositiveRate = falsePositiveRate;
+        this.maxEntities = maxEntities;
+        this.clock = clock;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+        Files.createDirectories(dir);
+        recover();
+    }
+
+    /**
+     * Kiểm tra transaction và ghi nhận nếu chưa thấy (check-and-set)
+     *
+     * @param entityId Entity đã ký (phạm vi của nonce và của digest)
+     * @param transactionData Nội dung đã được ký
+     */
+    public Verdict check(String entityId, String transactionData) throws IOException {
+        long timestamp = timestampOf(transactionData);
+        if (timestamp < 0) {
+            malformed.incrementAndGet();
+            return Verdict.MALFORMED;
+        }
+        long now = clock.getAsLong();
+        if (timestamp < now - windowMillis) {
+            stale.incrementAndGet();
+            return Verdict.STALE;
+        }
+        if (timestamp > now + maxClockSkewMillis) {
+            future.incrementAndGet();
+            return Verdict.FUTURE;
+        }
+
+        MessageDigest sha256 = SHA256.get();
+        sha256.update(entityId.getBytes(StandardCharsets.UTF_8));
+        sha256.update((byte) 0);
+        byte[] digest = sha256.digest(transactionData.getBytes(StandardCharsets.UTF_8));
+        long k1 = ReplayIndex.nonZero(toLong(digest, 0));
+        long k2 = toLong(digest, 8);
+
+        Generation generation = generation(Math.floorDiv(timestamp, windowMillis));
+        if (generation == null) {
+            stale.incrementAndGet();
+            return Verdict.STALE;
+        }
+        long nonce = nonceOf(transactionData);
+        EntityNonce entityNonce = nonce >= 0 ? entityNonce(entityId, now) : null;
+        if (entityNonce != null && entityNonce.isOutOfOrder(nonce, timestamp, maxClockSkewMillis)) {
+            outOfOrder.incrementAndGet();
+            return Verdict.OUT_OF_ORDER;
+        }
+
+        synchronized (stripes[(int) (k1 & (STRIPES - 1))]) {
+            if (entityNonce != null && timestamp > entityNonce.trackedSince + maxClockSkewMillis
+                    && entityNonce.isAbove(nonce)) {
+                nonceFastPath.incrementAndGet();
+            } else if (generation.bloom.mightContain(k1, k2)) {
+                bloomPositives.incrementAndGet();
+                if (generation.index.contains(k1, k2)) {
+                    duplicates.incrementAndGet();
+                    return Verdict.DUPLICATE;
+                }
+                falsePositives.incrementAndGet();
+            }
+            if (!generation.index.tryAdd(k1, k2)) {
+                capacityExceeded.incrementAndGet();
+                return Verdict.CAPACITY_EXCEEDED;
+            }
+            generation.bloom.put(k1, k2);
+            if (entityNonce != null) {
+                entityNonce.advance(nonce, timestamp);
+            }
+        }
+        accepted.incrementAndGet();
+        return Verdict.ACCEPTED;
+    }
+
+    /**
+     * TIMESTAMP trong transactionData, -1 nếu không có
+     * Lấy lần xuất hiện cuối: TIMESTAMP / NONCE đứng sau DESC nên DESC không giả được chúng
+     */
+    public static long timestampOf(String transactionData) {
+        int start = transactionData.lastIndexOf(TIMESTAMP_FIELD);
+        if (start < 0) {
+            return -1;
+        }
+        start += TIMESTAMP_FIELD.length();
+        int end = transactionData.indexOf('|', start);
+        return parseDigits(transactionData, start, end < 0 ? transactionData.length() : end);
+    }
+
+    /**
+     * NONCE trong transactionData (field cuối cùng, sau TIMESTAMP), -1 nếu không có
+     */
+    public static long nonceOf(String transactionData) {
+        int start = transactionData.lastIndexOf(NONCE_FIELD);
+        if (start < 0 || start < transactionData.lastIndexOf(TIMESTAMP_FIELD)) {
+            return -1;
+        }
+        start += NONCE_FIELD.length();
+        return parseDigits(transactionData, start, transactionData.length());
+    }
+
+    private static long parseDigits(String s, int start, int end) {
+        if (start >= end || end - start > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xff);
+        }
+        return value;
+    }
+
+    private EntityNonce entityNonce(String entityId, long now) {
+        EntityNonce entityNonce = nonces.get(entityId);
+        if (entityNonce != null || nonces.size() >= maxEntities) {
+            return entityNonce;
+        }
+        return nonces.computeIfAbsent(entityId, id -> new EntityNonce(now));
+    }
+
+    /**
+     * Generation cho id, mở mới (thay generation cũ cùng slot) nếu cần; null nếu id đã ra khỏi cửa sổ
+     */
+    private Generation generation(long id) throws IOException {
+        int slot = (int) Math.floorMod(id, (long) GENERATIONS);
+        Generation generation = generations.get(slot);
+        if (generation != null && generation.id == id) {
+            return generation;
+        }
+        synchronized (this) {
+            generation = generations.get(slot);
+            if (generation != null && generation.id >= id) {
+                // Slot đã sang generation mới hơn: id chắc chắn đã ra khỏi cửa sổ
+                return generation.id == id ? generation : null;
+            }
+            if (id < Math.floorDiv(clock.getAsLong() - windowMillis, windowMillis)) {
+                return null;
+            }
+            Generation opened = open(id);
+            generations.set(slot, opened);
+            if (generation != null) {
+                drop(generation);
+            }
+            rotations.incrementAndGet();
+            return opened;
+        }
+    }
+
+    private Generation open(long id) throws IOException {
+        BloomFilter bloom = new BloomFilter(expectedPerWindow, falsePositiveRate);
+        ReplayIndex index = new ReplayIndex(fileOf(id), ReplayIndex.capacityFor(expectedPerWindow));
+        index.forEach(bloom::put);
+        return new Generation(id, bloom, index);
+    }
+
+    private void drop(Generation generation) {
+        try {
+            generation.index.close();
+            Files.deleteIfExists(generation.index.path());
+        } catch (IOException e) {
+            System.err.println("[KSM] Failed to delete replay index " + generation.index.path() + ": " + e.getMessage());
+        }
+    }
+
+    private Path fileOf(long id) {
+        return dir.resolve(FILE_PREFIX + windowMillis + "-" + id + FILE_SUFFIX);
+    }
+
+    /**
+     * Mở lại index của các generation còn trong cửa sổ, xóa file hết hạn (hoặc của cấu hình window khác)
+     */
+    private void recover() throws IOException {
+        long oldest = Math.floorDiv(clock.getAsLong() - windowMillis, windowMillis);
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(p -> p.getFileName().toString().startsWith(FILE_PREFIX)).toList();
+        }
+        String prefix = FILE_PREFIX + windowMillis + "-";
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long id = Long.MIN_VALUE;
+            if (name.startsWith(prefix) && name.endsWith(FILE_SUFFIX)) {
+                try {
+                    id = Long.parseLong(name.substring(prefix.length(), name.length() - FILE_SUFFIX.length()));
+                } catch (NumberFormatException ignored) {
+                    // tên không hợp lệ: xóa
+                }
+            }
+            if (id < oldest) {
+                Files.deleteIfExists(file);
+                continue;
+            }
+            int slot = (int) Math.floorMod(id, (long) GENERATIONS);
+            Generation current = generations.get(slot);
+            if (current == null || current.id < id) {
+                generations.set(slot, open(id));
+                if (current != null) {
+                    drop(current);
+                }
+                System.out.println("[KSM] Replay index " + name + " recovered ("
+                    + generations.get(slot).index.size() + " transactions)");
+            } else {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Flush index xuống đĩa và bỏ generation đã ra khỏi cửa sổ (gọi định kỳ)
+     */
+    public void maintain() {
+        long oldest = Math.floorDiv(clock.getAsLong() - windowMillis, windowMillis);
+        synchronized (this) {
+            for (int slot = 0; slot < GENERATIONS; slot++) {
+                Generation generation = generations.get(slot);
+                if (generation == null) {
+                    continue;
+                }
+                if (generation.id < oldest) {
+                    generations.set(slot, null);
+                    drop(generation);
+                } else {
+                    generation.index.flush();
+                }
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("windowMs", windowMillis);
+        stats.put("maxClockSkewMs", maxClockSkewMillis);
+        stats.put("accepted", accepted.get());
+        stats.put("duplicates", duplicates.get());
+        stats.put("stale", stale.get());
+        stats.put("future", future.get());
+        stats.put("malformed", malformed.get());
+        stats.put("capacityExceeded", capacityExceeded.get());
+        stats.put("outOfOrder", outOfOrder.get());
+        stats.put("nonceFastPath", nonceFastPath.get());
+        stats.put("bloomPositives", bloomPositives.get());
+        stats.put("bloomFalsePositives", falsePositives.get());
+        stats.put("rotations", rotations.get());
+        stats.put("trackedEntities", nonces.size());
+
+        List<Map<String, Object>> live = new ArrayList<>();
+        long bloomBytes = 0;
+        long indexBytes = 0;
+        for (int slot = 0; slot < GENERATIONS; slot++) {
+            Generation generation = generations.get(slot);
+            if (generation == null) {
+                continue;
+            }
+            Map<String, Object> g = new HashMap<>();
+            g.put("startMs", generation.id * windowMillis);
+            g.put("transactions", generation.index.size());
+            g.put("capacity", generation.index.capacity());
+            live.add(g);
+            bloomBytes += generation.bloom.memoryBytes();
+            indexBytes += generation.index.fileBytes();
+        }
+        live.sort((a, b) -> Long.compare((long) a.get("startMs"), (long) b.get("startMs")));
+        stats.put("generations", live);
+        stats.put("bloomBytes", bloomBytes);
+        stats.put("indexFileBytes", indexBytes);
+        return stats;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            for (int slot = 0; slot < GENERATIONS; slot++) {
+                Generation generation = generations.get(slot);
+                if (generation != null) {
+                    generation.index.flush();
+                    generation.index.close();
+                }
+            }
+        }
+    }
+}
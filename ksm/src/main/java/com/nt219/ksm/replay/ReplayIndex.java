@@ -0,0 +1,160 @@
+package com.nt219.ksm.replay;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Index chính xác trên đĩa của một generation: bảng băm open addressing (linear probing) trong file mmap
+ *
+ * Mỗi slot 16 byte = 128 bit đầu của digest transaction [k1 (8)][k2 (8)], k1 = 0 là slot trống.
+ * Kích thước file cố định lúc tạo (capacity lũy thừa của 2, không header), nên không bao giờ resize:
+ * khi đầy tới {@value #MAX_LOAD} thì {@link #tryAdd} trả false. Slot được chiếm bằng CAS trên k1
+ * (VarHandle trên MappedByteBuffer), nên các thread ghi song song không cần khóa chung.
+ *
+ * Dữ liệu nằm trong page cache ngay khi ghi (an toàn khi process crash); {@link #flush()} đẩy xuống đĩa.
+ */
+final class ReplayIndex implements Closeable {
+
+    static final int SLOT_BYTES = 16;
+    static final int MAX_CAPACITY = 1 << 26; // file 1 GB, vừa một MappedByteBuffer
+    private static final double MAX_LOAD = 0.9;
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int mask;
+    private final int maxSize;
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Mở file index có sẵn (capacity suy ra từ kích thước file) hoặc tạo mới với capacity cho trước
+     */
+    ReplayIndex(Path path, int capacity) throws IOException {
+        boolean exists = Files.exists(path);
+        long bytes = exists ? Files.size(path) : (long) capacity * SLOT_BYTES;
+        long slots = bytes / SLOT_BYTES;
+        if (bytes % SLOT_BYTES != 0 || slots == 0 || slots > MAX_CAPACITY || Long.bitCount(slots) != 1) {
+            throw new IOException("Invalid replay index size " + bytes + ": " + path);
+        }
+        this.path = path;
+        this.capacity = (int) slots;
+        this.mask = this.capacity - 1;
+        this.maxSize = (int) (this.capacity * MAX_LOAD);
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        if (exists) {
+            int used = 0;
+            for (int slot = 0; slot < this.capacity; slot++) {
+                if (k1(slot) != 0) {
+                    used++;
+                }
+            }
+            size.set(used);
+        }
+    }
+
+    /**
+     * Capacity (lũy thừa của 2) để chứa expectedEntries ở load factor ≤ 0.5
+     */
+    static int capacityFor(long expectedEntries) {
+        long capacity = 1024;
+        while (capacity < expectedEntries * 2 && capacity < MAX_CAPACITY) {
+            capacity <<= 1;
+        }
+        return (int) capacity;
+    }
+
+    static long nonZero(long k1) {
+        return k1 == 0 ? 1 : k1;
+    }
+
+    boolean contains(long k1, long k2) {
+        for (int slot = (int) (k1 & mask); ; slot = (slot + 1) & mask) {
+            long slotK1 = k1(slot);
+            if (slotK1 == 0) {
+                return false;
+            }
+            if (slotK1 == k1 && k2(slot) == k2) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Thêm key; caller bảo đảm không có hai thread cùng thêm một key (ReplayGuard khóa theo stripe của key)
+     *
+     * @return false nếu index đã đầy
+     */
+    boolean tryAdd(long k1, long k2) {
+        if (size.incrementAndGet() > maxSize) {
+            size.decrementAndGet();
+            return false;
+        }
+        for (int slot = (int) (k1 & mask); ; slot = (slot + 1) & mask) {
+            if (LONGS.compareAndSet(buffer, slot * SLOT_BYTES, 0L, k1)) {
+                LONGS.setRelease(buffer, slot * SLOT_BYTES + 8, k2);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Duyệt mọi key (dựng lại Bloom filter khi khởi động)
+     */
+    void forEach(KeyConsumer consumer) {
+        for (int slot = 0; slot < capacity; slot++) {
+            long k1 = k1(slot);
+            if (k1 != 0) {
+                consumer.accept(k1, k2(slot));
+            }
+        }
+    }
+
+    interface KeyConsumer {
+        void accept(long k1, long k2);
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    long fileBytes() {
+        return (long) capacity * SLOT_BYTES;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    void flush() {
+        buffer.force();
+    }
+
+    private long k1(int slot) {
+        return (long) LONGS.getAcquire(buffer, slot * SLOT_BYTES);
+    }
+
+    private long k2(int slot) {
+        return (long) LONGS.getAcquire(buffer, slot * SLOT_BYTES + 8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close(); // mapping còn hiệu lực tới khi buffer được GC, thread đang đọc không bị ảnh hưởng
+    }
+}
@@ -0,0 +1,83 @@
+package com.nt219.ksm.replay;
+
+import com.nt219.ksm.config.KSMConfig;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chống replay transaction đã ký cho đường verify (/ksm/verify, /ksm/publicKeys/verify với "consume": "true"),
+ * xem {@link ReplayGuard}
+ */
+@Service
+public class ReplayProtectionService {
+
+    private static final boolean ENABLED = KSMConfig.getBoolean("KSM_REPLAY_ENABLED", "ksm.replay.enabled", true);
+    private static final String STORAGE_DIR = KSMConfig.get("KSM_STORAGE_DIR", "ksm.storage.dir", "./ksm-data");
+    private static final String REPLAY_DIR = KSMConfig.get("KSM_REPLAY_DIR", "ksm.replay.dir", STORAGE_DIR + "/replay");
+    private static final long WINDOW_MS = KSMConfig.getLong("KSM_REPLAY_WINDOW_MS", "ksm.replay.windowMs", 5 * 60 * 1000);
+    private static final long MAX_CLOCK_SKEW_MS = KSMConfig.getLong("KSM_REPLAY_MAX_CLOCK_SKEW_MS", "ksm.replay.maxClockSkewMs", 30_000);
+    private static final long EXPECTED_PER_WINDOW = KSMConfig.getLong("KSM_REPLAY_EXPECTED_PER_WINDOW", "ksm.replay.expectedPerWindow", 1_000_000);
+    private static final double FALSE_POSITIVE_RATE = Double.parseDouble(
+        KSMConfig.get("KSM_REPLAY_FALSE_POSITIVE_RATE", "ksm.replay.falsePositiveRate", "0.001"));
+    private static final int MAX_ENTITIES = KSMConfig.getInt("KSM_REPLAY_MAX_ENTITIES", "ksm.replay.maxEntities", 100_000);
+    private static final long FLUSH_INTERVAL_MS = KSMConfig.getLong("KSM_REPLAY_FLUSH_MS", "ksm.replay.flushMs", 1000);
+
+    private final ReplayGuard guard;
+    private final ScheduledExecutorService maintainer;
+
+    public ReplayProtectionService() throws IOException {
+        if (!ENABLED) {
+            this.guard = null;
+            this.maintainer = null;
+            System.out.println("[KSM] Replay protection disabled");
+            return;
+        }
+        this.guard = new ReplayGuard(Paths.get(REPLAY_DIR), WINDOW_MS, MAX_CLOCK_SKEW_MS, EXPECTED_PER_WINDOW,
+            FALSE_POSITIVE_RATE, MAX_ENTITIES, System::currentTimeMillis);
+        this.maintainer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ksm-replay-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        maintainer.scheduleWithFixedDelay(guard::maintain, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        System.out.println("[KSM] Replay protection: window " + WINDOW_MS + " ms, " + EXPECTED_PER_WINDOW + " transactions/window");
+    }
+
+    public boolean isEnabled() {
+        return guard != null;
+    }
+
+    /**
+     * Kiểm tra và ghi nhận transaction; chỉ gọi sau khi chữ ký đã verify (chữ ký giả không được chiếm chỗ)
+     *
+     * @return ACCEPTED nếu lần đầu thấy (hoặc replay protection tắt)
+     */
+    public ReplayGuard.Verdict check(String entityId, String transactionData) throws IOException {
+        return guard != null ? guard.check(entityId, transactionData) : ReplayGuard.Verdict.ACCEPTED;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", isEnabled());
+        if (guard != null) {
+            stats.putAll(guard.getStats());
+        }
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (guard != null) {
+            maintainer.shutdownNow();
+            guard.close();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.nt219.ksm.storage;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Một trang kết quả khi liệt kê entity từ key store
+ */
+public class EntityPage {
+    private final List<String> entities;
+    private final String nextCursor;
+    
+    public EntityPage(List<String> entities, String nextCursor) {
+        this.entities = Collections.unmodifiableList(entities);
+        this.nextCursor = nextCursor;
+    }
+    
+    // Getters
+    public List<String> getEntities() { return entities; }
+    public String getNextCursor() { return nextCursor; }
+    public boolean hasMore() { return nextCursor != null; }
+}
@@ -0,0 +1,47 @@
+package com.nt219.ksm.storage;
+
+import com.nt219.ksm.crypto.KeyId;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Bản ghi khóa của một entity ở dạng lưu trữ, để chuyển sang KSM node khác
+ * Gồm phiên bản hiện tại và mọi phiên bản đã archive (private key vẫn encrypted với master key),
+ * để chữ ký phát hành trước khi rotate vẫn verify được theo keyId cũ ở node mới.
+ */
+public class ExportedKeyRecord {
+    private final String record;
+    private final Map<String, String> archived;
+    
+    /**
+     * @param record Nội dung file .properties của phiên bản hiện tại
+     * @param archived Tên file archive (v<version>-<fingerprint>.properties) → nội dung
+     */
+    public ExportedKeyRecord(String record, Map<String, String> archived) {
+        this.record = record;
+        this.archived = Collections.unmodifiableMap(archived);
+    }
+    
+    // Getters
+    public String getRecord() { return record; }
+    public Map<String, String> getArchived() { return archived; }
+    
+    /**
+     * KeyId của phiên bản hiện tại (null nếu bản ghi không hợp lệ)
+     */
+    public String getKeyId() {
+        Properties props = new Properties();
+        try {
+            props.load(new StringReader(record));
+            int version = Integer.parseInt(props.getProperty("version", "1"));
+            return props.getProperty("keyId", KeyId.of(Base64.getDecoder().decode(props.getProperty("publicKey")), version));
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,475 @@
+package com.nt219.ksm.storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Write-ahead log với group commit cho bản ghi khóa mới
+ *
+ * Request chỉ đưa bản ghi vào hàng đợi rồi chờ; một thread committer gom các bản ghi đang chờ
+ * (tối đa maxBatch, chờ thêm tối đa maxDelay sau bản ghi đầu tiên), ghi liên tiếp vào segment
+ * commit-&lt;seq&gt;.log, fsync MỘT lần cho cả nhóm, rồi mới ghi file khóa (không fsync) và trả kết quả.
+ *
+ * Bản ghi: [len (4)][crc32c (4)][entityId UTF-8 '\n' nội dung file khóa]
+ *
+ * Checkpoint (thread nền, khi segment vượt segmentBytes): fsync các file khóa đã ghi từ segment đó
+ * rồi xóa segment. Khởi động lại sau crash: ghi lại file khóa từ mọi segment còn lại (bỏ phần đuôi ghi dở).
+ * Thao tác khác trên cùng entity (rotate, xóa, ...) không đi qua log: gọi {@link #checkpoint(String)} trước,
+ * để replay không bao giờ ghi đè trạng thái mới hơn.
+ */
+public class KeyCommitLog implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "commit-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    /**
+     * Ghi bản ghi khóa ra file của entity (không cần fsync)
+     *
+     * @return File đã ghi (được fsync khi checkpoint)
+     */
+    public interface Materializer {
+        Path apply(String entityId, byte[] record) throws IOException;
+    }
+
+    private final Path directory;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+    private final long segmentBytes;
+    private final Materializer materializer;
+
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final ReentrantLock segmentLock = new ReentrantLock(); // committer ghi nhóm / roll segment
+    private final Object checkpointLock = new Object();
+    private final ArrayDeque<Segment> sealed = new ArrayDeque<>(); // đã roll, chờ checkpoint (guarded by this)
+    private final ExecutorService checkpointer;
+    private final Thread committer;
+    private volatile Segment current;
+    private volatile boolean closed;
+
+    private final AtomicLong groups = new AtomicLong();
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong largestGroup = new AtomicLong();
+    private final AtomicLong commitNanos = new AtomicLong();
+    private final AtomicLong checkpoints = new AtomicLong();
+
+    /**
+     * @param maxBatch Số bản ghi tối đa mỗi nhóm (1 = fsync từng bản ghi)
+     * @param maxDelayMillis Thời gian chờ thêm bản ghi sau bản ghi đầu tiên của nhóm (0 = commit ngay những gì đang chờ)
+     * @param segmentBytes Kích thước segment trước khi roll + checkpoint
+     */
+    public KeyCommitLog(Path directory, int maxBatch, long maxDelayMillis, long segmentBytes, Materializer materializer) throws IOException {
+        this.directory = directory;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxDelayMillis));
+        this.segmentBytes = segmentBytes;
+        this.materializer = materializer;
+        Files.createDirectories(directory);
+
+        this.checkpointer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "ksm-commit-checkpoint");
+            t.setDaemon(true);
+            return t;
+        });
+        this.committer = new Thread(this::commitLoop, "ksm-key-committer");
+        this.committer.setDaemon(true);
+    }
+
+    /**
+     * Ghi lại file khóa từ các segment còn sót (crash trước checkpoint), sau đó bắt đầu nhận bản ghi mới
+     *
+     * @return Số bản ghi đã replay
+     */
+    public int start() throws IOException {
+        int replayed = replay();
+        current = openSegment(nextSequence());
+        committer.start();
+        return replayed;
+    }
+
+    /**
+     * Đưa bản ghi vào nhóm commit tiếp theo
+     *
+     * @return Future hoàn thành khi nhóm đã fsync và file khóa đã được ghi
+     */
+    public CompletableFuture<Void> append(String entityId, byte[] record) {
+        Pending pending = new Pending(entityId, record);
+        if (closed) {
+            pending.future.completeExceptionally(new IOException("Key commit log is closed"));
+            return pending.future;
+        }
+        queue.add(pending);
+        return pending.future;
+    }
+
+    /**
+     * Đảm bảo không còn bản ghi nào của entity trong log (file khóa đã fsync, segment đã xóa)
+     * Gọi trước khi sửa file khóa của entity bằng đường khác log.
+     */
+    public void checkpoint(String entityId) throws IOException {
+        Segment active = current;
+        boolean pending = active != null && active.entities.contains(entityId);
+        synchronized (this) {
+            for (Segment segment : sealed) {
+                pending |= segment.entities.contains(entityId);
+            }
+        }
+        if (!pending) {
+            return;
+        }
+        segmentLock.lock();
+        try {
+            if (current.entities.contains(entityId)) {
+                roll();
+            }
+        } finally {
+            segmentLock.unlock();
+        }
+        checkpointSealed();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long groupCount = groups.get();
+        stats.put("groups", groupCount);
+        stats.put("records", records.get());
+        stats.put("averageGroupSize", groupCount == 0 ? 0.0 : (double) records.get() / groupCount);
+        stats.put("largestGroup", largestGroup.get());
+        stats.put("averageCommitMicros", groupCount == 0 ? 0 : commitNanos.get() / groupCount / 1000);
+        stats.put("queueDepth", queue.size());
+        stats.put("checkpoints", checkpoints.get());
+        synchronized (this) {
+            Segment active = current;
+            stats.put("segmentsPendingCheckpoint", sealed.size() + (active != null && !active.entities.isEmpty() ? 1 : 0));
+        }
+        stats.put("maxBatch", maxBatch);
+        stats.put("maxDelayMs", TimeUnit.NANOSECONDS.toMillis(maxDelayNanos));
+        return stats;
+    }
+
+    /**
+     * Commit nốt các bản ghi đang chờ rồi checkpoint toàn bộ (khởi động sau đó không cần replay)
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            committer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Pending> rejected = new ArrayList<>();
+        queue.drainTo(rejected);
+        fail(rejected, new IOException("Key commit log is closed"));
+        segmentLock.lock();
+        try {
+            roll();
+            current.channel.close();
+            Files.deleteIfExists(current.path);
+        } finally {
+            segmentLock.unlock();
+        }
+        checkpointSealed();
+        checkpointer.shutdown();
+    }
+
+    // ==================== Committer ====================
+
+    private void commitLoop() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while (true) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (closed) {
+                        return;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - batch.size());
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatch - batch.size());
+                }
+                commit(batch);
+            } catch (InterruptedException e) {
+                fail(batch, e);
+                return;
+            } catch (Throwable e) {
+                System.err.println("[KSM] Key commit failed: " + e.getMessage());
+                fail(batch, e);
+            }
+            batch.clear();
+        }
+    }
+
+    private void commit(List<Pending> batch) throws IOException {
+        long start = System.nanoTime();
+        segmentLock.lock();
+        try {
+            Segment segment = current;
+            ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+            long bytes = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                buffers[i] = encode(batch.get(i));
+                bytes += buffers[i].remaining();
+            }
+            for (Pending pending : batch) {
+                segment.entities.add(pending.entityId);
+            }
+            // Một lần ghi + một lần fsync cho cả nhóm
+            while (bytes > 0) {
+                bytes -= segment.channel.write(buffers);
+            }
+            segment.channel.force(false);
+            segment.bytes = segment.channel.position();
+            groups.incrementAndGet();
+            records.addAndGet(batch.size());
+            largestGroup.accumulateAndGet(batch.size(), Math::max);
+
+            for (Pending pending : batch) {
+                try {
+                    segment.files.add(materializer.apply(pending.entityId, pending.record));
+                    pending.future.complete(null);
+                } catch (Exception e) {
+                    pending.future.completeExceptionally(e);
+                }
+            }
+            if (segment.bytes >= segmentBytes) {
+                roll();
+                checkpointer.execute(() -> {
+                    try {
+                        checkpointSealed();
+                    } catch (IOException e) {
+                        System.err.println("[KSM] Key commit checkpoint failed: " + e.getMessage());
+                    }
+                });
+            }
+        } finally {
+            segmentLock.unlock();
+        }
+        commitNanos.addAndGet(System.nanoTime() - start);
+    }
+
+    private static void fail(List<Pending> batch, Throwable error) {
+        for (Pending pending : batch) {
+            pending.future.completeExceptionally(error);
+        }
+    }
+
+    private static ByteBuffer encode(Pending pending) {
+        byte[] entityId = (pending.entityId + "\n").getBytes(StandardCharsets.UTF_8);
+        int length = entityId.length + pending.record.length;
+        CRC32C crc = new CRC32C();
+        crc.update(entityId);
+        crc.update(pending.record);
+
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_BYTES + length);
+        buffer.putInt(length).putInt((int) crc.getValue()).put(entityId).put(pending.record);
+        return buffer.flip();
+    }
+
+    // ==================== Segments / checkpoint ====================
+
+    /**
+     * Segment hiện tại chuyển sang hàng chờ checkpoint, mở segment mới (caller giữ segmentLock)
+     */
+    private void roll() throws IOException {
+        Segment previous = current;
+        if (previous.entities.isEmpty()) {
+            return;
+        }
+        previous.channel.close();
+        Segment next = openSegment(previous.sequence + 1);
+        synchronized (this) {
+            sealed.add(previous);
+        }
+        current = next;
+    }
+
+    /**
+     * fsync file khóa của các segment đã roll, rồi xóa segment
+     */
+    private void checkpointSealed() throws IOException {
+        synchronized (checkpointLock) {
+            while (true) {
+                Segment segment;
+                synchronized (this) {
+                    segment = sealed.peek();
+                }
+                if (segment == null) {
+                    return;
+                }
+                forceAll(segment.files);
+                Files.deleteIfExists(segment.path);
+                synchronized (this) {
+                    sealed.poll();
+                }
+                checkpoints.incrementAndGet();
+            }
+        }
+    }
+
+    private int replay() throws IOException {
+        File[] files = directory.toFile().listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null || files.length == 0) {
+            return 0;
+        }
+        Arrays.sort(files, Comparator.comparingLong(KeyCommitLog::sequenceOf));
+
+        int replayed = 0;
+        List<Path> written = new ArrayList<>();
+        for (File file : files) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    System.err.println("[KSM] Ignoring torn tail of " + file.getName());
+                    break;
+                }
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+                CRC32C crc = new CRC32C();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    System.err.println("[KSM] Ignoring corrupt tail of " + file.getName());
+                    break;
+                }
+                int newline = indexOf(payload, (byte) '\n');
+                String entityId = new String(payload, 0, newline, StandardCharsets.UTF_8);
+                written.add(materializer.apply(entityId, Arrays.copyOfRange(payload, newline + 1, payload.length)));
+                replayed++;
+            }
+        }
+        forceAll(written);
+        for (File file : files) {
+            Files.deleteIfExists(file.toPath());
+        }
+        if (replayed > 0) {
+            System.out.println("[KSM] Replayed " + replayed + " key records from commit log");
+        }
+        return replayed;
+    }
+
+    private static void forceAll(List<Path> files) throws IOException {
+        Set<Path> directories = new LinkedHashSet<>();
+        for (Path file : files) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.force(false);
+            } catch (NoSuchFileException e) {
+                continue; // đã bị xóa sau đó
+            }
+            directories.add(file.getParent());
+        }
+        // Entry của file mới trong thư mục
+        for (Path dir : directories) {
+            forceDirectory(dir);
+        }
+    }
+
+    private static void forceDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Một số filesystem không hỗ trợ fsync thư mục
+        }
+    }
+
+    private Segment openSegment(long sequence) throws IOException {
+        Path path = directory.resolve(SEGMENT_PREFIX + sequence + SEGMENT_SUFFIX);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        // fsync của segment chỉ bền vững khi entry của file mới trong thư mục cũng đã xuống đĩa
+        forceDirectory(directory);
+        return new Segment(sequence, path, channel);
+    }
+
+    private long nextSequence() {
+        File[] files = directory.toFile().listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        long max = 0;
+        for (File file : files != null ? files : new File[0]) {
+            max = Math.max(max, sequenceOf(file));
+        }
+        return max + 1;
+    }
+
+    private static long sequenceOf(File file) {
+        String name = file.getName();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int indexOf(byte[] bytes, byte value) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Malformed commit log record");
+    }
+
+    private static final class Pending {
+        final String entityId;
+        final byte[] record;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Pending(String entityId, byte[] record) {
+            this.entityId = entityId;
+            this.record = record;
+        }
+    }
+
+    private static final class Segment {
+        final long sequence;
+        final Path path;
+        final FileChannel channel;
+        final Set<String> entities = ConcurrentHashMap.newKeySet();
+        final List<Path> files = new ArrayList<>();
+        long bytes;
+
+        Segment(long sequence, Path path, FileChannel channel) {
+            this.sequence = sequence;
+            this.path = path;
+            this.channel = channel;
+        }
+    }
+}
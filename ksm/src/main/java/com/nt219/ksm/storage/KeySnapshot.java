@@ -0,0 +1,443 @@
+package com.nt219.ksm.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Snapshot nhị phân một file của toàn bộ key store
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   header (128 byte)  magic "KSMSNAP1", format, sequence, createdAt, entityCount,
+ *                     data offset/length, index offset/length, CRC32C của index, CRC32C của header
+ *   data              mỗi bản ghi: CRC32C (4) | length (4) | payload; bản ghi không vắt qua biên chunk 1 GB
+ *                     payload: algorithm, version, publicKey, privateKeyEncrypted (vẫn encrypted),
+ *                     ecdsaPublicKey, ecdsaPrivateKeyEncrypted (độ dài 0 = không có)
+ *   index             mỗi entity: entityId, kích thước file .properties, vị trí + độ dài bản ghi trong data,
+ *                     danh sách key ID (phiên bản hiện tại và archive)
+ * </pre>
+ *
+ * Lúc khởi động chỉ index (vài chục byte / entity) được đọc và kiểm checksum; phần data được mmap
+ * và chỉ được đọc (kiểm CRC từng bản ghi) khi thực sự cần khóa của entity đó.
+ */
+public final class KeySnapshot implements AutoCloseable {
+
+    static final long DEFAULT_CHUNK_BYTES = 1L << 30; // MappedByteBuffer tối đa 2 GB
+
+    private static final byte[] MAGIC = "KSMSNAP1".getBytes(StandardCharsets.US_ASCII);
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 128;
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    private final FileChannel channel;
+    private final long sequence;
+    private final long createdAt;
+    private final int entityCount;
+    private final long dataOffset;
+    private final long chunkBytes;
+    private final MappedByteBuffer[] chunks;
+    private final ByteBuffer index;
+
+    private KeySnapshot(FileChannel channel, long sequence, long createdAt, int entityCount, long dataOffset,
+                        long chunkBytes, MappedByteBuffer[] chunks, ByteBuffer index) {
+        this.channel = channel;
+        this.sequence = sequence;
+        this.createdAt = createdAt;
+        this.entityCount = entityCount;
+        this.dataOffset = dataOffset;
+        this.chunkBytes = chunkBytes;
+        this.chunks = chunks;
+        this.index = index;
+    }
+
+    // ==================== Đọc ====================
+
+    public static KeySnapshot open(Path file) throws IOException {
+        return open(file, DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * Mmap snapshot và kiểm checksum header + index
+     *
+     * @throws IOException Nếu file không phải snapshot, ghi dở hoặc checksum sai
+     */
+    static KeySnapshot open(Path file, long chunkBytes) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                // đọc đủ header
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES) {
+                throw new IOException("Snapshot too short: " + file);
+            }
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC) || header.getInt() != FORMAT_VERSION) {
+                throw new IOException("Not a key snapshot (or unsupported format): " + file);
+            }
+            long sequence = header.getLong();
+            long createdAt = header.getLong();
+            int entityCount = header.getInt();
+            long dataOffset = header.getLong();
+            long dataLength = header.getLong();
+            long indexOffset = header.getLong();
+            int indexLength = header.getInt();
+            int indexCrc = header.getInt();
+            int headerCrc = header.getInt();
+            if (crc(header.array(), 0, header.position() - 4) != headerCrc) {
+                throw new IOException("Snapshot header checksum mismatch: " + file);
+            }
+            if (indexOffset + indexLength > channel.size() || dataOffset + dataLength > indexOffset) {
+                throw new IOException("Snapshot truncated: " + file);
+            }
+
+            ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, indexLength);
+            CRC32C checksum = new CRC32C();
+            checksum.update(index.duplicate());
+            if ((int) checksum.getValue() != indexCrc) {
+                throw new IOException("Snapshot index checksum mismatch: " + file);
+            }
+
+            int chunkCount = (int) ((dataLength + chunkBytes - 1) / chunkBytes);
+            MappedByteBuffer[] chunks = new MappedByteBuffer[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                long start = dataOffset + i * chunkBytes;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkBytes, dataLength - i * chunkBytes));
+            }
+            return new KeySnapshot(channel, sequence, createdAt, entityCount, dataOffset, chunkBytes, chunks, index);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public int getEntityCount() {
+        return entityCount;
+    }
+
+    /**
+     * Duyệt index (theo thứ tự entityId); không đọc phần data
+     */
+    public Iterable<IndexEntry> entries() {
+        return () -> new Iterator<IndexEntry>() {
+            private final ByteBuffer buffer = index.duplicate();
+            private int remaining = entityCount;
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public IndexEntry next() {
+                remaining--;
+                String entityId = readString(buffer);
+                long fileSize = buffer.getLong();
+                long recordRef = buffer.getLong();
+                int keyIdCount = buffer.getShort() & 0xFFFF;
+                List<KeyIdEntry> keyIds = new ArrayList<>(keyIdCount);
+                for (int i = 0; i < keyIdCount; i++) {
+                    keyIds.add(new KeyIdEntry(readString(buffer), buffer.getInt(), buffer.get() != 0));
+                }
+                return new IndexEntry(entityId, fileSize, recordRef, keyIds);
+            }
+        };
+    }
+
+    /**
+     * Đọc bản ghi khóa (kiểm CRC32C của bản ghi)
+     *
+     * @param recordRef Giá trị {@link IndexEntry#recordRef}
+     * @throws IOException Nếu bản ghi hỏng
+     */
+    public Record readRecord(long recordRef) throws IOException {
+        return Record.decode(ByteBuffer.wrap(readRawRecord(recordRef)));
+    }
+
+    /**
+     * Payload nguyên bản của bản ghi (để copy sang snapshot mới không cần decode)
+     */
+    byte[] readRawRecord(long recordRef) throws IOException {
+        long position = recordRef >>> 24;
+        int length = (int) (recordRef & 0xFFFFFF);
+        int chunk = (int) (position / chunkBytes);
+        int offset = (int) (position % chunkBytes);
+        if (chunk >= chunks.length || offset + RECORD_HEADER_BYTES + length > chunks[chunk].capacity()) {
+            throw new IOException("Snapshot record out of range: " + position);
+        }
+
+        ByteBuffer buffer = chunks[chunk].duplicate();
+        int expectedCrc = buffer.getInt(offset);
+        if (buffer.getInt(offset + 4) != length) {
+            throw new IOException("Snapshot record length mismatch at " + position);
+        }
+        byte[] payload = new byte[length];
+        buffer.get(offset + RECORD_HEADER_BYTES, payload, 0, length);
+        if (crc(payload, 0, length) != expectedCrc) {
+            throw new IOException("Snapshot record checksum mismatch at " + position);
+        }
+        return payload;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close(); // vùng mmap được giải phóng khi buffer bị GC
+    }
+
+    // ==================== Ghi ====================
+
+    /**
+     * Ghi snapshot mới ra file (caller ghi vào file tạm rồi atomic move)
+     */
+    public static Writer create(Path file, long sequence) throws IOException {
+        return new Writer(file, sequence, DEFAULT_CHUNK_BYTES);
+    }
+
+    static Writer create(Path file, long sequence, long chunkBytes) throws IOException {
+        return new Writer(file, sequence, chunkBytes);
+    }
+
+    /**
+     * Ghi bản ghi tuần tự vào phần data, index giữ trong bộ nhớ rồi ghi sau cùng,
+     * header (kèm checksum) ghi ở cuối nên file ghi dở không bao giờ hợp lệ
+     */
+    public static final class Writer implements AutoCloseable {
+        private final FileChannel channel;
+        private final DataOutputStream data;
+        private final ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        private final DataOutputStream indexOut = new DataOutputStream(indexBytes);
+        private final long sequence;
+        private final long chunkBytes;
+        private long dataPosition;
+        private int entityCount;
+        private boolean finished;
+
+        private Writer(Path file, long sequence, long chunkBytes) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+            channel.position(HEADER_BYTES);
+            this.data = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            this.sequence = sequence;
+            this.chunkBytes = chunkBytes;
+        }
+
+        /**
+         * Thêm một entity (phải theo thứ tự entityId tăng dần, như entity index)
+         *
+         * @return recordRef của bản ghi trong snapshot này
+         */
+        public long add(String entityId, long fileSize, Record record, List<KeyIdEntry> keyIds) throws IOException {
+            return addRaw(entityId, fileSize, record.encode(), keyIds);
+        }
+
+        long addRaw(String entityId, long fileSize, byte[] payload, List<KeyIdEntry> keyIds) throws IOException {
+            if (payload.length > 0xFFFFFF || RECORD_HEADER_BYTES + payload.length > chunkBytes) {
+                throw new IOException("Key record too large for snapshot: " + entityId);
+            }
+            int recordBytes = RECORD_HEADER_BYTES + payload.length;
+            long chunkRemaining = chunkBytes - dataPosition % chunkBytes;
+            if (recordBytes > chunkRemaining) {
+                // Bản ghi không vắt qua biên chunk: đệm 0 tới chunk tiếp theo
+                data.write(new byte[(int) chunkRemaining]);
+                dataPosition += chunkRemaining;
+            }
+            long recordRef = dataPosition << 24 | payload.length;
+            data.writeInt(crc(payload, 0, payload.length));
+            data.writeInt(payload.length);
+            data.write(payload);
+            dataPosition += recordBytes;
+
+            writeString(indexOut, entityId);
+            indexOut.writeLong(fileSize);
+            indexOut.writeLong(recordRef);
+            indexOut.writeShort(keyIds.size());
+            for (KeyIdEntry keyId : keyIds) {
+                writeString(indexOut, keyId.keyId);
+                indexOut.writeInt(keyId.version);
+                indexOut.writeByte(keyId.archived ? 1 : 0);
+            }
+            entityCount++;
+            return recordRef;
+        }
+
+        /**
+         * Ghi index + header và fsync
+         */
+        public void finish() throws IOException {
+            data.flush();
+            long dataLength = dataPosition;
+            byte[] index = indexBytes.toByteArray();
+            long indexOffset = HEADER_BYTES + dataLength;
+            writeFully(ByteBuffer.wrap(index), indexOffset);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.put(MAGIC);
+            header.putInt(FORMAT_VERSION);
+            header.putLong(sequence);
+            header.putLong(System.currentTimeMillis());
+            header.putInt(entityCount);
+            header.putLong(HEADER_BYTES);
+            header.putLong(dataLength);
+            header.putLong(indexOffset);
+            header.putInt(index.length);
+            header.putInt(crc(index, 0, index.length));
+            header.putInt(crc(header.array(), 0, header.position()));
+            header.rewind();
+            channel.force(true);
+            writeFully(header, 0); // header cuối cùng: trước đó file chưa hợp lệ
+            channel.force(true);
+            finished = true;
+        }
+
+        private void writeFully(ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                data.flush();
+            }
+            channel.close();
+        }
+    }
+
+    // ==================== Kiểu dữ liệu ====================
+
+    /**
+     * Bản ghi khóa của một entity (private key vẫn ở dạng encrypted như trong file .properties)
+     */
+    public static final class Record {
+        public final String algorithm;
+        public final int version;
+        public final byte[] publicKey;
+        public final byte[] privateKeyEncrypted;
+        public final byte[] ecdsaPublicKey;           // null nếu entity chưa có khóa classical
+        public final byte[] ecdsaPrivateKeyEncrypted;
+
+        public Record(String algorithm, int version, byte[] publicKey, byte[] privateKeyEncrypted,
+                      byte[] ecdsaPublicKey, byte[] ecdsaPrivateKeyEncrypted) {
+            this.algorithm = algorithm;
+            this.version = version;
+            this.publicKey = publicKey;
+            this.privateKeyEncrypted = privateKeyEncrypted;
+            this.ecdsaPublicKey = ecdsaPublicKey;
+            this.ecdsaPrivateKeyEncrypted = ecdsaPrivateKeyEncrypted;
+        }
+
+        byte[] encode() {
+            byte[] algorithmBytes = algorithm.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.allocate(2 + algorithmBytes.length + 4
+                + 16 + publicKey.length + privateKeyEncrypted.length
+                + lengthOf(ecdsaPublicKey) + lengthOf(ecdsaPrivateKeyEncrypted));
+            buffer.putShort((short) algorithmBytes.length).put(algorithmBytes);
+            buffer.putInt(version);
+            putBytes(buffer, publicKey);
+            putBytes(buffer, privateKeyEncrypted);
+            putBytes(buffer, ecdsaPublicKey);
+            putBytes(buffer, ecdsaPrivateKeyEncrypted);
+            return buffer.array();
+        }
+
+        static Record decode(ByteBuffer buffer) {
+            String algorithm = readString(buffer);
+            int version = buffer.getInt();
+            byte[] publicKey = getBytes(buffer);
+            byte[] privateKeyEncrypted = getBytes(buffer);
+            byte[] ecdsaPublicKey = getBytes(buffer);
+            byte[] ecdsaPrivateKeyEncrypted = getBytes(buffer);
+            return new Record(algorithm, version, publicKey, privateKeyEncrypted,
+                ecdsaPublicKey.length > 0 ? ecdsaPublicKey : null,
+                ecdsaPrivateKeyEncrypted.length > 0 ? ecdsaPrivateKeyEncrypted : null);
+        }
+
+        private static int lengthOf(byte[] bytes) {
+            return bytes != null ? bytes.length : 0;
+        }
+
+        private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+            buffer.putInt(lengthOf(bytes));
+            if (bytes != null) {
+                buffer.put(bytes);
+            }
+        }
+
+        private static byte[] getBytes(ByteBuffer buffer) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            return bytes;
+        }
+    }
+
+    public static final class IndexEntry {
+        public final String entityId;
+        public final long fileSize;
+        public final long recordRef; // vị trí (40 bit) | độ dài payload (24 bit)
+        public final List<KeyIdEntry> keyIds;
+
+        IndexEntry(String entityId, long fileSize, long recordRef, List<KeyIdEntry> keyIds) {
+            this.entityId = entityId;
+            this.fileSize = fileSize;
+            this.recordRef = recordRef;
+            this.keyIds = keyIds;
+        }
+    }
+
+    public static final class KeyIdEntry {
+        public final String keyId;
+        public final int version;
+        public final boolean archived;
+
+        public KeyIdEntry(String keyId, int version, boolean archived) {
+            this.keyId = keyId;
+            this.version = version;
+            this.archived = archived;
+        }
+    }
+
+    // ==================== Helpers ====================
+
+    private static int crc(byte[] bytes, int offset, int length) {
+        CRC32C checksum = new CRC32C();
+        checksum.update(bytes, offset, length);
+        return (int) checksum.getValue();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,47 +1,212 @@
 package com.nt219.ksm.storage;
 
+import com.nt219.ksm.config.KSMConfig;
+import com.nt219.ksm.crypto.KeyId;
 import com.nt219.ksm.crypto.PQCKeyPair;
 import com.nt219.ksm.crypto.PQCAlgorithm;
+import com.nt219.ksm.crypto.PQCCryptoFactory;
+import com.nt219.ksm.crypto.impl.EcdsaSecp256k1Service;
+import com.nt219.ksm.jfr.KeySaveEvent;
+import com.nt219.ksm.tracing.KsmTracing;
+import io.opentelemetry.api.trace.Span;
+import jakarta.annotation.PreDestroy;
 import org.springframework.stereotype.Service;
 
-import javax.crypto.Cipher;
-import javax.crypto.KeyGenerator;
-import javax.crypto.SecretKey;
-import javax.crypto.spec.SecretKeySpec;
-import javax.crypto.spec.IvParameterSpec;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.security.SecureRandom;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Service để quản lý persistent storage của PQC keys
  * 
  * Features:
- * - Lưu private keys encrypted với AES-256
+ * - Envelope encryption (MasterKeyring): mỗi private key có data key AES-256-GCM riêng,
+ *   chỉ data key được wrap bằng master key → rotate master key chỉ cần wrap lại 32 byte mỗi khóa
  * - Public keys lưu plain text
  * - File-based storage (đơn giản, không cần database)
  * - Auto load on startup
  * - Thread-safe
+ * - In-memory sorted entity index (pagination, prefix queries, O(1) stats)
+ * - Versioned keys: rotate archive phiên bản cũ, tra public key theo key ID
+ * - Binary snapshot (KeySnapshot) + journal: khởi động mmap snapshot mới nhất rồi chỉ đọc lại
+ *   các entity có trong journal, không parse từng file .properties
+ * 
+ * Snapshot / journal (thư mục KSM_SNAPSHOT_DIR, mặc định STORAGE_DIR/snapshot):
+ * - keys-<seq>.snap: snapshot nhị phân có checksum của toàn bộ index + bản ghi khóa (private key vẫn encrypted)
+ * - journal-<seq>.log: entityId của mọi thay đổi kể từ khi bắt đầu snapshot <seq>, ghi trước khi sửa file khóa
+ * - Snapshot mới được ghi định kỳ (KSM_SNAPSHOT_INTERVAL_MS) khi có thay đổi: bản ghi của entity không đổi
+ *   được copy nguyên từ snapshot cũ, chỉ entity trong journal được đọc lại từ file
+ * 
+ * Group commit (KSM_KEY_COMMIT_MODE=group, mặc định): saveKeyPair đưa bản ghi vào KeyCommitLog,
+ * nhiều request cùng lúc chung một lần fsync; request trả về khi nhóm đã bền vững trên đĩa.
+ * 
+ * Rotate master key (rotateMasterKey): tạo master-v<N+1>.key, bản ghi mới wrap bằng version mới ngay;
+ * job nền (giới hạn KSM_MASTER_REWRAP_RATE bản ghi/giây) wrap lại data key của các bản ghi cũ, kể cả archive.
+ * Trong lúc đó mọi version vẫn giải mã được (version nằm trong header bản ghi). File master-rewrap.pending
+ * đánh dấu job chưa xong để tiếp tục sau khi khởi động lại.
+ * 
+ * Khóa tạo từ seed (KSM_KEY_STORAGE_FORMAT=seed, xem KeyPairPool): bản ghi chỉ chứa seed 32 byte (encrypted)
+ * thay cho private key đầy đủ, cùng public key và keyId như thường. Seed nằm trong chính trường
+ * privateKeyEncrypted (plaintext "KSD1" ‖ seed) nên snapshot, commit log, export/import và rewrap không đổi;
+ * loadKeyPair chạy lại keygen từ seed và kiểm public key khớp bản đã lưu. Bản ghi dạng full vẫn đọc được.
+ * 
+ * NONCE của transaction (nextNonce) tăng ngặt theo entity: file khóa lưu nonceLimit, node cấp nonce trong một khối
+ * KSM_NONCE_BLOCK giá trị đã ghi vào file trước khi dùng. nonceLimit đi cùng bản ghi khi migrate / handoff và được
+ * giữ khi rotate, nên nonce không lặp lại hay lùi sau restart hoặc khi entity chuyển sang node khác.
  */
 @Service
 public class KeyStoreService {
     
-    private static final String STORAGE_DIR = System.getenv().getOrDefault("KSM_STORAGE_DIR", 
-        System.getProperty("ksm.storage.dir", "./ksm-data"));
-    private static final String MASTER_KEY_FILE = STORAGE_DIR + "/master.key";
-    private static final String KEYS_DIR = STORAGE_DIR + "/keys";
+    private static final String STORAGE_DIR = KSMConfig.get("KSM_STORAGE_DIR", "ksm.storage.dir", "./ksm-data");
+    // Phiên bản khóa cũ: <ARCHIVE_DIR>/<entityId>/v<version>-<fingerprint>.properties (có thể mount cold storage)
+    private static final String ARCHIVE_DIR = KSMConfig.get("KSM_ARCHIVE_DIR", "ksm.archive.dir", STORAGE_DIR + "/archive");
+    
+    private static final String KEY_FILE_SUFFIX = ".properties";
+    private static final Pattern ARCHIVE_FILE_PATTERN = Pattern.compile("v(\\d{1,9})-([0-9a-f]+)\\.properties");
+    
+    private static final boolean SNAPSHOT_ENABLED = KSMConfig.getBoolean("KSM_SNAPSHOT_ENABLED", "ksm.snapshot.enabled", true);
+    private static final String SNAPSHOT_DIR = KSMConfig.get("KSM_SNAPSHOT_DIR", "ksm.snapshot.dir", STORAGE_DIR + "/snapshot");
+    private static final long SNAPSHOT_INTERVAL_MS = KSMConfig.getLong("KSM_SNAPSHOT_INTERVAL_MS", "ksm.snapshot.intervalMs", 5 * 60 * 1000);
+    private static final String SNAPSHOT_PREFIX = "keys-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+    private static final String JOURNAL_PREFIX = "journal-";
+    private static final String JOURNAL_SUFFIX = ".log";
+    
+    // group: WAL + group commit (bền vững, fsync chung theo nhóm); direct: ghi file ngay trong request, không fsync
+    private static final String KEY_COMMIT_MODE = KSMConfig.get("KSM_KEY_COMMIT_MODE", "ksm.keyCommit.mode", "group");
+    private static final int KEY_COMMIT_MAX_BATCH = KSMConfig.getInt("KSM_KEY_COMMIT_MAX_BATCH", "ksm.keyCommit.maxBatch", 256);
+    private static final long KEY_COMMIT_MAX_DELAY_MS = KSMConfig.getLong("KSM_KEY_COMMIT_MAX_DELAY_MS", "ksm.keyCommit.maxDelayMs", 2);
+    private static final long KEY_COMMIT_SEGMENT_BYTES = KSMConfig.getLong("KSM_KEY_COMMIT_SEGMENT_BYTES", "ksm.keyCommit.segmentBytes", 16L << 20);
+    
+    private static final int MASTER_REWRAP_RATE = KSMConfig.getInt("KSM_MASTER_REWRAP_RATE", "ksm.masterKey.rewrapRate", 1000);
+    
+    // Số nonce cấp cho mỗi lần ghi nonceLimit vào file khóa (restart bỏ qua phần còn lại của khối)
+    private static final long NONCE_BLOCK = KSMConfig.getLong("KSM_NONCE_BLOCK", "ksm.nonce.block", 1000);
+    
+    // Plaintext của privateKeyEncrypted khi bản ghi lưu seed: magic ‖ seed (36 byte, không private key nào cỡ này)
+    private static final byte[] SEED_MAGIC = "KSD1".getBytes(StandardCharsets.US_ASCII);
+    private static final int SEED_RECORD_BYTES = SEED_MAGIC.length + 32;
+    
+    // Thư mục của instance này (mặc định từ config; test / nhiều node trong một JVM truyền thư mục riêng)
+    private final String storageDir;
+    private final String rewrapMarkerFile;
+    private final String keysDir;
+    private final String archiveDir;
+    private final String snapshotDir;
+    
+    private MasterKeyring masterKeys;
+    private KeyCommitLog commitLog; // null = direct
+    private volatile boolean masterKeyExists;
+    
+    // Job nền wrap lại data key sau khi rotate master key
+    private final ExecutorService rewrapExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ksm-master-rewrap");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+    private volatile boolean rewrapRunning;
+    private volatile int rewrapTargetVersion;
+    private final AtomicLong rewrapScanned = new AtomicLong();
+    private final AtomicLong rewrapRewrapped = new AtomicLong();
+    private final AtomicLong rewrapFailed = new AtomicLong();
+    private volatile long rewrapFinishedAt = -1;
     
-    private SecretKey masterKey;
+    // Index entityId -> kích thước file, cập nhật incremental khi save/delete
+    private final ConcurrentSkipListMap<String, Long> entityIndex = new ConcurrentSkipListMap<>();
+    private final AtomicLong totalStorageSize = new AtomicLong();
+    private final AtomicLong entityCount = new AtomicLong(); // size() của skip list là O(n)
+    private final AtomicLong seedExpansions = new AtomicLong();
+    
+    // Index keyId -> vị trí bản ghi khóa (phiên bản hiện tại hoặc archive)
+    private final ConcurrentHashMap<String, KeyLocation> keyIdIndex = new ConcurrentHashMap<>();
+    
+    // Khối nonce đang cấp của từng entity (bỏ khi entity bị xóa / import, cấp lại từ nonceLimit trong file)
+    private final ConcurrentHashMap<String, NonceBlock> nonceBlocks = new ConcurrentHashMap<>();
+    
+    // Snapshot đang mmap + vị trí bản ghi của các entity chưa đổi kể từ snapshot (null = chưa có snapshot)
+    private volatile SnapshotView snapshotView;
+    // Ghi file khóa giữ read lock (journal trước, sửa file sau); chuyển journal khi snapshot giữ write lock
+    private final ReentrantReadWriteLock journalLock = new ReentrantReadWriteLock();
+    private volatile Set<String> dirtyEntities = ConcurrentHashMap.newKeySet(); // entity trong journal hiện tại
+    private FileChannel journal;
+    private long journalSequence;
+    private final Object snapshotWriteLock = new Object();
+    private ScheduledExecutorService snapshotScheduler;
+    private volatile long lastSnapshotMillis = -1;
     
     public KeyStoreService() {
+        this(STORAGE_DIR, ARCHIVE_DIR, SNAPSHOT_DIR);
+    }
+    
+    /**
+     * KeyStore trên thư mục riêng (archive và snapshot nằm trong storageDir), các cấu hình khác như mặc định
+     */
+    public KeyStoreService(Path storageDir) {
+        this(storageDir.toString(), storageDir.resolve("archive").toString(), storageDir.resolve("snapshot").toString());
+    }
+    
+    private KeyStoreService(String storageDir, String archiveDir, String snapshotDir) {
+        this.storageDir = storageDir;
+        this.rewrapMarkerFile = storageDir + "/master-rewrap.pending";
+        this.keysDir = storageDir + "/keys";
+        this.archiveDir = archiveDir;
+        this.snapshotDir = snapshotDir;
         try {
             initializeStorage();
             loadOrGenerateMasterKey();
+            long start = System.nanoTime();
+            if (!SNAPSHOT_ENABLED || !loadSnapshot()) {
+                buildEntityIndex();
+            }
+            System.out.println("[KSM] Key index ready in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            if (SNAPSHOT_ENABLED) {
+                startSnapshots();
+            }
+            if ("group".equalsIgnoreCase(KEY_COMMIT_MODE)) {
+                // Replay sau journal: bản ghi chưa checkpoint được ghi lại qua beginChange như mọi thay đổi khác
+                commitLog = new KeyCommitLog(Paths.get(storageDir, "wal"), KEY_COMMIT_MAX_BATCH, KEY_COMMIT_MAX_DELAY_MS,
+                    KEY_COMMIT_SEGMENT_BYTES, this::applyKeyRecord);
+                commitLog.start();
+            }
+            if (new File(rewrapMarkerFile).exists()) {
+                System.out.println("[KSM] Resuming unfinished master key rewrap");
+                startRewrap();
+            }
         } catch (Exception e) {
             throw new RuntimeException("Failed to initialize KeyStoreService", e);
         }
@@ -51,67 +216,529 @@ public class KeyStoreService {
      * Khởi tạo thư mục storage
      */
     private void initializeStorage() throws IOException {
-        Files.createDirectories(Paths.get(STORAGE_DIR));
-        Files.createDirectories(Paths.get(KEYS_DIR));
-        System.out.println("[KSM] Storage initialized at: " + STORAGE_DIR);
+        Files.createDirectories(Paths.get(storageDir));
+        Files.createDirectories(Paths.get(keysDir));
+        Files.createDirectories(Paths.get(archiveDir));
+        if (SNAPSHOT_ENABLED) {
+            Files.createDirectories(Paths.get(snapshotDir));
+        }
+        System.out.println("[KSM] Storage initialized at: " + storageDir);
     }
     
     /**
-     * Load hoặc generate master key để encrypt private keys
+     * Load (hoặc generate) các version master key dùng để wrap data key của private keys
      */
     private void loadOrGenerateMasterKey() throws Exception {
-        File masterKeyFile = new File(MASTER_KEY_FILE);
+        this.masterKeys = MasterKeyring.load(Paths.get(storageDir));
+        this.masterKeyExists = true;
+    }
+    
+    /**
+     * Quét thư mục keys một lần lúc khởi động để dựng entity index
+     * Sau đó index được cập nhật incremental, không cần listFiles() mỗi request
+     */
+    private void buildEntityIndex() {
+        File[] files = new File(keysDir).listFiles((dir, name) -> name.endsWith(KEY_FILE_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                indexEntity(entityIdOf(file), file.length());
+            }
+        }
         
-        if (masterKeyFile.exists()) {
-            // Load existing master key
-            byte[] keyBytes = Files.readAllBytes(masterKeyFile.toPath());
-            this.masterKey = new SecretKeySpec(keyBytes, "AES");
-            System.out.println("[KSM] Master key loaded from file");
-        } else {
-            // Generate new master key
-            KeyGenerator keyGen = KeyGenerator.getInstance("AES");
-            keyGen.init(256, new SecureRandom());
-            this.masterKey = keyGen.generateKey();
+        // Phiên bản archive: key ID suy ra từ tên file, không cần đọc nội dung
+        File[] archivedEntities = new File(archiveDir).listFiles(File::isDirectory);
+        if (archivedEntities != null) {
+            for (File entityDir : archivedEntities) {
+                for (KeySnapshot.KeyIdEntry archived : archivedKeyIds(entityDir.getName())) {
+                    keyIdIndex.put(archived.keyId, new KeyLocation(entityDir.getName(), archived.version, true));
+                }
+            }
+        }
+        System.out.println("[KSM] Entity index built: " + entityCount.get() + " entities, "
+            + keyIdIndex.size() + " archived key versions");
+    }
+    
+    private List<KeySnapshot.KeyIdEntry> archivedKeyIds(String entityId) {
+        List<KeySnapshot.KeyIdEntry> keyIds = new ArrayList<>();
+        File[] versions = new File(archiveDir, entityId)
+            .listFiles((dir, name) -> name.startsWith("v") && name.endsWith(KEY_FILE_SUFFIX));
+        if (versions != null) {
+            for (File versionFile : versions) {
+                String name = versionFile.getName();
+                String[] parts = name.substring(1, name.length() - KEY_FILE_SUFFIX.length()).split("-", 2);
+                int version = Integer.parseInt(parts[0]);
+                keyIds.add(new KeySnapshot.KeyIdEntry(parts[1] + "-v" + version, version, true));
+            }
+        }
+        return keyIds;
+    }
+    
+    // ==================== Snapshot + journal ====================
+    
+    /**
+     * Dựng index từ snapshot mới nhất, rồi áp dụng các entity có trong journal ghi sau snapshot
+     * 
+     * @return false nếu chưa có snapshot hoặc snapshot hỏng (caller quét thư mục keys như cũ)
+     */
+    private boolean loadSnapshot() throws IOException {
+        File latest = latestFile(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        journalSequence = Math.max(0, sequenceOf(latestFile(JOURNAL_PREFIX, JOURNAL_SUFFIX), JOURNAL_PREFIX, JOURNAL_SUFFIX));
+        if (latest == null) {
+            return false;
+        }
+        
+        KeySnapshot snapshot;
+        try {
+            snapshot = KeySnapshot.open(latest.toPath());
+        } catch (IOException e) {
+            System.err.println("[KSM] Ignoring snapshot " + latest.getName() + ": " + e.getMessage()
+                + " - rebuilding index from key files");
+            return false;
+        }
+        
+        ConcurrentHashMap<String, Long> records = new ConcurrentHashMap<>(snapshot.getEntityCount() * 4 / 3 + 1);
+        for (KeySnapshot.IndexEntry entry : snapshot.entries()) {
+            indexEntity(entry.entityId, entry.fileSize);
+            records.put(entry.entityId, entry.recordRef);
+            for (KeySnapshot.KeyIdEntry keyId : entry.keyIds) {
+                keyIdIndex.put(keyId.keyId, new KeyLocation(entry.entityId, keyId.version, keyId.archived));
+            }
+        }
+        
+        // Thay đổi sau snapshot: đọc lại đúng những entity đó từ file
+        Set<String> changed = new HashSet<>();
+        File[] journals = new File(snapshotDir).listFiles((dir, name) -> name.startsWith(JOURNAL_PREFIX)
+            && name.endsWith(JOURNAL_SUFFIX) && sequenceOf(new File(dir, name), JOURNAL_PREFIX, JOURNAL_SUFFIX) >= snapshot.getSequence());
+        for (File journalFile : journals != null ? journals : new File[0]) {
+            for (String line : Files.readAllLines(journalFile.toPath(), StandardCharsets.UTF_8)) {
+                if (!line.isEmpty()) {
+                    changed.add(line);
+                }
+            }
+        }
+        if (!changed.isEmpty()) {
+            records.keySet().removeAll(changed);
+            keyIdIndex.values().removeIf(location -> changed.contains(location.entityId));
+            for (String entityId : changed) {
+                reindexEntity(entityId);
+            }
+            dirtyEntities.addAll(changed);
+        }
+        
+        snapshotView = new SnapshotView(snapshot, records);
+        journalSequence = Math.max(journalSequence, snapshot.getSequence());
+        lastSnapshotMillis = snapshot.getCreatedAt();
+        System.out.println("[KSM] Entity index loaded from snapshot " + latest.getName() + ": "
+            + snapshot.getEntityCount() + " entities, " + changed.size() + " changed since");
+        return true;
+    }
+    
+    /**
+     * Đọc lại trạng thái một entity từ file (file khóa hiện tại + thư mục archive)
+     */
+    private void reindexEntity(String entityId) {
+        File file = new File(keysDir, entityId + KEY_FILE_SUFFIX);
+        if (!file.exists()) {
+            unindexEntity(entityId);
+            return;
+        }
+        indexEntity(entityId, file.length());
+        String keyId = readKeyId(file);
+        if (keyId != null) {
+            keyIdIndex.put(keyId, new KeyLocation(entityId, KeyId.versionOf(keyId), false));
+        }
+        for (KeySnapshot.KeyIdEntry archived : archivedKeyIds(entityId)) {
+            keyIdIndex.put(archived.keyId, new KeyLocation(entityId, archived.version, true));
+        }
+    }
+    
+    private void startSnapshots() throws IOException {
+        openJournal(journalSequence);
+        snapshotScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ksm-snapshot");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        // Lần đầu (chưa có snapshot) ghi ngay, sau đó định kỳ nếu có thay đổi
+        snapshotScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                if (snapshotView == null || !dirtyEntities.isEmpty()) {
+                    writeSnapshot();
+                }
+            } catch (Exception e) {
+                System.err.println("[KSM] Snapshot failed: " + e.getMessage());
+            }
+        }, snapshotView == null ? 0 : SNAPSHOT_INTERVAL_MS, SNAPSHOT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+    
+    private void openJournal(long sequence) throws IOException {
+        journal = FileChannel.open(Paths.get(snapshotDir, JOURNAL_PREFIX + sequence + JOURNAL_SUFFIX),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        journalSequence = sequence;
+    }
+    
+    /**
+     * Gọi trước khi sửa file khóa của entity; phải kết thúc bằng {@link #endChange()}
+     * Entity được ghi vào journal (một lần cho mỗi snapshot) và không còn đọc từ snapshot cũ.
+     */
+    private void beginChange(String entityId) {
+        if (!SNAPSHOT_ENABLED) {
+            return;
+        }
+        journalLock.readLock().lock();
+        SnapshotView view = snapshotView;
+        if (view != null) {
+            view.records.remove(entityId);
+        }
+        if (dirtyEntities.add(entityId)) {
+            try {
+                ByteBuffer line = ByteBuffer.wrap((entityId + "\n").getBytes(StandardCharsets.UTF_8));
+                while (line.hasRemaining()) {
+                    journal.write(line);
+                }
+            } catch (IOException e) {
+                journalLock.readLock().unlock();
+                throw new UncheckedIOException("Failed to append to key journal", e);
+            }
+        }
+    }
+    
+    private void endChange() {
+        if (SNAPSHOT_ENABLED) {
+            journalLock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Ghi snapshot mới: bản ghi của entity không đổi copy nguyên từ snapshot cũ (không decode),
+     * entity đã đổi được đọc lại từ file. Snapshot cũ và journal đã được bao phủ bị xóa sau đó.
+     * 
+     * @return Số entity trong snapshot mới
+     */
+    public int writeSnapshot() throws IOException {
+        if (!SNAPSHOT_ENABLED) {
+            throw new IllegalStateException("Snapshots are disabled (KSM_SNAPSHOT_ENABLED=false)");
+        }
+        synchronized (snapshotWriteLock) {
+            long start = System.nanoTime();
             
-            // Save master key
-            Files.write(masterKeyFile.toPath(), masterKey.getEncoded());
-            System.out.println("[KSM] New master key generated and saved");
+            // Chuyển sang journal mới: chờ mọi thao tác ghi đang chạy xong, để file của entity
+            // trong journal cũ đã hoàn chỉnh trước khi được đọc vào snapshot
+            long sequence;
+            Set<String> switchedOut;
+            journalLock.writeLock().lock();
+            try {
+                journal.close();
+                openJournal(journalSequence + 1);
+                sequence = journalSequence;
+                switchedOut = dirtyEntities;
+                dirtyEntities = ConcurrentHashMap.newKeySet();
+            } finally {
+                journalLock.writeLock().unlock();
+            }
             
-            // ⚠️ Security warning
-            System.out.println("[WARNING] Master key file created at: " + MASTER_KEY_FILE);
-            System.out.println("[WARNING] BACKUP this file! If lost, all keys cannot be decrypted!");
+            SnapshotView previous = snapshotView;
+            Iterator<KeySnapshot.IndexEntry> previousEntries = previous != null
+                ? previous.snapshot.entries().iterator() : null;
+            KeySnapshot.IndexEntry previousEntry = null;
+            
+            Path target = Paths.get(snapshotDir, SNAPSHOT_PREFIX + sequence + SNAPSHOT_SUFFIX);
+            Path temp = Paths.get(snapshotDir, SNAPSHOT_PREFIX + sequence + SNAPSHOT_SUFFIX + ".tmp");
+            Map<String, Long> records = new HashMap<>();
+            try (KeySnapshot.Writer writer = KeySnapshot.create(temp, sequence)) {
+                for (Map.Entry<String, Long> entity : entityIndex.entrySet()) {
+                    String entityId = entity.getKey();
+                    
+                    // Snapshot cũ cũng theo thứ tự entityId: merge song song
+                    while (previousEntries != null && (previousEntry == null || previousEntry.entityId.compareTo(entityId) < 0)) {
+                        previousEntry = previousEntries.hasNext() ? previousEntries.next() : null;
+                        if (previousEntry == null) {
+                            previousEntries = null;
+                        }
+                    }
+                    Long unchanged = previous != null ? previous.records.get(entityId) : null;
+                    if (unchanged != null && previousEntry != null && previousEntry.entityId.equals(entityId)
+                            && previousEntry.recordRef == unchanged) {
+                        records.put(entityId, writer.addRaw(entityId, entity.getValue(),
+                            previous.snapshot.readRawRecord(unchanged), previousEntry.keyIds));
+                        continue;
+                    }
+                    
+                    try {
+                        File file = new File(keysDir, entityId + KEY_FILE_SUFFIX);
+                        Properties props = new Properties();
+                        try (FileInputStream in = new FileInputStream(file)) {
+                            props.load(in);
+                        }
+                        int version = Integer.parseInt(props.getProperty("version", "1"));
+                        byte[] publicKey = Base64.getDecoder().decode(props.getProperty("publicKey"));
+                        String ecdsaPublicKey = props.getProperty("ecdsaPublicKey");
+                        KeySnapshot.Record record = new KeySnapshot.Record(props.getProperty("algorithm"), version, publicKey,
+                            Base64.getDecoder().decode(props.getProperty("privateKeyEncrypted")),
+                            ecdsaPublicKey != null ? Base64.getDecoder().decode(ecdsaPublicKey) : null,
+                            ecdsaPublicKey != null ? Base64.getDecoder().decode(props.getProperty("ecdsaPrivateKeyEncrypted")) : null);
+                        
+                        List<KeySnapshot.KeyIdEntry> keyIds = archivedKeyIds(entityId);
+                        keyIds.add(new KeySnapshot.KeyIdEntry(props.getProperty("keyId", KeyId.of(publicKey, version)), version, false));
+                        records.put(entityId, writer.add(entityId, file.length(), record, keyIds));
+                    } catch (Exception e) {
+                        if (!dirtyEntities.contains(entityId)) {
+                            // Không có thay đổi nào sau khi chuyển journal giải thích được lỗi: bỏ entity sẽ làm
+                            // mất khóa của nó ở lần khởi động sau (journal cũ bị xóa), nên hủy cả snapshot
+                            throw new IOException("Snapshot aborted: cannot read key record of " + entityId, e);
+                        }
+                        // File đang được ghi lại / bị xóa sau khi chuyển journal: entity nằm trong journal mới,
+                        // lần khởi động sau sẽ đọc lại từ file
+                        System.err.println("[KSM] Snapshot skipped entity " + entityId + ": " + e.getMessage());
+                    }
+                }
+                writer.finish();
+            } catch (IOException | RuntimeException e) {
+                // Giữ snapshot và journal cũ; đánh dấu lại entity của journal cũ để scheduler thử lại
+                Files.deleteIfExists(temp);
+                dirtyEntities.addAll(switchedOut);
+                throw e;
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            
+            KeySnapshot snapshot = KeySnapshot.open(target);
+            journalLock.writeLock().lock();
+            try {
+                ConcurrentHashMap<String, Long> current = new ConcurrentHashMap<>(records);
+                current.keySet().removeAll(dirtyEntities); // đổi trong lúc đang ghi snapshot
+                snapshotView = new SnapshotView(snapshot, current);
+            } finally {
+                journalLock.writeLock().unlock();
+            }
+            if (previous != null) {
+                previous.snapshot.close();
+            }
+            deleteCoveredFiles(sequence);
+            lastSnapshotMillis = System.currentTimeMillis();
+            
+            System.out.println("[KSM] Snapshot " + target.getFileName() + " written: " + snapshot.getEntityCount()
+                + " entities in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return snapshot.getEntityCount();
+        }
+    }
+    
+    /**
+     * Xóa snapshot và journal có sequence nhỏ hơn snapshot vừa ghi
+     */
+    private void deleteCoveredFiles(long sequence) {
+        File[] files = new File(snapshotDir).listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            long fileSequence = Math.max(sequenceOf(file, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX),
+                sequenceOf(file, JOURNAL_PREFIX, JOURNAL_SUFFIX));
+            if (fileSequence >= 0 && fileSequence < sequence) {
+                file.delete();
+            }
+        }
+    }
+    
+    private File latestFile(String prefix, String suffix) {
+        File[] files = new File(snapshotDir).listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(suffix));
+        File latest = null;
+        for (File file : files != null ? files : new File[0]) {
+            if (latest == null || sequenceOf(file, prefix, suffix) > sequenceOf(latest, prefix, suffix)) {
+                latest = file;
+            }
+        }
+        return latest;
+    }
+    
+    /**
+     * Sequence trong tên file (keys-<seq>.snap / journal-<seq>.log), -1 nếu không khớp
+     */
+    private static long sequenceOf(File file, String prefix, String suffix) {
+        if (file == null) {
+            return -1;
+        }
+        String name = file.getName();
+        if (!name.startsWith(prefix) || !name.endsWith(suffix)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * Bản ghi của entity trong snapshot, null nếu entity đã đổi sau snapshot (caller đọc file)
+     */
+    private KeySnapshot.Record snapshotRecord(String entityId) {
+        SnapshotView view = snapshotView;
+        Long recordRef = view != null ? view.records.get(entityId) : null;
+        if (recordRef == null) {
+            return null;
+        }
+        try {
+            return view.snapshot.readRecord(recordRef);
+        } catch (IOException e) {
+            System.err.println("[KSM] " + e.getMessage() + " - reading " + entityId + " from key file");
+            view.records.remove(entityId, recordRef);
+            return null;
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        rewrapExecutor.shutdownNow();
+        try {
+            if (commitLog != null) {
+                commitLog.close();
+            }
+        } catch (IOException e) {
+            System.err.println("[KSM] Failed to close key commit log: " + e.getMessage());
+        }
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdownNow();
+        }
+        try {
+            if (journal != null) {
+                journal.close();
+            }
+        } catch (IOException e) {
+            System.err.println("[KSM] Failed to close key journal: " + e.getMessage());
         }
     }
     
+    private void indexEntity(String entityId, long size) {
+        Long previous = entityIndex.put(entityId, size);
+        if (previous == null) {
+            entityCount.incrementAndGet();
+        }
+        totalStorageSize.addAndGet(size - (previous != null ? previous : 0L));
+    }
+    
+    private void unindexEntity(String entityId) {
+        Long previous = entityIndex.remove(entityId);
+        if (previous != null) {
+            entityCount.decrementAndGet();
+            totalStorageSize.addAndGet(-previous);
+        }
+    }
+    
+    private static String entityIdOf(File file) {
+        String name = file.getName();
+        return name.substring(0, name.length() - KEY_FILE_SUFFIX.length());
+    }
+    
     /**
      * Save key pair to persistent storage
-     * Private key được encrypt với AES-256
+     * Private key được encrypt với data key riêng (AES-256-GCM), data key wrap bằng master key hiện tại
+     * Group commit: trả về khi nhóm chứa bản ghi đã fsync vào commit log và file khóa đã được ghi
      */
     public void saveKeyPair(String entityId, PQCKeyPair keyPair) throws Exception {
-        String keyFile = KEYS_DIR + "/" + entityId + ".properties";
+        KeySaveEvent event = new KeySaveEvent();
+        event.begin();
+        if (commitLog != null) {
+            byte[] record = keyRecord(entityId, keyPair);
+            awaitCommit(commitLog.append(entityId, record));
+            System.out.println("[KSM] Key pair saved for entity: " + entityId + " (" + keyPair.getKeyId() + ")");
+            event.complete(entityId, keyPair.getAlgorithm(), record.length, true);
+            return;
+        }
+        beginChange(entityId);
+        try {
+            int recordLength = writeKeyPair(entityId, keyPair);
+            event.complete(entityId, keyPair.getAlgorithm(), recordLength, false);
+        } finally {
+            endChange();
+        }
+    }
+    
+    /**
+     * @return Số byte của bản ghi đã ghi
+     */
+    private int writeKeyPair(String entityId, PQCKeyPair keyPair) throws Exception {
+        byte[] record = keyRecord(entityId, keyPair);
+        writeKeyRecord(entityId, record, keyPair.getKeyId(), keyPair.getVersion());
+        System.out.println("[KSM] Key pair saved for entity: " + entityId + " (" + keyPair.getKeyId() + ")");
+        return record.length;
+    }
+    
+    /**
+     * Nội dung file .properties của cặp khóa
+     */
+    private byte[] keyRecord(String entityId, PQCKeyPair keyPair) throws Exception {
         Properties props = new Properties();
         
         // Save metadata
         props.setProperty("entityId", entityId);
         props.setProperty("algorithm", keyPair.getAlgorithm().toString());
         props.setProperty("createdAt", String.valueOf(System.currentTimeMillis()));
+        props.setProperty("version", String.valueOf(keyPair.getVersion()));
+        props.setProperty("keyId", keyPair.getKeyId());
         
         // Save public key (plain text, Base64 encoded)
         String publicKeyB64 = Base64.getEncoder().encodeToString(keyPair.getPublicKey());
         props.setProperty("publicKey", publicKeyB64);
         props.setProperty("publicKeySize", String.valueOf(keyPair.getPublicKey().length));
         
-        // Encrypt and save private key
-        byte[] encryptedPrivateKey = encryptPrivateKey(keyPair.getPrivateKey());
+        // Encrypt and save private key (hoặc chỉ seed nếu cặp khóa được tạo từ seed)
+        byte[] encryptedPrivateKey;
+        if (keyPair.getSeed() != null) {
+            byte[] encodedSeed = encodeSeed(keyPair.getSeed());
+            encryptedPrivateKey = encryptPrivateKey(entityId, encodedSeed);
+            Arrays.fill(encodedSeed, (byte) 0);
+            props.setProperty("privateKeyFormat", "seed");
+        } else {
+            encryptedPrivateKey = encryptPrivateKey(entityId, keyPair.getPrivateKey());
+        }
         String privateKeyB64 = Base64.getEncoder().encodeToString(encryptedPrivateKey);
         props.setProperty("privateKeyEncrypted", privateKeyB64);
         
-        // Save to file
-        try (FileOutputStream out = new FileOutputStream(keyFile)) {
-            props.store(out, "PQC Key Pair for " + entityId);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+        props.store(out, "PQC Key Pair for " + entityId);
+        return out.toByteArray();
+    }
+    
+    private Path writeKeyRecord(String entityId, byte[] record, String keyId, int version) throws IOException {
+        Path keyFile = Paths.get(keysDir, entityId + KEY_FILE_SUFFIX);
+        Files.write(keyFile, record);
+        indexEntity(entityId, record.length);
+        keyIdIndex.put(keyId, new KeyLocation(entityId, version, false));
+        return keyFile;
+    }
+    
+    /**
+     * Ghi file khóa từ bản ghi của commit log (sau khi nhóm đã fsync, hoặc replay lúc khởi động)
+     */
+    private Path applyKeyRecord(String entityId, byte[] record) throws IOException {
+        Properties props = new Properties();
+        props.load(new ByteArrayInputStream(record));
+        int version = Integer.parseInt(props.getProperty("version", "1"));
+        beginChange(entityId);
+        try {
+            return writeKeyRecord(entityId, record, props.getProperty("keyId"), version);
+        } finally {
+            endChange();
+        }
+    }
+    
+    private static void awaitCommit(CompletableFuture<Void> commit) throws Exception {
+        try {
+            commit.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+    
+    /**
+     * Bản ghi của entity còn trong commit log phải được checkpoint trước khi sửa file khóa bằng đường khác,
+     * để replay sau crash không ghi đè thay đổi đó
+     */
+    private void checkpointCommitLog(String entityId) throws IOException {
+        if (commitLog != null) {
+            commitLog.checkpoint(entityId);
         }
-        
-        System.out.println("[KSM] Key pair saved for entity: " + entityId);
     }
     
     /**
@@ -119,27 +746,48 @@ public class KeyStoreService {
      * Private key được decrypt automatically
      */
     public PQCKeyPair loadKeyPair(String entityId) throws Exception {
-        String keyFile = KEYS_DIR + "/" + entityId + ".properties";
+        return KsmTracing.inSpan("keystore.loadKeyPair", span -> {
+            span.setAttribute(KsmTracing.ENTITY_ID, entityId);
+            return readKeyPair(entityId, span);
+        });
+    }
+    
+    private PQCKeyPair readKeyPair(String entityId, Span span) throws Exception {
+        KeySnapshot.Record record = snapshotRecord(entityId);
+        if (record != null) {
+            span.setAttribute(KsmTracing.KEY_SOURCE, "snapshot");
+            // Entity chưa đổi kể từ snapshot: đọc từ vùng mmap, không parse file
+            String algorithm = algorithmNameOf(record.algorithm);
+            byte[] privateKey = expandPrivateKey(entityId, algorithm, record.publicKey,
+                decryptPrivateKey(entityId, record.privateKeyEncrypted));
+            PQCKeyPair keyPair = new PQCKeyPair(record.publicKey, privateKey, algorithm, record.version);
+            keyIdIndex.put(keyPair.getKeyId(), new KeyLocation(entityId, record.version, false));
+            return keyPair;
+        }
+        
+        String keyFile = keysDir + "/" + entityId + ".properties";
         File file = new File(keyFile);
         
         if (!file.exists()) {
+            span.setAttribute(KsmTracing.KEY_SOURCE, "missing");
             return null; // Key not found
         }
+        span.setAttribute(KsmTracing.KEY_SOURCE, "file");
         
-        Properties props = new Properties();
-        try (FileInputStream in = new FileInputStream(file)) {
-            props.load(in);
-        }
+        Properties props = KsmTracing.inSpan("keystore.readKeyFile", readSpan -> {
+            readSpan.setAttribute(KsmTracing.BYTES, file.length());
+            Properties loaded = new Properties();
+            try (FileInputStream in = new FileInputStream(file)) {
+                loaded.load(in);
+            }
+            return loaded;
+        });
         
         // Load algorithm
-        String algorithmStr = props.getProperty("algorithm");
-        PQCAlgorithm algorithm;
-        try {
-            algorithm = PQCAlgorithm.valueOf(algorithmStr);
-        } catch (IllegalArgumentException e) {
-            // Fallback to DILITHIUM3 if algorithm not found
-            algorithm = PQCAlgorithm.DILITHIUM3;
-        }
+        String algorithm = algorithmNameOf(props.getProperty("algorithm"));
+        
+        // Bản ghi cũ (trước khi có versioned keys) được coi là version 1
+        int version = Integer.parseInt(props.getProperty("version", "1"));
         
         // Load public key
         String publicKeyB64 = props.getProperty("publicKey");
@@ -148,29 +796,33 @@ public class KeyStoreService {
         // Load and decrypt private key
         String privateKeyB64 = props.getProperty("privateKeyEncrypted");
         byte[] encryptedPrivateKey = Base64.getDecoder().decode(privateKeyB64);
-        byte[] privateKey = decryptPrivateKey(encryptedPrivateKey);
+        byte[] privateKey = expandPrivateKey(entityId, algorithm, publicKey, decryptPrivateKey(entityId, encryptedPrivateKey));
         
         System.out.println("[KSM] Key pair loaded for entity: " + entityId);
         
         // Create PQCKeyPair with algorithm string
-        PQCKeyPair keyPair = new PQCKeyPair(publicKey, privateKey, algorithm.toString());
+        PQCKeyPair keyPair = new PQCKeyPair(publicKey, privateKey, algorithm, version);
+        keyIdIndex.put(keyPair.getKeyId(), new KeyLocation(entityId, version, false));
         return keyPair;
     }
     
+    private static String algorithmNameOf(String stored) {
+        try {
+            return PQCAlgorithm.fromName(stored).toString();
+        } catch (IllegalArgumentException e) {
+            // Fallback to DILITHIUM3 if algorithm not found
+            return PQCAlgorithm.DILITHIUM3.toString();
+        }
+    }
+    
     /**
      * Load all key pairs from storage
      */
     public Map<String, PQCKeyPair> loadAllKeyPairs() throws Exception {
         Map<String, PQCKeyPair> keyStore = new HashMap<>();
-        File keysDir = new File(KEYS_DIR);
-        
-        File[] files = keysDir.listFiles((dir, name) -> name.endsWith(".properties"));
-        if (files == null) {
-            return keyStore;
-        }
         
-        for (File file : files) {
-            String entityId = file.getName().replace(".properties", "");
+        // Theo entity index (dựng từ snapshot hoặc lần quét lúc khởi động), không listFiles() lại
+        for (String entityId : entityIndex.keySet()) {
             try {
                 PQCKeyPair keyPair = loadKeyPair(entityId);
                 if (keyPair != null) {
@@ -188,28 +840,262 @@ public class KeyStoreService {
     
     /**
      * Delete key pair from storage
+     * Xóa cả phiên bản hiện tại và các phiên bản đã archive
      */
-    public boolean deleteKeyPair(String entityId) {
-        String keyFile = KEYS_DIR + "/" + entityId + ".properties";
+    public synchronized boolean deleteKeyPair(String entityId) {
+        String keyFile = keysDir + "/" + entityId + ".properties";
         File file = new File(keyFile);
         
         if (file.exists()) {
-            boolean deleted = file.delete();
-            if (deleted) {
-                System.out.println("[KSM] Key pair deleted for entity: " + entityId);
+            try {
+                checkpointCommitLog(entityId);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to checkpoint key commit log", e);
+            }
+            beginChange(entityId);
+            try {
+                String currentKeyId = readKeyId(file);
+                boolean deleted = file.delete();
+                if (deleted) {
+                    nonceBlocks.remove(entityId);
+                    unindexEntity(entityId);
+                    if (currentKeyId != null) {
+                        keyIdIndex.remove(currentKeyId);
+                    }
+                    deleteArchivedVersions(entityId);
+                    System.out.println("[KSM] Key pair deleted for entity: " + entityId);
+                }
+                return deleted;
+            } finally {
+                endChange();
             }
-            return deleted;
         }
         
         return false;
     }
     
+    private void deleteArchivedVersions(String entityId) {
+        File entityArchive = new File(archiveDir, entityId);
+        File[] versions = entityArchive.listFiles();
+        if (versions == null) {
+            return;
+        }
+        for (File versionFile : versions) {
+            String name = versionFile.getName();
+            if (name.startsWith("v") && name.endsWith(KEY_FILE_SUFFIX)) {
+                String[] parts = name.substring(1, name.length() - KEY_FILE_SUFFIX.length()).split("-", 2);
+                keyIdIndex.remove(parts[1] + "-v" + parts[0]);
+            }
+            versionFile.delete();
+        }
+        entityArchive.delete();
+    }
+    
+    /**
+     * Rotate khóa của entity: phiên bản hiện tại được archive (vẫn verify được chữ ký cũ),
+     * cặp khóa mới trở thành phiên bản hiện tại
+     * 
+     * @param newKeyPair Cặp khóa mới, version phải lớn hơn version hiện tại
+     */
+    public synchronized void rotateKeyPair(String entityId, PQCKeyPair newKeyPair) throws Exception {
+        checkpointCommitLog(entityId);
+        beginChange(entityId);
+        try {
+            archiveAndReplace(entityId, newKeyPair);
+        } finally {
+            endChange();
+        }
+    }
+    
+    private void archiveAndReplace(String entityId, PQCKeyPair newKeyPair) throws Exception {
+        File current = new File(keysDir + "/" + entityId + KEY_FILE_SUFFIX);
+        if (!current.exists()) {
+            throw new IllegalArgumentException("Key pair not found for entity: " + entityId);
+        }
+        
+        Properties props = new Properties();
+        try (FileInputStream in = new FileInputStream(current)) {
+            props.load(in);
+        }
+        int currentVersion = Integer.parseInt(props.getProperty("version", "1"));
+        if (newKeyPair.getVersion() <= currentVersion) {
+            throw new IllegalArgumentException("New key version must be greater than " + currentVersion);
+        }
+        String currentKeyId = props.getProperty("keyId",
+            KeyId.of(Base64.getDecoder().decode(props.getProperty("publicKey")), currentVersion));
+        
+        // Copy sang archive trước rồi mới ghi đè, để luôn có một phiên bản hiện tại trên đĩa
+        Path archiveDir = Paths.get(this.archiveDir, entityId);
+        Files.createDirectories(archiveDir);
+        Path archived = archiveDir.resolve("v" + currentVersion + "-" + KeyId.fingerprintOf(currentKeyId) + KEY_FILE_SUFFIX);
+        Files.copy(current.toPath(), archived, StandardCopyOption.REPLACE_EXISTING);
+        keyIdIndex.put(currentKeyId, new KeyLocation(entityId, currentVersion, true));
+        
+        writeKeyPair(entityId, newKeyPair);
+        if (props.getProperty("ecdsaPublicKey") != null || props.getProperty("nonceLimit") != null) {
+            // Khóa classical của chữ ký hybrid và nonce của entity không đổi khi rotate khóa PQC
+            updateKeyFile(entityId, updated -> {
+                if (props.getProperty("ecdsaPublicKey") != null) {
+                    updated.setProperty("ecdsaPublicKey", props.getProperty("ecdsaPublicKey"));
+                    updated.setProperty("ecdsaPrivateKeyEncrypted", props.getProperty("ecdsaPrivateKeyEncrypted"));
+                }
+                if (props.getProperty("nonceLimit") != null) {
+                    updated.setProperty("nonceLimit", props.getProperty("nonceLimit"));
+                }
+            });
+        }
+        System.out.println("[KSM] Key rotated for entity: " + entityId + " (v" + currentVersion
+            + " archived, now v" + newKeyPair.getVersion() + ")");
+    }
+    
+    /**
+     * NONCE tiếp theo của entity, tăng ngặt kể cả qua restart, rotate và migrate sang node khác
+     * Phần lớn lời gọi chỉ tăng bộ đếm trong bộ nhớ; mỗi KSM_NONCE_BLOCK lời gọi ghi nonceLimit mới vào file khóa.
+     */
+    public long nextNonce(String entityId) throws IOException {
+        NonceBlock block = nonceBlocks.computeIfAbsent(entityId, id -> new NonceBlock());
+        synchronized (block) {
+            if (block.next >= block.limit) {
+                long[] reserved = new long[1];
+                updateKeyFile(entityId, props -> {
+                    reserved[0] = Long.parseLong(props.getProperty("nonceLimit", "0"));
+                    props.setProperty("nonceLimit", String.valueOf(reserved[0] + NONCE_BLOCK));
+                });
+                block.next = reserved[0];
+                block.limit = reserved[0] + NONCE_BLOCK;
+            }
+            return block.next++;
+        }
+    }
+    
+    /**
+     * Lưu khóa classical (ECDSA secp256k1) của entity cho chữ ký hybrid
+     * Lưu cùng file với khóa PQC, private key encrypted bằng data key riêng như khóa PQC
+     */
+    public void saveClassicalKeyPair(String entityId, PQCKeyPair keyPair) throws Exception {
+        String publicKey = Base64.getEncoder().encodeToString(keyPair.getPublicKey());
+        String privateKey = Base64.getEncoder().encodeToString(encryptPrivateKey(entityId, keyPair.getPrivateKey()));
+        updateKeyFile(entityId, props -> {
+            props.setProperty("ecdsaPublicKey", publicKey);
+            props.setProperty("ecdsaPrivateKeyEncrypted", privateKey);
+        });
+        System.out.println("[KSM] Classical key pair saved for entity: " + entityId);
+    }
+    
+    /**
+     * Load khóa classical của entity
+     * @return null nếu entity chưa có khóa classical
+     */
+    public PQCKeyPair loadClassicalKeyPair(String entityId) throws Exception {
+        KeySnapshot.Record record = snapshotRecord(entityId);
+        if (record != null) {
+            return record.ecdsaPublicKey == null ? null : new PQCKeyPair(record.ecdsaPublicKey,
+                decryptPrivateKey(entityId, record.ecdsaPrivateKeyEncrypted), EcdsaSecp256k1Service.ALGORITHM);
+        }
+        File file = new File(keysDir + "/" + entityId + KEY_FILE_SUFFIX);
+        if (!file.exists()) {
+            return null;
+        }
+        Properties props = new Properties();
+        try (FileInputStream in = new FileInputStream(file)) {
+            props.load(in);
+        }
+        String publicKey = props.getProperty("ecdsaPublicKey");
+        if (publicKey == null) {
+            return null;
+        }
+        byte[] privateKey = decryptPrivateKey(entityId, Base64.getDecoder().decode(props.getProperty("ecdsaPrivateKeyEncrypted")));
+        return new PQCKeyPair(Base64.getDecoder().decode(publicKey), privateKey, EcdsaSecp256k1Service.ALGORITHM);
+    }
+    
+    /**
+     * Đọc - sửa - ghi file khóa của entity (ghi file tạm rồi atomic move)
+     */
+    private synchronized void updateKeyFile(String entityId, Consumer<Properties> update) throws IOException {
+        checkpointCommitLog(entityId);
+        beginChange(entityId);
+        try {
+            rewriteKeyFile(entityId, update);
+        } finally {
+            endChange();
+        }
+    }
+    
+    private void rewriteKeyFile(String entityId, Consumer<Properties> update) throws IOException {
+        Path keyFile = Paths.get(keysDir, entityId + KEY_FILE_SUFFIX);
+        if (!Files.exists(keyFile)) {
+            throw new IllegalArgumentException("Key pair not found for entity: " + entityId);
+        }
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(keyFile)) {
+            props.load(in);
+        }
+        update.accept(props);
+        
+        Path temp = keyFile.resolveSibling(entityId + KEY_FILE_SUFFIX + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            props.store(out, "PQC Key Pair for " + entityId);
+        }
+        Files.move(temp, keyFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        indexEntity(entityId, Files.size(keyFile));
+    }
+    
+    /**
+     * Tra public key theo key ID (phiên bản hiện tại hoặc đã archive), không cần private key
+     * 
+     * @return Bản ghi public key, hoặc null nếu key ID không có trong index
+     */
+    public PublicKeyRecord findPublicKey(String keyId) throws IOException {
+        KeyLocation location = keyIdIndex.get(keyId);
+        if (location == null) {
+            return null;
+        }
+        
+        KeySnapshot.Record record = location.archived ? null : snapshotRecord(location.entityId);
+        if (record != null) {
+            if (!KeyId.of(record.publicKey, record.version).equals(keyId)) {
+                return null;
+            }
+            return new PublicKeyRecord(location.entityId, keyId, record.version, record.algorithm, record.publicKey, false);
+        }
+        
+        File file = location.archived
+            ? new File(archiveDir + "/" + location.entityId,
+                "v" + location.version + "-" + KeyId.fingerprintOf(keyId) + KEY_FILE_SUFFIX)
+            : new File(keysDir + "/" + location.entityId + KEY_FILE_SUFFIX);
+        if (!file.exists()) {
+            return null;
+        }
+        
+        Properties props = new Properties();
+        try (FileInputStream in = new FileInputStream(file)) {
+            props.load(in);
+        }
+        byte[] publicKey = Base64.getDecoder().decode(props.getProperty("publicKey"));
+        if (!KeyId.of(publicKey, location.version).equals(keyId)) {
+            return null; // Bản ghi đã bị thay thế (rotate đồng thời)
+        }
+        return new PublicKeyRecord(location.entityId, keyId, location.version,
+            props.getProperty("algorithm"), publicKey, location.archived);
+    }
+    
+    private static String readKeyId(File keyFile) {
+        Properties props = new Properties();
+        try (FileInputStream in = new FileInputStream(keyFile)) {
+            props.load(in);
+            int version = Integer.parseInt(props.getProperty("version", "1"));
+            return props.getProperty("keyId",
+                KeyId.of(Base64.getDecoder().decode(props.getProperty("publicKey")), version));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+    
     /**
      * Check if key exists for entity
      */
     public boolean keyExists(String entityId) {
-        String keyFile = KEYS_DIR + "/" + entityId + ".properties";
-        return new File(keyFile).exists();
+        return entityIndex.containsKey(entityId);
     }
     
     /**
@@ -221,86 +1107,451 @@ public class KeyStoreService {
     }
     
     /**
-     * Encrypt private key với AES-256-CBC
+     * Export bản ghi khóa ở dạng lưu trữ (private key vẫn encrypted với master key)
+     * Dùng cho key migration giữa các KSM node trong cluster. Gồm cả các phiên bản đã archive;
+     * synchronized với rotate / delete để phiên bản hiện tại và archive nhất quán với nhau.
+     * 
+     * @return Bản ghi hiện tại + archive, hoặc null nếu không tồn tại
+     */
+    public synchronized ExportedKeyRecord exportRecord(String entityId) throws IOException {
+        File file = new File(keysDir + "/" + entityId + KEY_FILE_SUFFIX);
+        if (!file.exists()) {
+            return null;
+        }
+        String record = new String(Files.readAllBytes(file.toPath()), StandardCharsets.ISO_8859_1);
+        
+        Map<String, String> archived = new TreeMap<>();
+        File[] versions = new File(archiveDir, entityId)
+            .listFiles((dir, name) -> ARCHIVE_FILE_PATTERN.matcher(name).matches());
+        for (File versionFile : versions != null ? versions : new File[0]) {
+            archived.put(versionFile.getName(), new String(Files.readAllBytes(versionFile.toPath()), StandardCharsets.ISO_8859_1));
+        }
+        return new ExportedKeyRecord(record, archived);
+    }
+    
+    /**
+     * Import bản ghi khóa nhận từ node khác (yêu cầu cùng master key)
+     * Các phiên bản archive được ghi và index theo keyId trước, rồi mới tới phiên bản hiện tại.
+     * Không ghi đè bản ghi đã tồn tại: kiểm tra và ghi cùng nằm trong lock của store (như rotate / delete),
+     * file khóa được tạo bằng hard link nên cũng không đè file vừa được ghi bằng đường khác.
+     * 
+     * @return true nếu import thành công, false nếu entity đã có khóa
      */
-    private byte[] encryptPrivateKey(byte[] privateKey) throws Exception {
-        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+    public synchronized boolean importRecord(String entityId, ExportedKeyRecord exported) throws IOException {
+        validateEntityId(entityId);
         
-        // Generate random IV
-        SecureRandom random = new SecureRandom();
-        byte[] iv = new byte[16];
-        random.nextBytes(iv);
-        IvParameterSpec ivSpec = new IvParameterSpec(iv);
+        String record = exported.getRecord();
+        Properties props = new Properties();
+        props.load(new StringReader(record));
+        if (!entityId.equals(props.getProperty("entityId"))
+                || props.getProperty("publicKey") == null
+                || props.getProperty("privateKeyEncrypted") == null) {
+            throw new IllegalArgumentException("Invalid key record for entity: " + entityId);
+        }
+        Map<String, Integer> archivedKeyIds = new HashMap<>();
+        for (Map.Entry<String, String> version : exported.getArchived().entrySet()) {
+            String keyId = archivedKeyIdOf(entityId, version.getKey(), version.getValue());
+            archivedKeyIds.put(keyId, KeyId.versionOf(keyId));
+        }
+        if (keyExists(entityId)) {
+            return false;
+        }
         
-        cipher.init(Cipher.ENCRYPT_MODE, masterKey, ivSpec);
-        byte[] encrypted = cipher.doFinal(privateKey);
+        // Archive trước: khi phiên bản hiện tại xuất hiện thì keyId cũ đã tra được
+        if (!archivedKeyIds.isEmpty()) {
+            Path entityArchive = Paths.get(archiveDir, entityId);
+            Files.createDirectories(entityArchive);
+            for (Map.Entry<String, String> version : exported.getArchived().entrySet()) {
+                Path temp = entityArchive.resolve(version.getKey() + ".tmp");
+                Files.write(temp, version.getValue().getBytes(StandardCharsets.ISO_8859_1));
+                Files.move(temp, entityArchive.resolve(version.getKey()), StandardCopyOption.ATOMIC_MOVE);
+            }
+            archivedKeyIds.forEach((keyId, version) -> keyIdIndex.put(keyId, new KeyLocation(entityId, version, true)));
+        }
         
-        // Prepend IV to encrypted data
-        byte[] result = new byte[iv.length + encrypted.length];
-        System.arraycopy(iv, 0, result, 0, iv.length);
-        System.arraycopy(encrypted, 0, result, iv.length, encrypted.length);
+        // Ghi vào file tạm rồi move để không bao giờ có file key ghi dở
+        Path target = Paths.get(keysDir, entityId + KEY_FILE_SUFFIX);
+        Path temp = Paths.get(keysDir, entityId + KEY_FILE_SUFFIX + ".tmp");
+        int version = Integer.parseInt(props.getProperty("version", "1"));
+        String keyId = props.getProperty("keyId", KeyId.of(Base64.getDecoder().decode(props.getProperty("publicKey")), version));
+        checkpointCommitLog(entityId);
+        beginChange(entityId);
+        try {
+            Files.write(temp, record.getBytes(StandardCharsets.ISO_8859_1));
+            try {
+                Files.createLink(target, temp); // link() không bao giờ ghi đè file đã có
+            } catch (FileAlreadyExistsException e) {
+                // Khóa mới tạo (chưa rotate lần nào, rotate cũng giữ lock này): archive vừa ghi là của bản import
+                deleteArchivedVersions(entityId);
+                System.err.println("[KSM] Key record import for " + entityId + " lost to a concurrent write, kept local one");
+                return false;
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            indexEntity(entityId, Files.size(target));
+            keyIdIndex.put(keyId, new KeyLocation(entityId, version, false));
+            nonceBlocks.remove(entityId);
+        } finally {
+            endChange();
+        }
         
-        return result;
+        System.out.println("[KSM] Key record imported for entity: " + entityId
+            + " (" + keyId + ", " + archivedKeyIds.size() + " archived versions)");
+        return true;
     }
     
     /**
-     * Decrypt private key với AES-256-CBC
+     * KeyId của một bản ghi archive nhận từ node khác; tên file phải khớp entity, version và public key của nó
      */
-    private byte[] decryptPrivateKey(byte[] encryptedData) throws Exception {
-        // Extract IV from first 16 bytes
-        byte[] iv = new byte[16];
-        System.arraycopy(encryptedData, 0, iv, 0, 16);
-        IvParameterSpec ivSpec = new IvParameterSpec(iv);
-        
-        // Extract encrypted data
-        byte[] encrypted = new byte[encryptedData.length - 16];
-        System.arraycopy(encryptedData, 16, encrypted, 0, encrypted.length);
+    private static String archivedKeyIdOf(String entityId, String fileName, String content) throws IOException {
+        Matcher matcher = ARCHIVE_FILE_PATTERN.matcher(fileName);
+        Properties props = new Properties();
+        props.load(new StringReader(content));
+        String publicKey = props.getProperty("publicKey");
+        if (!matcher.matches() || !entityId.equals(props.getProperty("entityId")) || publicKey == null
+                || props.getProperty("privateKeyEncrypted") == null) {
+            throw new IllegalArgumentException("Invalid archived key record " + fileName + " for entity: " + entityId);
+        }
+        int version = Integer.parseInt(matcher.group(1));
+        String keyId = KeyId.of(Base64.getDecoder().decode(publicKey), version);
+        if (!KeyId.fingerprintOf(keyId).equals(matcher.group(2))) {
+            throw new IllegalArgumentException("Archived key record " + fileName + " does not match its public key");
+        }
+        return keyId;
+    }
+    
+    /**
+     * Fingerprint của master key hiện tại (SHA-256, 8 byte đầu, hex)
+     * Các node chỉ trao đổi bản ghi khóa khi fingerprint trùng nhau (rotate master key trên mọi node)
+     */
+    public String getMasterKeyId() {
+        return masterKeys.currentFingerprint();
+    }
+    
+    private static void validateEntityId(String entityId) {
+        if (entityId == null || entityId.isEmpty() || entityId.contains("/")
+                || entityId.contains("\\") || entityId.contains("..")) {
+            throw new IllegalArgumentException("Invalid entityId: " + entityId);
+        }
+    }
+    
+    /**
+     * Encrypt private key (envelope: data key mới + master key hiện tại)
+     */
+    private byte[] encryptPrivateKey(String entityId, byte[] privateKey) throws Exception {
+        return masterKeys.seal(entityId, privateKey);
+    }
+    
+    /**
+     * Decrypt private key (mọi version master key còn giữ, hoặc bản ghi AES-256-CBC cũ)
+     */
+    private byte[] decryptPrivateKey(String entityId, byte[] encryptedData) throws Exception {
+        return KsmTracing.inSpan("keystore.decryptPrivateKey", span -> {
+            span.setAttribute(KsmTracing.BYTES, (long) encryptedData.length);
+            return masterKeys.open(entityId, encryptedData);
+        });
+    }
+    
+    private static byte[] encodeSeed(byte[] seed) {
+        byte[] encoded = new byte[SEED_MAGIC.length + seed.length];
+        System.arraycopy(SEED_MAGIC, 0, encoded, 0, SEED_MAGIC.length);
+        System.arraycopy(seed, 0, encoded, SEED_MAGIC.length, seed.length);
+        return encoded;
+    }
+    
+    private static boolean isSeed(byte[] stored) {
+        return stored.length == SEED_RECORD_BYTES
+            && Arrays.equals(stored, 0, SEED_MAGIC.length, SEED_MAGIC, 0, SEED_MAGIC.length);
+    }
+    
+    /**
+     * Private key đã giải mã; bản ghi dạng seed được mở rộng thành private key đầy đủ bằng keygen deterministic
+     * 
+     * @throws GeneralSecurityException Nếu seed cho ra public key khác bản đã lưu (thay đổi cách dẫn xuất khóa)
+     */
+    private byte[] expandPrivateKey(String entityId, String algorithm, byte[] publicKey, byte[] stored) throws Exception {
+        if (!isSeed(stored)) {
+            return stored;
+        }
+        byte[] seed = Arrays.copyOfRange(stored, SEED_MAGIC.length, stored.length);
+        Arrays.fill(stored, (byte) 0);
+        try {
+            return KsmTracing.inSpan("keystore.expandSeed", span -> {
+                span.setAttribute(KsmTracing.ALGORITHM, algorithm);
+                PQCAlgorithm pqcAlgorithm = PQCAlgorithm.fromName(algorithm);
+                PQCKeyPair expanded = PQCCryptoFactory.createService(pqcAlgorithm).generateKeyPair(pqcAlgorithm, seed);
+                if (!Arrays.equals(expanded.getPublicKey(), publicKey)) {
+                    throw new GeneralSecurityException("Seed of " + entityId + " expands to a different " + algorithm
+                        + " public key than the stored one");
+                }
+                seedExpansions.incrementAndGet();
+                return expanded.getPrivateKey();
+            });
+        } finally {
+            Arrays.fill(seed, (byte) 0);
+        }
+    }
+    
+    // ==================== Master key rotation ====================
+    
+    /**
+     * Tạo master key version mới và bắt đầu wrap lại data key của mọi bản ghi ở nền
+     * Ký / giải mã không bị chặn: bản ghi chưa wrap lại vẫn mở bằng version cũ.
+     * 
+     * @return Version master key mới
+     */
+    public synchronized int rotateMasterKey() throws Exception {
+        int version = masterKeys.rotate();
+        Files.write(Paths.get(rewrapMarkerFile), String.valueOf(version).getBytes(StandardCharsets.UTF_8));
+        startRewrap();
+        System.out.println("[KSM] Master key rotated to v" + version + ", rewrapping data keys at <= "
+            + MASTER_REWRAP_RATE + " records/s");
+        return version;
+    }
+    
+    private void startRewrap() {
+        rewrapRunning = true;
+        rewrapExecutor.execute(() -> {
+            try {
+                // Rotate lần nữa trong lúc đang chạy: chạy thêm một lượt cho version mới
+                while (rewrapTargetVersion < masterKeys.currentVersion() || rewrapFinishedAt < 0) {
+                    rewrapTargetVersion = masterKeys.currentVersion();
+                    rewrapFinishedAt = -1;
+                    rewrapAll();
+                    rewrapFinishedAt = System.currentTimeMillis();
+                }
+                if (rewrapFailed.get() == 0) {
+                    Files.deleteIfExists(Paths.get(rewrapMarkerFile));
+                    System.out.println("[KSM] Master key rewrap complete: every key file is wrapped under v"
+                        + rewrapTargetVersion + " (older master key files can go to offline backup after the next snapshot)");
+                } else {
+                    System.err.println("[KSM] Master key rewrap finished with " + rewrapFailed.get()
+                        + " failures - will retry on next start");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                System.err.println("[KSM] Master key rewrap failed: " + e.getMessage());
+            } finally {
+                rewrapRunning = false;
+            }
+        });
+    }
+    
+    /**
+     * Một lượt qua mọi file khóa hiện tại + archive, tối đa MASTER_REWRAP_RATE file mỗi giây
+     */
+    private void rewrapAll() throws InterruptedException {
+        rewrapFailed.set(0);
+        long intervalNanos = 1_000_000_000L / Math.max(1, MASTER_REWRAP_RATE);
+        long next = System.nanoTime();
+        for (String entityId : entityIndex.keySet()) {
+            List<Path> files = new ArrayList<>();
+            files.add(Paths.get(keysDir, entityId + KEY_FILE_SUFFIX));
+            File[] archived = new File(archiveDir, entityId).listFiles((dir, name) -> name.endsWith(KEY_FILE_SUFFIX));
+            for (File file : archived != null ? archived : new File[0]) {
+                files.add(file.toPath());
+            }
+            
+            for (Path file : files) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+                next = Math.max(next, System.nanoTime() - intervalNanos) + intervalNanos;
+                
+                try {
+                    if (rewrapFile(entityId, file)) {
+                        rewrapRewrapped.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    rewrapFailed.incrementAndGet();
+                    System.err.println("[KSM] Rewrap failed for " + file.getFileName() + ": " + e.getMessage());
+                }
+                rewrapScanned.incrementAndGet();
+            }
+        }
+    }
+    
+    /**
+     * Wrap lại data key trong một file khóa nếu chưa ở master key hiện tại
+     * 
+     * @return true nếu file đã được ghi lại
+     */
+    private boolean rewrapFile(String entityId, Path file) throws Exception {
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            props.load(in);
+        } catch (NoSuchFileException e) {
+            return false; // entity bị xóa / rotate trong lúc job chạy
+        }
+        if (!rewrapProperties(entityId, props)) {
+            return false;
+        }
         
-        // Decrypt
-        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-        cipher.init(Cipher.DECRYPT_MODE, masterKey, ivSpec);
-        return cipher.doFinal(encrypted);
+        synchronized (this) {
+            if (!Files.exists(file)) {
+                return false;
+            }
+            if (file.getParent().equals(Paths.get(keysDir))) {
+                // File hiện tại: qua journal để snapshot đọc lại entity này
+                updateKeyFile(entityId, current -> {
+                    try {
+                        rewrapProperties(entityId, current);
+                    } catch (GeneralSecurityException e) {
+                        throw new IllegalStateException("Failed to rewrap data key of " + entityId, e);
+                    }
+                });
+            } else {
+                // Archive không nằm trong snapshot (chỉ key ID)
+                try (InputStream in = Files.newInputStream(file)) {
+                    props = new Properties();
+                    props.load(in);
+                }
+                rewrapProperties(entityId, props);
+                Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+                try (OutputStream out = Files.newOutputStream(temp)) {
+                    props.store(out, "PQC Key Pair for " + entityId);
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * @return true nếu có private key được wrap lại
+     */
+    private boolean rewrapProperties(String entityId, Properties props) throws GeneralSecurityException {
+        boolean changed = false;
+        for (String property : new String[] {"privateKeyEncrypted", "ecdsaPrivateKeyEncrypted"}) {
+            String sealed = props.getProperty(property);
+            if (sealed == null) {
+                continue;
+            }
+            byte[] rewrapped = masterKeys.rewrap(entityId, Base64.getDecoder().decode(sealed));
+            if (rewrapped != null) {
+                props.setProperty(property, Base64.getEncoder().encodeToString(rewrapped));
+                changed = true;
+            }
+        }
+        return changed;
+    }
+    
+    /**
+     * Trạng thái master key và job rewrap
+     */
+    public Map<String, Object> getMasterKeyStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("currentVersion", masterKeys.currentVersion());
+        stats.put("fingerprints", masterKeys.fingerprints());
+        Map<String, Object> rewrap = new HashMap<>();
+        rewrap.put("running", rewrapRunning);
+        rewrap.put("targetVersion", rewrapTargetVersion);
+        rewrap.put("scanned", rewrapScanned.get());
+        rewrap.put("rewrapped", rewrapRewrapped.get());
+        rewrap.put("failed", rewrapFailed.get());
+        rewrap.put("finishedAt", rewrapFinishedAt);
+        rewrap.put("ratePerSecond", MASTER_REWRAP_RATE);
+        stats.put("rewrap", rewrap);
+        return stats;
     }
     
     /**
-     * List all stored entity IDs
+     * List all stored entity IDs (sorted, từ in-memory index)
      */
     public String[] listEntities() {
-        File keysDir = new File(KEYS_DIR);
-        File[] files = keysDir.listFiles((dir, name) -> name.endsWith(".properties"));
+        return entityIndex.keySet().toArray(new String[0]);
+    }
+    
+    /**
+     * List entity IDs theo trang, lọc theo prefix (ví dụ: bank code "VCB")
+     * 
+     * @param prefix Chỉ lấy entity bắt đầu bằng prefix (null/rỗng = tất cả)
+     * @param cursor Entity ID cuối cùng của trang trước (exclusive), null = trang đầu
+     * @param limit Số entity tối đa trong trang
+     * @return Trang kết quả kèm cursor cho trang tiếp theo
+     */
+    public EntityPage listEntities(String prefix, String cursor, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
         
-        if (files == null) {
-            return new String[0];
+        NavigableMap<String, Long> range = entityIndex;
+        if (prefix != null && !prefix.isEmpty()) {
+            range = range.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        }
+        if (cursor != null && !cursor.isEmpty()) {
+            range = range.tailMap(cursor, false);
         }
         
-        String[] entities = new String[files.length];
-        for (int i = 0; i < files.length; i++) {
-            entities[i] = files[i].getName().replace(".properties", "");
+        List<String> entities = new ArrayList<>(Math.min(limit, 1024));
+        String nextCursor = null;
+        for (String entityId : range.keySet()) {
+            if (entities.size() == limit) {
+                nextCursor = entities.get(entities.size() - 1);
+                break;
+            }
+            entities.add(entityId);
         }
         
-        return entities;
+        return new EntityPage(entities, nextCursor);
     }
     
     /**
-     * Get storage statistics
+     * Get storage statistics (O(1), từ running counters)
      */
     public Map<String, Object> getStorageStats() {
         Map<String, Object> stats = new HashMap<>();
-        stats.put("storageDir", STORAGE_DIR);
-        stats.put("totalEntities", listEntities().length);
-        stats.put("masterKeyExists", new File(MASTER_KEY_FILE).exists());
+        stats.put("storageDir", storageDir);
+        stats.put("totalEntities", entityCount.get());
+        stats.put("masterKeyExists", masterKeyExists);
+        stats.put("totalStorageSize", totalStorageSize.get());
+        stats.put("seedExpansions", seedExpansions.get());
+        stats.put("masterKey", getMasterKeyStats());
+        Map<String, Object> keyCommit = commitLog != null ? commitLog.getStats() : new HashMap<>();
+        keyCommit.put("mode", commitLog != null ? "group" : "direct");
+        stats.put("keyCommit", keyCommit);
         
-        File keysDir = new File(KEYS_DIR);
-        long totalSize = 0;
-        File[] files = keysDir.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                totalSize += file.length();
-            }
+        SnapshotView view = snapshotView;
+        if (view != null) {
+            Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put("sequence", view.snapshot.getSequence());
+            snapshot.put("entities", view.snapshot.getEntityCount());
+            snapshot.put("pendingChanges", dirtyEntities.size());
+            snapshot.put("lastSnapshotAt", lastSnapshotMillis);
+            stats.put("snapshot", snapshot);
         }
-        stats.put("totalStorageSize", totalSize);
-        
         return stats;
     }
+    
+    private static final class SnapshotView {
+        final KeySnapshot snapshot;
+        final ConcurrentHashMap<String, Long> records; // entityId → recordRef, chỉ entity chưa đổi
+        
+        SnapshotView(KeySnapshot snapshot, ConcurrentHashMap<String, Long> records) {
+            this.snapshot = snapshot;
+            this.records = records;
+        }
+    }
+    
+    private static final class KeyLocation {
+        final String entityId;
+        final int version;
+        final boolean archived;
+        
+        KeyLocation(String entityId, int version, boolean archived) {
+            this.entityId = entityId;
+            this.version = version;
+            this.archived = archived;
+        }
+    }
+    
+    private static final class NonceBlock { // truy cập khi giữ lock của chính nó
+        long next;
+        long limit;
+    }
 }
-
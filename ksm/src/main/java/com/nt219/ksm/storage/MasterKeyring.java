@@ -0,0 +1,301 @@
+package com.nt219.ksm.storage;
+
+import com.nt219.ksm.crypto.Codec;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Envelope encryption cho private key: mỗi private key có data key AES-256 riêng,
+ * chỉ data key (32 byte) được wrap bằng master key
+ *
+ * Định dạng (big-endian):
+ * <pre>
+ *   "KSE1" | master key version (4) | wrap nonce (12) | AES-GCM(master, data key) (48)
+ *          | data nonce (12) | AES-GCM(data key, private key)
+ * </pre>
+ * - Wrap: AAD = magic + version + entityId (data key gắn với đúng entity và version của master key)
+ * - Data: AAD = entityId (không đổi khi rewrap, nên rewrap không đụng tới ciphertext của private key)
+ *
+ * Master key: master.key (version 1, file gốc) và master-v&lt;N&gt;.key cho các version sau.
+ * Version lớn nhất dùng để wrap bản ghi mới; các version cũ vẫn mở được bản ghi cũ cho tới khi
+ * rewrap xong. Bản ghi định dạng cũ (IV + AES-CBC trực tiếp bằng master.key) vẫn đọc được.
+ */
+public final class MasterKeyring {
+
+    private static final byte[] MAGIC = "KSE1".getBytes(StandardCharsets.US_ASCII);
+    private static final int NONCE_BYTES = 12;
+    private static final int TAG_BITS = 128;
+    private static final int DATA_KEY_BYTES = 32;
+    private static final int WRAPPED_KEY_BYTES = DATA_KEY_BYTES + TAG_BITS / 8;
+    private static final int WRAP_OFFSET = MAGIC.length + 4;
+    private static final int DATA_OFFSET = WRAP_OFFSET + NONCE_BYTES + WRAPPED_KEY_BYTES;
+    private static final int HEADER_BYTES = DATA_OFFSET + NONCE_BYTES;
+
+    private static final String LEGACY_FILE = "master.key";
+
+    private final Path directory;
+    private final ConcurrentSkipListMap<Integer, SecretKey> keys = new ConcurrentSkipListMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    private MasterKeyring(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Load mọi version master key trong thư mục, tạo master.key nếu chưa có version nào
+     * (master.key có thể đã được chuyển sang backup sau khi rewrap lên version mới xong)
+     */
+    public static MasterKeyring load(Path directory) throws Exception {
+        MasterKeyring keyring = new MasterKeyring(directory);
+        File[] versions = directory.toFile().listFiles((dir, name) -> name.matches("master-v\\d+\\.key"));
+        for (File file : versions != null ? versions : new File[0]) {
+            int version = Integer.parseInt(file.getName().replaceAll("\\D", ""));
+            keyring.keys.put(version, new SecretKeySpec(Files.readAllBytes(file.toPath()), "AES"));
+        }
+
+        File legacy = directory.resolve(LEGACY_FILE).toFile();
+        if (legacy.exists()) {
+            keyring.keys.put(1, new SecretKeySpec(Files.readAllBytes(legacy.toPath()), "AES"));
+            System.out.println("[KSM] Master key loaded from file");
+        } else if (keyring.keys.isEmpty()) {
+            keyring.keys.put(1, keyring.writeNewKey(legacy.toPath()));
+            System.out.println("[KSM] New master key generated and saved");
+
+            // ⚠️ Security warning
+            System.out.println("[WARNING] Master key file created at: " + legacy);
+            System.out.println("[WARNING] BACKUP this file! If lost, all keys cannot be decrypted!");
+        }
+        if (keyring.keys.size() > 1) {
+            System.out.println("[KSM] Master key versions loaded: " + keyring.keys.keySet());
+        }
+        return keyring;
+    }
+
+    public int currentVersion() {
+        return keys.lastKey();
+    }
+
+    public Map<Integer, String> fingerprints() {
+        Map<Integer, String> fingerprints = new ConcurrentSkipListMap<>();
+        keys.forEach((version, key) -> fingerprints.put(version, fingerprint(key)));
+        return Collections.unmodifiableMap(fingerprints);
+    }
+
+    /**
+     * Fingerprint của master key hiện tại (SHA-256, 8 byte đầu, hex)
+     */
+    public String currentFingerprint() {
+        return fingerprint(keys.lastEntry().getValue());
+    }
+
+    /**
+     * Tạo master key version mới (master-v&lt;N+1&gt;.key); bản ghi mới được wrap bằng version này
+     *
+     * @return Version mới
+     */
+    public synchronized int rotate() throws Exception {
+        int version = currentVersion() + 1;
+        SecretKey key = writeNewKey(directory.resolve("master-v" + version + ".key"));
+        keys.put(version, key);
+        System.out.println("[WARNING] Master key version " + version + " created: BACKUP master-v" + version + ".key"
+            + " and copy it to every cluster node");
+        return version;
+    }
+
+    // ==================== Envelope ====================
+
+    /**
+     * Mã hóa private key bằng data key mới, wrap data key bằng master key hiện tại
+     */
+    public byte[] seal(String entityId, byte[] privateKey) throws GeneralSecurityException {
+        byte[] dataKey = new byte[DATA_KEY_BYTES];
+        random.nextBytes(dataKey);
+        try {
+            byte[] dataNonce = nonce();
+            byte[] ciphertext = gcm(Cipher.ENCRYPT_MODE, dataKey, dataNonce, entityAad(entityId), privateKey);
+
+            ByteBuffer out = ByteBuffer.allocate(HEADER_BYTES + ciphertext.length);
+            writeWrappedKey(out, entityId, currentVersion(), dataKey);
+            out.put(dataNonce).put(ciphertext);
+            return out.array();
+        } finally {
+            Arrays.fill(dataKey, (byte) 0);
+        }
+    }
+
+    /**
+     * Giải mã private key (envelope với bất kỳ version master key nào còn giữ, hoặc định dạng CBC cũ)
+     */
+    public byte[] open(String entityId, byte[] sealed) throws GeneralSecurityException {
+        if (!isEnvelope(sealed)) {
+            return openLegacy(sealed);
+        }
+        try {
+            byte[] dataKey = unwrap(entityId, sealed);
+            try {
+                return gcm(Cipher.DECRYPT_MODE, dataKey, Arrays.copyOfRange(sealed, DATA_OFFSET, HEADER_BYTES),
+                    entityAad(entityId), Arrays.copyOfRange(sealed, HEADER_BYTES, sealed.length));
+            } finally {
+                Arrays.fill(dataKey, (byte) 0);
+            }
+        } catch (GeneralSecurityException e) {
+            return openLegacyOrThrow(sealed, e);
+        }
+    }
+
+    /**
+     * Wrap lại data key bằng master key hiện tại; ciphertext của private key giữ nguyên
+     * Bản ghi định dạng cũ được chuyển sang envelope (giải mã + mã hóa lại một lần).
+     *
+     * @return Bản ghi mới, hoặc null nếu đã wrap bằng version hiện tại
+     */
+    public byte[] rewrap(String entityId, byte[] sealed) throws GeneralSecurityException {
+        int current = currentVersion();
+        if (isEnvelope(sealed) && versionOf(sealed) == current) {
+            return null;
+        }
+        byte[] dataKey = null;
+        GeneralSecurityException envelopeError = null;
+        if (isEnvelope(sealed)) {
+            try {
+                dataKey = unwrap(entityId, sealed);
+            } catch (GeneralSecurityException e) {
+                envelopeError = e;
+            }
+        }
+        if (dataKey == null) {
+            // Định dạng cũ: giải mã + mã hóa lại một lần
+            byte[] privateKey = envelopeError != null ? openLegacyOrThrow(sealed, envelopeError) : openLegacy(sealed);
+            try {
+                return seal(entityId, privateKey);
+            } finally {
+                Arrays.fill(privateKey, (byte) 0);
+            }
+        }
+        try {
+            byte[] rewrapped = sealed.clone();
+            writeWrappedKey(ByteBuffer.wrap(rewrapped), entityId, current, dataKey);
+            return rewrapped;
+        } finally {
+            Arrays.fill(dataKey, (byte) 0);
+        }
+    }
+
+    /**
+     * Version master key đã wrap bản ghi (0 = định dạng CBC cũ, dùng master.key)
+     */
+    public static int versionOf(byte[] sealed) {
+        return isEnvelope(sealed) ? ByteBuffer.wrap(sealed, MAGIC.length, 4).getInt() : 0;
+    }
+
+    private void writeWrappedKey(ByteBuffer out, String entityId, int version, byte[] dataKey) throws GeneralSecurityException {
+        byte[] wrapNonce = nonce();
+        byte[] wrapped = gcm(Cipher.ENCRYPT_MODE, masterKey(version).getEncoded(), wrapNonce, wrapAad(entityId, version), dataKey);
+        out.put(MAGIC).putInt(version).put(wrapNonce).put(wrapped);
+    }
+
+    private byte[] unwrap(String entityId, byte[] sealed) throws GeneralSecurityException {
+        int version = versionOf(sealed);
+        return gcm(Cipher.DECRYPT_MODE, masterKey(version).getEncoded(),
+            Arrays.copyOfRange(sealed, WRAP_OFFSET, WRAP_OFFSET + NONCE_BYTES), wrapAad(entityId, version),
+            Arrays.copyOfRange(sealed, WRAP_OFFSET + NONCE_BYTES, DATA_OFFSET));
+    }
+
+    /**
+     * Bản ghi có magic nhưng không mở được như envelope: có thể là bản ghi CBC cũ có IV ngẫu nhiên trùng magic
+     * Nếu cũng không mở được theo định dạng cũ thì báo lỗi của envelope.
+     */
+    private byte[] openLegacyOrThrow(byte[] sealed, GeneralSecurityException envelopeError) throws GeneralSecurityException {
+        if (!couldBeLegacy(sealed)) {
+            throw envelopeError;
+        }
+        try {
+            return openLegacy(sealed);
+        } catch (GeneralSecurityException e) {
+            throw envelopeError;
+        }
+    }
+
+    private byte[] openLegacy(byte[] sealed) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        cipher.init(Cipher.DECRYPT_MODE, masterKey(1), new IvParameterSpec(sealed, 0, 16));
+        return cipher.doFinal(sealed, 16, sealed.length - 16);
+    }
+
+    private SecretKey masterKey(int version) throws GeneralSecurityException {
+        SecretKey key = keys.get(version);
+        if (key == null) {
+            throw new GeneralSecurityException("Master key version " + version + " not available");
+        }
+        return key;
+    }
+
+    private static byte[] gcm(int mode, byte[] key, byte[] nonce, byte[] aad, byte[] input) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(mode, new SecretKeySpec(key, "AES"), new GCMParameterSpec(TAG_BITS, nonce));
+        cipher.updateAAD(aad);
+        return cipher.doFinal(input);
+    }
+
+    private byte[] nonce() {
+        byte[] nonce = new byte[NONCE_BYTES];
+        random.nextBytes(nonce);
+        return nonce;
+    }
+
+    private static byte[] entityAad(String entityId) {
+        return entityId.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] wrapAad(String entityId, int version) {
+        byte[] entity = entityAad(entityId);
+        return ByteBuffer.allocate(MAGIC.length + 4 + entity.length).put(MAGIC).putInt(version).put(entity).array();
+    }
+
+    private static boolean isEnvelope(byte[] sealed) {
+        return sealed.length > HEADER_BYTES && Arrays.equals(sealed, 0, MAGIC.length, MAGIC, 0, MAGIC.length);
+    }
+
+    private static boolean couldBeLegacy(byte[] sealed) {
+        return sealed.length >= 32 && sealed.length % 16 == 0;
+    }
+
+    private SecretKey writeNewKey(Path file) throws Exception {
+        KeyGenerator keyGen = KeyGenerator.getInstance("AES");
+        keyGen.init(256, random);
+        SecretKey key = keyGen.generateKey();
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, key.getEncoded());
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+        return key;
+    }
+
+    private static String fingerprint(SecretKey key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getEncoded());
+            return Codec.toHex(digest, 0, 8);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to fingerprint master key", e);
+        }
+    }
+}
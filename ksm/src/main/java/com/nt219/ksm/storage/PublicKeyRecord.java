@@ -0,0 +1,31 @@
+package com.nt219.ksm.storage;
+
+/**
+ * Public key của một phiên bản khóa (hiện tại hoặc đã archive), tra theo key ID
+ */
+public class PublicKeyRecord {
+    private final String entityId;
+    private final String keyId;
+    private final int version;
+    private final String algorithm;
+    private final byte[] publicKey;
+    private final boolean archived;
+    
+    public PublicKeyRecord(String entityId, String keyId, int version, String algorithm,
+                           byte[] publicKey, boolean archived) {
+        this.entityId = entityId;
+        this.keyId = keyId;
+        this.version = version;
+        this.algorithm = algorithm;
+        this.publicKey = publicKey;
+        this.archived = archived;
+    }
+    
+    // Getters
+    public String getEntityId() { return entityId; }
+    public String getKeyId() { return keyId; }
+    public int getVersion() { return version; }
+    public String getAlgorithm() { return algorithm; }
+    public byte[] getPublicKey() { return publicKey; }
+    public boolean isArchived() { return archived; }
+}
@@ -0,0 +1,153 @@
+package com.nt219.ksm.tracing;
+
+import com.nt219.ksm.config.KSMConfig;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.context.propagation.TextMapPropagator;
+import io.opentelemetry.exporter.otlp.trace.OtlpGrpcSpanExporter;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OpenTelemetry cho KSM: tracer dùng chung cho controller, PQCProcessService, KeyStoreService
+ * và crypto service (crypto service không phải Spring bean nên tracer là static)
+ *
+ * Cấu hình:
+ * - KSM_TRACING_EXPORTER: none (mặc định, span no-op) | file | otlp
+ * - KSM_TRACING_FILE (mặc định {@code <KSM_STORAGE_DIR>/traces.jsonl}): mỗi span một dòng JSON
+ * - KSM_TRACING_OTLP_ENDPOINT (mặc định http://localhost:4317, OTLP/gRPC)
+ * - KSM_TRACING_SAMPLE_PERCENT (mặc định 100): tỉ lệ trace gốc được ghi; trace từ GUI
+ *   có traceparent thì theo quyết định sampling của GUI
+ *
+ * Context được nhận từ header W3C {@code traceparent} (xem {@link TracingFilter}).
+ */
+public final class KsmTracing {
+
+    private static final String EXPORTER = KSMConfig.get("KSM_TRACING_EXPORTER", "ksm.tracing.exporter", "none");
+    private static final String STORAGE_DIR = KSMConfig.get("KSM_STORAGE_DIR", "ksm.storage.dir", "./ksm-data");
+    private static final String FILE = KSMConfig.get("KSM_TRACING_FILE", "ksm.tracing.file", STORAGE_DIR + "/traces.jsonl");
+    private static final String OTLP_ENDPOINT = KSMConfig.get("KSM_TRACING_OTLP_ENDPOINT", "ksm.tracing.otlpEndpoint", "http://localhost:4317");
+    private static final int SAMPLE_PERCENT = KSMConfig.getInt("KSM_TRACING_SAMPLE_PERCENT", "ksm.tracing.samplePercent", 100);
+
+    private static final String INSTRUMENTATION_NAME = "com.nt219.ksm";
+
+    public static final AttributeKey<String> ALGORITHM = AttributeKey.stringKey("ksm.algorithm");
+    public static final AttributeKey<String> ENTITY_ID = AttributeKey.stringKey("ksm.entity_id");
+    public static final AttributeKey<String> KEY_ID = AttributeKey.stringKey("ksm.key_id");
+    public static final AttributeKey<Boolean> CACHE_HIT = AttributeKey.booleanKey("ksm.cache_hit");
+    public static final AttributeKey<Boolean> HYBRID = AttributeKey.booleanKey("ksm.hybrid");
+    public static final AttributeKey<Long> BYTES = AttributeKey.longKey("ksm.bytes");
+    public static final AttributeKey<Long> MESSAGE_BYTES = AttributeKey.longKey("ksm.message_bytes");
+    public static final AttributeKey<Long> SIGNATURE_BYTES = AttributeKey.longKey("ksm.signature_bytes");
+    public static final AttributeKey<String> KEY_SOURCE = AttributeKey.stringKey("ksm.keystore.source");
+
+    private static volatile Tracer tracer = OpenTelemetry.noop().getTracer(INSTRUMENTATION_NAME);
+    private static volatile SdkTracerProvider tracerProvider;
+
+    static {
+        try {
+            SpanExporter exporter = exporterOf(EXPORTER);
+            if (exporter != null) {
+                Sampler sampler = Sampler.parentBased(Sampler.traceIdRatioBased(Math.max(0, Math.min(100, SAMPLE_PERCENT)) / 100.0));
+                install(OpenTelemetrySdk.builder()
+                    .setTracerProvider(SdkTracerProvider.builder()
+                        .setResource(Resource.getDefault().merge(Resource.create(
+                            Attributes.of(AttributeKey.stringKey("service.name"), "ksm"))))
+                        .setSampler(sampler)
+                        .addSpanProcessor(BatchSpanProcessor.builder(exporter).build())
+                        .build())
+                    .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+                    .build());
+                System.out.println("[KSM] Tracing enabled: " + EXPORTER + " exporter, " + SAMPLE_PERCENT + "% sampled");
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[KSM] Tracing disabled, cannot create " + EXPORTER + " exporter: " + e.getMessage());
+        }
+    }
+
+    private KsmTracing() {
+    }
+
+    private static SpanExporter exporterOf(String name) throws IOException {
+        switch (name.trim().toLowerCase()) {
+            case "none":
+            case "":
+                return null;
+            case "file":
+                return new JsonLinesSpanExporter(Paths.get(FILE));
+            case "otlp":
+                return OtlpGrpcSpanExporter.builder().setEndpoint(OTLP_ENDPOINT).build();
+            default:
+                throw new IllegalArgumentException("Unknown exporter " + name);
+        }
+    }
+
+    /**
+     * Thay OpenTelemetry đang dùng (test dùng SDK với InMemorySpanExporter)
+     */
+    public static synchronized void install(OpenTelemetry instance) {
+        tracer = instance.getTracer(INSTRUMENTATION_NAME);
+        tracerProvider = instance instanceof OpenTelemetrySdk ? ((OpenTelemetrySdk) instance).getSdkTracerProvider() : null;
+    }
+
+    /**
+     * false khi không có exporter: span là no-op, nơi gọi có thể bỏ qua cả việc tạo span
+     */
+    public static boolean isEnabled() {
+        return tracerProvider != null;
+    }
+
+    public static Tracer tracer() {
+        return tracer;
+    }
+
+    public static TextMapPropagator propagator() {
+        return W3CTraceContextPropagator.getInstance();
+    }
+
+    /**
+     * Chạy body trong span con của span hiện tại; exception được ghi vào span rồi ném lại
+     */
+    public static <T> T inSpan(String name, SpanBody<T> body) throws Exception {
+        Span span = tracer.spanBuilder(name).startSpan();
+        try (Scope scope = span.makeCurrent()) {
+            return body.apply(span);
+        } catch (Exception e) {
+            span.recordException(e);
+            span.setStatus(StatusCode.ERROR);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Ghi nốt các span đang chờ export (gọi khi tắt ứng dụng)
+     */
+    public static void shutdown() {
+        SdkTracerProvider provider = tracerProvider;
+        if (provider != null) {
+            provider.shutdown().join(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @FunctionalInterface
+    public interface SpanBody<T> {
+        T apply(Span span) throws Exception;
+    }
+}
@@ -0,0 +1,91 @@
+package com.nt219.ksm.tracing;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.TextMapGetter;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Collections;
+
+/**
+ * Span SERVER cho mỗi request /ksm/**, là cha của mọi span trong lúc xử lý
+ * (JSON binding, admission, getKeyPair, KeyStoreService, crypto, Base64)
+ *
+ * Context cha lấy từ header W3C {@code traceparent} / {@code tracestate} mà ksm-client.ts gửi,
+ * nên span KSM nằm chung trace với request của GUI. Tên span là route ("POST /ksm/publicKeys/{fingerprint}"),
+ * không phải URI, để không tạo vô số tên span khác nhau.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class TracingFilter extends OncePerRequestFilter {
+
+    private static final TextMapGetter<HttpServletRequest> HEADERS = new TextMapGetter<>() {
+        @Override
+        public Iterable<String> keys(HttpServletRequest request) {
+            return Collections.list(request.getHeaderNames());
+        }
+
+        @Override
+        public String get(HttpServletRequest request, String key) {
+            return request != null ? request.getHeader(key) : null;
+        }
+    };
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/ksm/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Context parent = KsmTracing.propagator().extract(Context.root(), request, HEADERS);
+        Span span = KsmTracing.tracer().spanBuilder(request.getMethod() + " " + request.getRequestURI())
+            .setParent(parent)
+            .setSpanKind(SpanKind.SERVER)
+            .setAttribute("http.request.method", request.getMethod())
+            .setAttribute("url.path", request.getRequestURI())
+            .startSpan();
+        if (request.getContentLengthLong() >= 0) {
+            span.setAttribute("http.request.body.size", request.getContentLengthLong());
+        }
+
+        try (Scope scope = span.makeCurrent()) {
+            chain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            span.recordException(e);
+            span.setStatus(StatusCode.ERROR);
+            throw e;
+        } finally {
+            TracingRequestBodyAdvice.endPending();
+            Object route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            if (route != null) {
+                span.updateName(request.getMethod() + " " + route);
+                span.setAttribute("http.route", route.toString());
+            }
+            span.setAttribute("http.response.status_code", (long) response.getStatus());
+            if (response.getStatus() >= 500) {
+                span.setStatus(StatusCode.ERROR);
+            }
+            span.end();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        KsmTracing.shutdown();
+    }
+}
@@ -0,0 +1,72 @@
+package com.nt219.ksm.tracing;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdviceAdapter;
+
+import java.lang.reflect.Type;
+
+/**
+ * Span "json.decode" cho bước đọc + bind @RequestBody (đọc body từ socket và Jackson)
+ *
+ * Đọc body chạy đồng bộ trên thread của request nên span giữ trong ThreadLocal từ
+ * beforeBodyRead tới afterBodyRead. Nếu Jackson ném lỗi thì afterBodyRead không được gọi;
+ * {@link TracingFilter} đóng span còn treo qua {@link #endPending()}.
+ */
+@ControllerAdvice
+public class TracingRequestBodyAdvice extends RequestBodyAdviceAdapter {
+
+    private static final ThreadLocal<Span> PENDING = new ThreadLocal<>();
+
+    @Override
+    public boolean supports(MethodParameter methodParameter, Type targetType,
+                            Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public HttpInputMessage beforeBodyRead(HttpInputMessage inputMessage, MethodParameter parameter, Type targetType,
+                                           Class<? extends HttpMessageConverter<?>> converterType) {
+        endPending();
+        Span span = KsmTracing.tracer().spanBuilder("json.decode").startSpan();
+        long contentLength = inputMessage.getHeaders().getContentLength();
+        if (contentLength >= 0) {
+            span.setAttribute(KsmTracing.BYTES, contentLength);
+        }
+        PENDING.set(span);
+        return inputMessage;
+    }
+
+    @Override
+    public Object afterBodyRead(Object body, HttpInputMessage inputMessage, MethodParameter parameter, Type targetType,
+                                Class<? extends HttpMessageConverter<?>> converterType) {
+        Span span = PENDING.get();
+        if (span != null) {
+            PENDING.remove();
+            span.end();
+        }
+        return body;
+    }
+
+    @Override
+    public Object handleEmptyBody(Object body, HttpInputMessage inputMessage, MethodParameter parameter, Type targetType,
+                                  Class<? extends HttpMessageConverter<?>> converterType) {
+        return afterBodyRead(body, inputMessage, parameter, targetType, converterType);
+    }
+
+    /**
+     * Đóng span json.decode chưa kết thúc (body không parse được)
+     */
+    static void endPending() {
+        Span span = PENDING.get();
+        if (span != null) {
+            PENDING.remove();
+            span.setStatus(StatusCode.ERROR, "request body not decoded");
+            span.end();
+        }
+    }
+}
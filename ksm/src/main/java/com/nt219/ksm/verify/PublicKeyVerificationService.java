@@ -0,0 +1,61 @@
+package com.nt219.ksm.verify;
+
+import com.nt219.ksm.config.KSMConfig;
+import com.nt219.ksm.crypto.PQCAlgorithm;
+import com.nt219.ksm.crypto.PQCSignature;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Map;
+
+/**
+ * Verify chéo ngân hàng bằng public key (không cần cặp khóa của entity trong KSM này)
+ *
+ * Cấu hình:
+ * - KSM_TRUSTED_KEYS_DIR (mặc định {@code <KSM_STORAGE_DIR>/trusted-keys})
+ * - KSM_VERIFY_KEY_CACHE_MAX (mặc định 1024 khóa đã parse)
+ * - KSM_VERIFY_EXPANDED_KEY_CACHE (mặc định true: giữ khóa đã mở rộng trong cache)
+ */
+@Service
+public class PublicKeyVerificationService {
+
+    private static final String STORAGE_DIR = KSMConfig.get("KSM_STORAGE_DIR", "ksm.storage.dir", "./ksm-data");
+    private static final String TRUSTED_KEYS_DIR = KSMConfig.get("KSM_TRUSTED_KEYS_DIR", "ksm.trustedKeys.dir", STORAGE_DIR + "/trusted-keys");
+    private static final int KEY_CACHE_MAX = KSMConfig.getInt("KSM_VERIFY_KEY_CACHE_MAX", "ksm.verify.keyCacheMax", 1024);
+    private static final boolean EXPANDED_KEY_CACHE = KSMConfig.getBoolean("KSM_VERIFY_EXPANDED_KEY_CACHE", "ksm.verify.expandedKeyCache", true);
+
+    private final PublicKeyVerifier verifier;
+
+    public PublicKeyVerificationService() throws IOException {
+        this.verifier = new PublicKeyVerifier(Paths.get(TRUSTED_KEYS_DIR), KEY_CACHE_MAX, EXPANDED_KEY_CACHE);
+        System.out.println("[KSM] Public key verifier ready (" + verifier.getStats().get("registeredKeys")
+            + " registered keys, cache " + KEY_CACHE_MAX + (EXPANDED_KEY_CACHE ? " expanded" : "") + ")");
+    }
+
+    public TrustedPublicKey register(byte[] publicKey, String algorithm, byte[] classicalPublicKey, String owner) throws IOException {
+        TrustedPublicKey key = verifier.register(publicKey, PQCAlgorithm.fromName(algorithm), classicalPublicKey, owner);
+        System.out.println("[KSM] Registered public key " + key.getFingerprint() + (owner != null ? " for " + owner : ""));
+        return key;
+    }
+
+    public TrustedPublicKey find(String fingerprint) throws IOException {
+        return verifier.find(fingerprint);
+    }
+
+    public TrustedPublicKey parse(byte[] publicKey, String algorithm) {
+        return verifier.parse(publicKey, PQCAlgorithm.fromName(algorithm));
+    }
+
+    public boolean remove(String fingerprint) throws IOException {
+        return verifier.remove(fingerprint);
+    }
+
+    public boolean verify(String message, PQCSignature signature, TrustedPublicKey key, byte[] classicalPublicKey) throws Exception {
+        return verifier.verify(message, signature, key, classicalPublicKey);
+    }
+
+    public Map<String, Object> getStats() {
+        return verifier.getStats();
+    }
+}
@@ -0,0 +1,279 @@
+package com.nt219.ksm.verify;
+
+import com.nt219.ksm.crypto.Codec;
+import com.nt219.ksm.crypto.PQCAlgorithm;
+import com.nt219.ksm.crypto.PQCCryptoFactory;
+import com.nt219.ksm.crypto.PQCSignature;
+import com.nt219.ksm.crypto.PQCVerifier;
+import com.nt219.ksm.crypto.impl.EcdsaSecp256k1Service;
+import com.nt219.ksm.jfr.CacheEvictionEvent;
+import com.nt219.ksm.jfr.VerifyEvent;
+import com.nt219.ksm.process.PQCProcessService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Verify chữ ký chỉ bằng public key - không tra private key, không cần entity trong key store
+ *
+ * - Khóa đăng ký (vd. lấy từ PKIRegistry.getUserPublicKey của ngân hàng khác) được lưu mỗi khóa
+ *   một file {@code <fingerprint>.properties} trong {@code dir}, tra theo fingerprint / keyId
+ * - Khóa đã parse (cả khóa đăng ký lẫn khóa client gửi kèm request) nằm trong cache LRU giới hạn
+ *   {@code maxCached} entry theo fingerprint; miss thì đọc lại từ file
+ * - Với {@code expandedKeyCache}, entry trong cache giữ luôn dạng mở rộng của khóa
+ *   ({@link com.nt219.ksm.crypto.IPQCCryptoService#prepareVerifier}, vd. h của Falcon ở miền NTT):
+ *   chỉ lần verify đầu tiên của mỗi khóa phải dựng lại khóa
+ *
+ * Fingerprint chỉ 64 bit nên khóa client gửi kèm luôn được so sánh đủ byte với entry trong cache.
+ */
+public class PublicKeyVerifier {
+
+    private static final Pattern FINGERPRINT = Pattern.compile("[0-9a-f]{16}");
+    private static final String SUFFIX = ".properties";
+
+    private final Path dir;
+    private final int maxCached;
+    private final boolean expandedKeyCache;
+    private final LinkedHashMap<String, TrustedPublicKey> cache;
+    private final EcdsaSecp256k1Service ecdsaService = new EcdsaSecp256k1Service();
+
+    private final AtomicLong registered = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong diskLoads = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong verifications = new AtomicLong();
+    private final AtomicLong keyExpansions = new AtomicLong();
+
+    public PublicKeyVerifier(Path dir, int maxCached) throws IOException {
+        this(dir, maxCached, true);
+    }
+
+    /**
+     * @param expandedKeyCache Giữ dạng mở rộng của khóa trong cache (false = mở rộng lại mỗi lần verify)
+     */
+    public PublicKeyVerifier(Path dir, int maxCached, boolean expandedKeyCache) throws IOException {
+        if (maxCached <= 0) {
+            throw new IllegalArgumentException("maxCached must be positive");
+        }
+        this.dir = dir;
+        this.maxCached = maxCached;
+        this.expandedKeyCache = expandedKeyCache;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TrustedPublicKey> eldest) {
+                if (size() > PublicKeyVerifier.this.maxCached) {
+                    evictions.incrementAndGet();
+                    CacheEvictionEvent.emit(CacheEvictionEvent.PUBLIC_KEY_CACHE, eldest.getKey(), "capacity");
+                    return true;
+                }
+                return false;
+            }
+        };
+        Files.createDirectories(dir);
+        try (Stream<Path> files = Files.list(dir)) {
+            registered.set(files.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).count());
+        }
+    }
+
+    /**
+     * Đăng ký (hoặc cập nhật owner / khóa ECDSA của) một public key
+     *
+     * @param classicalPublicKey Public key ECDSA secp256k1 để verify chữ ký hybrid (có thể null)
+     * @param owner Địa chỉ on-chain hoặc mã ngân hàng sở hữu khóa (có thể null)
+     */
+    public TrustedPublicKey register(byte[] publicKey, PQCAlgorithm algorithm, byte[] classicalPublicKey, String owner) throws IOException {
+        requireSignatureAlgorithm(algorithm);
+        TrustedPublicKey key = new TrustedPublicKey(algorithm, publicKey, classicalPublicKey, owner, true);
+        synchronized (this) {
+            TrustedPublicKey existing = load(key.getFingerprint());
+            if (existing != null && !Arrays.equals(existing.getPublicKey(), publicKey)) {
+                throw new IllegalArgumentException("Fingerprint " + key.getFingerprint() + " is already registered for a different key");
+            }
+            store(key);
+            if (existing == null) {
+                registered.incrementAndGet();
+            }
+            cache.put(key.getFingerprint(), key);
+        }
+        return key;
+    }
+
+    /**
+     * Khóa đã đăng ký theo fingerprint
+     *
+     * @return null nếu chưa đăng ký
+     */
+    public TrustedPublicKey find(String fingerprint) throws IOException {
+        if (fingerprint == null || !FINGERPRINT.matcher(fingerprint).matches()) {
+            throw new IllegalArgumentException("Invalid fingerprint: " + fingerprint);
+        }
+        synchronized (this) {
+            TrustedPublicKey cached = cache.get(fingerprint);
+            if (cached != null && cached.isRegistered()) {
+                hits.incrementAndGet();
+                return cached;
+            }
+            misses.incrementAndGet();
+            TrustedPublicKey loaded = load(fingerprint);
+            if (loaded != null) {
+                diskLoads.incrementAndGet();
+                cache.put(fingerprint, loaded);
+            }
+            return loaded;
+        }
+    }
+
+    /**
+     * Khóa client gửi kèm request; trả về entry đã cache nếu cùng khóa (kể cả khóa đã đăng ký)
+     */
+    public TrustedPublicKey parse(byte[] publicKey, PQCAlgorithm algorithm) {
+        requireSignatureAlgorithm(algorithm);
+        TrustedPublicKey key = new TrustedPublicKey(algorithm, publicKey, null, null, false);
+        synchronized (this) {
+            TrustedPublicKey cached = cache.get(key.getFingerprint());
+            if (cached != null && cached.getAlgorithm() == algorithm && Arrays.equals(cached.getPublicKey(), publicKey)) {
+                hits.incrementAndGet();
+                return cached;
+            }
+            misses.incrementAndGet();
+            if (cached == null || !cached.isRegistered()) {
+                cache.put(key.getFingerprint(), key);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Gỡ đăng ký (vd. PKIRegistry đã deactivateUser hoặc khóa bị thu hồi)
+     */
+    public boolean remove(String fingerprint) throws IOException {
+        if (fingerprint == null || !FINGERPRINT.matcher(fingerprint).matches()) {
+            throw new IllegalArgumentException("Invalid fingerprint: " + fingerprint);
+        }
+        synchronized (this) {
+            cache.remove(fingerprint);
+            boolean removed = Files.deleteIfExists(dir.resolve(fingerprint + SUFFIX));
+            if (removed) {
+                registered.decrementAndGet();
+            }
+            return removed;
+        }
+    }
+
+    /**
+     * Verify chữ ký của message bằng khóa đã parse
+     *
+     * Chữ ký hybrid: cả hai nửa ký trên keccak256(message), hợp lệ khi cả hai nửa hợp lệ.
+     * Khóa đăng ký có khóa ECDSA thì luôn dùng khóa đó, bỏ qua {@code classicalPublicKey} của request.
+     */
+    public boolean verify(String message, PQCSignature signature, TrustedPublicKey key, byte[] classicalPublicKey) throws Exception {
+        verifications.incrementAndGet();
+        byte[] messageBytes;
+        if (signature.isHybrid()) {
+            byte[] classicalKey = key.getClassicalPublicKey() != null ? key.getClassicalPublicKey() : classicalPublicKey;
+            messageBytes = PQCProcessService.canonicalDigest(message);
+            if (classicalKey == null || !ecdsaService.verify(messageBytes, signature.getClassicalSignature(), classicalKey)) {
+                return false;
+            }
+        } else {
+            messageBytes = message.getBytes(StandardCharsets.UTF_8);
+        }
+        VerifyEvent event = new VerifyEvent();
+        event.begin();
+        boolean valid = expandedKeyCache
+            ? expandedKey(key).verify(messageBytes, signature)
+            : PQCCryptoFactory.createService(key.getAlgorithm()).verify(messageBytes, signature, key.getPublicKey(), key.getAlgorithm());
+        event.complete(key.getOwner() != null ? key.getOwner() : key.getFingerprint(), key.getAlgorithm().getName(),
+            messageBytes.length, signature.getSignature().length, valid);
+        return valid;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (this) {
+            stats.put("cachedKeys", cache.size());
+        }
+        stats.put("maxCachedKeys", maxCached);
+        stats.put("registeredKeys", registered.get());
+        stats.put("cacheHits", hits.get());
+        stats.put("cacheMisses", misses.get());
+        stats.put("diskLoads", diskLoads.get());
+        stats.put("evictions", evictions.get());
+        stats.put("verifications", verifications.get());
+        stats.put("expandedKeyCache", expandedKeyCache);
+        stats.put("keyExpansions", keyExpansions.get());
+        return stats;
+    }
+
+    /**
+     * Dạng mở rộng đã gắn vào entry, hoặc mở rộng ngay lúc này (hai thread cùng miss có thể cùng mở rộng
+     * một khóa; kết quả như nhau nên không cần khóa)
+     */
+    private PQCVerifier expandedKey(TrustedPublicKey key) throws Exception {
+        PQCVerifier verifier = key.getVerifier();
+        if (verifier == null) {
+            verifier = PQCCryptoFactory.createService(key.getAlgorithm()).prepareVerifier(key.getPublicKey(), key.getAlgorithm());
+            key.setVerifier(verifier);
+            keyExpansions.incrementAndGet();
+        }
+        return verifier;
+    }
+
+    private static void requireSignatureAlgorithm(PQCAlgorithm algorithm) {
+        if (!PQCCryptoFactory.isSignatureAlgorithm(algorithm)) {
+            throw new IllegalArgumentException(algorithm + " is not a signature algorithm");
+        }
+    }
+
+    private TrustedPublicKey load(String fingerprint) throws IOException {
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(dir.resolve(fingerprint + SUFFIX))) {
+            props.load(in);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        String classical = props.getProperty("classicalPublicKey");
+        return new TrustedPublicKey(
+            PQCAlgorithm.fromName(props.getProperty("algorithm")),
+            Codec.fromBase64(props.getProperty("publicKey")),
+            classical != null ? Codec.fromBase64(classical) : null,
+            props.getProperty("owner"),
+            true);
+    }
+
+    private void store(TrustedPublicKey key) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("algorithm", key.getAlgorithm().name());
+        props.setProperty("publicKey", Codec.toBase64(key.getPublicKey()));
+        if (key.getClassicalPublicKey() != null) {
+            props.setProperty("classicalPublicKey", Codec.toBase64(key.getClassicalPublicKey()));
+        }
+        if (key.getOwner() != null) {
+            props.setProperty("owner", key.getOwner());
+        }
+        props.setProperty("keyHash", key.getKeyHash());
+        props.setProperty("registeredAt", String.valueOf(System.currentTimeMillis()));
+
+        Path target = dir.resolve(key.getFingerprint() + SUFFIX);
+        Path temp = dir.resolve(key.getFingerprint() + SUFFIX + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            props.store(out, "Trusted public key " + key.getFingerprint());
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
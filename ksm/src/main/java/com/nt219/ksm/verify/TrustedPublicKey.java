@@ -0,0 +1,80 @@
+package com.nt219.ksm.verify;
+
+import com.nt219.ksm.crypto.Codec;
+import com.nt219.ksm.crypto.Keccak;
+import com.nt219.ksm.crypto.KeyId;
+import com.nt219.ksm.crypto.PQCAlgorithm;
+import com.nt219.ksm.crypto.PQCVerifier;
+
+/**
+ * Public key đã parse sẵn để verify: thuật toán, fingerprint, keyHash (keccak256 như PKIRegistry)
+ *
+ * Khóa đăng ký (registered) có thể mang thêm public key ECDSA để verify chữ ký hybrid và owner
+ * (địa chỉ on-chain / mã ngân hàng). Khóa do client gửi kèm request thì không có hai trường này.
+ *
+ * Dạng mở rộng của khóa (verifier) được gắn vào entry ở lần verify đầu tiên, nên sống cùng entry
+ * trong cache LRU của {@link PublicKeyVerifier} và bị bỏ khi entry bị evict.
+ */
+public final class TrustedPublicKey {
+
+    private final String fingerprint;
+    private final String keyHash;
+    private final PQCAlgorithm algorithm;
+    private final byte[] publicKey;
+    private final byte[] classicalPublicKey;
+    private final String owner;
+    private final boolean registered;
+    private volatile PQCVerifier verifier;
+
+    TrustedPublicKey(PQCAlgorithm algorithm, byte[] publicKey, byte[] classicalPublicKey, String owner, boolean registered) {
+        this.fingerprint = KeyId.fingerprint(publicKey);
+        this.keyHash = "0x" + Codec.toHex(Keccak.keccak256(publicKey));
+        this.algorithm = algorithm;
+        this.publicKey = publicKey;
+        this.classicalPublicKey = classicalPublicKey;
+        this.owner = owner;
+        this.registered = registered;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * keccak256(publicKey), cùng giá trị với keyHash của PKIRegistry (getUserByKeyHash)
+     */
+    public String getKeyHash() {
+        return keyHash;
+    }
+
+    public PQCAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public byte[] getPublicKey() {
+        return publicKey;
+    }
+
+    public byte[] getClassicalPublicKey() {
+        return classicalPublicKey;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public boolean isRegistered() {
+        return registered;
+    }
+
+    /**
+     * Verifier với public key đã mở rộng sẵn (null nếu chưa verify lần nào)
+     */
+    PQCVerifier getVerifier() {
+        return verifier;
+    }
+
+    void setVerifier(PQCVerifier verifier) {
+        this.verifier = verifier;
+    }
+}
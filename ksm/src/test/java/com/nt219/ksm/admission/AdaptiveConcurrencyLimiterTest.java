@@ -0,0 +1,165 @@
+package com.nt219.ksm.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.nt219.ksm.admission.AdaptiveConcurrencyLimiter.Admission.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho AdaptiveConcurrencyLimiter (AIMD theo latency, hàng đợi giới hạn, deadline)
+ */
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(1));
+
+    private static long in(long millis) {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private static int limitOf(AdaptiveConcurrencyLimiter limiter) {
+        return (int) limiter.getStats().get("limit");
+    }
+
+    /**
+     * Một "vòng": giữ đủ limit permit rồi trả hết với cùng latency
+     */
+    private void round(AdaptiveConcurrencyLimiter limiter, long latencyNanos) throws Exception {
+        int permits = limitOf(limiter);
+        for (int i = 0; i < permits; i++) {
+            assertEquals(ADMITTED, limiter.acquire(clock.get() + TimeUnit.SECONDS.toNanos(1)));
+        }
+        for (int i = 0; i < permits; i++) {
+            limiter.release(latencyNanos);
+        }
+    }
+
+    @Test
+    public void testRejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimiter("sign", 4, 0, 8, 4, 2.0));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimiter("sign", 4, 4, 2, 4, 2.0));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimiter("sign", 4, 1, 8, 4, 1.0));
+        // Limit ban đầu bị kẹp vào [minLimit, maxLimit]
+        assertEquals(8, limitOf(new AdaptiveConcurrencyLimiter("sign", 100, 1, 8, 4, 2.0)));
+    }
+
+    @Test
+    public void testLimitGrowsWhileLatencyHoldsAndShrinksWhenItRises() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("sign", 4, 2, 8, 0, 2.0, clock::get);
+
+        // Latency bằng minRtt và đang dùng hết limit: tăng dần tới maxLimit, không vượt
+        int previous = limitOf(limiter);
+        for (int i = 0; i < 200; i++) {
+            round(limiter, MS);
+            clock.addAndGet(MS);
+            assertTrue(limitOf(limiter) >= previous);
+            previous = limitOf(limiter);
+        }
+        assertEquals(8, limitOf(limiter));
+
+        // Ít request hơn nửa limit: không có bằng chứng cần thêm, limit đứng yên
+        assertEquals(ADMITTED, limiter.acquire(clock.get() + MS));
+        limiter.release(MS);
+        assertEquals(8, limitOf(limiter));
+
+        // Latency vượt minRtt × tolerance: giảm, nhưng tối đa một lần mỗi minRtt
+        for (int i = 0; i < 30; i++) {
+            assertEquals(ADMITTED, limiter.acquire(clock.get() + MS));
+            limiter.release(10 * MS);
+        }
+        assertEquals(7, limitOf(limiter));
+
+        for (int i = 0; i < 100; i++) {
+            clock.addAndGet(2 * MS);
+            assertEquals(ADMITTED, limiter.acquire(clock.get() + MS));
+            limiter.release(10 * MS);
+        }
+        assertEquals(2, limitOf(limiter), "limit never drops below minLimit");
+    }
+
+    @Test
+    public void testMinRttFollowsTheLatestWindow() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("sign", 4, 1, 8, 0, 2.0, clock::get);
+        round(limiter, MS);
+        round(limiter, 5 * MS);
+        assertEquals(1.0, limiter.getStats().get("minRttMillis"));
+
+        // Cửa sổ đầu kết thúc: minRtt lấy min của cả cửa sổ đó (vẫn 1 ms)
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(11));
+        round(limiter, 5 * MS);
+        assertEquals(1.0, limiter.getStats().get("minRttMillis"));
+
+        // Cửa sổ chỉ có latency 5 ms: tải nền đã đổi, minRtt theo kịp thay vì giữ mức cũ mãi
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(11));
+        round(limiter, 5 * MS);
+        assertEquals(5.0, limiter.getStats().get("minRttMillis"));
+
+        // Latency 5 ms giờ nằm trong tolerance: limit lại tăng
+        int before = limitOf(limiter);
+        for (int i = 0; i < 50; i++) {
+            clock.addAndGet(MS);
+            round(limiter, 5 * MS);
+        }
+        assertTrue(limitOf(limiter) > before);
+    }
+
+    @Test
+    public void testFullQueueIsOverloaded() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("sign", 1, 1, 1, 2, 2.0);
+        assertEquals(ADMITTED, limiter.acquire(in(1000)));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        List<Future<AdaptiveConcurrencyLimiter.Admission>> queued = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            queued.add(executor.submit(() -> limiter.acquire(in(5000))));
+            // Chờ request này vào hàng đợi rồi mới gửi request sau: thứ tự chờ là thứ tự submit
+            while ((int) limiter.getStats().get("queueDepth") < i + 1) {
+                Thread.sleep(5);
+            }
+        }
+        // Hàng đợi đầy: từ chối ngay, không chờ tới deadline
+        long start = System.nanoTime();
+        assertEquals(OVERLOADED, limiter.acquire(in(5000)));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(100));
+
+        // Permit trả lại đi tới request đang chờ theo thứ tự
+        for (Future<AdaptiveConcurrencyLimiter.Admission> future : queued) {
+            limiter.release(MS);
+            assertEquals(ADMITTED, future.get(5, TimeUnit.SECONDS));
+        }
+        limiter.release(MS);
+        executor.shutdown();
+
+        assertEquals(3L, limiter.getStats().get("admitted"));
+        assertEquals(1L, limiter.getStats().get("shedOverload"));
+        assertEquals(0, limiter.getStats().get("inFlight"));
+    }
+
+    @Test
+    public void testExpiredDeadlineIsNeverAdmitted() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("sign", 1, 1, 1, 4, 2.0);
+        // Client đã bỏ cuộc trước khi tới lượt: không chiếm permit dù còn trống
+        assertEquals(DEADLINE_EXCEEDED, limiter.acquire(System.nanoTime() - 1));
+        assertEquals(0, limiter.getStats().get("inFlight"));
+
+        assertEquals(ADMITTED, limiter.acquire(in(1000)));
+        long start = System.nanoTime();
+        assertEquals(DEADLINE_EXCEEDED, limiter.acquire(in(100)));
+        long waited = System.nanoTime() - start;
+        assertTrue(waited >= TimeUnit.MILLISECONDS.toNanos(90) && waited < TimeUnit.SECONDS.toNanos(2));
+        assertEquals(0, limiter.getStats().get("queueDepth"));
+        limiter.release(MS);
+
+        assertEquals(2L, limiter.getStats().get("shedDeadline"));
+        assertEquals(ADMITTED, limiter.acquire(in(1000)));
+    }
+}
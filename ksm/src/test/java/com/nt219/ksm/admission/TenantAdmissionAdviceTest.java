@@ -0,0 +1,79 @@
+package com.nt219.ksm.admission;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests cho TenantAdmissionAdvice: tenant của request lấy theo field của từng endpoint
+ */
+public class TenantAdmissionAdviceTest {
+
+    private final AdmissionControlService admissionService = new AdmissionControlService();
+    private final AdmissionControlInterceptor interceptor = new AdmissionControlInterceptor(admissionService, new ObjectMapper());
+    private final TenantAdmissionAdvice advice = new TenantAdmissionAdvice(interceptor);
+
+    @AfterEach
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    /**
+     * Chạy request qua interceptor và advice như DispatcherServlet, trả về request đang giữ permit
+     */
+    private MockHttpServletRequest admit(String path, String tenantHeader, Map<String, Object> body) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        if (tenantHeader != null) {
+            request.addHeader(AdmissionControlService.TENANT_HEADER, tenantHeader);
+        }
+        assertTrue(interceptor.preHandle(request, new MockHttpServletResponse(), new Object()));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        assertSame(body, advice.afterBodyRead(body, null, null, Map.class, null));
+        return request;
+    }
+
+    private int inFlight(String tenant) {
+        return (int) admissionService.bulkheadFor(tenant, null).getStats().get("inFlight");
+    }
+
+    @Test
+    public void testTenantIsResolvedPerEndpoint() throws Exception {
+        assertTrue(admissionService.isTenantIsolationEnabled());
+
+        // createSignedTransaction ký bằng khóa của "from", không có entityId
+        MockHttpServletRequest transfer = admit("/ksm/createSignedTransaction", null,
+            Map.of("from", "vietcombank:teller-07", "to", "bidv", "amount", 1000));
+        assertEquals(1, inFlight("vietcombank"));
+        assertEquals(0, inFlight(TenantBulkheads.SHARED_TENANT));
+
+        // /ksm/sign dùng entityId; "from" trong body không đổi tenant
+        MockHttpServletRequest sign = admit("/ksm/sign", null,
+            Map.of("entityId", "bidv", "from", "vietcombank", "message", "m"));
+        assertEquals(1, inFlight("bidv"));
+        assertEquals(1, inFlight("vietcombank"));
+
+        // /ksm/publicKeys/verify không gắn với entity: header nếu có, ngược lại tenant shared
+        MockHttpServletRequest anonymous = admit("/ksm/publicKeys/verify", null,
+            Map.of("entityId", "vietcombank", "message", "m", "signature", "s", "publicKey", "p"));
+        assertEquals(1, inFlight(TenantBulkheads.SHARED_TENANT));
+        assertEquals(1, inFlight("vietcombank"));
+        MockHttpServletRequest withHeader = admit("/ksm/publicKeys/verify", "techcombank",
+            Map.of("message", "m", "signature", "s", "publicKey", "p"));
+        assertEquals(1, inFlight("techcombank"));
+
+        for (MockHttpServletRequest request : new MockHttpServletRequest[]{transfer, sign, anonymous, withHeader}) {
+            interceptor.afterCompletion(request, new MockHttpServletResponse(), new Object(), null);
+        }
+        for (String tenant : new String[]{"vietcombank", "bidv", "techcombank", TenantBulkheads.SHARED_TENANT}) {
+            assertEquals(0, inFlight(tenant));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.nt219.ksm.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.nt219.ksm.admission.AdaptiveConcurrencyLimiter.Admission.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho TenantBulkheads / TenantBulkhead
+ */
+public class TenantBulkheadsTest {
+
+    private static long in(long millis) {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Test
+    public void testTenantIsDerivedFromEntityIdOrHeader() {
+        TenantBulkheads tenants = new TenantBulkheads(4, 8, 16, ":/", Map.of());
+        assertEquals("vietcombank", tenants.tenantOf(null, "vietcombank"));
+        assertEquals("vietcombank", tenants.tenantOf(null, "VietcomBank:teller-07"));
+        assertEquals("bidv", tenants.tenantOf(null, "bidv/batch/2024"));
+        assertEquals("techcombank", tenants.tenantOf(" techcombank ", "vietcombank"));
+        assertEquals(TenantBulkheads.SHARED_TENANT, tenants.tenantOf(null, null));
+        assertEquals(TenantBulkheads.SHARED_TENANT, tenants.tenantOf("", ":x"));
+    }
+
+    @Test
+    public void testWeightsScaleConcurrencyAndTenantCountIsBounded() {
+        TenantBulkheads tenants = new TenantBulkheads(4, 8, 3, ":/", TenantBulkheads.parseWeights("VietcomBank=2, bidv=0.1"));
+        assertEquals(8, tenants.get("vietcombank").getMaxConcurrent());
+        assertEquals(1, tenants.get("bidv").getMaxConcurrent());
+        assertEquals(4, tenants.get(TenantBulkheads.SHARED_TENANT).getMaxConcurrent());
+        // shared + 2 tenant đã đủ 3: tenant mới dùng chung bulkhead shared
+        assertSame(tenants.get(TenantBulkheads.SHARED_TENANT), tenants.get("attacker-" + System.nanoTime()));
+        assertThrows(IllegalArgumentException.class, () -> TenantBulkheads.parseWeights("bidv=0"));
+        assertThrows(IllegalArgumentException.class, () -> TenantBulkheads.parseWeights("bidv"));
+    }
+
+    @Test
+    public void testBurstOfOneTenantDoesNotBlockAnother() throws Exception {
+        TenantBulkheads tenants = new TenantBulkheads(2, 3, 16, ":/", Map.of());
+        TenantBulkhead noisy = tenants.get("noisy");
+        TenantBulkhead quiet = tenants.get("quiet");
+
+        assertEquals(ADMITTED, noisy.acquire(in(1000)));
+        assertEquals(ADMITTED, noisy.acquire(in(1000)));
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        CountDownLatch waiting = new CountDownLatch(3);
+        Future<?>[] queued = new Future<?>[3];
+        for (int i = 0; i < 3; i++) {
+            queued[i] = executor.submit(() -> {
+                waiting.countDown();
+                return noisy.acquire(in(300));
+            });
+        }
+        waiting.await();
+        while ((int) noisy.getStats().get("queueDepth") < 3) {
+            Thread.sleep(5);
+        }
+        // Hàng đợi của tenant ồn ào đã đầy: request tiếp theo của nó bị từ chối ngay
+        assertEquals(OVERLOADED, noisy.acquire(in(1000)));
+
+        // Tenant khác không chờ sau hàng đợi đó
+        long start = System.nanoTime();
+        assertEquals(ADMITTED, quiet.acquire(in(1000)));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(50));
+        quiet.release(TimeUnit.MILLISECONDS.toNanos(3));
+
+        for (Future<?> future : queued) {
+            assertEquals(DEADLINE_EXCEEDED, future.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        Map<String, Object> stats = noisy.getStats();
+        assertEquals(2, stats.get("inFlight"));
+        assertEquals(1L, stats.get("shedOverload"));
+        assertEquals(3L, stats.get("shedDeadline"));
+        assertEquals(3.0, quiet.getStats().get("p99Millis"));
+    }
+
+    @Test
+    public void testBulkWaitsForPermitWithoutUsingTheQueue() throws Exception {
+        TenantBulkhead bulkhead = new TenantBulkhead("bank", 1, 0);
+        bulkhead.acquireBulk();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> bulk = executor.submit(() -> {
+            bulkhead.acquireBulk();
+            return null;
+        });
+        Thread.sleep(50);
+        assertFalse(bulk.isDone());
+        bulkhead.release();
+        bulk.get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        // Bulk không ghi latency, maxQueue = 0 nên request thường không được chờ
+        assertEquals(OVERLOADED, bulkhead.acquire(in(1000)));
+        assertNull(bulkhead.getStats().get("p99Millis"));
+        assertEquals(2L, bulkhead.getStats().get("bulkAdmitted"));
+    }
+
+    @Test
+    public void testPercentilesUseRecentSamples() throws Exception {
+        TenantBulkhead bulkhead = new TenantBulkhead("bank", 4, 0);
+        for (int i = 1; i <= TenantBulkhead.LATENCY_SAMPLES + 100; i++) {
+            assertEquals(ADMITTED, bulkhead.acquire(in(1000)));
+            bulkhead.release(TimeUnit.MILLISECONDS.toNanos(i <= 100 ? 1000 : 1));
+        }
+        Map<String, Object> stats = bulkhead.getStats();
+        assertEquals(1.0, stats.get("p99Millis"));
+        assertEquals(1.0, stats.get("maxMillis"));
+    }
+}
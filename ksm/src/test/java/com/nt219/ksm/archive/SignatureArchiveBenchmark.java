@@ -0,0 +1,72 @@
+package com.nt219.ksm.archive;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Đo kho chữ ký off-chain: tốc độ ghi, độ trễ tra cứu ngẫu nhiên theo hash, thời gian mở lại
+ * (từ hint so với quét toàn bộ segment)
+ *
+ * Chạy (thư mục trống; 2 triệu chữ ký cỡ Falcon-512 ≈ 1.4 GB):
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt -Dmdep.includeScope=test
+ *   java -Xmx2g -cp "target/test-classes:target/classes:$(cat cp.txt)" \
+ *        com.nt219.ksm.archive.SignatureArchiveBenchmark /tmp/sigbench 2000000 666
+ */
+public class SignatureArchiveBenchmark {
+
+    private static final long SEGMENT_BYTES = 256L * 1024 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Paths.get(args.length > 0 ? args[0] : "./sig-bench");
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 666;
+        int lookups = 1_000_000;
+
+        byte[][] hashes = new byte[count][];
+        Random random = new Random(42);
+        byte[] signature = new byte[size];
+        long start = System.nanoTime();
+        try (SignatureArchive archive = new SignatureArchive(dir, SEGMENT_BYTES, count)) {
+            for (int i = 0; i < count; i++) {
+                random.nextBytes(signature);
+                hashes[i] = archive.put(signature, "Falcon-512");
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("put: %,d signatures of %d bytes, %.0f puts/s%n", count, size, count / seconds);
+
+            long[] latencies = new long[lookups];
+            for (int round = 0; round < 2; round++) { // vòng đầu làm nóng JIT
+                for (int i = 0; i < lookups; i++) {
+                    byte[] hash = hashes[random.nextInt(count)];
+                    long begin = System.nanoTime();
+                    if (archive.get(hash) == null) {
+                        throw new IllegalStateException("Missing signature");
+                    }
+                    latencies[i] = System.nanoTime() - begin;
+                }
+            }
+            Arrays.sort(latencies);
+            System.out.printf("get: %,d random lookups, p50 %.1f us, p99 %.1f us, max %.1f us%n", lookups,
+                latencies[lookups / 2] / 1e3, latencies[lookups * 99 / 100] / 1e3, latencies[lookups - 1] / 1e3);
+            System.out.println("archive: " + archive.getStats());
+        }
+
+        start = System.nanoTime();
+        try (SignatureArchive archive = new SignatureArchive(dir, SEGMENT_BYTES, 0)) {
+            System.out.printf("reopen from hints: %.0f ms%n", (System.nanoTime() - start) / 1e6);
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path hint : (Iterable<Path>) files.filter(path -> path.toString().endsWith(".hint"))::iterator) {
+                Files.delete(hint);
+            }
+        }
+        start = System.nanoTime();
+        try (SignatureArchive archive = new SignatureArchive(dir, SEGMENT_BYTES, 0)) {
+            System.out.printf("reopen by scanning segments: %.0f ms%n", (System.nanoTime() - start) / 1e6);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.nt219.ksm.archive;
+
+import com.nt219.ksm.crypto.Keccak;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho SignatureArchive (content-addressed, segment mmap + hint + index)
+ */
+public class SignatureArchiveTest {
+
+    @TempDir
+    Path dir;
+
+    private static byte[] signature(int seed, int size) {
+        byte[] signature = new byte[size];
+        new Random(seed).nextBytes(signature);
+        return signature;
+    }
+
+    @Test
+    public void testHashMatchesRegistryEncoding() {
+        byte[] signature = signature(1, 3309);
+        byte[] algorithm = "Dilithium3".getBytes(StandardCharsets.UTF_8);
+        byte[] packed = new byte[signature.length + algorithm.length];
+        System.arraycopy(signature, 0, packed, 0, signature.length);
+        System.arraycopy(algorithm, 0, packed, signature.length, algorithm.length);
+
+        // keccak256(abi.encodePacked(bytes, string)) = keccak256 của hai chuỗi byte nối liền
+        assertArrayEquals(Keccak.keccak256(packed), SignatureArchive.hashOf(signature, "Dilithium3"));
+    }
+
+    @Test
+    public void testPutGetAndDeduplicate() throws IOException {
+        try (SignatureArchive archive = new SignatureArchive(dir, 1 << 20, 16)) {
+            byte[] signature = signature(1, 3309);
+            byte[] hash = archive.put(signature, "Dilithium3");
+            assertArrayEquals(hash, archive.put(signature, "Dilithium3"));
+            assertFalse(java.util.Arrays.equals(hash, archive.put(signature, "Falcon-512")));
+
+            SignatureArchive.Entry entry = archive.get(hash);
+            assertArrayEquals(signature, entry.getSignature());
+            assertEquals("Dilithium3", entry.getAlgorithm());
+            assertNull(archive.get(SignatureArchive.hashOf(signature(2, 3309), "Dilithium3")));
+            assertEquals(2L, archive.getStats().get("signatures"));
+            assertEquals(1L, archive.getStats().get("duplicates"));
+        }
+    }
+
+    @Test
+    public void testSegmentsRollAndReopenFromHints() throws IOException {
+        List<byte[]> hashes = new ArrayList<>();
+        try (SignatureArchive archive = new SignatureArchive(dir, 16 * 1024, 16)) {
+            for (int i = 0; i < 300; i++) {
+                hashes.add(archive.put(signature(i, 666), "Falcon-512"));
+            }
+            assertTrue((long) archive.getStats().get("segments") > 10);
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            assertTrue(files.anyMatch(path -> path.toString().endsWith(".hint")));
+        }
+
+        try (SignatureArchive reopened = new SignatureArchive(dir, 16 * 1024, 16)) {
+            assertEquals(300L, reopened.getStats().get("recoveredSignatures"));
+            for (int i = 0; i < 300; i++) {
+                assertArrayEquals(signature(i, 666), reopened.get(hashes.get(i)).getSignature());
+            }
+            // Vẫn ghi tiếp được vào segment cuối
+            byte[] hash = reopened.put(signature(1000, 666), "Falcon-512");
+            assertNotNull(reopened.get(hash));
+        }
+    }
+
+    @Test
+    public void testMissingOrCorruptHintRebuiltByScan() throws IOException {
+        List<byte[]> hashes = new ArrayList<>();
+        try (SignatureArchive archive = new SignatureArchive(dir, 16 * 1024, 16)) {
+            for (int i = 0; i < 100; i++) {
+                hashes.add(archive.put(signature(i, 666), "Falcon-512"));
+            }
+        }
+        List<Path> hints;
+        try (Stream<Path> files = Files.list(dir)) {
+            hints = files.filter(path -> path.toString().endsWith(".hint")).sorted().toList();
+        }
+        Files.delete(hints.get(0));
+        Files.write(hints.get(1), new byte[] {1, 2, 3}, StandardOpenOption.APPEND);
+
+        try (SignatureArchive reopened = new SignatureArchive(dir, 16 * 1024, 16)) {
+            for (byte[] hash : hashes) {
+                assertNotNull(reopened.get(hash));
+            }
+        }
+        assertTrue(Files.exists(hints.get(0)));
+    }
+
+    @Test
+    public void testTornTailIsTruncated() throws IOException {
+        byte[] first;
+        try (SignatureArchive archive = new SignatureArchive(dir, 1 << 20, 16)) {
+            first = archive.put(signature(1, 3309), "Dilithium3");
+        }
+        // Bản ghi ghi dở: header hợp lệ nhưng thiếu nội dung
+        Path segment = dir.resolve("sig-000001.seg");
+        Files.write(segment, new byte[] {0, 0, 0x10, 0, 1, 2, 3, 4, 5, 6}, StandardOpenOption.APPEND);
+
+        byte[] second;
+        try (SignatureArchive reopened = new SignatureArchive(dir, 1 << 20, 16)) {
+            assertNotNull(reopened.get(first));
+            second = reopened.put(signature(2, 3309), "Dilithium3");
+        }
+        try (SignatureArchive reopened = new SignatureArchive(dir, 1 << 20, 16)) {
+            assertEquals(2L, reopened.getStats().get("signatures"));
+            assertArrayEquals(signature(2, 3309), reopened.get(second).getSignature());
+        }
+    }
+
+    @Test
+    public void testIndexGrowsAndConcurrentReadersSeeWrites() throws Exception {
+        try (SignatureArchive archive = new SignatureArchive(dir, 1 << 20, 16)) {
+            List<byte[]> written = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                written.add(archive.put(signature(i, 128), "Falcon-512"));
+            }
+
+            AtomicBoolean done = new AtomicBoolean();
+            ExecutorService pool = Executors.newFixedThreadPool(4);
+            List<Future<Integer>> readers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                readers.add(pool.submit(() -> {
+                    int reads = 0;
+                    while (!done.get()) {
+                        for (byte[] hash : written) {
+                            assertNotNull(archive.get(hash));
+                            reads++;
+                        }
+                    }
+                    return reads;
+                }));
+            }
+            List<byte[]> more = new ArrayList<>();
+            for (int i = 200; i < 20_000; i++) {
+                more.add(archive.put(signature(i, 128), "Falcon-512"));
+            }
+            done.set(true);
+            for (Future<Integer> reader : readers) {
+                assertTrue(reader.get() > 0);
+            }
+            pool.shutdown();
+
+            for (int i = 0; i < more.size(); i++) {
+                assertArrayEquals(signature(200 + i, 128), archive.get(more.get(i)).getSignature());
+            }
+            assertTrue((long) archive.getStats().get("indexCapacity") >= 20_000);
+        }
+    }
+}
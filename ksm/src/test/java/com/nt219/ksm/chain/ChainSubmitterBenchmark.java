@@ -0,0 +1,78 @@
+package com.nt219.ksm.chain;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nt219.ksm.crypto.Codec;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Đo throughput end-to-end (submit → receipt) trên node giả lập với block time cố định:
+ * gửi từng chuyển khoản bằng transferWithPQC và chờ receipt (như GUI) so với pipeline batchTransfer
+ *
+ * Chạy:
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt -Dmdep.includeScope=test
+ *   java -cp "target/test-classes:target/classes:$(cat cp.txt)" com.nt219.ksm.chain.ChainSubmitterBenchmark 1000 2 10000
+ *   (tham số: block time ms, độ trễ RPC ms, số chuyển khoản cho pipeline)
+ */
+public class ChainSubmitterBenchmark {
+
+    private static final String TRANSFER_WITH_PQC = "transferWithPQC(address,uint256,string,string,bytes,string)";
+
+    public static void main(String[] args) throws Exception {
+        long blockTimeMillis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        long rpcLatencyMillis = args.length > 1 ? Long.parseLong(args[1]) : 2;
+        int transfers = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+        byte[] senderKey = Codec.fromHex("4646464646464646464646464646464646464646464646464646464646464646");
+        String contract = "0x5fbdb2315678afecb367f032d93f642f64180aa3";
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        // 1. Từng chuyển khoản một: gửi, chờ receipt, rồi mới gửi chuyển khoản tiếp theo
+        int sequential = 10;
+        try (JsonRpcStub stub = new JsonRpcStub(0, blockTimeMillis, rpcLatencyMillis)) {
+            JsonRpcClient rpc = new JsonRpcClient(stub.url(), objectMapper, Duration.ofSeconds(10));
+            String sender = EthTransaction.addressOf(senderKey);
+            byte[] pqcSignature = new byte[3309];
+            long start = System.nanoTime();
+            for (int i = 0; i < sequential; i++) {
+                ChainTransfer transfer = ChainSubmitterTest.transfer(i);
+                long nonce = Long.decode(rpc.call("eth_getTransactionCount", sender, "pending").asText());
+                byte[] data = Abi.encodeCall(TRANSFER_WITH_PQC, transfer.getToAddress(), transfer.getAmountWei(),
+                    transfer.getToBankCode(), transfer.getDescription(), pqcSignature, "DILITHIUM3");
+                byte[] raw = new EthTransaction(nonce, BigInteger.ZERO, 500_000, contract, BigInteger.ZERO, data, 1337)
+                    .sign(senderKey);
+                String hash = rpc.call("eth_sendRawTransaction", "0x" + Codec.toHex(raw)).asText();
+                JsonNode receipt;
+                do {
+                    Thread.sleep(50);
+                    receipt = rpc.call("eth_getTransactionReceipt", hash);
+                } while (receipt == null || receipt.isNull());
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("per-transfer (transferWithPQC, wait receipt): %d transfers, %.2f transfers/s%n",
+                sequential, sequential / seconds);
+        }
+
+        // 2. Pipeline: batchTransfer theo gas budget, nhiều giao dịch in-flight, receipt theo dõi bất đồng bộ
+        try (JsonRpcStub stub = new JsonRpcStub(0, blockTimeMillis, rpcLatencyMillis)) {
+            ChainSubmitter submitter = new ChainSubmitter(new JsonRpcClient(stub.url(), objectMapper, Duration.ofSeconds(10)),
+                senderKey, contract, 1337, BigInteger.ZERO, 15_000_000, 150_000, 20, 16, transfers, 250, 60_000);
+            submitter.start();
+            long start = System.nanoTime();
+            List<CompletableFuture<TransferReceipt>> receipts = new ArrayList<>(transfers);
+            for (int i = 0; i < transfers; i++) {
+                receipts.add(submitter.submit(ChainSubmitterTest.transfer(i)));
+            }
+            CompletableFuture.allOf(receipts.toArray(new CompletableFuture[0])).get(10, TimeUnit.MINUTES);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("pipelined batchTransfer: %,d transfers, %.0f transfers/s%n", transfers, transfers / seconds);
+            System.out.println("chain: " + submitter.getStats());
+            submitter.close();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.nt219.ksm.chain;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nt219.ksm.crypto.Codec;
+import com.nt219.ksm.process.SignedTransaction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho ChainSubmitter trên node JSON-RPC giả lập
+ */
+public class ChainSubmitterTest {
+
+    private static final byte[] SENDER_KEY =
+        Codec.fromHex("4646464646464646464646464646464646464646464646464646464646464646");
+    private static final String CONTRACT = "0x5fbdb2315678afecb367f032d93f642f64180aa3";
+    private static final String RECIPIENT = "0x70997970c51812dc3a010c7d01b50e0d17dc79c8";
+
+    private JsonRpcStub stub;
+    private ChainSubmitter submitter;
+
+    @AfterEach
+    public void tearDown() {
+        if (submitter != null) {
+            submitter.close();
+        }
+        if (stub != null) {
+            stub.close();
+        }
+    }
+
+    private ChainSubmitter open(long gasBudget, int maxInFlight) throws Exception {
+        return open(gasBudget, maxInFlight, 5_000);
+    }
+
+    private ChainSubmitter open(long gasBudget, int maxInFlight, long receiptTimeoutMillis) throws Exception {
+        submitter = new ChainSubmitter(new JsonRpcClient(stub.url(), new ObjectMapper(), Duration.ofSeconds(5)),
+            SENDER_KEY, CONTRACT, 1337, BigInteger.ZERO, gasBudget, 150_000, 20, maxInFlight, 10_000, 20, receiptTimeoutMillis);
+        submitter.start();
+        return submitter;
+    }
+
+    static ChainTransfer transfer(int i) {
+        SignedTransaction signed = new SignedTransaction("vietcombank", "vietinbank", 1000 + i,
+            "Transfer " + i, "FROM:vietcombank|TO:vietinbank", null, System.currentTimeMillis());
+        return new ChainTransfer(signed, RECIPIENT, BigInteger.valueOf(1000 + i).multiply(BigInteger.TEN.pow(12)),
+            "VTB", "Transfer " + i);
+    }
+
+    @Test
+    public void testConcurrentTransfersShareBatches() throws Exception {
+        stub = new JsonRpcStub(7, 50, 0);
+        open(15_000_000, 4);
+
+        List<CompletableFuture<TransferReceipt>> receipts = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            receipts.add(submitter.submit(transfer(i)));
+        }
+        CompletableFuture.allOf(receipts.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+
+        Set<BigInteger> transactionIds = new HashSet<>();
+        for (CompletableFuture<TransferReceipt> receipt : receipts) {
+            TransferReceipt result = receipt.join();
+            transactionIds.add(result.getTransactionId());
+            assertTrue(result.getBatchSize() <= ChainSubmitter.MAX_TRANSFERS_PER_BATCH);
+        }
+        assertEquals(300, transactionIds.size());
+
+        // Nonce cục bộ bắt đầu từ nonce của node và tăng liên tục, không cần chờ block giữa các giao dịch
+        List<long[]> mined = stub.minedTransactions();
+        assertTrue(mined.size() <= 300 / 10, "expected batches, got " + mined.size() + " transactions");
+        for (int i = 0; i < mined.size(); i++) {
+            assertEquals(7 + i, mined.get(i)[0]);
+        }
+
+        Map<String, Object> stats = submitter.getStats();
+        assertEquals(300L, stats.get("confirmed"));
+        assertEquals(0L, stats.get("failed"));
+        assertEquals((long) mined.size(), stats.get("batches"));
+    }
+
+    @Test
+    public void testGasBudgetLimitsBatchSize() throws Exception {
+        stub = new JsonRpcStub(0, 20, 0);
+        long gasBudget = 1_000_000;
+        stub.setBlockGasLimit(gasBudget);
+        open(gasBudget, 4);
+
+        List<CompletableFuture<TransferReceipt>> receipts = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            receipts.add(submitter.submit(transfer(i)));
+        }
+        CompletableFuture.allOf(receipts.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+
+        for (long[] tx : stub.minedTransactions()) {
+            assertTrue(tx[1] <= gasBudget);
+            assertTrue(tx[2] < 10, "batch of " + tx[2] + " transfers exceeds the gas budget");
+        }
+    }
+
+    @Test
+    public void testRevertedBatchFailsItsTransfers() throws Exception {
+        stub = new JsonRpcStub(0, 20, 0);
+        stub.setRevertAll(true);
+        open(15_000_000, 4);
+
+        CompletableFuture<TransferReceipt> receipt = submitter.submit(transfer(1));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> receipt.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(ChainSubmitter.SubmissionException.class, e.getCause());
+        assertTrue(e.getCause().getMessage().contains("reverted"));
+        assertEquals(1L, submitter.getStats().get("revertedBatches"));
+    }
+
+    @Test
+    public void testBatchThatCannotBeEncodedFailsAndFreesItsSlot() throws Exception {
+        stub = new JsonRpcStub(0, 20, 0);
+        open(15_000_000, 1);
+
+        // Qua được kiểm tra lúc submit nhưng không mã hóa được thành uint256: lỗi khi dựng batch
+        ChainTransfer tooLarge = new ChainTransfer(null, RECIPIENT, BigInteger.ONE.shiftLeft(256), "VTB", "overflow");
+        for (int i = 0; i < 3; i++) {
+            CompletableFuture<TransferReceipt> receipt = submitter.submit(tooLarge);
+            ExecutionException e = assertThrows(ExecutionException.class, () -> receipt.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(ChainSubmitter.SubmissionException.class, e.getCause());
+        }
+
+        // Slot duy nhất không bị giữ lại bởi các batch lỗi
+        assertNotNull(submitter.submit(transfer(1)).get(10, TimeUnit.SECONDS).getTransactionHash());
+        assertEquals(3L, submitter.getStats().get("failed"));
+    }
+
+    @Test
+    public void testNonceUsedElsewhereIsResynced() throws Exception {
+        stub = new JsonRpcStub(3, 20, 0);
+        open(15_000_000, 4);
+        submitter.submit(transfer(1)).get(10, TimeUnit.SECONDS);
+
+        // Giao dịch khác của cùng tài khoản (ngoài KSM) dùng nonce mà submitter định dùng tiếp
+        stub.consumeNonceExternally();
+        TransferReceipt receipt = submitter.submit(transfer(2)).get(10, TimeUnit.SECONDS);
+
+        assertNotNull(receipt.getTransactionHash());
+        List<long[]> mined = stub.minedTransactions();
+        assertEquals(5, mined.get(mined.size() - 1)[0]);
+        assertEquals(1L, submitter.getStats().get("nonceResyncs"));
+    }
+
+    @Test
+    public void testInvalidTransferRejectedBeforeBatching() throws Exception {
+        stub = new JsonRpcStub(0, 20, 0);
+        open(15_000_000, 4);
+
+        ChainTransfer toSelf = new ChainTransfer(null, EthTransaction.addressOf(SENDER_KEY), BigInteger.ONE, "VCB", "");
+        ExecutionException e = assertThrows(ExecutionException.class, () -> submitter.submit(toSelf).get());
+        assertInstanceOf(IllegalArgumentException.class, e.getCause());
+        assertEquals(0L, submitter.getStats().get("submitted"));
+    }
+
+    @Test
+    public void testStuckBatchFailsOnlyOnceCancellationIsMined() throws Exception {
+        stub = new JsonRpcStub(0, 20, 0);
+        stub.setStalled(true);
+        open(15_000_000, 4, 200);
+
+        CompletableFuture<TransferReceipt> receipt = submitter.submit(transfer(1));
+        // Quá receiptTimeout: giao dịch hủy cùng nonce thay giao dịch gốc trong mempool, nhưng chưa mined
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (stub.replacements() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, stub.replacements());
+        assertFalse(receipt.isDone());
+        stub.setStalled(false);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> receipt.get(10, TimeUnit.SECONDS));
+        assertFalse(e.getCause() instanceof ChainSubmitter.ReceiptTimeoutException);
+        assertTrue(e.getCause().getMessage().contains("cancelled"));
+        List<long[]> mined = stub.minedTransactions();
+        assertEquals(1, mined.size());
+        assertEquals(0, mined.get(0)[0]);
+        assertEquals(0, mined.get(0)[2]);
+        assertEquals(1L, submitter.getStats().get("cancelledBatches"));
+
+        // Nonce 0 đã dùng cho giao dịch hủy: batch sau dùng nonce 1
+        submitter.submit(transfer(2)).get(10, TimeUnit.SECONDS);
+        assertEquals(1, stub.minedTransactions().get(1)[0]);
+    }
+
+    @Test
+    public void testBatchMinedAfterTimeoutStillSucceeds() throws Exception {
+        stub = new JsonRpcStub(0, 20, 0);
+        stub.setStalled(true);
+        stub.setRejectReplacements(true);
+        open(15_000_000, 4, 200);
+
+        CompletableFuture<TransferReceipt> receipt = submitter.submit(transfer(1));
+        Thread.sleep(300);
+        assertFalse(receipt.isDone());
+        stub.setStalled(false);
+
+        TransferReceipt result = receipt.get(10, TimeUnit.SECONDS);
+        assertEquals(1, result.getBatchSize());
+        assertEquals(0L, submitter.getStats().get("failed"));
+    }
+
+    @Test
+    public void testUnresolvedBatchReportsUnknownOutcome() throws Exception {
+        stub = new JsonRpcStub(0, 20, 0);
+        stub.setStalled(true);
+        open(15_000_000, 4, 100);
+
+        CompletableFuture<TransferReceipt> receipt = submitter.submit(transfer(1));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> receipt.get(10, TimeUnit.SECONDS));
+        ChainSubmitter.ReceiptTimeoutException timeout =
+            assertInstanceOf(ChainSubmitter.ReceiptTimeoutException.class, e.getCause());
+        assertEquals(0, timeout.getNonce());
+        assertTrue(timeout.getTransactionHash().startsWith("0x"));
+        assertEquals(1L, submitter.getStats().get("unknownBatches"));
+    }
+}
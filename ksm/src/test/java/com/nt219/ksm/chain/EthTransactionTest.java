@@ -0,0 +1,73 @@
+package com.nt219.ksm.chain;
+
+import com.nt219.ksm.crypto.Codec;
+import com.nt219.ksm.crypto.Keccak;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho RLP, ABI và giao dịch ký EIP-155 (vector trong đặc tả EIP-155)
+ */
+public class EthTransactionTest {
+
+    private static final byte[] EIP155_KEY =
+        Codec.fromHex("4646464646464646464646464646464646464646464646464646464646464646");
+
+    @Test
+    public void testEip155SignedTransactionVector() {
+        EthTransaction tx = new EthTransaction(9, new BigInteger("20000000000"), 21000,
+            "0x3535353535353535353535353535353535353535", new BigInteger("1000000000000000000"), new byte[0], 1);
+
+        byte[] raw = tx.sign(EIP155_KEY);
+
+        assertEquals("f86c098504a817c800825208943535353535353535353535353535353535353535880de0b6b3a7640000"
+            + "8025a028ef61340bd939bc2195fe537567866003e1a15d3c71ff63e1590620aa636276a067cbe9d8997f761aecb703"
+            + "304b3800ccf555c9f3dc64214b297fb1966a3b6d83", Codec.toHex(raw));
+        assertEquals("0x" + Codec.toHex(Keccak.keccak256(raw)), EthTransaction.hashOf(raw));
+    }
+
+    @Test
+    public void testAddressOfPrivateKey() {
+        assertEquals("0x9d8a62f656a8d1615c1294fd71e9cfb3e4855a4f", EthTransaction.addressOf(EIP155_KEY));
+    }
+
+    @Test
+    public void testRlpRoundTrip() {
+        byte[] longString = new byte[100];
+        List<Object> item = List.of(Rlp.integer(0), Rlp.integer(1024), longString, List.of(new byte[] {0x7f}, new byte[0]));
+
+        Object decoded = Rlp.decode(Rlp.encode(item));
+
+        List<?> list = (List<?>) decoded;
+        assertEquals(4, list.size());
+        assertArrayEquals(new byte[0], (byte[]) list.get(0));
+        assertArrayEquals(new byte[] {0x04, 0x00}, (byte[]) list.get(1));
+        assertArrayEquals(longString, (byte[]) list.get(2));
+        assertArrayEquals(new byte[] {0x7f}, (byte[]) ((List<?>) list.get(3)).get(0));
+        assertEquals("c0", Codec.toHex(Rlp.encode(List.of())));
+        assertEquals("83646f67", Codec.toHex(Rlp.encode("dog".getBytes())));
+    }
+
+    @Test
+    public void testAbiSelectorAndDynamicEncoding() {
+        assertEquals("a9059cbb", Codec.toHex(Abi.selector("transfer(address,uint256)")));
+
+        // Ví dụ trong tài liệu Solidity ABI: sam("dave", true, [1, 2, 3])
+        byte[] call = Abi.encodeCall("sam(bytes,bool,uint256[])", "dave".getBytes(), true, List.of(1L, 2L, 3L));
+        assertEquals("a5643bf2"
+            + "0000000000000000000000000000000000000000000000000000000000000060"
+            + "0000000000000000000000000000000000000000000000000000000000000001"
+            + "00000000000000000000000000000000000000000000000000000000000000a0"
+            + "0000000000000000000000000000000000000000000000000000000000000004"
+            + "6461766500000000000000000000000000000000000000000000000000000000"
+            + "0000000000000000000000000000000000000000000000000000000000000003"
+            + "0000000000000000000000000000000000000000000000000000000000000001"
+            + "0000000000000000000000000000000000000000000000000000000000000002"
+            + "0000000000000000000000000000000000000000000000000000000000000003", Codec.toHex(call));
+        assertEquals(BigInteger.valueOf(3), Abi.readWord(call, 0xa0));
+    }
+}
@@ -0,0 +1,247 @@
+package com.nt219.ksm.chain;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.nt219.ksm.crypto.Codec;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Node Besu giả lập cho test/benchmark: JSON-RPC qua HTTP, một tài khoản gửi, block mới mỗi blockTime
+ *
+ * Hỗ trợ eth_getTransactionCount, eth_sendRawTransaction (kiểm tra nonce, gasLimit, thay giao dịch cùng nonce
+ * còn trong mempool) và eth_getTransactionReceipt.
+ * batchTransfer phát một event Transfer cho mỗi người nhận, transferWithPQC phát một event.
+ */
+class JsonRpcStub implements AutoCloseable {
+
+    private static final String TRANSFER_WITH_PQC = "transferWithPQC(address,uint256,string,string,bytes,string)";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService httpExecutor = Executors.newFixedThreadPool(8);
+    private final ScheduledExecutorService miner;
+    private final long rpcLatencyMillis;
+    private final Map<String, ObjectNode> receipts = new ConcurrentHashMap<>();
+    private final List<byte[]> mempool = new ArrayList<>();
+    private final List<long[]> mined = new ArrayList<>();  // {nonce, gasLimit, transfers}
+
+    private long nextNonce;
+    private long blockNumber;
+    private BigInteger transactionCounter = BigInteger.ZERO;
+    private volatile boolean revertAll;
+    private volatile long blockGasLimit = Long.MAX_VALUE;
+    private volatile boolean stalled;
+    private volatile boolean rejectReplacements;
+    private int replacements;
+
+    /**
+     * @param blockTimeMillis Chu kỳ sinh block
+     * @param rpcLatencyMillis Độ trễ thêm cho mỗi HTTP request (mô phỏng round-trip tới node)
+     */
+    JsonRpcStub(long startNonce, long blockTimeMillis, long rpcLatencyMillis) throws IOException {
+        this.nextNonce = startNonce;
+        this.rpcLatencyMillis = rpcLatencyMillis;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(httpExecutor);
+        this.server.start();
+        this.miner = Executors.newSingleThreadScheduledExecutor();
+        this.miner.scheduleAtFixedRate(this::mine, blockTimeMillis, blockTimeMillis, TimeUnit.MILLISECONDS);
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    void setRevertAll(boolean revertAll) {
+        this.revertAll = revertAll;
+    }
+
+    void setBlockGasLimit(long blockGasLimit) {
+        this.blockGasLimit = blockGasLimit;
+    }
+
+    /**
+     * Ngừng sinh block: giao dịch nằm lại trong mempool
+     */
+    void setStalled(boolean stalled) {
+        this.stalled = stalled;
+    }
+
+    void setRejectReplacements(boolean rejectReplacements) {
+        this.rejectReplacements = rejectReplacements;
+    }
+
+    /**
+     * Giao dịch gửi từ nơi khác (không qua submitter) làm tăng nonce của tài khoản
+     */
+    synchronized void consumeNonceExternally() {
+        nextNonce++;
+    }
+
+    synchronized int replacements() {
+        return replacements;
+    }
+
+    /**
+     * @return {nonce, gasLimit, số chuyển khoản} của từng giao dịch đã mined, theo thứ tự
+     */
+    synchronized List<long[]> minedTransactions() {
+        return new ArrayList<>(mined);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (rpcLatencyMillis > 0) {
+                Thread.sleep(rpcLatencyMillis);
+            }
+            JsonNode body = objectMapper.readTree(exchange.getRequestBody());
+            JsonNode response;
+            if (body.isArray()) {
+                ArrayNode responses = objectMapper.createArrayNode();
+                for (JsonNode request : body) {
+                    responses.add(dispatch(request));
+                }
+                response = responses;
+            } else {
+                response = dispatch(body);
+            }
+            byte[] bytes = objectMapper.writeValueAsBytes(response);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private ObjectNode dispatch(JsonNode request) {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("jsonrpc", "2.0");
+        response.set("id", request.get("id"));
+        JsonNode params = request.path("params");
+        try {
+            switch (request.path("method").asText()) {
+                case "eth_getTransactionCount":
+                    synchronized (this) {
+                        response.put("result", "0x" + Long.toHexString(nextNonce));
+                    }
+                    break;
+                case "eth_sendRawTransaction":
+                    response.put("result", accept(Codec.fromHex(params.get(0).asText())));
+                    break;
+                case "eth_getTransactionReceipt":
+                    ObjectNode receipt = receipts.get(params.get(0).asText());
+                    response.set("result", receipt != null ? receipt : objectMapper.nullNode());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Method not found");
+            }
+        } catch (RuntimeException e) {
+            ObjectNode error = response.putObject("error");
+            error.put("code", -32000);
+            error.put("message", e.getMessage());
+        }
+        return response;
+    }
+
+    private synchronized String accept(byte[] raw) {
+        List<?> fields = (List<?>) Rlp.decode(raw);
+        long nonce = new BigInteger(1, (byte[]) fields.get(0)).longValueExact();
+        long gasLimit = new BigInteger(1, (byte[]) fields.get(2)).longValueExact();
+        if (nonce < nextNonce) {
+            for (int i = 0; i < mempool.size(); i++) {
+                if (new BigInteger(1, (byte[]) ((List<?>) Rlp.decode(mempool.get(i))).get(0)).longValueExact() == nonce) {
+                    if (rejectReplacements) {
+                        throw new IllegalStateException("Replacement transaction underpriced");
+                    }
+                    mempool.set(i, raw);
+                    replacements++;
+                    return EthTransaction.hashOf(raw);
+                }
+            }
+            throw new IllegalStateException("Nonce too low");
+        }
+        if (nonce > nextNonce) {
+            throw new IllegalStateException("Nonce too high (gap)");
+        }
+        if (gasLimit > blockGasLimit) {
+            throw new IllegalStateException("Exceeds block gas limit");
+        }
+        nextNonce++;
+        mempool.add(raw);
+        return EthTransaction.hashOf(raw);
+    }
+
+    private synchronized void mine() {
+        if (stalled || mempool.isEmpty()) {
+            return;
+        }
+        blockNumber++;
+        for (byte[] raw : mempool) {
+            List<?> fields = (List<?>) Rlp.decode(raw);
+            long nonce = new BigInteger(1, (byte[]) fields.get(0)).longValueExact();
+            long gasLimit = new BigInteger(1, (byte[]) fields.get(2)).longValueExact();
+            String contract = "0x" + Codec.toHex((byte[]) fields.get(3));
+            byte[] data = (byte[]) fields.get(5);
+
+            int transfers;
+            if (Arrays.equals(Arrays.copyOf(data, 4), Abi.selector(ChainSubmitter.BATCH_TRANSFER))) {
+                int recipientsOffset = Abi.readWord(data, 0).intValueExact();
+                transfers = Abi.readWord(data, recipientsOffset).intValueExact();
+            } else if (Arrays.equals(Arrays.copyOf(data, 4), Abi.selector(TRANSFER_WITH_PQC))) {
+                transfers = 1;
+            } else {
+                transfers = 0;
+            }
+
+            ObjectNode receipt = objectMapper.createObjectNode();
+            String hash = EthTransaction.hashOf(raw);
+            receipt.put("transactionHash", hash);
+            receipt.put("blockNumber", "0x" + Long.toHexString(blockNumber));
+            receipt.put("status", revertAll || transfers == 0 ? "0x0" : "0x1");
+            ArrayNode logs = receipt.putArray("logs");
+            if (!revertAll) {
+                for (int i = 0; i < transfers; i++) {
+                    transactionCounter = transactionCounter.add(BigInteger.ONE);
+                    ObjectNode log = logs.addObject();
+                    log.put("address", contract);
+                    ArrayNode topics = log.putArray("topics");
+                    topics.add(ChainSubmitter.TRANSFER_EVENT);
+                    topics.add(String.format("0x%064x", transactionCounter));
+                }
+            }
+            receipts.put(hash, receipt);
+            mined.add(new long[] {nonce, gasLimit, transfers});
+        }
+        mempool.clear();
+    }
+
+    @Override
+    public void close() {
+        miner.shutdownNow();
+        server.stop(0);
+        httpExecutor.shutdownNow();
+    }
+}
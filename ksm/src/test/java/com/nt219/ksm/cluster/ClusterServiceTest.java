@@ -0,0 +1,317 @@
+package com.nt219.ksm.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.nt219.ksm.process.KeyPairPool;
+import com.nt219.ksm.process.PQCProcessService;
+import com.nt219.ksm.storage.ExportedKeyRecord;
+import com.nt219.ksm.storage.KeyStoreService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests cho ClusterService: xác thực request giữa các node, handoff và migrate khi membership đổi
+ */
+public class ClusterServiceTest {
+
+    private static final String SECRET = "test-cluster-secret";
+    private static final String MIGRATE = "/ksm/cluster/migrate";
+
+    @TempDir
+    Path dir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<Runnable> cleanup = new ArrayList<>();
+
+    @AfterEach
+    public void shutdown() {
+        cleanup.forEach(Runnable::run);
+    }
+
+    private Path config(String... nodes) throws Exception {
+        StringBuilder config = new StringBuilder("virtualNodes=16\n");
+        for (String node : nodes) {
+            config.append("node.").append(node).append("=http://127.0.0.1:1\n");
+        }
+        Path file = dir.resolve("cluster-" + nodes.length + ".properties");
+        Files.write(file, config.toString().getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private KeyStoreService keyStore(String nodeId) throws Exception {
+        Path storage = dir.resolve(nodeId);
+        Path sharedMasterKey = dir.resolve("node1").resolve("master.key");
+        if (!nodeId.equals("node1") && Files.exists(sharedMasterKey)) {
+            Files.createDirectories(storage);
+            Files.copy(sharedMasterKey, storage.resolve("master.key"));
+        }
+        KeyStoreService keyStore = new KeyStoreService(storage);
+        cleanup.add(keyStore::shutdown);
+        return keyStore;
+    }
+
+    private PQCProcessService pqc(KeyStoreService keyStore) {
+        KeyPairPool pool = new KeyPairPool();
+        PQCProcessService pqcService = new PQCProcessService(keyStore, pool);
+        cleanup.add(pool::shutdown);
+        cleanup.add(pqcService::shutdown);
+        return pqcService;
+    }
+
+    /**
+     * HTTP server giả cho một node: chuyển /ksm/cluster/migrate và /ksm/cluster/handoff
+     * tới ClusterService như ClusterController
+     */
+    private HttpServer server(AtomicReference<ClusterService> node) throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/ksm/cluster/", exchange -> {
+            Map<String, Object> response = new HashMap<>();
+            try {
+                byte[] body = exchange.getRequestBody().readAllBytes();
+                String sender = exchange.getRequestHeaders().getFirst(ClusterService.FORWARDED_HEADER);
+                String authorization = exchange.getRequestHeaders().getFirst(ClusterService.AUTH_HEADER);
+                if (exchange.getRequestURI().getPath().equals(MIGRATE)) {
+                    response.put("accepted", node.get().acceptMigration(sender, body,
+                        exchange.getRequestHeaders().getFirst(ClusterService.MASTER_KEY_HEADER), authorization));
+                } else {
+                    response.putAll(node.get().handoff(sender, body, authorization));
+                }
+                response.put("success", true);
+            } catch (Exception e) {
+                response.put("success", false);
+                response.put("error", e.getMessage());
+            }
+            respond(exchange, objectMapper.writeValueAsBytes(response));
+        });
+        server.start();
+        cleanup.add(() -> server.stop(0));
+        return server;
+    }
+
+    private static void respond(HttpExchange exchange, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+
+    private Path config(Path file, Map<String, HttpServer> nodes) throws Exception {
+        StringBuilder config = new StringBuilder("virtualNodes=16\n");
+        nodes.forEach((node, server) -> config.append("node.").append(node)
+            .append("=http://127.0.0.1:").append(server.getAddress().getPort()).append('\n'));
+        Files.write(file, config.toString().getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static void awaitMigration(ClusterService node) throws Exception {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (Boolean.TRUE.equals(node.getStatus().get("migrating"))) {
+            assertTrue(System.currentTimeMillis() < deadline, "migration did not finish");
+            Thread.sleep(20);
+        }
+    }
+
+    private ClusterService node(String nodeId, KeyStoreService keyStore, Path config, String secret) {
+        return new ClusterService(keyStore, pqc(keyStore), objectMapper, config.toString(), nodeId, secret);
+    }
+
+    private String ownedBy(ClusterService cluster, String nodeId) {
+        for (int i = 0; ; i++) {
+            if (nodeId.equals(cluster.ownerOf("bank" + i))) {
+                return "bank" + i;
+            }
+        }
+    }
+
+    private byte[] batch(String entityId, ExportedKeyRecord exported) throws Exception {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("entityId", entityId);
+        line.put("record", exported.getRecord());
+        line.put("archived", exported.getArchived());
+        return (objectMapper.writeValueAsString(line) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testMigrationRequiresClusterSecret() throws Exception {
+        Path config = config("node1", "node2");
+        KeyStoreService store1 = keyStore("node1");
+        KeyStoreService store2 = keyStore("node2");
+        ClusterService node1 = node("node1", store1, config, SECRET);
+        ClusterService node2 = node("node2", store2, config, SECRET);
+        ClusterService outsider = node("node2", keyStore("outsider"), config, "guessed-secret");
+
+        String entityId = ownedBy(node1, "node1");
+        pqc(store2).generateKeyPairForEntity(entityId);
+        byte[] body = batch(entityId, store2.exportRecord(entityId));
+        String masterKeyId = store2.getMasterKeyId();
+        long now = System.currentTimeMillis();
+
+        // Thiếu chữ ký, sai secret, body bị sửa, giả danh node khác, timestamp quá cũ
+        assertThrows(SecurityException.class, () -> node1.acceptMigration("node2", body, masterKeyId, null));
+        assertThrows(SecurityException.class, () -> node1.acceptMigration("node2", body, masterKeyId,
+            outsider.authorization("node2", "POST", MIGRATE, body, now)));
+        String signed = node2.authorization("node2", "POST", MIGRATE, body, now);
+        byte[] tampered = new String(body, StandardCharsets.UTF_8).replace(entityId, entityId + "x")
+            .getBytes(StandardCharsets.UTF_8);
+        assertThrows(SecurityException.class, () -> node1.acceptMigration("node2", tampered, masterKeyId, signed));
+        assertThrows(SecurityException.class, () -> node1.acceptMigration("node3", body, masterKeyId, signed));
+        assertThrows(SecurityException.class, () -> node1.acceptMigration(null, body, masterKeyId, signed));
+        assertThrows(SecurityException.class, () -> node1.acceptMigration("node2", body, masterKeyId,
+            node2.authorization("node2", "POST", MIGRATE, body, now - 10 * 60 * 1000)));
+        assertFalse(store1.keyExists(entityId));
+
+        assertEquals(List.of(entityId), node1.acceptMigration("node2", body, masterKeyId, signed));
+        assertTrue(store1.keyExists(entityId));
+    }
+
+    @Test
+    public void testClusterModeRefusesToStartWithoutSecret() throws Exception {
+        Path config = config("node1", "node2");
+        KeyStoreService store = keyStore("node1");
+        assertThrows(IllegalStateException.class, () -> node("node1", store, config, ""));
+    }
+
+    @Test
+    public void testNewOwnerPullsKeysInsteadOfCreatingDuplicates() throws Exception {
+        AtomicReference<ClusterService> ref1 = new AtomicReference<>();
+        AtomicReference<ClusterService> ref2 = new AtomicReference<>();
+        HttpServer server1 = server(ref1);
+        HttpServer server2 = server(ref2);
+        Path configFile = dir.resolve("cluster.properties");
+
+        // node1 chạy một mình, tạo khóa (một phần đã rotate)
+        config(configFile, Map.of("node1", server1));
+        KeyStoreService store1 = keyStore("node1");
+        PQCProcessService pqc1 = pqc(store1);
+        ClusterService node1 = new ClusterService(store1, pqc1, objectMapper, configFile.toString(), "node1", SECRET);
+        ref1.set(node1);
+        Map<String, String> keyIds = new LinkedHashMap<>();
+        Map<String, String> oldKeyIds = new LinkedHashMap<>();
+        for (int i = 0; i < 40; i++) {
+            String entityId = "bank" + i;
+            String keyId = pqc1.generateKeyPairForEntity(entityId).getKeyId();
+            if (i % 4 == 0) {
+                oldKeyIds.put(entityId, keyId);
+                keyId = pqc1.rotateKeyPair(entityId).getKeyId();
+            }
+            keyIds.put(entityId, keyId);
+        }
+        awaitMigration(node1);
+
+        // node2 join: node2 đã dùng ring mới, node1 chưa reload
+        Map<String, HttpServer> both = new LinkedHashMap<>();
+        both.put("node1", server1);
+        both.put("node2", server2);
+        config(configFile, both);
+        KeyStoreService store2 = keyStore("node2");
+        ClusterService node2 = new ClusterService(store2, pqc(store2), objectMapper, configFile.toString(), "node2", SECRET);
+        ref2.set(node2);
+        List<String> moved = new ArrayList<>();
+        keyIds.keySet().stream().filter(e -> "node2".equals(node2.ownerOf(e))).forEach(moved::add);
+        assertFalse(moved.isEmpty());
+
+        // Owner cũ vẫn đang ký bằng khóa: owner mới từ chối thay vì tạo khóa mới
+        String first = moved.get(0);
+        assertThrows(IllegalStateException.class, () -> node2.routeIfRemote(first, null, "POST", "/ksm/generateKey", null));
+        assertFalse(store2.keyExists(first));
+
+        // Sau khi node1 reload: request tới node2 lấy khóa từ node1, cùng keyId, song song với migrate nền
+        node1.reload();
+        for (String entityId : moved) {
+            assertNull(node2.routeIfRemote(entityId, null, "POST", "/ksm/sign", null));
+            assertEquals(keyIds.get(entityId), store2.exportRecord(entityId).getKeyId());
+        }
+        awaitMigration(node1);
+
+        for (Map.Entry<String, String> entry : keyIds.entrySet()) {
+            boolean onNode2 = moved.contains(entry.getKey());
+            KeyStoreService owner = onNode2 ? store2 : store1;
+            assertEquals(onNode2, store2.keyExists(entry.getKey()));
+            assertEquals(!onNode2, store1.keyExists(entry.getKey()));
+            assertEquals(entry.getKey(), owner.findPublicKey(entry.getValue()).getEntityId());
+            String oldKeyId = oldKeyIds.get(entry.getKey());
+            if (oldKeyId != null) {
+                assertTrue(owner.findPublicKey(oldKeyId).isArchived());
+            }
+        }
+        assertEquals(0L, node1.getStatus().get("migrationConflicts"));
+        assertEquals(0L, node2.getStatus().get("migrationConflicts"));
+        assertEquals((long) moved.size(), node1.getStatus().get("migratedOut"));
+
+        // Entity mới: node1 đã migrate xong nên node2 ngừng hỏi owner cũ
+        assertEquals(Boolean.TRUE, node2.getStatus().get("handoffPending"));
+        String fresh = null;
+        for (int i = 0; fresh == null; i++) {
+            fresh = "node2".equals(node2.ownerOf("fresh" + i)) ? "fresh" + i : null;
+        }
+        assertNull(node2.routeIfRemote(fresh, null, "POST", "/ksm/generateKey", null));
+        assertFalse(store2.keyExists(fresh));
+        assertEquals(Boolean.FALSE, node2.getStatus().get("handoffPending"));
+    }
+
+    @Test
+    public void testReplayScopeIsServedByOneOwnerWithoutKeyHandoff() throws Exception {
+        // node2 giả: đếm request handoff, trả lại body của /ksm/publicKeys/verify
+        AtomicInteger handoffs = new AtomicInteger();
+        HttpServer server2 = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server2.createContext("/ksm/", exchange -> {
+            Map<String, Object> response = new HashMap<>();
+            if (exchange.getRequestURI().getPath().startsWith("/ksm/cluster/")) {
+                handoffs.incrementAndGet();
+            } else {
+                response.put("request", objectMapper.readValue(exchange.getRequestBody().readAllBytes(), Map.class));
+                response.put("forwardedBy", exchange.getRequestHeaders().getFirst(ClusterService.FORWARDED_HEADER));
+            }
+            response.put("success", true);
+            respond(exchange, objectMapper.writeValueAsBytes(response));
+        });
+        server2.start();
+        cleanup.add(() -> server2.stop(0));
+        HttpServer server1 = server(new AtomicReference<>());
+        Path configFile = config(dir.resolve("cluster.properties"), Map.of("node1", server1, "node2", server2));
+        ClusterService node1 = node("node1", keyStore("node1"), configFile, SECRET);
+        awaitMigration(node1);
+
+        String remote = null;
+        String local = null;
+        for (int i = 0; remote == null || local == null; i++) {
+            String scope = "key:" + Integer.toHexString(i);
+            if ("node2".equals(node1.ownerOf(scope))) {
+                remote = scope;
+            } else {
+                local = scope;
+            }
+        }
+        Map<String, Object> routed = node1.routeScopeIfRemote(remote, null, "POST", "/ksm/publicKeys/verify",
+            Map.of("message", "m", "consume", "true"));
+        assertEquals("node2", routed.get("servedBy"));
+        assertEquals("node1", routed.get("forwardedBy"));
+        assertEquals(Map.of("message", "m", "consume", "true"), routed.get("request"));
+
+        // Scope của node này: xử lý tại chỗ, không hỏi owner cũ như với khóa của entity
+        int before = handoffs.get();
+        assertNull(node1.routeScopeIfRemote(local, null, "POST", "/ksm/publicKeys/verify", Map.of()));
+        assertEquals(before, handoffs.get());
+        // Đã được forward một lần mà vẫn không thuộc node này: membership lệch, không forward tiếp
+        String forwardedAgain = remote;
+        assertThrows(IllegalStateException.class, () -> node1.routeScopeIfRemote(forwardedAgain, "node2", "POST",
+            "/ksm/publicKeys/verify", Map.of()));
+    }
+}
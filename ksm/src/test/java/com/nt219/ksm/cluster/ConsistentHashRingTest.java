@@ -0,0 +1,71 @@
+package com.nt219.ksm.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho ConsistentHashRing
+ */
+public class ConsistentHashRingTest {
+    
+    private static final int ENTITIES = 20_000;
+    
+    @Test
+    public void testEmptyRingHasNoOwner() {
+        ConsistentHashRing ring = new ConsistentHashRing(Collections.emptyList(), 16);
+        assertNull(ring.ownerOf("VCB_user1"));
+    }
+    
+    @Test
+    public void testOwnershipIsDeterministic() {
+        ConsistentHashRing a = new ConsistentHashRing(Arrays.asList("node1", "node2", "node3"), 128);
+        ConsistentHashRing b = new ConsistentHashRing(Arrays.asList("node3", "node1", "node2"), 128);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(a.ownerOf("entity" + i), b.ownerOf("entity" + i));
+        }
+    }
+    
+    @Test
+    public void testEntitiesAreSpreadEvenly() {
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("node1", "node2", "node3", "node4"), 128);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < ENTITIES; i++) {
+            counts.merge(ring.ownerOf("VCB_user" + i), 1, Integer::sum);
+        }
+        
+        assertEquals(4, counts.size());
+        for (int count : counts.values()) {
+            assertTrue(Math.abs(count - ENTITIES / 4) < ENTITIES / 4 * 0.25, "unbalanced: " + counts);
+        }
+        
+        double totalShare = ring.ownershipShares().values().stream().mapToDouble(Double::doubleValue).sum();
+        assertEquals(1.0, totalShare, 1e-9);
+    }
+    
+    @Test
+    public void testAddingNodeMovesAboutOneNth() {
+        ConsistentHashRing before = new ConsistentHashRing(Arrays.asList("node1", "node2", "node3"), 128);
+        ConsistentHashRing after = new ConsistentHashRing(Arrays.asList("node1", "node2", "node3", "node4"), 128);
+        
+        int moved = 0;
+        for (int i = 0; i < ENTITIES; i++) {
+            String entityId = "BIDV_user" + i;
+            String oldOwner = before.ownerOf(entityId);
+            String newOwner = after.ownerOf(entityId);
+            if (!oldOwner.equals(newOwner)) {
+                // Chỉ được chuyển sang node mới, không xáo trộn giữa các node cũ
+                assertEquals("node4", newOwner);
+                moved++;
+            }
+        }
+        
+        double movedShare = (double) moved / ENTITIES;
+        assertTrue(movedShare > 0.15 && movedShare < 0.35, "moved share: " + movedShare);
+    }
+}
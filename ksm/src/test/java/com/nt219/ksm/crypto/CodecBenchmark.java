@@ -0,0 +1,91 @@
+package com.nt219.ksm.crypto;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH: Codec so với cách cũ (String.format("%02x") từng byte) trên một chữ ký Dilithium3
+ *
+ * Chạy:
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt -Dmdep.includeScope=test
+ *   java -cp "target/test-classes:target/classes:$(cat cp.txt)" org.openjdk.jmh.Main CodecBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodecBenchmark {
+
+    @Param({ "32", "3309" })
+    public int size;
+
+    private byte[] data;
+    private byte[] hexBuffer;
+    private byte[] base64Buffer;
+
+    @Setup
+    public void setup() {
+        data = new byte[size];
+        new Random(42).nextBytes(data);
+        hexBuffer = new byte[size * 2];
+        base64Buffer = new byte[Codec.base64Length(size)];
+    }
+
+    @Benchmark
+    public String hexStringFormat() {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : data) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    @Benchmark
+    public String hexCodec() {
+        return Codec.toHex(data);
+    }
+
+    @Benchmark
+    public int hexCodecIntoBuffer() {
+        return Codec.encodeHex(data, 0, data.length, hexBuffer, 0);
+    }
+
+    @Benchmark
+    public String base64Jdk() {
+        return Base64.getEncoder().encodeToString(data);
+    }
+
+    @Benchmark
+    public String base64Codec() {
+        return Codec.toBase64(data);
+    }
+
+    @Benchmark
+    public int base64CodecIntoBuffer() {
+        return Codec.encodeBase64(data, 0, data.length, base64Buffer, 0);
+    }
+
+    /**
+     * SignedTransaction.toString cũ: hex toàn bộ chữ ký rồi cắt 32 ký tự
+     */
+    @Benchmark
+    public String logPreviewOld() {
+        return hexStringFormat().substring(0, 32) + "...";
+    }
+
+    @Benchmark
+    public String logPreviewCodec() {
+        return Codec.hexPreview(data, 16).toString();
+    }
+
+    @Benchmark
+    public void logPreviewCodecNotRendered(Blackhole blackhole) {
+        blackhole.consume(Codec.hexPreview(data, 16)); // log bị tắt: không render
+    }
+}
@@ -0,0 +1,65 @@
+package com.nt219.ksm.crypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho Codec
+ */
+public class CodecTest {
+
+    @Test
+    public void testHexMatchesStringFormat() {
+        byte[] data = new byte[256];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        StringBuilder expected = new StringBuilder();
+        for (byte b : data) {
+            expected.append(String.format("%02x", b));
+        }
+
+        assertEquals(expected.toString(), Codec.toHex(data));
+        assertArrayEquals(data, Codec.fromHex(expected.toString()));
+        assertArrayEquals(data, Codec.fromHex("0x" + expected.toString().toUpperCase()));
+        assertEquals("0203", Codec.toHex(data, 2, 2));
+    }
+
+    @Test
+    public void testFromHexRejectsInvalidInput() {
+        assertThrows(IllegalArgumentException.class, () -> Codec.fromHex("abc"));
+        assertThrows(IllegalArgumentException.class, () -> Codec.fromHex("zz"));
+        assertThrows(IllegalArgumentException.class, () -> Codec.fromHex("é0"));
+    }
+
+    @Test
+    public void testBase64IntoBufferMatchesJdk() {
+        Random random = new Random(7);
+        for (int length = 0; length < 40; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+
+            byte[] buffer = new byte[3 + Codec.base64Length(length)];
+            int written = Codec.encodeBase64(data, 0, length, buffer, 3);
+
+            assertEquals(Base64.getEncoder().encodeToString(data),
+                new String(buffer, 3, written, StandardCharsets.US_ASCII));
+            assertArrayEquals(data, Codec.fromBase64(Codec.toBase64(data)));
+        }
+    }
+
+    @Test
+    public void testHexPreview() {
+        byte[] signature = new byte[3309];
+        signature[0] = (byte) 0xab;
+
+        assertEquals("ab" + "00".repeat(15) + "...", Codec.hexPreview(signature, 16).toString());
+        assertEquals("ab00", Codec.hexPreview(new byte[] { (byte) 0xab, 0 }, 16).toString());
+        assertEquals("null", Codec.hexPreview(null, 16).toString());
+    }
+}
@@ -0,0 +1,58 @@
+package com.nt219.ksm.crypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho việc tạo cặp khóa deterministic từ seed
+ */
+public class KeySeedTest {
+
+    private static PQCKeyPair generate(PQCAlgorithm algorithm, byte[] seed) throws Exception {
+        return PQCCryptoFactory.createService(algorithm).generateKeyPair(algorithm, seed.clone());
+    }
+
+    @Test
+    public void testSameSeedGivesSameKeyPair() throws Exception {
+        byte[] seed = KeySeed.generate();
+        for (PQCAlgorithm algorithm : new PQCAlgorithm[] {
+                PQCAlgorithm.FALCON_512, PQCAlgorithm.DILITHIUM3, PQCAlgorithm.KYBER768, PQCAlgorithm.SPHINCS_PLUS_128F}) {
+            PQCKeyPair first = generate(algorithm, seed);
+            PQCKeyPair second = generate(algorithm, seed);
+            assertArrayEquals(first.getPublicKey(), second.getPublicKey(), algorithm.name());
+            assertArrayEquals(first.getPrivateKey(), second.getPrivateKey(), algorithm.name());
+            assertFalse(Arrays.equals(first.getPublicKey(), generate(algorithm, KeySeed.generate()).getPublicKey()));
+        }
+    }
+
+    @Test
+    public void testSeedIsBoundToAlgorithm() throws Exception {
+        byte[] seed = KeySeed.generate();
+        PQCKeyPair dilithium2 = generate(PQCAlgorithm.DILITHIUM2, seed);
+        PQCKeyPair dilithium3 = generate(PQCAlgorithm.DILITHIUM3, seed);
+        assertFalse(Arrays.equals(dilithium2.getPublicKey(),
+            Arrays.copyOf(dilithium3.getPublicKey(), dilithium2.getPublicKey().length)));
+    }
+
+    @Test
+    public void testExpandedFalconKeySigns() throws Exception {
+        byte[] seed = KeySeed.generate();
+        IPQCCryptoService service = PQCCryptoFactory.createService(PQCAlgorithm.FALCON_512);
+        PQCKeyPair original = service.generateKeyPair(PQCAlgorithm.FALCON_512, seed).withSeed(seed);
+        PQCKeyPair expanded = generate(PQCAlgorithm.FALCON_512, original.getSeed());
+
+        byte[] message = "transfer 100".getBytes(StandardCharsets.UTF_8);
+        PQCSignature signature = service.sign(message, expanded.getPrivateKey(), PQCAlgorithm.FALCON_512);
+        assertTrue(service.verify(message, signature, original.getPublicKey(), PQCAlgorithm.FALCON_512));
+        assertEquals(original.getKeyId(), expanded.getKeyId());
+    }
+
+    @Test
+    public void testRejectsWrongSeedLength() {
+        assertThrows(IllegalArgumentException.class, () -> generate(PQCAlgorithm.FALCON_512, new byte[16]));
+    }
+}
@@ -0,0 +1,114 @@
+package com.nt219.ksm.crypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho PrivateKeyArena
+ */
+public class PrivateKeyArenaTest {
+
+    @Test
+    public void testAllocateAndRead() {
+        PrivateKeyArena arena = new PrivateKeyArena(64 * 1024, 1024 * 1024);
+        Random random = new Random(1);
+        List<byte[]> keys = new ArrayList<>();
+        List<Long> handles = new ArrayList<>();
+        for (int length : new int[] { 1, 32, 56, 57, 64, 4000, 4032, 2305 }) {
+            byte[] key = new byte[length];
+            random.nextBytes(key);
+            keys.add(key);
+            handles.add(arena.allocate(key));
+        }
+
+        for (int i = 0; i < keys.size(); i++) {
+            assertArrayEquals(keys.get(i), arena.read(handles.get(i)));
+        }
+        assertEquals((long) keys.size(), arena.getStats().get("liveKeys"));
+    }
+
+    @Test
+    public void testReleaseZeroesSlotAndInvalidatesHandle() {
+        PrivateKeyArena arena = new PrivateKeyArena(64 * 1024, 1024 * 1024);
+        byte[] key = new byte[4000];
+        new Random(2).nextBytes(key);
+
+        long handle = arena.allocate(key);
+        assertTrue(arena.release(handle));
+        assertFalse(arena.release(handle), "double release");
+        assertThrows(PrivateKeyArena.ReleasedKeyException.class, () -> arena.read(handle));
+
+        // Slot được dùng lại cho khóa khác: handle cũ vẫn không đọc được khóa mới
+        byte[] other = new byte[3999];
+        other[0] = 7;
+        long reused = arena.allocate(other);
+        assertThrows(PrivateKeyArena.ReleasedKeyException.class, () -> arena.read(handle));
+        assertArrayEquals(other, arena.read(reused));
+        assertEquals(4096L, arena.getStats().get("usedBytes"));
+    }
+
+    @Test
+    public void testKeyPairMovedToArena() throws Exception {
+        PrivateKeyArena arena = new PrivateKeyArena(64 * 1024, 1024 * 1024);
+        byte[] privateKey = { 1, 2, 3, 4 };
+        PQCKeyPair heap = new PQCKeyPair(new byte[] { 9 }, privateKey, "Dilithium3");
+
+        PQCKeyPair offHeap = heap.toArena(arena);
+        assertTrue(offHeap.isOffHeap());
+        assertArrayEquals(new byte[4], privateKey, "heap copy is zeroed");
+        assertEquals(heap.getKeyId(), offHeap.getKeyId());
+
+        byte[][] seen = new byte[1][];
+        assertEquals(4, (int) offHeap.usePrivateKey(key -> {
+            seen[0] = key;
+            return key.length;
+        }));
+        assertArrayEquals(new byte[4], seen[0], "temporary copy is zeroed after use");
+
+        offHeap.release();
+        assertThrows(PrivateKeyArena.ReleasedKeyException.class, () -> offHeap.usePrivateKey(key -> key));
+    }
+
+    @Test
+    public void testFullArenaAndConcurrentReads() throws Exception {
+        PrivateKeyArena arena = new PrivateKeyArena(4096, 8192);
+        long first = arena.allocate(new byte[4000]);
+        arena.allocate(new byte[4000]);
+        assertThrows(IllegalStateException.class, () -> arena.allocate(new byte[4000]));
+
+        byte[] key = new byte[100];
+        new Random(3).nextBytes(key);
+        arena.release(first);
+        long handle = arena.allocate(key);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> readers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            readers.add(executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    assertArrayEquals(key, arena.read(handle));
+                }
+            }));
+        }
+        // Allocate / release đồng thời ở slot khác không làm hỏng lần đọc
+        for (int i = 0; i < 10_000; i++) {
+            arena.release(arena.allocate(new byte[50]));
+        }
+        for (Future<?> reader : readers) {
+            reader.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        arena.close();
+        assertThrows(PrivateKeyArena.ReleasedKeyException.class, () -> arena.read(handle));
+    }
+}
@@ -0,0 +1,80 @@
+package com.nt219.ksm.crypto;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Benchmark throughput verify trên một core, có và không có cache khóa đã mở rộng
+ *
+ * Chạy:
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt -Dmdep.includeScope=test
+ *   java -cp "target/test-classes:target/classes:$(cat cp.txt)" com.nt219.ksm.crypto.VerifyKeyCacheBenchmark [algorithm] [keys] [seconds]
+ *
+ * Mô phỏng verifier nhận chữ ký luân phiên từ {@code keys} ngân hàng đối tác (mặc định 50):
+ * - cache off: mỗi lần verify dựng lại khóa từ byte ({@link IPQCCryptoService#verify})
+ * - cache on: mỗi khóa mở rộng một lần ({@link IPQCCryptoService#prepareVerifier}), các lần sau dùng lại
+ */
+public class VerifyKeyCacheBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        PQCAlgorithm algorithm = args.length > 0 ? PQCAlgorithm.fromName(args[0]) : PQCAlgorithm.FALCON_512;
+        int keys = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        double seconds = args.length > 2 ? Double.parseDouble(args[2]) : 3;
+
+        IPQCCryptoService service = PQCCryptoFactory.createService(algorithm);
+        byte[][] publicKeys = new byte[keys][];
+        byte[][] messages = new byte[keys][];
+        PQCSignature[] signatures = new PQCSignature[keys];
+        PQCVerifier[] verifiers = new PQCVerifier[keys];
+        for (int i = 0; i < keys; i++) {
+            PQCKeyPair keyPair = service.generateKeyPair(algorithm);
+            publicKeys[i] = keyPair.getPublicKey();
+            messages[i] = ("FROM:bank" + i + "|TO:vietcombank|AMOUNT:1000000.00").getBytes(StandardCharsets.UTF_8);
+            signatures[i] = service.sign(messages[i], keyPair.getPrivateKey(), algorithm);
+        }
+
+        for (int i = 0; i < keys; i++) {
+            verifiers[i] = service.prepareVerifier(publicKeys[i], algorithm);
+        }
+
+        System.out.printf("=== %s verify throughput, 1 thread, %d keys ===%n", algorithm, keys);
+        System.out.printf("%-10s %14s %14s%n", "key cache", "verify/s", "us/verify");
+        double off = 0;
+        double on = 0;
+        for (int run = 0; run < 2; run++) { // run đầu là warm-up cho JIT
+            off = measure(seconds, keys, i -> service.verify(messages[i], signatures[i], publicKeys[i], algorithm));
+            on = measure(seconds, keys, i -> verifiers[i].verify(messages[i], signatures[i]));
+        }
+        // Chi phí mở rộng riêng (đo sau warm-up)
+        long expandStart = System.nanoTime();
+        int expansions = 0;
+        while (System.nanoTime() - expandStart < seconds * 1e9 / 4) {
+            for (int i = 0; i < keys; i++, expansions++) {
+                verifiers[i] = service.prepareVerifier(publicKeys[i], algorithm);
+            }
+        }
+        double expandMicros = (System.nanoTime() - expandStart) / 1000.0 / expansions;
+
+        System.out.printf("%-10s %14.0f %14.2f%n", "off", off, 1_000_000 / off);
+        System.out.printf("%-10s %14.0f %14.2f%n", "on", on, 1_000_000 / on);
+        System.out.printf("speedup %.2fx, key expansion %.2f us/key%n", on / off, expandMicros);
+    }
+
+    private interface Verification {
+        boolean verify(int keyIndex) throws Exception;
+    }
+
+    private static double measure(double seconds, int keys, Verification verification) throws Exception {
+        long deadline = System.nanoTime() + (long) (seconds * 1e9);
+        long count = 0;
+        long start = System.nanoTime();
+        while (System.nanoTime() < deadline) {
+            for (int i = 0; i < keys; i++) {
+                if (!verification.verify(i)) {
+                    throw new IllegalStateException("Signature " + i + " did not verify");
+                }
+            }
+            count += keys;
+        }
+        return count / ((System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,55 @@
+package com.nt219.ksm.crypto.impl;
+
+import com.nt219.ksm.crypto.Keccak;
+import com.nt219.ksm.crypto.PQCKeyPair;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho EcdsaSecp256k1Service (nửa classical của chữ ký hybrid)
+ */
+public class EcdsaSecp256k1ServiceTest {
+
+    private static final BigInteger HALF_N = new BigInteger(
+        "7FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF5D576E7357A4501DDFE92F46681B20A0", 16);
+
+    @Test
+    public void testKeccak256MatchesEthereum() {
+        assertEquals("c5d2460186f7233c927e7db2dcc703c0e500b653ca82273b7bfad8045d85a470",
+            new BigInteger(1, Keccak.keccak256(new byte[0])).toString(16));
+    }
+
+    @Test
+    public void testSignAndVerify() {
+        EcdsaSecp256k1Service service = new EcdsaSecp256k1Service();
+        PQCKeyPair keyPair = service.generateKeyPair();
+        byte[] digest = Keccak.keccak256("FROM:vietcombank|TO:bidv".getBytes(StandardCharsets.UTF_8));
+
+        byte[] signature = service.sign(digest, keyPair.getPrivateKey());
+
+        assertEquals(65, keyPair.getPublicKey().length);
+        assertEquals(64, signature.length);
+        assertTrue(new BigInteger(1, Arrays.copyOfRange(signature, 32, 64)).compareTo(HALF_N) <= 0, "low-s");
+        assertArrayEquals(signature, service.sign(digest, keyPair.getPrivateKey()), "RFC 6979 deterministic");
+        assertTrue(service.verify(digest, signature, keyPair.getPublicKey()));
+    }
+
+    @Test
+    public void testRejectsWrongDigestAndKey() {
+        EcdsaSecp256k1Service service = new EcdsaSecp256k1Service();
+        PQCKeyPair keyPair = service.generateKeyPair();
+        byte[] digest = Keccak.keccak256("message".getBytes(StandardCharsets.UTF_8));
+        byte[] signature = service.sign(digest, keyPair.getPrivateKey());
+
+        byte[] otherDigest = digest.clone();
+        otherDigest[0] ^= 1;
+        assertFalse(service.verify(otherDigest, signature, keyPair.getPublicKey()));
+        assertFalse(service.verify(digest, signature, service.generateKeyPair().getPublicKey()));
+        assertFalse(service.verify(digest, Arrays.copyOf(signature, 63), keyPair.getPublicKey()));
+    }
+}
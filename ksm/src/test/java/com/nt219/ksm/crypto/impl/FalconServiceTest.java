@@ -0,0 +1,66 @@
+package com.nt219.ksm.crypto.impl;
+
+import com.nt219.ksm.crypto.PQCAlgorithm;
+import com.nt219.ksm.crypto.PQCCryptoFactory;
+import com.nt219.ksm.crypto.PQCKeyPair;
+import com.nt219.ksm.crypto.PQCSignature;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho FalconService
+ */
+public class FalconServiceTest {
+
+    private static final byte[] MESSAGE = "FROM:vietcombank|TO:vietinbank|AMOUNT:1000000.00".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testSignAndVerify() throws Exception {
+        FalconService service = new FalconService();
+        for (PQCAlgorithm algorithm : new PQCAlgorithm[] { PQCAlgorithm.FALCON_512, PQCAlgorithm.FALCON_1024 }) {
+            PQCKeyPair keyPair = service.generateKeyPair(algorithm);
+            PQCSignature signature = service.sign(MESSAGE, keyPair.getPrivateKey(), algorithm);
+
+            assertTrue(service.verify(MESSAGE, signature, keyPair.getPublicKey(), algorithm));
+            assertEquals(algorithm.getName(), keyPair.getAlgorithm());
+        }
+    }
+
+    @Test
+    public void testFalcon512SignatureIsMuchSmallerThanDilithium3() throws Exception {
+        FalconService service = new FalconService();
+        PQCKeyPair keyPair = service.generateKeyPair(PQCAlgorithm.FALCON_512);
+        PQCSignature signature = service.sign(MESSAGE, keyPair.getPrivateKey(), PQCAlgorithm.FALCON_512);
+
+        assertEquals(896, keyPair.getPublicKey().length);
+        assertTrue(signature.getSignature().length <= 690, "Falcon-512 signature: " + signature.getSignature().length);
+        assertTrue(signature.getSignature().length * 4 < 3309);
+    }
+
+    @Test
+    public void testRejectsTamperedMessageAndWrongKey() throws Exception {
+        FalconService service = new FalconService();
+        PQCKeyPair keyPair = service.generateKeyPair(PQCAlgorithm.FALCON_512);
+        PQCSignature signature = service.sign(MESSAGE, keyPair.getPrivateKey(), PQCAlgorithm.FALCON_512);
+
+        byte[] otherMessage = MESSAGE.clone();
+        otherMessage[0] ^= 1;
+        assertFalse(service.verify(otherMessage, signature, keyPair.getPublicKey(), PQCAlgorithm.FALCON_512));
+
+        PQCKeyPair otherKey = service.generateKeyPair(PQCAlgorithm.FALCON_512);
+        assertFalse(service.verify(MESSAGE, signature, otherKey.getPublicKey(), PQCAlgorithm.FALCON_512));
+
+        byte[] truncated = java.util.Arrays.copyOf(signature.getSignature(), 10);
+        assertFalse(service.verify(MESSAGE, new PQCSignature(truncated, signature.getAlgorithm()),
+            keyPair.getPublicKey(), PQCAlgorithm.FALCON_512));
+    }
+
+    @Test
+    public void testFactoryReturnsFalconService() {
+        assertTrue(PQCCryptoFactory.createService(PQCAlgorithm.FALCON_512) instanceof FalconService);
+        assertTrue(PQCCryptoFactory.isSignatureAlgorithm(PQCAlgorithm.FALCON_1024));
+    }
+}
@@ -0,0 +1,170 @@
+package com.nt219.ksm.crypto.impl;
+
+import com.nt219.ksm.crypto.PQCAlgorithm;
+import com.nt219.ksm.crypto.PQCKeyPair;
+import com.nt219.ksm.crypto.PQCSignature;
+import com.nt219.ksm.crypto.PQCVerifier;
+import org.bouncycastle.pqc.crypto.falcon.FalconParameters;
+import org.bouncycastle.pqc.crypto.falcon.FalconPublicKeyParameters;
+import org.bouncycastle.pqc.crypto.falcon.FalconSigner;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho FalconVerifier (verify Falcon với public key đã mở rộng sẵn)
+ */
+public class FalconVerifierTest {
+
+    private static final byte[] MESSAGE = "FROM:vietcombank|TO:bidv|AMOUNT:5000000000.00".getBytes(StandardCharsets.UTF_8);
+    private static final FalconService FALCON = new FalconService();
+
+    private static boolean bouncyCastleVerify(byte[] message, byte[] signature, byte[] publicKey, FalconParameters parameters) {
+        FalconSigner verifier = new FalconSigner();
+        verifier.init(false, new FalconPublicKeyParameters(parameters, publicKey));
+        try {
+            return verifier.verifySignature(message, signature);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    @Test
+    public void testNttMultiplicationMatchesSchoolbook() {
+        Random random = new Random(42);
+        for (int logN : new int[] { 2, 5, 9, 10 }) {
+            int n = 1 << logN;
+            int[] a = random.ints(n, 0, FalconVerifier.Q).toArray();
+            int[] b = random.ints(n, 0, FalconVerifier.Q).toArray();
+
+            // a·b mod (x^n + 1, q)
+            long[] expected = new long[n];
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    long product = (long) a[i] * b[j] % FalconVerifier.Q;
+                    int k = i + j;
+                    expected[k % n] += k < n ? product : FalconVerifier.Q - product;
+                }
+            }
+
+            FalconVerifier verifier = new FalconVerifier(logN, new byte[0]);
+            verifier.ntt(a);
+            verifier.ntt(b);
+            int[] c = new int[n];
+            for (int i = 0; i < n; i++) {
+                c[i] = a[i] * b[i] % FalconVerifier.Q;
+            }
+            verifier.inverseNtt(c);
+            for (int i = 0; i < n; i++) {
+                assertEquals(expected[i] % FalconVerifier.Q, c[i], "n=" + n + " i=" + i);
+            }
+        }
+        // psi bậc đúng 2048: psi^1024 = -1
+        int psi = FalconVerifier.pow(11, (FalconVerifier.Q - 1) / 2048);
+        assertEquals(FalconVerifier.Q - 1, FalconVerifier.pow(psi, 1024));
+    }
+
+    @Test
+    public void testPreparedVerifierAcceptsBouncyCastleSignatures() throws Exception {
+        for (PQCAlgorithm algorithm : new PQCAlgorithm[] { PQCAlgorithm.FALCON_512, PQCAlgorithm.FALCON_1024 }) {
+            PQCKeyPair keyPair = FALCON.generateKeyPair(algorithm);
+            PQCVerifier verifier = FALCON.prepareVerifier(keyPair.getPublicKey(), algorithm);
+            for (int i = 0; i < 20; i++) {
+                byte[] message = (i + ":" + new String(MESSAGE, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+                PQCSignature signature = FALCON.sign(message, keyPair.getPrivateKey(), algorithm);
+                assertTrue(verifier.verify(message, signature), algorithm + " #" + i);
+                assertFalse(verifier.verify(MESSAGE, signature), algorithm + " #" + i);
+            }
+        }
+    }
+
+    @Test
+    public void testAgreesWithBouncyCastleOnCorruptedSignatures() throws Exception {
+        PQCKeyPair keyPair = FALCON.generateKeyPair(PQCAlgorithm.FALCON_512);
+        byte[] signature = FALCON.sign(MESSAGE, keyPair.getPrivateKey(), PQCAlgorithm.FALCON_512).getSignature();
+        PQCVerifier verifier = FALCON.prepareVerifier(keyPair.getPublicKey(), PQCAlgorithm.FALCON_512);
+
+        Random random = new Random(7);
+        for (int i = 0; i < 2000; i++) {
+            byte[] corrupted = signature.clone();
+            switch (i % 4) {
+                case 0 -> corrupted[random.nextInt(corrupted.length)] ^= (byte) (1 << random.nextInt(8));
+                case 1 -> corrupted = Arrays.copyOf(corrupted, random.nextInt(corrupted.length + 8));
+                case 2 -> corrupted[41 + random.nextInt(corrupted.length - 41)] = (byte) random.nextInt(256);
+                default -> corrupted[corrupted.length - 1] ^= (byte) (1 << random.nextInt(8));
+            }
+            boolean expected = bouncyCastleVerify(MESSAGE, corrupted, keyPair.getPublicKey(), FalconParameters.falcon_512);
+            assertEquals(expected, verifier.verify(MESSAGE, new PQCSignature(corrupted, "Falcon-512")),
+                "mutation " + i + " " + Arrays.toString(corrupted));
+        }
+    }
+
+    @Test
+    public void testAgreesWithBouncyCastleOnEdgeCaseSignatures() throws Exception {
+        for (PQCAlgorithm algorithm : new PQCAlgorithm[] { PQCAlgorithm.FALCON_512, PQCAlgorithm.FALCON_1024 }) {
+            FalconParameters parameters = algorithm == PQCAlgorithm.FALCON_512
+                ? FalconParameters.falcon_512 : FalconParameters.falcon_1024;
+            PQCKeyPair keyPair = FALCON.generateKeyPair(algorithm);
+            byte[] signature = FALCON.sign(MESSAGE, keyPair.getPrivateKey(), algorithm).getSignature();
+            PQCVerifier verifier = FALCON.prepareVerifier(keyPair.getPublicKey(), algorithm);
+
+            List<byte[]> cases = new ArrayList<>();
+            cases.add(new byte[0]);
+            cases.add(new byte[] { signature[0] });
+            cases.add(Arrays.copyOf(signature, 41));              // header + nonce, không có s2
+            cases.add(Arrays.copyOf(signature, 42));
+            cases.add(Arrays.copyOf(signature, signature.length + 1)); // thừa một byte 0
+            for (int header : new int[] { 0x00, 0x29, 0x30, 0x39, 0x3A, 0x50, 0xB9 }) {
+                byte[] otherHeader = signature.clone();
+                otherHeader[0] = (byte) header;
+                cases.add(otherHeader);
+            }
+            byte[] zeros = new byte[signature.length];
+            zeros[0] = signature[0];
+            cases.add(zeros);
+            byte[] ones = new byte[signature.length];
+            Arrays.fill(ones, (byte) 0xFF);
+            ones[0] = signature[0];
+            cases.add(ones);
+            byte[] otherNonce = signature.clone();
+            otherNonce[1] ^= 1;
+            cases.add(otherNonce);
+            // Bit đệm cuối của s2 nén khác 0
+            byte[] padding = signature.clone();
+            padding[padding.length - 1] |= 1;
+            cases.add(padding);
+            // Chữ ký hợp lệ của cùng message dưới khóa khác
+            cases.add(FALCON.sign(MESSAGE, FALCON.generateKeyPair(algorithm).getPrivateKey(), algorithm).getSignature());
+
+            for (int i = 0; i < cases.size(); i++) {
+                byte[] candidate = cases.get(i);
+                PQCSignature pqcSignature = new PQCSignature(candidate, algorithm.getName());
+                boolean expected = bouncyCastleVerify(MESSAGE, candidate, keyPair.getPublicKey(), parameters);
+                assertEquals(expected, FALCON.verify(MESSAGE, pqcSignature, keyPair.getPublicKey(), algorithm),
+                    algorithm + " case " + i);
+                assertEquals(expected, verifier.verify(MESSAGE, pqcSignature), algorithm + " case " + i);
+            }
+            assertTrue(verifier.verify(MESSAGE, new PQCSignature(signature, algorithm.getName())));
+        }
+    }
+
+    @Test
+    public void testMalformedPublicKeyNeverVerifies() throws Exception {
+        PQCKeyPair keyPair = FALCON.generateKeyPair(PQCAlgorithm.FALCON_512);
+        PQCSignature signature = FALCON.sign(MESSAGE, keyPair.getPrivateKey(), PQCAlgorithm.FALCON_512);
+
+        byte[] outOfRange = keyPair.getPublicKey().clone();
+        outOfRange[0] = (byte) 0xFF; // hệ số đầu tiên >= q
+        outOfRange[1] = (byte) 0xFF;
+        assertFalse(FALCON.prepareVerifier(outOfRange, PQCAlgorithm.FALCON_512).verify(MESSAGE, signature));
+        assertFalse(FALCON.prepareVerifier(Arrays.copyOf(keyPair.getPublicKey(), 895), PQCAlgorithm.FALCON_512)
+            .verify(MESSAGE, signature));
+        assertFalse(FALCON.verify(MESSAGE, signature, keyPair.getPublicKey(), PQCAlgorithm.FALCON_1024));
+    }
+}
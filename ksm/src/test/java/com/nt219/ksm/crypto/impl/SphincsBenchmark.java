@@ -0,0 +1,62 @@
+package com.nt219.ksm.crypto.impl;
+
+import com.nt219.ksm.crypto.PQCAlgorithm;
+import com.nt219.ksm.crypto.PQCKeyPair;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Benchmark độ trễ ký một chữ ký SPHINCS+ theo số core của ForkJoinPool
+ *
+ * Chạy:
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt -Dmdep.includeScope=test
+ *   java -cp "target/test-classes:target/classes:$(cat cp.txt)" com.nt219.ksm.crypto.impl.SphincsBenchmark [algorithm] [iterations]
+ *
+ * In ra median / p90 cho parallelism = 1, 2, 4, ... đến số core của máy.
+ */
+public class SphincsBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        PQCAlgorithm algorithm = args.length > 0 ? PQCAlgorithm.fromName(args[0]) : PQCAlgorithm.SPHINCS_PLUS_128F;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int cores = Runtime.getRuntime().availableProcessors();
+        byte[] message = "FROM:vietcombank|TO:bidv|AMOUNT:5000000000.00".getBytes(StandardCharsets.UTF_8);
+
+        PQCKeyPair keyPair = new SphincsPlusService().generateKeyPair(algorithm);
+        System.out.printf("=== %s sign latency (%d iterations, %d cores) ===%n", algorithm, iterations, cores);
+        System.out.printf("%-12s %12s %12s %10s%n", "parallelism", "median ms", "p90 ms", "speedup");
+
+        double baseline = 0;
+        for (int parallelism = 1; parallelism <= cores; parallelism = nextParallelism(parallelism, cores)) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            SphincsPlusService service = new SphincsPlusService(pool);
+
+            // Warm-up cho JIT
+            for (int i = 0; i < Math.max(3, iterations / 4); i++) {
+                service.sign(message, keyPair.getPrivateKey(), algorithm);
+            }
+
+            double[] millis = new double[iterations];
+            for (int i = 0; i < iterations; i++) {
+                long start = System.nanoTime();
+                service.sign(message, keyPair.getPrivateKey(), algorithm);
+                millis[i] = (System.nanoTime() - start) / 1_000_000.0;
+            }
+            pool.shutdown();
+
+            Arrays.sort(millis);
+            double median = millis[iterations / 2];
+            double p90 = millis[(int) Math.min(iterations - 1, Math.ceil(iterations * 0.9) - 1)];
+            if (parallelism == 1) {
+                baseline = median;
+            }
+            System.out.printf("%-12d %12.2f %12.2f %9.2fx%n", parallelism, median, p90, baseline / median);
+        }
+    }
+
+    private static int nextParallelism(int current, int cores) {
+        return current < cores && current * 2 > cores ? cores : current * 2;
+    }
+}
@@ -0,0 +1,98 @@
+package com.nt219.ksm.crypto.impl;
+
+import com.nt219.ksm.crypto.PQCAlgorithm;
+import com.nt219.ksm.crypto.PQCKeyPair;
+import com.nt219.ksm.crypto.PQCSignature;
+import org.bouncycastle.pqc.crypto.sphincsplus.SPHINCSPlusParameters;
+import org.bouncycastle.pqc.crypto.sphincsplus.SPHINCSPlusPrivateKeyParameters;
+import org.bouncycastle.pqc.crypto.sphincsplus.SPHINCSPlusPublicKeyParameters;
+import org.bouncycastle.pqc.crypto.sphincsplus.SPHINCSPlusSigner;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho SphincsPlusService
+ */
+public class SphincsPlusServiceTest {
+
+    private static final byte[] MESSAGE = "FROM:vietcombank|TO:bidv|AMOUNT:5000000000.00".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testSignAndVerify128f() throws Exception {
+        SphincsPlusService service = new SphincsPlusService();
+        PQCKeyPair keyPair = service.generateKeyPair(PQCAlgorithm.SPHINCS_PLUS_128F);
+        PQCSignature signature = service.sign(MESSAGE, keyPair.getPrivateKey(), PQCAlgorithm.SPHINCS_PLUS_128F);
+
+        assertEquals(32, keyPair.getPublicKey().length);
+        assertEquals(64, keyPair.getPrivateKey().length);
+        assertEquals(17088, signature.getSignature().length);
+        assertTrue(service.verify(MESSAGE, signature, keyPair.getPublicKey(), PQCAlgorithm.SPHINCS_PLUS_128F));
+    }
+
+    @Test
+    public void testRejectsTamperedMessageAndSignature() throws Exception {
+        SphincsPlusService service = new SphincsPlusService();
+        PQCKeyPair keyPair = service.generateKeyPair(PQCAlgorithm.SPHINCS_PLUS_128F);
+        PQCSignature signature = service.sign(MESSAGE, keyPair.getPrivateKey(), PQCAlgorithm.SPHINCS_PLUS_128F);
+
+        byte[] otherMessage = MESSAGE.clone();
+        otherMessage[otherMessage.length - 1] ^= 1;
+        assertFalse(service.verify(otherMessage, signature, keyPair.getPublicKey(), PQCAlgorithm.SPHINCS_PLUS_128F));
+
+        byte[] tampered = signature.getSignature().clone();
+        tampered[tampered.length / 2] ^= 1;
+        assertFalse(service.verify(MESSAGE, new PQCSignature(tampered, signature.getAlgorithm()),
+            keyPair.getPublicKey(), PQCAlgorithm.SPHINCS_PLUS_128F));
+
+        PQCKeyPair otherKey = service.generateKeyPair(PQCAlgorithm.SPHINCS_PLUS_128F);
+        assertFalse(service.verify(MESSAGE, signature, otherKey.getPublicKey(), PQCAlgorithm.SPHINCS_PLUS_128F));
+    }
+
+    @Test
+    public void testParallelSigningMatchesSequential() throws Exception {
+        SphincsPlusService sequential = new SphincsPlusService(new ForkJoinPool(1));
+        SphincsPlusService parallel = new SphincsPlusService(new ForkJoinPool(4));
+        PQCKeyPair keyPair = sequential.generateKeyPair(PQCAlgorithm.SPHINCS_PLUS_128F);
+
+        byte[] expected = sequential.sign(MESSAGE, keyPair.getPrivateKey(), PQCAlgorithm.SPHINCS_PLUS_128F).getSignature();
+        byte[] actual = parallel.sign(MESSAGE, keyPair.getPrivateKey(), PQCAlgorithm.SPHINCS_PLUS_128F).getSignature();
+
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void testSignatureSizesOfLargerParameterSets() throws Exception {
+        SphincsPlusService service = new SphincsPlusService();
+        for (PQCAlgorithm algorithm : new PQCAlgorithm[] { PQCAlgorithm.SPHINCS_PLUS_192F, PQCAlgorithm.SPHINCS_PLUS_256F }) {
+            PQCKeyPair keyPair = service.generateKeyPair(algorithm);
+            PQCSignature signature = service.sign(MESSAGE, keyPair.getPrivateKey(), algorithm);
+
+            assertEquals(algorithm == PQCAlgorithm.SPHINCS_PLUS_192F ? 35664 : 49856, signature.getSignature().length);
+            assertTrue(service.verify(MESSAGE, signature, keyPair.getPublicKey(), algorithm));
+        }
+    }
+
+    @Test
+    public void testMatchesBouncyCastleSha2Simple() throws Exception {
+        SphincsPlusService service = new SphincsPlusService();
+        PQCAlgorithm[] algorithms = { PQCAlgorithm.SPHINCS_PLUS_128F, PQCAlgorithm.SPHINCS_PLUS_192F, PQCAlgorithm.SPHINCS_PLUS_256F };
+        SPHINCSPlusParameters[] parameters = { SPHINCSPlusParameters.sha2_128f, SPHINCSPlusParameters.sha2_192f, SPHINCSPlusParameters.sha2_256f };
+        for (int i = 0; i < algorithms.length; i++) {
+            PQCKeyPair keyPair = service.generateKeyPair(algorithms[i]);
+            byte[] signature = service.sign(MESSAGE, keyPair.getPrivateKey(), algorithms[i]).getSignature();
+
+            // Không có SecureRandom, BouncyCastle cũng ký deterministic với optRand = PK.seed
+            SPHINCSPlusSigner signer = new SPHINCSPlusSigner();
+            signer.init(true, new SPHINCSPlusPrivateKeyParameters(parameters[i], keyPair.getPrivateKey()));
+            assertArrayEquals(signer.generateSignature(MESSAGE), signature, algorithms[i].getName());
+
+            SPHINCSPlusSigner verifier = new SPHINCSPlusSigner();
+            verifier.init(false, new SPHINCSPlusPublicKeyParameters(parameters[i], keyPair.getPublicKey()));
+            assertTrue(verifier.verifySignature(MESSAGE, signature), algorithms[i].getName());
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.nt219.ksm.jfr;
+
+import com.nt219.ksm.process.IdempotencyCache;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho JFR event của KSM và JfrSummary
+ */
+public class JfrEventsTest {
+
+    private static List<RecordedEvent> record(Path file, Runnable body) throws Exception {
+        try (Recording recording = new Recording()) {
+            recording.enable("com.nt219.ksm.Sign");
+            recording.enable("com.nt219.ksm.KeyLoad");
+            recording.enable("com.nt219.ksm.CacheEviction");
+            recording.start();
+            body.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file);
+    }
+
+    @Test
+    public void testEventsCarryFieldsAndSummaryReportsThem(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("ksm.jfr");
+        List<RecordedEvent> events = record(file, () -> {
+            for (int i = 0; i < 10; i++) {
+                SignEvent sign = new SignEvent();
+                sign.begin();
+                sign.complete("BANK01-0001", "Falcon-512", 32, 666);
+            }
+            new KeyLoadEvent().complete("BANK01-0001", "Falcon-512", true, true);
+            new KeyLoadEvent().complete("BANK01-0002", "Falcon-512", false, true);
+            // Cache nhỏ hơn số request: entry cũ nhất bị evict vì capacity
+            IdempotencyCache<Integer> cache = new IdempotencyCache<>(60_000, 1);
+            try {
+                cache.getOrCompute("req-1", "a", () -> 1);
+                cache.getOrCompute("req-2", "b", () -> 2);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        RecordedEvent sign = events.stream().filter(e -> e.getEventType().getName().equals("com.nt219.ksm.Sign"))
+            .findFirst().orElseThrow();
+        assertEquals("Falcon-512", sign.getString("algorithm"));
+        assertEquals(32, sign.getLong("payloadSize"));
+        assertEquals(666, sign.getLong("resultSize"));
+        assertEquals("main", sign.getString("threadType"));
+
+        String summary = JfrSummary.summarize(file);
+        assertTrue(summary.matches("(?s).*Sign\\s+Falcon-512\\s+main\\s+10 .*"), summary);
+        assertTrue(summary.contains("key load cache hit ratio: 50.00% (1 / 2)"), summary);
+        assertTrue(summary.matches("(?s).*idempotency \\(capacity\\)\\s+1\n.*"), summary);
+    }
+
+    @Test
+    public void testNoEventWithoutRecording() {
+        SignEvent sign = new SignEvent();
+        sign.begin();
+        assertFalse(sign.shouldCommit());
+        sign.complete("BANK01-0001", "Falcon-512", 32, 666);
+        assertNull(sign.algorithm); // không gán trường khi không ghi
+    }
+
+    @Test
+    public void testThreadTypeFromThreadName() {
+        assertEquals("request", ThreadType.of("http-nio-8080-exec-12"));
+        assertEquals("ksm-hybrid", ThreadType.of("ksm-hybrid-3"));
+        assertEquals("ksm-keypool-refill", ThreadType.of("ksm-keypool-refill"));
+        assertEquals("other", ThreadType.of("ForkJoinPool.commonPool-worker-1"));
+    }
+
+    @Test
+    public void testPercentileNearestRank() {
+        long[] sorted = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+        assertEquals(5, JfrSummary.percentile(sorted, 50));
+        assertEquals(9, JfrSummary.percentile(sorted, 90));
+        assertEquals(10, JfrSummary.percentile(sorted, 99));
+    }
+}
@@ -0,0 +1,186 @@
+package com.nt219.ksm.process;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho BulkSignStream
+ */
+public class BulkSignStreamTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static Map<String, Object> echo(Map<String, String> request) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("signature", "sig:" + request.get("message"));
+        return result;
+    }
+
+    private List<Map<?, ?>> parse(ByteArrayOutputStream output) throws Exception {
+        List<Map<?, ?>> lines = new ArrayList<>();
+        for (String line : output.toString(StandardCharsets.UTF_8).split("\n")) {
+            lines.add(objectMapper.readValue(line, Map.class));
+        }
+        return lines;
+    }
+
+    @Test
+    public void testEachLineGetsResultAndSummaryCountsThem() throws Exception {
+        String input = "{\"id\":\"tx-1\",\"entityId\":\"BANK01\",\"message\":\"a\"}\r\n"
+            + "\n"
+            + "not json\n"
+            + "{\"entityId\":\"BANK01\",\"message\":\"" + "x".repeat(200) + "\"}\n"
+            + "{\"entityId\":\"BANK02\",\"message\":\"b\",\"hybrid\":true}"; // dòng cuối không có \n
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        long lines = new BulkSignStream(objectMapper, executor, 8, 128, BulkSignStreamTest::echo)
+            .run(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), output);
+        executor.shutdown();
+
+        assertEquals(4, lines);
+        List<Map<?, ?>> results = parse(output);
+        assertEquals(5, results.size());
+        Map<Object, Map<?, ?>> byLine = new HashMap<>();
+        results.subList(0, 4).forEach(result -> byLine.put(((Number) result.get("line")).longValue(), result));
+
+        assertEquals("tx-1", byLine.get(1L).get("id"));
+        assertEquals("sig:a", byLine.get(1L).get("signature"));
+        assertEquals(false, byLine.get(2L).get("success"));
+        assertTrue(((String) byLine.get(2L).get("error")).startsWith("Invalid JSON"));
+        assertEquals("Line exceeds 128 bytes", byLine.get(3L).get("error"));
+        assertEquals("sig:b", byLine.get(4L).get("signature"));
+
+        Map<?, ?> summary = results.get(4);
+        assertEquals(true, summary.get("summary"));
+        assertEquals(2, summary.get("succeeded"));
+        assertEquals(2, summary.get("failed"));
+    }
+
+    @Test
+    public void testReaderStopsWhenWindowIsFull() throws Exception {
+        int window = 4;
+        int total = 1000;
+        AtomicInteger produced = new AtomicInteger();
+        // Mỗi lần read trả về đúng một dòng: số dòng đã đọc khỏi "socket" đo được chính xác
+        InputStream input = new InputStream() {
+            private byte[] current = new byte[0];
+            private int position;
+
+            @Override
+            public int read() {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0];
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) {
+                if (position == current.length) {
+                    if (produced.get() == total) {
+                        return -1;
+                    }
+                    current = ("{\"entityId\":\"BANK01\",\"message\":\"" + produced.incrementAndGet() + "\"}\n")
+                        .getBytes(StandardCharsets.UTF_8);
+                    position = 0;
+                }
+                int n = Math.min(length, current.length - position);
+                System.arraycopy(current, position, buffer, offset, n);
+                position += n;
+                return n;
+            }
+        };
+
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger signing = new AtomicInteger();
+        AtomicInteger maxSigning = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BulkSignStream stream = new BulkSignStream(objectMapper, executor, window, 1024, request -> {
+            maxSigning.accumulateAndGet(signing.incrementAndGet(), Math::max);
+            release.await();
+            signing.decrementAndGet();
+            return echo(request);
+        });
+        Future<Long> lines = reader.submit(() -> stream.run(input, output));
+
+        Thread.sleep(300);
+        assertEquals(window, signing.get());
+        // window dòng đang ký + dòng thread đọc đang giữ chờ permit
+        assertTrue(produced.get() <= window + 1, "read " + produced.get() + " lines ahead");
+
+        release.countDown();
+        assertEquals(total, lines.get(10, TimeUnit.SECONDS));
+        assertTrue(maxSigning.get() <= window);
+        assertEquals(total + 1, parse(output).size());
+        executor.shutdown();
+        reader.shutdown();
+    }
+
+    @Test
+    public void testLineWaitingForAdmissionDoesNotHoldSharedWorker() throws Exception {
+        // Hai worker dùng chung; tenant "noisy" chỉ có một permit và dòng đầu của nó đang ký rất lâu
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        ExecutorService readers = Executors.newFixedThreadPool(2);
+        Semaphore noisyPermits = new Semaphore(1);
+        BulkSignStream.LineAdmission admission = request -> {
+            if (!request.get("entityId").startsWith("noisy")) {
+                return null;
+            }
+            noisyPermits.acquire();
+            return noisyPermits::release;
+        };
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BulkSignStream.LineSigner signer = request -> {
+            if (request.get("entityId").startsWith("noisy")) {
+                started.countDown();
+                release.await();
+            }
+            return echo(request);
+        };
+
+        StringBuilder noisyInput = new StringBuilder();
+        for (int i = 0; i < 3; i++) {
+            noisyInput.append("{\"entityId\":\"noisy\",\"message\":\"").append(i).append("\"}\n");
+        }
+        ByteArrayOutputStream noisyOutput = new ByteArrayOutputStream();
+        Future<Long> noisy = readers.submit(() -> new BulkSignStream(objectMapper, executor, 8, 1024, admission, signer)
+            .run(new ByteArrayInputStream(noisyInput.toString().getBytes(StandardCharsets.UTF_8)), noisyOutput));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Dòng thứ hai của noisy chờ permit trên thread đọc, nên worker còn lại vẫn ký cho luồng khác
+        ByteArrayOutputStream quietOutput = new ByteArrayOutputStream();
+        Future<Long> quiet = readers.submit(() -> new BulkSignStream(objectMapper, executor, 8, 1024, admission, signer)
+            .run(new ByteArrayInputStream("{\"entityId\":\"quiet\",\"message\":\"q\"}\n"
+                .getBytes(StandardCharsets.UTF_8)), quietOutput));
+        assertEquals(1, quiet.get(5, TimeUnit.SECONDS));
+        assertEquals("sig:q", parse(quietOutput).get(0).get("signature"));
+        assertFalse(noisy.isDone());
+
+        release.countDown();
+        assertEquals(3, noisy.get(10, TimeUnit.SECONDS));
+        assertEquals(3, parse(noisyOutput).get(3).get("succeeded"));
+        assertEquals(1, noisyPermits.availablePermits());
+        executor.shutdown();
+        readers.shutdown();
+    }
+}
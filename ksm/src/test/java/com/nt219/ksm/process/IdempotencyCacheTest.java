@@ -0,0 +1,105 @@
+package com.nt219.ksm.process;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho IdempotencyCache
+ */
+public class IdempotencyCacheTest {
+    
+    @Test
+    public void testDuplicateReturnsOriginalResult() throws Exception {
+        IdempotencyCache<Object> cache = new IdempotencyCache<>(60_000, 100);
+        Object first = cache.getOrCompute("req-1", "payload", Object::new).getValue();
+        IdempotencyCache.Outcome<Object> second = cache.getOrCompute("req-1", "payload", Object::new);
+        
+        assertSame(first, second.getValue());
+        assertTrue(second.isDuplicate());
+    }
+    
+    @Test
+    public void testConcurrentDuplicatesCoalesce() throws Exception {
+        IdempotencyCache<Integer> cache = new IdempotencyCache<>(60_000, 100);
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(pool.submit(() -> cache.getOrCompute("req-1", "payload", () -> {
+                release.await();
+                return computations.incrementAndGet();
+            }).getValue()));
+        }
+        Thread.sleep(100);
+        release.countDown();
+        
+        for (Future<Integer> result : results) {
+            assertEquals(1, result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, computations.get());
+        pool.shutdown();
+    }
+    
+    @Test
+    public void testDifferentPayloadIsRejected() throws Exception {
+        IdempotencyCache<String> cache = new IdempotencyCache<>(60_000, 100);
+        cache.getOrCompute("req-1", "amount=5", () -> "tx");
+        assertThrows(IllegalArgumentException.class, () -> cache.getOrCompute("req-1", "amount=6", () -> "tx2"));
+    }
+    
+    @Test
+    public void testFailuresAreNotCached() throws Exception {
+        IdempotencyCache<String> cache = new IdempotencyCache<>(60_000, 100);
+        assertThrows(IllegalStateException.class, () -> cache.getOrCompute("req-1", "p", () -> {
+            throw new IllegalStateException("boom");
+        }));
+        assertEquals("ok", cache.getOrCompute("req-1", "p", () -> "ok").getValue());
+    }
+    
+    @Test
+    public void testErrorsAreNotCachedAndReleaseWaiters() throws Exception {
+        IdempotencyCache<String> cache = new IdempotencyCache<>(60_000, 100);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch fail = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        Future<?> first = pool.submit(() -> cache.getOrCompute("req-1", "p", () -> {
+            started.countDown();
+            fail.await();
+            throw new AssertionError("provider self-test failed");
+        }));
+        started.await();
+        // Request trùng đang chờ computation đầu tiên
+        Future<String> retry = pool.submit(() -> cache.getOrCompute("req-1", "p", () -> "ok").getValue());
+        Thread.sleep(50);
+        fail.countDown();
+        
+        ExecutionException error = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(AssertionError.class, error.getCause());
+        assertEquals("ok", retry.get(5, TimeUnit.SECONDS));
+        assertEquals("ok", cache.getOrCompute("req-1", "p", () -> "again").getValue());
+        pool.shutdown();
+    }
+    
+    @Test
+    public void testBoundedSize() throws Exception {
+        IdempotencyCache<Integer> cache = new IdempotencyCache<>(60_000, 10);
+        for (int i = 0; i < 100; i++) {
+            final int value = i;
+            cache.getOrCompute("req-" + i, "p", () -> value);
+        }
+        assertTrue(cache.size() <= 10);
+    }
+}
@@ -0,0 +1,100 @@
+package com.nt219.ksm.process;
+
+import com.nt219.ksm.crypto.PQCAlgorithm;
+import com.nt219.ksm.crypto.PQCKeyPair;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho KeyPairPool (refill theo low / high watermark)
+ */
+public class KeyPairPoolTest {
+
+    private static final PQCAlgorithm POOLED = PQCAlgorithm.DILITHIUM2;
+
+    private KeyPairPool pool;
+
+    @AfterEach
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not reached in time");
+            Thread.sleep(5);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private long stat(String name) {
+        Map<String, Object> pools = (Map<String, Object>) pool.getStats().get("pools");
+        return ((Number) ((Map<String, Object>) pools.get(POOLED.name())).get(name)).longValue();
+    }
+
+    @Test
+    public void testFillsToHighWatermarkAndRefillsOnlyAtLowWatermark() throws Exception {
+        // Check định kỳ thưa: refill chỉ xảy ra khi take() kéo depth xuống low watermark
+        pool = new KeyPairPool(true, POOLED.name(), 3, 8, 60_000);
+        await(() -> stat("refilled") == 8); // cập nhật sau khi refill xong
+        assertEquals(8, pool.depth(POOLED));
+
+        Set<String> keyIds = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            keyIds.add(pool.take(POOLED).getKeyId());
+        }
+        assertEquals(4, pool.depth(POOLED), "still above low watermark: no refill");
+        Thread.sleep(100);
+        assertEquals(4, pool.depth(POOLED));
+        assertEquals(8, stat("refilled"));
+
+        keyIds.add(pool.take(POOLED).getKeyId()); // depth 3 = low watermark
+        await(() -> stat("refilled") == 13);
+        assertEquals(8, pool.depth(POOLED));
+        assertEquals(5, stat("hits"));
+        assertEquals(0, stat("misses"));
+        assertEquals(5, keyIds.size(), "every pooled key pair is handed out once");
+        assertEquals(3, pool.getStats().get("lowWatermark"));
+        assertEquals(8, pool.getStats().get("highWatermark"));
+    }
+
+    @Test
+    public void testDrainedPoolFallsBackToInlineGeneration() throws Exception {
+        pool = new KeyPairPool(true, POOLED.name(), 0, 2, 60_000);
+        await(() -> stat("refilled") == 2);
+        pool.shutdown(); // không refill nữa: pool cạn sau 2 lần take
+
+        for (int i = 0; i < 4; i++) {
+            PQCKeyPair keyPair = pool.take(POOLED);
+            assertEquals(POOLED.getName(), keyPair.getAlgorithm());
+        }
+        assertEquals(0, pool.depth(POOLED));
+        assertEquals(2, stat("hits"));
+        assertEquals(2, stat("misses"));
+
+        // Thuật toán không nằm trong pool: luôn tạo inline
+        assertNotNull(pool.take(PQCAlgorithm.DILITHIUM3));
+        assertEquals(0, pool.depth(PQCAlgorithm.DILITHIUM3));
+    }
+
+    @Test
+    public void testDisabledPoolAndInvalidWatermarks() throws Exception {
+        pool = new KeyPairPool(false, POOLED.name(), 3, 8, 10);
+        assertNotNull(pool.take(POOLED));
+        assertEquals(0, pool.depth(POOLED));
+        assertEquals(false, pool.getStats().get("enabled"));
+
+        assertThrows(IllegalArgumentException.class, () -> new KeyPairPool(true, POOLED.name(), 5, 4, 10));
+        assertThrows(IllegalArgumentException.class, () -> new KeyPairPool(true, POOLED.name(), -1, 4, 10));
+    }
+}
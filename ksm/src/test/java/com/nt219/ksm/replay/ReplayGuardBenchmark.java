@@ -0,0 +1,97 @@
+package com.nt219.ksm.replay;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Benchmark throughput của ReplayGuard: transaction mới (có / không có NONCE) và replay
+ *
+ * Chạy:
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt -Dmdep.includeScope=test
+ *   java -cp "target/test-classes:target/classes:$(cat cp.txt)" com.nt219.ksm.replay.ReplayGuardBenchmark [dir] [transactions] [threads]
+ *
+ * Mỗi pha cho {@code threads} thread check tổng cộng {@code transactions} transaction (mặc định 1.000.000,
+ * 1000 entity). Bộ nhớ Bloom và kích thước file index cố định theo expectedPerWindow, in ra ở cuối.
+ * Thời gian đo gồm cả SHA-256 của transactionData (như khi chạy thật).
+ */
+public class ReplayGuardBenchmark {
+
+    private static final int ENTITIES = 1000;
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Paths.get(args.length > 0 ? args[0] : "/tmp/replaybench");
+        int transactions = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        long skew = 1000;
+        long created = System.currentTimeMillis();
+        // expectedPerWindow = số transaction của cả 3 pha (chúng cùng một generation)
+        try (ReplayGuard guard = new ReplayGuard(dir.resolve(Long.toString(created)), 10 * 60 * 1000, skew,
+                transactions * 2L, 0.001, ENTITIES, System::currentTimeMillis)) {
+            // Warm-up JIT, và bắt đầu theo dõi nonce của các entity (đường nhanh chỉ áp dụng cho
+            // transaction ký sau lúc theo dõi + maxClockSkew)
+            long old = created - 9 * 60 * 1000;
+            for (int i = 0; i < Math.min(transactions, 200_000); i++) {
+                guard.check("bank" + (i % ENTITIES), String.format(
+                    "FROM:bank%d|TO:warmup|AMOUNT:%d.00|DESC:bench|TIMESTAMP:%d|NONCE:%d", i % ENTITIES, i, old, i));
+            }
+            Thread.sleep(skew + 100);
+
+            long start = System.currentTimeMillis();
+            String[] withNonce = new String[transactions];
+            String[] withoutNonce = new String[transactions];
+            for (int i = 0; i < transactions; i++) {
+                String body = String.format("FROM:bank%d|TO:vietcombank|AMOUNT:%d.00|DESC:bench|TIMESTAMP:%d",
+                    i % ENTITIES, 1000 + i, start);
+                withoutNonce[i] = body + "|DESC2:" + i;
+                withNonce[i] = body + "|NONCE:" + (start * 1000 + i);
+            }
+
+            System.out.printf("=== ReplayGuard, %d transactions, %d threads ===%n", transactions, threads);
+            System.out.printf("%-24s %14s %12s%n", "phase", "checks/s", "verdict");
+            run("new, nonce fast path", guard, withNonce, threads, ReplayGuard.Verdict.ACCEPTED);
+            run("new, Bloom (no nonce)", guard, withoutNonce, threads, ReplayGuard.Verdict.ACCEPTED);
+            run("replay, index confirm", guard, withNonce, threads, ReplayGuard.Verdict.DUPLICATE);
+
+            Map<String, Object> stats = guard.getStats();
+            System.out.printf("Bloom false positives: %s, Bloom heap: %d KB, index files: %d MB (sparse)%n",
+                stats.get("bloomFalsePositives"), (long) stats.get("bloomBytes") / 1024,
+                (long) stats.get("indexFileBytes") / (1024 * 1024));
+        }
+    }
+
+    private static void run(String phase, ReplayGuard guard, String[] data, int threads,
+                            ReplayGuard.Verdict expected) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> results = new ArrayList<>();
+        long begin = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int first = t;
+            results.add(executor.submit(() -> {
+                int matched = 0;
+                for (int i = first; i < data.length; i += threads) {
+                    if (guard.check("bank" + (i % ENTITIES), data[i]) == expected) {
+                        matched++;
+                    }
+                }
+                return matched;
+            }));
+        }
+        int matched = 0;
+        for (Future<Integer> result : results) {
+            matched += result.get();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        executor.shutdown();
+        if (matched != data.length) {
+            throw new IllegalStateException(phase + ": expected " + expected + " for all, got " + matched);
+        }
+        System.out.printf("%-24s %14.0f %12s%n", phase, data.length / seconds, expected);
+    }
+}
@@ -0,0 +1,205 @@
+package com.nt219.ksm.replay;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static com.nt219.ksm.replay.ReplayGuard.Verdict.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho ReplayGuard (cửa sổ thời gian, nonce theo entity, Bloom + index trên đĩa)
+ */
+public class ReplayGuardTest {
+
+    private static final long WINDOW = 60_000;
+    private static final long SKEW = 5_000;
+    private static final long START = 1_700_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    private final AtomicLong now = new AtomicLong(START);
+
+    private ReplayGuard guard(long expectedPerWindow) throws Exception {
+        return new ReplayGuard(dir, WINDOW, SKEW, expectedPerWindow, 0.001, 1000, now::get);
+    }
+
+    private static String tx(String description, long timestamp, long nonce) {
+        return String.format("FROM:vietcombank|TO:bidv|AMOUNT:1000000.00|DESC:%s|TIMESTAMP:%d|NONCE:%d",
+            description, timestamp, nonce);
+    }
+
+    private long indexFiles() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    public void testRejectsExactReplayOnly() throws Exception {
+        try (ReplayGuard guard = guard(1000)) {
+            String first = tx("Transfer", START, START * 1000);
+            assertEquals(ACCEPTED, guard.check("vietcombank", first));
+            assertEquals(DUPLICATE, guard.check("vietcombank", first));
+            // Cùng nội dung nhưng nonce khác, hoặc entity khác: transaction khác
+            assertEquals(ACCEPTED, guard.check("vietcombank", tx("Transfer", START, START * 1000 + 1)));
+            assertEquals(ACCEPTED, guard.check("bidv", first));
+            // Transaction không có NONCE (định dạng cũ) vẫn được chống replay qua Bloom + index
+            String legacy = "FROM:vietcombank|TO:bidv|AMOUNT:5.00|DESC:x|TIMESTAMP:" + START;
+            assertEquals(ACCEPTED, guard.check("vietcombank", legacy));
+            assertEquals(DUPLICATE, guard.check("vietcombank", legacy));
+
+            assertEquals(4L, guard.getStats().get("accepted"));
+            assertEquals(2L, guard.getStats().get("duplicates"));
+        }
+    }
+
+    @Test
+    public void testSignedFieldsCannotBeSpoofedThroughDescription() {
+        String data = tx("x|TIMESTAMP:1|NONCE:2", START, 42);
+        assertEquals(START, ReplayGuard.timestampOf(data));
+        assertEquals(42, ReplayGuard.nonceOf(data));
+        // NONCE trước TIMESTAMP nằm trong DESC, không phải field đã ký
+        assertEquals(-1, ReplayGuard.nonceOf("DESC:|NONCE:99|TIMESTAMP:" + START));
+        assertEquals(-1, ReplayGuard.timestampOf("FROM:a|TO:b|TIMESTAMP:12ab"));
+    }
+
+    @Test
+    public void testWindowBoundsMemoryAndDisk() throws Exception {
+        try (ReplayGuard guard = guard(1000)) {
+            assertEquals(MALFORMED, guard.check("vietcombank", "FROM:vietcombank|TO:bidv"));
+            assertEquals(STALE, guard.check("vietcombank", tx("old", START - WINDOW - 1, 1)));
+            assertEquals(FUTURE, guard.check("vietcombank", tx("future", START + SKEW + 1, 2)));
+
+            String first = tx("Transfer", START, 3);
+            assertEquals(ACCEPTED, guard.check("vietcombank", first));
+            for (int i = 1; i <= 5; i++) {
+                now.addAndGet(WINDOW);
+                assertEquals(ACCEPTED, guard.check("vietcombank", tx("Transfer", now.get(), 3 + i)));
+                guard.maintain();
+                assertTrue(indexFiles() <= 2, "only generations still inside the window are kept");
+            }
+            // Bản gốc đã ra khỏi cửa sổ: bị từ chối vì quá cũ, không cần nhớ nữa
+            assertEquals(STALE, guard.check("vietcombank", first));
+            assertTrue((long) guard.getStats().get("rotations") >= 6);
+        }
+    }
+
+    @Test
+    public void testDuplicatesAreDetectedAfterRestart() throws Exception {
+        String newer = tx("A", START, 30);
+        String older = tx("B", START, 20);
+        try (ReplayGuard guard = guard(1000)) {
+            assertEquals(ACCEPTED, guard.check("vietcombank", newer));
+            assertEquals(ACCEPTED, guard.check("vietcombank", older)); // đến trễ, nonce nhỏ hơn
+        }
+        now.addAndGet(1000);
+        try (ReplayGuard restarted = guard(1000)) {
+            assertEquals(ACCEPTED, restarted.check("vietcombank", tx("C", now.get(), 25)));
+            // high-water sau restart là 25 < 30, nhưng A được ký trước lúc theo dõi: vẫn phải tra index
+            assertEquals(DUPLICATE, restarted.check("vietcombank", newer));
+            assertEquals(DUPLICATE, restarted.check("vietcombank", older));
+            assertEquals(0L, restarted.getStats().get("nonceFastPath"));
+
+            // Transaction ký sau lúc theo dõi + skew với nonce mới: đi đường nhanh
+            now.addAndGet(SKEW + 1);
+            assertEquals(ACCEPTED, restarted.check("vietcombank", tx("D", now.get(), 40)));
+            assertEquals(1L, restarted.getStats().get("nonceFastPath"));
+            assertEquals(DUPLICATE, restarted.check("vietcombank", tx("D", now.get(), 40)));
+        }
+    }
+
+    @Test
+    public void testLowerNonceSignedEarlierIsRejected() throws Exception {
+        now.addAndGet(2 * SKEW);
+        try (ReplayGuard guard = guard(1000)) {
+            assertEquals(ACCEPTED, guard.check("vietcombank", tx("A", now.get(), 100)));
+            // Ký song song, đến lệch thứ tự trong maxClockSkew: vẫn nhận, replay của nó vẫn bị chặn
+            String concurrent = tx("B", now.get() - SKEW, 99);
+            assertEquals(ACCEPTED, guard.check("vietcombank", concurrent));
+            assertEquals(DUPLICATE, guard.check("vietcombank", concurrent));
+            // Chưa từng thấy, nhưng ký trước transaction high-water hơn maxClockSkew: bị giữ lại rồi gửi sau
+            assertEquals(OUT_OF_ORDER, guard.check("vietcombank", tx("C", now.get() - SKEW - 1, 98)));
+            assertEquals(OUT_OF_ORDER, guard.check("vietcombank", tx("A", now.get() - 2 * SKEW, 100)));
+            // High-water theo entity: entity khác không bị ảnh hưởng
+            assertEquals(ACCEPTED, guard.check("bidv", tx("C", now.get() - SKEW - 1, 98)));
+            assertEquals(ACCEPTED, guard.check("vietcombank", tx("D", now.get(), 101)));
+
+            assertEquals(2L, guard.getStats().get("outOfOrder"));
+        }
+    }
+
+    @Test
+    public void testConcurrentReplaysAcceptExactlyOne() throws Exception {
+        try (ReplayGuard guard = guard(10_000)) {
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            for (int round = 0; round < 50; round++) {
+                String data = tx("round-" + round, START, START * 1000 + round);
+                CountDownLatch go = new CountDownLatch(1);
+                List<Future<ReplayGuard.Verdict>> results = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    results.add(executor.submit(() -> {
+                        go.await();
+                        return guard.check("vietcombank", data);
+                    }));
+                }
+                go.countDown();
+                int accepted = 0;
+                for (Future<ReplayGuard.Verdict> result : results) {
+                    if (result.get(5, TimeUnit.SECONDS) == ACCEPTED) {
+                        accepted++;
+                    }
+                }
+                assertEquals(1, accepted);
+            }
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFullIndexRejectsInsteadOfForgetting() throws Exception {
+        try (ReplayGuard guard = guard(10)) {
+            int capacity = ReplayIndex.capacityFor(10);
+            int accepted = 0;
+            ReplayGuard.Verdict verdict;
+            while ((verdict = guard.check("vietcombank", tx("fill", START, accepted))) == ACCEPTED) {
+                accepted++;
+            }
+            assertEquals(CAPACITY_EXCEEDED, verdict);
+            assertEquals((int) (capacity * 0.9), accepted);
+            // Generation tiếp theo có index riêng
+            now.addAndGet(WINDOW);
+            assertEquals(ACCEPTED, guard.check("vietcombank", tx("fill", now.get(), 0)));
+        }
+    }
+
+    @Test
+    public void testBloomFilterHasNoFalseNegativesAndBoundedFalsePositives() {
+        BloomFilter bloom = new BloomFilter(100_000, 0.01);
+        for (long i = 0; i < 100_000; i++) {
+            bloom.put(i * 0x9E3779B97F4A7C15L, i * 0xC2B2AE3D27D4EB4FL);
+        }
+        for (long i = 0; i < 100_000; i++) {
+            assertTrue(bloom.mightContain(i * 0x9E3779B97F4A7C15L, i * 0xC2B2AE3D27D4EB4FL));
+        }
+        int falsePositives = 0;
+        for (long i = 100_000; i < 200_000; i++) {
+            if (bloom.mightContain(i * 0x9E3779B97F4A7C15L, i * 0xC2B2AE3D27D4EB4FL)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 1_000, "false positive rate " + falsePositives / 1e5);
+    }
+}
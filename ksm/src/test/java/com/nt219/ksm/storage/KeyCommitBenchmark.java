@@ -0,0 +1,70 @@
+package com.nt219.ksm.storage;
+
+import com.nt219.ksm.crypto.PQCAlgorithm;
+import com.nt219.ksm.crypto.PQCKeyPair;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Đo saveKeyPair khi onboarding hàng loạt: nhiều request lưu khóa đồng thời
+ *
+ * Chạy (mỗi cấu hình một JVM, thư mục trống; "-cp ..." là "target/test-classes:target/classes:$(cat cp.txt)" sau
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt -Dmdep.includeScope=test):
+ *   # Group commit (mặc định): fsync chung theo nhóm
+ *   java -Dksm.storage.dir=/tmp/kc1 -cp ... com.nt219.ksm.storage.KeyCommitBenchmark 32 20000
+ *   # fsync từng bản ghi (cùng độ bền, không gom nhóm)
+ *   java -Dksm.storage.dir=/tmp/kc2 -Dksm.keyCommit.maxBatch=1 -cp ... com.nt219.ksm.storage.KeyCommitBenchmark 32 20000
+ *   # Ghi file trực tiếp trong request, không fsync (như trước, không bền vững khi mất điện)
+ *   java -Dksm.storage.dir=/tmp/kc3 -Dksm.keyCommit.mode=direct -cp ... com.nt219.ksm.storage.KeyCommitBenchmark 32 20000
+ *
+ * Khóa là byte ngẫu nhiên cỡ Dilithium3 (chỉ đo đường lưu trữ, không sinh khóa).
+ */
+public class KeyCommitBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int saves = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+
+        KeyStoreService keyStore = new KeyStoreService();
+        long[] latencies = new long[saves];
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+        long start = System.nanoTime();
+        Future<?>[] workers = new Future<?>[threads];
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            workers[t] = pool.submit(() -> {
+                Random random = new Random(seed);
+                byte[] publicKey = new byte[1952];
+                byte[] privateKey = new byte[4000];
+                for (int i = next.getAndIncrement(); i < saves; i = next.getAndIncrement()) {
+                    random.nextBytes(publicKey);
+                    random.nextBytes(privateKey);
+                    PQCKeyPair keyPair = new PQCKeyPair(publicKey.clone(), privateKey.clone(), PQCAlgorithm.DILITHIUM3.toString());
+                    long begin = System.nanoTime();
+                    keyStore.saveKeyPair(String.format("ONBOARD-%08d", i), keyPair);
+                    latencies[i] = System.nanoTime() - begin;
+                }
+                return null;
+            });
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+
+        Arrays.sort(latencies);
+        System.out.printf("%,d saves, %d threads: %.0f saves/s, p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+            saves, threads, saves / seconds, latencies[saves / 2] / 1e6, latencies[saves * 99 / 100] / 1e6,
+            latencies[saves - 1] / 1e6);
+        System.out.println("keyCommit: " + keyStore.getStorageStats().get("keyCommit"));
+        keyStore.shutdown();
+    }
+}
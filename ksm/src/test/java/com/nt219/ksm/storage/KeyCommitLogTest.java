@@ -0,0 +1,129 @@
+package com.nt219.ksm.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho KeyCommitLog (group commit + replay)
+ */
+public class KeyCommitLogTest {
+
+    @TempDir
+    Path dir;
+
+    private final Map<String, String> materialized = new ConcurrentHashMap<>();
+
+    private KeyCommitLog open(int maxBatch, long maxDelayMillis, long segmentBytes) throws IOException {
+        Files.createDirectories(dir.resolve("keys"));
+        return new KeyCommitLog(dir.resolve("wal"), maxBatch, maxDelayMillis, segmentBytes, (entityId, record) -> {
+            materialized.put(entityId, new String(record, StandardCharsets.UTF_8));
+            Path file = dir.resolve("keys").resolve(entityId);
+            Files.write(file, record);
+            return file;
+        });
+    }
+
+    @Test
+    public void testConcurrentAppendsShareCommits() throws Exception {
+        KeyCommitLog log = open(64, 5, 1 << 20);
+        log.start();
+
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        List<CompletableFuture<Void>> commits = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            String entityId = "bank" + i;
+            commits.add(CompletableFuture.supplyAsync(() -> log.append(entityId, ("record-" + entityId).getBytes()), pool)
+                .thenCompose(commit -> commit));
+        }
+        CompletableFuture.allOf(commits.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        assertEquals(400, materialized.size());
+        assertEquals("record-bank7", materialized.get("bank7"));
+        Map<String, Object> stats = log.getStats();
+        assertEquals(400L, stats.get("records"));
+        assertTrue((Long) stats.get("groups") < 400, "appends should be grouped: " + stats);
+
+        log.close();
+        assertFalse(Files.list(dir.resolve("wal")).findAny().isPresent(), "clean close leaves no segments");
+    }
+
+    @Test
+    public void testReplayAfterCrash() throws Exception {
+        KeyCommitLog log = open(16, 0, 1 << 20);
+        log.start();
+        for (int i = 0; i < 10; i++) {
+            log.append("bank" + i, ("v1-" + i).getBytes()).get(10, TimeUnit.SECONDS);
+        }
+        log.append("bank3", "v2-3".getBytes()).get(10, TimeUnit.SECONDS);
+
+        // "Crash": không close, file khóa mất (chưa fsync), đuôi segment ghi dở
+        Path segment = Files.list(dir.resolve("wal")).findFirst().orElseThrow();
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(file.length());
+            file.writeInt(1000);
+            file.writeInt(0);
+            file.write(new byte[10]);
+        }
+        materialized.clear();
+
+        KeyCommitLog recovered = open(16, 0, 1 << 20);
+        assertEquals(11, recovered.start());
+        assertEquals(10, materialized.size());
+        assertEquals("v2-3", materialized.get("bank3"), "later record of the same entity wins");
+        assertEquals("v1-9", new String(Files.readAllBytes(dir.resolve("keys").resolve("bank9"))));
+
+        recovered.append("bank10", "v1-10".getBytes()).get(10, TimeUnit.SECONDS);
+        recovered.close();
+    }
+
+    @Test
+    public void testCheckpointRemovesEntityFromLog() throws Exception {
+        KeyCommitLog log = open(16, 0, 1 << 20);
+        log.start();
+        log.append("bank1", "v1".getBytes()).get(10, TimeUnit.SECONDS);
+        log.append("bank2", "v1".getBytes()).get(10, TimeUnit.SECONDS);
+
+        // Sau checkpoint, replay không còn ghi đè file của bank1 (ví dụ đã rotate / xóa)
+        log.checkpoint("bank1");
+        assertEquals(1L, log.getStats().get("checkpoints"));
+        materialized.clear();
+
+        KeyCommitLog recovered = open(16, 0, 1 << 20);
+        assertEquals(0, recovered.start());
+        assertTrue(materialized.isEmpty());
+        recovered.close();
+    }
+
+    @Test
+    public void testSegmentRollAndBackgroundCheckpoint() throws Exception {
+        KeyCommitLog log = open(8, 0, 256);
+        log.start();
+        for (int i = 0; i < 50; i++) {
+            log.append("bank" + i, new byte[100]).get(10, TimeUnit.SECONDS);
+        }
+        long deadline = System.currentTimeMillis() + 10_000;
+        while ((Integer) log.getStats().get("segmentsPendingCheckpoint") > 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue((Long) log.getStats().get("checkpoints") > 0);
+        assertTrue(Files.list(dir.resolve("wal")).count() <= 2);
+        log.close();
+    }
+}
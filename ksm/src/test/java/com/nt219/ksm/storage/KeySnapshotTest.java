@@ -0,0 +1,141 @@
+package com.nt219.ksm.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho KeySnapshot
+ */
+public class KeySnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testWriteAndReadBack() throws Exception {
+        Path file = dir.resolve("keys-7.snap");
+        Random random = new Random(1);
+        List<KeySnapshot.Record> written = new ArrayList<>();
+        try (KeySnapshot.Writer writer = KeySnapshot.create(file, 7)) {
+            for (int i = 0; i < 100; i++) {
+                KeySnapshot.Record record = new KeySnapshot.Record("Dilithium3", 1 + i % 3,
+                    randomBytes(random, 1952), randomBytes(random, 4048),
+                    i % 2 == 0 ? randomBytes(random, 65) : null, i % 2 == 0 ? randomBytes(random, 48) : null);
+                written.add(record);
+                List<KeySnapshot.KeyIdEntry> keyIds = new ArrayList<>();
+                keyIds.add(new KeySnapshot.KeyIdEntry("abcd-v" + record.version, record.version, false));
+                if (record.version > 1) {
+                    keyIds.add(new KeySnapshot.KeyIdEntry("ef01-v1", 1, true));
+                }
+                writer.add(String.format("bank%03d", i), 9000 + i, record, keyIds);
+            }
+            writer.finish();
+        }
+
+        try (KeySnapshot snapshot = KeySnapshot.open(file)) {
+            assertEquals(7, snapshot.getSequence());
+            assertEquals(100, snapshot.getEntityCount());
+            int i = 0;
+            for (KeySnapshot.IndexEntry entry : snapshot.entries()) {
+                KeySnapshot.Record expected = written.get(i);
+                assertEquals(String.format("bank%03d", i), entry.entityId);
+                assertEquals(9000 + i, entry.fileSize);
+                assertEquals(expected.version > 1 ? 2 : 1, entry.keyIds.size());
+
+                KeySnapshot.Record actual = snapshot.readRecord(entry.recordRef);
+                assertEquals("Dilithium3", actual.algorithm);
+                assertEquals(expected.version, actual.version);
+                assertArrayEquals(expected.publicKey, actual.publicKey);
+                assertArrayEquals(expected.privateKeyEncrypted, actual.privateKeyEncrypted);
+                assertArrayEquals(expected.ecdsaPublicKey, actual.ecdsaPublicKey);
+                assertArrayEquals(expected.ecdsaPrivateKeyEncrypted, actual.ecdsaPrivateKeyEncrypted);
+                i++;
+            }
+            assertEquals(100, i);
+        }
+    }
+
+    @Test
+    public void testRecordsDoNotStraddleChunks() throws Exception {
+        Path file = dir.resolve("keys-1.snap");
+        long chunkBytes = 10_000;
+        List<Long> refs = new ArrayList<>();
+        Random random = new Random(2);
+        List<byte[]> publicKeys = new ArrayList<>();
+        try (KeySnapshot.Writer writer = KeySnapshot.create(file, 1, chunkBytes)) {
+            for (int i = 0; i < 20; i++) {
+                byte[] publicKey = randomBytes(random, 2000 + i * 37);
+                publicKeys.add(publicKey);
+                refs.add(writer.add("e" + (char) ('a' + i), 1, new KeySnapshot.Record("Falcon-512", 1, publicKey,
+                    new byte[16], null, null), Collections.emptyList()));
+            }
+            writer.finish();
+        }
+
+        try (KeySnapshot snapshot = KeySnapshot.open(file, chunkBytes)) {
+            for (int i = 0; i < refs.size(); i++) {
+                long position = refs.get(i) >>> 24;
+                int length = (int) (refs.get(i) & 0xFFFFFF);
+                assertEquals(position / chunkBytes, (position + 8 + length - 1) / chunkBytes, "record " + i);
+                assertArrayEquals(publicKeys.get(i), snapshot.readRecord(refs.get(i)).publicKey);
+            }
+        }
+    }
+
+    @Test
+    public void testDetectsCorruption() throws Exception {
+        Path file = dir.resolve("keys-3.snap");
+        long recordRef;
+        try (KeySnapshot.Writer writer = KeySnapshot.create(file, 3)) {
+            recordRef = writer.add("bank", 1, new KeySnapshot.Record("Dilithium3", 1, new byte[1952], new byte[4048], null, null),
+                Collections.singletonList(new KeySnapshot.KeyIdEntry("abcd-v1", 1, false)));
+            writer.finish();
+        }
+        byte[] original = Files.readAllBytes(file);
+
+        // Hỏng một byte trong data: index vẫn mở được, bản ghi bị từ chối
+        flipByte(file, 128 + 8 + 100);
+        try (KeySnapshot snapshot = KeySnapshot.open(file)) {
+            assertThrows(IOException.class, () -> snapshot.readRecord(recordRef));
+        }
+
+        // Hỏng index (byte cuối file)
+        Files.write(file, original);
+        flipByte(file, original.length - 1);
+        assertThrows(IOException.class, () -> KeySnapshot.open(file));
+
+        // Ghi dở: header chưa được ghi
+        Files.write(file, Arrays.copyOf(original, original.length));
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.write(new byte[128]);
+        }
+        assertThrows(IOException.class, () -> KeySnapshot.open(file));
+    }
+
+    private static void flipByte(Path file, long position) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(position);
+            int value = raf.read();
+            raf.seek(position);
+            raf.write(value ^ 0xFF);
+        }
+    }
+
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,310 @@
+package com.nt219.ksm.storage;
+
+import com.nt219.ksm.crypto.IPQCCryptoService;
+import com.nt219.ksm.crypto.PQCAlgorithm;
+import com.nt219.ksm.crypto.PQCCryptoFactory;
+import com.nt219.ksm.crypto.PQCKeyPair;
+import com.nt219.ksm.crypto.PQCSignature;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho KeyStoreService (entity index, phân trang listEntities, snapshot, export / import)
+ */
+public class KeyStoreServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private final List<KeyStoreService> opened = new ArrayList<>();
+    private final Random random = new Random(42);
+
+    @AfterEach
+    public void closeStores() {
+        opened.forEach(KeyStoreService::shutdown);
+    }
+
+    private KeyStoreService open() {
+        return open(dir);
+    }
+
+    private KeyStoreService open(Path storageDir) {
+        KeyStoreService keyStore = new KeyStoreService(storageDir);
+        opened.add(keyStore);
+        return keyStore;
+    }
+
+    private PQCKeyPair keyPair() {
+        byte[] publicKey = new byte[64];
+        byte[] privateKey = new byte[128];
+        random.nextBytes(publicKey);
+        random.nextBytes(privateKey);
+        return new PQCKeyPair(publicKey, privateKey, "Dilithium3");
+    }
+
+    private List<String> collect(KeyStoreService keyStore, String prefix, int limit) {
+        List<String> all = new ArrayList<>();
+        String cursor = null;
+        do {
+            EntityPage page = keyStore.listEntities(prefix, cursor, limit);
+            assertTrue(page.getEntities().size() <= limit);
+            if (page.hasMore()) {
+                assertEquals(limit, page.getEntities().size(), "only the last page may be short");
+                assertEquals(page.getEntities().get(limit - 1), page.getNextCursor());
+            }
+            all.addAll(page.getEntities());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return all;
+    }
+
+    @Test
+    public void testListEntitiesPagesByPrefixAndCursor() throws Exception {
+        KeyStoreService keyStore = open();
+        for (String entityId : Arrays.asList("VCB-003", "BIDV-001", "VCB-001", "VCB", "VCBX-001", "VCB-002", "ACB-001")) {
+            keyStore.saveKeyPair(entityId, keyPair());
+        }
+
+        // Sắp xếp theo entityId, prefix là prefix chuỗi (VCBX cũng bắt đầu bằng VCB)
+        assertEquals(Arrays.asList("VCB", "VCB-001", "VCB-002", "VCB-003", "VCBX-001"), collect(keyStore, "VCB", 2));
+        assertEquals(Arrays.asList("VCB-001", "VCB-002", "VCB-003"), collect(keyStore, "VCB-", 1));
+        assertEquals(7, collect(keyStore, null, 3).size());
+        assertEquals(collect(keyStore, "", 100), collect(keyStore, null, 1));
+        assertEquals(Arrays.asList(keyStore.listEntities()), collect(keyStore, null, 4));
+
+        // Trang vừa đủ limit: không có cursor cho trang rỗng phía sau
+        EntityPage exact = keyStore.listEntities("VCB-", null, 3);
+        assertEquals(3, exact.getEntities().size());
+        assertFalse(exact.hasMore());
+
+        // Cursor là exclusive, không cần là entity đang tồn tại
+        assertEquals(Arrays.asList("VCB-002", "VCB-003"), keyStore.listEntities("VCB-", "VCB-001", 10).getEntities());
+        assertEquals(Arrays.asList("VCB-002", "VCB-003"), keyStore.listEntities("VCB-", "VCB-0015", 10).getEntities());
+        assertTrue(keyStore.listEntities("VCB-", "VCB-003", 10).getEntities().isEmpty());
+        assertTrue(keyStore.listEntities("TCB", null, 10).getEntities().isEmpty());
+
+        assertThrows(IllegalArgumentException.class, () -> keyStore.listEntities(null, null, 0));
+    }
+
+    @Test
+    public void testIndexFollowsDeletesAndRestart() throws Exception {
+        KeyStoreService keyStore = open();
+        for (int i = 0; i < 25; i++) {
+            keyStore.saveKeyPair(String.format("bank%02d", i), keyPair());
+        }
+        assertTrue(keyStore.deleteKeyPair("bank10"));
+        assertFalse(keyStore.keyExists("bank10"));
+        assertEquals(24, collect(keyStore, "bank", 5).size());
+        assertFalse(collect(keyStore, "bank1", 3).contains("bank10"));
+        assertEquals(24L, keyStore.getStorageStats().get("totalEntities"));
+        keyStore.writeSnapshot();
+        keyStore.saveKeyPair("bank99", keyPair());
+        keyStore.shutdown();
+
+        // Khởi động lại: snapshot + journal cho ra cùng index
+        KeyStoreService restarted = open();
+        List<String> entities = collect(restarted, null, 7);
+        assertEquals(25, entities.size());
+        assertTrue(entities.contains("bank99"));
+        assertFalse(entities.contains("bank10"));
+        assertEquals(Arrays.asList("bank20", "bank21"), restarted.listEntities("bank2", null, 2).getEntities());
+        assertEquals("bank21", restarted.listEntities("bank2", null, 2).getNextCursor());
+    }
+
+    private List<String> snapshotFiles() throws Exception {
+        try (Stream<Path> files = Files.list(dir.resolve("snapshot"))) {
+            return files.map(file -> file.getFileName().toString()).filter(name -> name.startsWith("keys-"))
+                .sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testUnreadableEntityAbortsSnapshotAndKeepsPrevious() throws Exception {
+        KeyStoreService keyStore = open();
+        for (int i = 0; i < 5; i++) {
+            keyStore.saveKeyPair("bank" + i, keyPair());
+        }
+        keyStore.writeSnapshot();
+        List<String> committed = snapshotFiles();
+        assertEquals(1, committed.size());
+
+        keyStore.saveKeyPair("bank5", keyPair());
+        // Hỏng trên đĩa, không qua KeyStoreService: không có thay đổi nào trong journal mới giải thích lỗi
+        Path damaged = dir.resolve("keys").resolve("bank5.properties");
+        Files.write(damaged, "entityId=bank5\npublicKey=%%%\n".getBytes(StandardCharsets.ISO_8859_1));
+
+        IOException aborted = assertThrows(IOException.class, keyStore::writeSnapshot);
+        assertTrue(aborted.getMessage().contains("bank5"), aborted.getMessage());
+        assertEquals(committed, snapshotFiles(), "previous snapshot is kept, no partial one is committed");
+        Map<String, Object> snapshot = (Map<String, Object>) keyStore.getStorageStats().get("snapshot");
+        assertEquals(1, snapshot.get("pendingChanges"), "entities of the aborted journal are still pending");
+
+        // Ghi lại bản ghi hợp lệ: snapshot tiếp theo thành công và bao phủ cả journal bị hủy
+        keyStore.saveKeyPair("bank5", keyPair());
+        assertEquals(6, keyStore.writeSnapshot());
+        assertNotEquals(committed, snapshotFiles());
+        keyStore.shutdown();
+
+        KeyStoreService restarted = open();
+        assertEquals(6, restarted.listEntities().length);
+        assertNotNull(restarted.getPublicKey("bank5"));
+    }
+
+    @Test
+    public void testMigratedKeyKeepsArchivedVersionsVerifiable() throws Exception {
+        PQCAlgorithm algorithm = PQCAlgorithm.FALCON_512;
+        IPQCCryptoService crypto = PQCCryptoFactory.createService(algorithm);
+        KeyStoreService source = open(dir.resolve("node1"));
+        Files.createDirectories(dir.resolve("node2"));
+        Files.copy(dir.resolve("node1").resolve("master.key"), dir.resolve("node2").resolve("master.key"));
+        KeyStoreService target = open(dir.resolve("node2"));
+
+        PQCKeyPair first = crypto.generateKeyPair(algorithm);
+        source.saveKeyPair("vietcombank", first);
+        byte[] message = "FROM:vietcombank|TO:bidv|AMOUNT:1000.00".getBytes(StandardCharsets.UTF_8);
+        PQCSignature oldSignature = crypto.sign(message, first.getPrivateKey(), algorithm);
+        PQCKeyPair generated = crypto.generateKeyPair(algorithm);
+        PQCKeyPair second = new PQCKeyPair(generated.getPublicKey(), generated.getPrivateKey(), algorithm.getName(), 2);
+        source.rotateKeyPair("vietcombank", second);
+
+        // Migrate như ClusterService: export, import ở owner mới, xóa bản local sau khi owner nhận
+        ExportedKeyRecord exported = source.exportRecord("vietcombank");
+        assertEquals(1, exported.getArchived().size());
+        assertTrue(target.importRecord("vietcombank", exported));
+        assertTrue(source.deleteKeyPair("vietcombank"));
+        assertNull(source.findPublicKey(first.getKeyId()));
+
+        KeyStoreService node2 = target;
+        for (int round = 0; round < 2; round++) {
+            if (round == 1) {
+                node2.shutdown(); // khởi động lại: index keyId dựng lại từ snapshot / archive trên đĩa
+                node2 = open(dir.resolve("node2"));
+            }
+            PublicKeyRecord old = node2.findPublicKey(first.getKeyId());
+            assertNotNull(old, "old key id still resolves after migration");
+            assertTrue(old.isArchived());
+            assertEquals(1, old.getVersion());
+            assertTrue(crypto.verify(message, oldSignature, old.getPublicKey(), algorithm));
+            assertFalse(node2.findPublicKey(second.getKeyId()).isArchived());
+            assertEquals(2, node2.loadKeyPair("vietcombank").getVersion());
+        }
+
+        // Entity đã có khóa: không ghi đè
+        assertFalse(target.importRecord("vietcombank", exported));
+    }
+
+    @Test
+    public void testNonceKeepsIncreasingAcrossRestartRotationAndMigration() throws Exception {
+        KeyStoreService source = open(dir.resolve("node1"));
+        assertThrows(IllegalArgumentException.class, () -> source.nextNonce("vietcombank"));
+        source.saveKeyPair("vietcombank", keyPair());
+        long last = -1;
+        for (int i = 0; i < 5; i++) {
+            long nonce = source.nextNonce("vietcombank");
+            assertTrue(nonce > last);
+            last = nonce;
+        }
+
+        // Khởi động lại: khối cũ đã ghi vào file khóa, không cấp lại
+        source.shutdown();
+        KeyStoreService restarted = open(dir.resolve("node1"));
+        long afterRestart = restarted.nextNonce("vietcombank");
+        assertTrue(afterRestart > last);
+
+        restarted.rotateKeyPair("vietcombank", new PQCKeyPair(keyPair().getPublicKey(), new byte[32], "Dilithium3", 2));
+        long afterRotate = restarted.nextNonce("vietcombank");
+        assertTrue(afterRotate > afterRestart);
+
+        // nonceLimit đi cùng bản ghi sang owner mới
+        KeyStoreService target = open(dir.resolve("node2"));
+        assertTrue(target.importRecord("vietcombank", restarted.exportRecord("vietcombank")));
+        assertTrue(restarted.deleteKeyPair("vietcombank"));
+        assertTrue(target.nextNonce("vietcombank") > afterRotate);
+        assertThrows(IllegalArgumentException.class, () -> restarted.nextNonce("vietcombank"));
+    }
+
+    @Test
+    public void testImportRejectsArchiveThatDoesNotMatchItsName() throws Exception {
+        KeyStoreService source = open(dir.resolve("node1"));
+        source.saveKeyPair("bidv", keyPair());
+        source.rotateKeyPair("bidv", new PQCKeyPair(keyPair().getPublicKey(), new byte[32], "Dilithium3", 2));
+        ExportedKeyRecord exported = source.exportRecord("bidv");
+        String name = exported.getArchived().keySet().iterator().next();
+        String forged = name.replaceFirst("-[0-9a-f]", name.contains("-0") ? "-1" : "-0");
+
+        KeyStoreService target = open(dir.resolve("node1-copy"));
+        assertThrows(IllegalArgumentException.class, () -> target.importRecord("bidv",
+            new ExportedKeyRecord(exported.getRecord(), Map.of(forged, exported.getArchived().get(name)))));
+        assertThrows(IllegalArgumentException.class, () -> target.importRecord("bidv",
+            new ExportedKeyRecord(exported.getRecord(), Map.of("../" + name, exported.getArchived().get(name)))));
+        assertFalse(target.keyExists("bidv"));
+    }
+
+    @Test
+    public void testConcurrentImportsOfOneEntityKeepExactlyOne() throws Exception {
+        KeyStoreService source = open(dir.resolve("node1"));
+        List<ExportedKeyRecord> candidates = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            source.saveKeyPair("acb", keyPair());
+            source.rotateKeyPair("acb", new PQCKeyPair(keyPair().getPublicKey(), new byte[32], "Dilithium3", 2));
+            candidates.add(source.exportRecord("acb"));
+            source.deleteKeyPair("acb");
+        }
+        Files.createDirectories(dir.resolve("node2"));
+        Files.copy(dir.resolve("node1").resolve("master.key"), dir.resolve("node2").resolve("master.key"));
+        KeyStoreService target = open(dir.resolve("node2"));
+
+        ExecutorService pool = Executors.newFixedThreadPool(candidates.size());
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (ExportedKeyRecord candidate : candidates) {
+            results.add(pool.submit(() -> {
+                go.await();
+                return target.importRecord("acb", candidate);
+            }));
+        }
+        go.countDown();
+        ExportedKeyRecord winner = null;
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i).get(10, TimeUnit.SECONDS)) {
+                assertNull(winner, "only one import may win");
+                winner = candidates.get(i);
+            }
+        }
+        pool.shutdown();
+        assertNotNull(winner);
+        assertEquals(winner.getRecord(), target.exportRecord("acb").getRecord());
+        assertEquals(winner.getArchived(), target.exportRecord("acb").getArchived());
+
+        // File khóa được ghi bằng đường khác (chưa vào index): import không đè, archive của bản import được dọn
+        ExportedKeyRecord other = candidates.get(candidates.indexOf(winner) == 0 ? 1 : 0);
+        Files.write(dir.resolve("node2").resolve("keys").resolve("techcombank.properties"),
+            winner.getRecord().replace("entityId=acb", "entityId=techcombank").getBytes(StandardCharsets.ISO_8859_1));
+        ExportedKeyRecord renamed = new ExportedKeyRecord(other.getRecord().replace("entityId=acb", "entityId=techcombank"),
+            Map.of(other.getArchived().keySet().iterator().next(),
+                other.getArchived().values().iterator().next().replace("entityId=acb", "entityId=techcombank")));
+        assertFalse(target.importRecord("techcombank", renamed));
+        assertFalse(Files.exists(dir.resolve("node2").resolve("archive").resolve("techcombank")));
+    }
+}
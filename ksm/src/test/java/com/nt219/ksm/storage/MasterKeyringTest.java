@@ -0,0 +1,131 @@
+package com.nt219.ksm.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho MasterKeyring (envelope encryption + rotate master key)
+ */
+public class MasterKeyringTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testSealAndOpen() throws Exception {
+        MasterKeyring keyring = MasterKeyring.load(dir);
+        assertTrue(Files.exists(dir.resolve("master.key")));
+        assertEquals(1, keyring.currentVersion());
+
+        byte[] privateKey = randomBytes(4000);
+        byte[] sealed = keyring.seal("bank1", privateKey);
+        assertEquals(1, MasterKeyring.versionOf(sealed));
+        assertArrayEquals(privateKey, keyring.open("bank1", sealed));
+
+        // Mỗi lần seal dùng data key và nonce mới
+        assertFalse(Arrays.equals(sealed, keyring.seal("bank1", privateKey)));
+    }
+
+    @Test
+    public void testRecordBoundToEntity() throws Exception {
+        MasterKeyring keyring = MasterKeyring.load(dir);
+        byte[] sealed = keyring.seal("bank1", randomBytes(64));
+        assertThrows(GeneralSecurityException.class, () -> keyring.open("bank2", sealed));
+
+        sealed[sealed.length - 1] ^= 1;
+        assertThrows(GeneralSecurityException.class, () -> keyring.open("bank1", sealed));
+    }
+
+    @Test
+    public void testRotateAndRewrap() throws Exception {
+        MasterKeyring keyring = MasterKeyring.load(dir);
+        byte[] privateKey = randomBytes(2528);
+        byte[] sealed = keyring.seal("bank1", privateKey);
+
+        assertEquals(2, keyring.rotate());
+        assertTrue(Files.exists(dir.resolve("master-v2.key")));
+        // Bản ghi cũ vẫn mở được trong lúc chưa rewrap
+        assertArrayEquals(privateKey, keyring.open("bank1", sealed));
+        assertEquals(2, MasterKeyring.versionOf(keyring.seal("bank1", privateKey)));
+
+        byte[] rewrapped = keyring.rewrap("bank1", sealed);
+        assertEquals(2, MasterKeyring.versionOf(rewrapped));
+        assertEquals(sealed.length, rewrapped.length);
+        // Chỉ phần wrap data key đổi, ciphertext của private key giữ nguyên
+        int tail = privateKey.length + 16;
+        assertArrayEquals(Arrays.copyOfRange(sealed, sealed.length - tail, sealed.length),
+            Arrays.copyOfRange(rewrapped, rewrapped.length - tail, rewrapped.length));
+        assertArrayEquals(privateKey, keyring.open("bank1", rewrapped));
+        assertNull(keyring.rewrap("bank1", rewrapped));
+
+        // Khởi động lại: load đủ các version
+        MasterKeyring reloaded = MasterKeyring.load(dir);
+        assertEquals(2, reloaded.currentVersion());
+        assertEquals(keyring.currentFingerprint(), reloaded.currentFingerprint());
+        assertArrayEquals(privateKey, reloaded.open("bank1", sealed));
+        assertArrayEquals(privateKey, reloaded.open("bank1", rewrapped));
+
+        // Thiếu file của version đã wrap bản ghi: lỗi rõ ràng, không giải mã sai
+        Files.delete(dir.resolve("master-v2.key"));
+        MasterKeyring withoutV2 = MasterKeyring.load(dir);
+        assertArrayEquals(privateKey, withoutV2.open("bank1", sealed));
+        assertThrows(GeneralSecurityException.class, () -> withoutV2.open("bank1", rewrapped));
+    }
+
+    @Test
+    public void testLegacyCbcRecords() throws Exception {
+        MasterKeyring keyring = MasterKeyring.load(dir);
+        byte[] masterKey = Files.readAllBytes(dir.resolve("master.key"));
+        byte[] privateKey = randomBytes(4000);
+
+        for (int i = 0; i < 50; i++) {
+            byte[] legacy = legacyEncrypt(masterKey, privateKey, i);
+            assertEquals(0, MasterKeyring.versionOf(legacy));
+            assertArrayEquals(privateKey, keyring.open("bank1", legacy));
+
+            byte[] migrated = keyring.rewrap("bank1", legacy);
+            assertEquals(1, MasterKeyring.versionOf(migrated));
+            assertArrayEquals(privateKey, keyring.open("bank1", migrated));
+        }
+
+        // IV ngẫu nhiên của bản ghi cũ trùng magic "KSE1": vẫn đọc đúng định dạng cũ
+        byte[] colliding = legacyEncrypt(masterKey, privateKey, -1);
+        assertEquals('K', colliding[0]);
+        assertArrayEquals(privateKey, keyring.open("bank1", colliding));
+        assertArrayEquals(privateKey, keyring.open("bank1", keyring.rewrap("bank1", colliding)));
+    }
+
+    /**
+     * Định dạng trước envelope: IV (16) + AES-256-CBC trực tiếp bằng master.key
+     */
+    private static byte[] legacyEncrypt(byte[] masterKey, byte[] privateKey, int seed) throws Exception {
+        byte[] iv = new byte[16];
+        new Random(seed).nextBytes(iv);
+        if (seed < 0) {
+            System.arraycopy("KSE1".getBytes(), 0, iv, 0, 4);
+        }
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(masterKey, "AES"), new IvParameterSpec(iv));
+        byte[] ciphertext = cipher.doFinal(privateKey);
+        byte[] result = Arrays.copyOf(iv, 16 + ciphertext.length);
+        System.arraycopy(ciphertext, 0, result, 16, ciphertext.length);
+        return result;
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+}
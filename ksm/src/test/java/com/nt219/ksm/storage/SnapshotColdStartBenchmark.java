@@ -0,0 +1,79 @@
+package com.nt219.ksm.storage;
+
+import com.nt219.ksm.crypto.PQCAlgorithm;
+import com.nt219.ksm.crypto.PQCKeyPair;
+
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Đo time-to-ready của KeyStoreService: dựng index từ snapshot nhị phân so với quét + parse file .properties
+ *
+ * Chạy (mỗi bước một JVM riêng vì cấu hình đọc lúc khởi tạo class; "-cp ..." là
+ * "target/test-classes:target/classes:$(cat cp.txt)" sau
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt -Dmdep.includeScope=test):
+ *   # 1. Tạo N entity (khóa cỡ Dilithium3) rồi ghi snapshot
+ *   # (lưu tuần tự: dùng ghi trực tiếp, group commit chỉ có lợi khi nhiều request lưu đồng thời)
+ *   java -Dksm.storage.dir=/data/bench -Dksm.snapshot.intervalMs=86400000 -Dksm.keyCommit.mode=direct -cp ... \
+ *        com.nt219.ksm.storage.SnapshotColdStartBenchmark generate 1000000
+ *   # 2. Khởi động từ snapshot / không snapshot (quét thư mục như trước)
+ *   java -Dksm.storage.dir=/data/bench -cp ... com.nt219.ksm.storage.SnapshotColdStartBenchmark start
+ *   java -Dksm.storage.dir=/data/bench -Dksm.snapshot.enabled=false -cp ... com.nt219.ksm.storage.SnapshotColdStartBenchmark start
+ *
+ * "start" in thời gian dựng index; "start preload" đọc thêm toàn bộ bản ghi khóa (như preload của PQCProcessService,
+ * cần heap đủ chứa mọi cặp khóa).
+ * Nên drop page cache giữa các lần chạy (echo 3 > /proc/sys/vm/drop_caches) để đo cold start thật.
+ */
+public class SnapshotColdStartBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "start";
+        if ("generate".equals(mode)) {
+            generate(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000);
+        } else {
+            start(args.length > 1 && "preload".equals(args[1]));
+        }
+    }
+
+    private static void generate(int entities) throws Exception {
+        KeyStoreService keyStore = new KeyStoreService();
+        Random random = new Random(42);
+        byte[] publicKey = new byte[1952];
+        byte[] privateKey = new byte[4000];
+
+        long start = System.nanoTime();
+        for (int i = 0; i < entities; i++) {
+            random.nextBytes(publicKey);
+            random.nextBytes(privateKey);
+            keyStore.saveKeyPair(String.format("BANK%02d-%08d", i % 40, i),
+                new PQCKeyPair(publicKey.clone(), privateKey.clone(), PQCAlgorithm.DILITHIUM3.toString()));
+            if ((i + 1) % 100_000 == 0) {
+                System.out.printf("  %,d entities (%.0fs)%n", i + 1, (System.nanoTime() - start) / 1e9);
+            }
+        }
+        long snapshotStart = System.nanoTime();
+        int written = keyStore.writeSnapshot();
+        System.out.printf("Generated %,d entities in %.1fs, snapshot of %,d entities in %.1fs%n",
+            entities, (snapshotStart - start) / 1e9, written, (System.nanoTime() - snapshotStart) / 1e9);
+        keyStore.shutdown();
+    }
+
+    private static void start(boolean preload) throws Exception {
+        long start = System.nanoTime();
+        KeyStoreService keyStore = new KeyStoreService();
+        long ready = System.nanoTime();
+        Map<String, Object> stats = keyStore.getStorageStats();
+        System.out.printf("Index ready: %,d entities in %.0f ms (snapshot: %s)%n",
+            stats.get("totalEntities"), (ready - start) / 1e6, stats.get("snapshot"));
+
+        if (!preload) {
+            keyStore.shutdown();
+            return;
+        }
+        // Đọc lại toàn bộ bản ghi khóa (giải mã private key), như KSM_PRELOAD_KEYS=true
+        long preloadStart = System.nanoTime();
+        int loaded = keyStore.loadAllKeyPairs().size();
+        System.out.printf("Preload: %,d key pairs in %.0f ms%n", loaded, (System.nanoTime() - preloadStart) / 1e6);
+        keyStore.shutdown();
+    }
+}
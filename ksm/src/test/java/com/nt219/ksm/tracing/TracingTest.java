@@ -0,0 +1,148 @@
+package com.nt219.ksm.tracing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nt219.ksm.crypto.IPQCCryptoService;
+import com.nt219.ksm.crypto.PQCAlgorithm;
+import com.nt219.ksm.crypto.PQCCryptoFactory;
+import com.nt219.ksm.crypto.PQCKeyPair;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho tracing: traceparent từ GUI, span SERVER theo route, span con của crypto service
+ */
+public class TracingTest {
+
+    private static final String TRACE_ID = "4bf92f3577b34da6a3ce929d0e0e4736";
+    private static final String PARENT_SPAN_ID = "00f067aa0ba902b7";
+
+    private final InMemorySpanExporter exporter = InMemorySpanExporter.create();
+
+    @BeforeEach
+    public void installInMemoryExporter() {
+        KsmTracing.install(OpenTelemetrySdk.builder()
+            .setTracerProvider(SdkTracerProvider.builder().addSpanProcessor(SimpleSpanProcessor.create(exporter)).build())
+            .build());
+    }
+
+    @AfterEach
+    public void restoreNoop() {
+        KsmTracing.install(OpenTelemetry.noop());
+    }
+
+    private static SpanData span(List<SpanData> spans, String name) {
+        return spans.stream().filter(span -> span.getName().equals(name)).findFirst()
+            .orElseThrow(() -> new AssertionError("No span " + name + " in " + spans));
+    }
+
+    @Test
+    public void testServerSpanJoinsCallerTraceAndParentsCryptoSpans() throws Exception {
+        PQCKeyPair keyPair = PQCCryptoFactory.createService(PQCAlgorithm.FALCON_512).generateKeyPair(PQCAlgorithm.FALCON_512);
+        exporter.reset();
+
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/ksm/sign");
+        request.addHeader("traceparent", "00-" + TRACE_ID + "-" + PARENT_SPAN_ID + "-01");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException {
+                req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/ksm/sign");
+                try {
+                    IPQCCryptoService service = PQCCryptoFactory.createService(PQCAlgorithm.FALCON_512);
+                    service.sign("hello".getBytes(StandardCharsets.UTF_8), keyPair.getPrivateKey(), PQCAlgorithm.FALCON_512);
+                } catch (Exception e) {
+                    throw new ServletException(e);
+                }
+            }
+        });
+        new TracingFilter().doFilter(request, response, chain);
+
+        List<SpanData> spans = exporter.getFinishedSpanItems();
+        SpanData server = span(spans, "POST /ksm/sign");
+        assertEquals(SpanKind.SERVER, server.getKind());
+        assertEquals(TRACE_ID, server.getTraceId());
+        assertEquals(PARENT_SPAN_ID, server.getParentSpanId());
+        assertEquals(200L, server.getAttributes().get(AttributeKey.longKey("http.response.status_code")));
+
+        SpanData sign = span(spans, "pqc.sign");
+        assertEquals(TRACE_ID, sign.getTraceId());
+        assertEquals(server.getSpanId(), sign.getParentSpanId());
+        assertEquals("Falcon-512", sign.getAttributes().get(KsmTracing.ALGORITHM));
+        assertEquals(5L, sign.getAttributes().get(KsmTracing.MESSAGE_BYTES));
+        assertTrue(sign.getAttributes().get(KsmTracing.SIGNATURE_BYTES) > 600);
+    }
+
+    @Test
+    public void testRequestWithoutTraceparentStartsNewTrace() throws IOException, ServletException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ksm/publicKeys/3fa2c1d4e5b6a7f8");
+        new TracingFilter().doFilter(request, new MockHttpServletResponse(), new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) {
+                req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/ksm/publicKeys/{fingerprint}");
+            }
+        }));
+
+        SpanData server = exporter.getFinishedSpanItems().get(0);
+        // Tên span là route, không phải URI (tránh mỗi fingerprint một tên span)
+        assertEquals("GET /ksm/publicKeys/{fingerprint}", server.getName());
+        assertFalse(server.getParentSpanContext().isValid());
+    }
+
+    @Test
+    public void testExceptionMarksSpanAsError() {
+        assertThrows(IllegalStateException.class, () -> KsmTracing.inSpan("keystore.loadKeyPair", span -> {
+            throw new IllegalStateException("disk unavailable");
+        }));
+        SpanData span = exporter.getFinishedSpanItems().get(0);
+        assertEquals(StatusCode.ERROR, span.getStatus().getStatusCode());
+        assertEquals("exception", span.getEvents().get(0).getName());
+    }
+
+    @Test
+    public void testJsonLinesExporterWritesOneSpanPerLine(@TempDir Path dir) throws Exception {
+        KsmTracing.inSpan("ksm.signTransaction", parent -> KsmTracing.inSpan("pqc.sign", span -> {
+            span.setAttribute(KsmTracing.ALGORITHM, "Dilithium3");
+            return null;
+        }));
+        Path file = dir.resolve("traces.jsonl");
+        JsonLinesSpanExporter fileExporter = new JsonLinesSpanExporter(file);
+        assertTrue(fileExporter.export(exporter.getFinishedSpanItems()).isSuccess());
+        fileExporter.shutdown();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(2, lines.size());
+        Map<?, ?> child = new ObjectMapper().readValue(lines.get(0), Map.class);
+        Map<?, ?> parent = new ObjectMapper().readValue(lines.get(1), Map.class);
+        assertEquals("pqc.sign", child.get("name"));
+        assertEquals(parent.get("spanId"), child.get("parentSpanId"));
+        assertEquals("Dilithium3", ((Map<?, ?>) child.get("attributes")).get("ksm.algorithm"));
+    }
+}
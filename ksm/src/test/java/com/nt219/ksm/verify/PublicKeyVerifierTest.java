@@ -0,0 +1,127 @@
+package com.nt219.ksm.verify;
+
+import com.nt219.ksm.crypto.PQCAlgorithm;
+import com.nt219.ksm.crypto.PQCKeyPair;
+import com.nt219.ksm.crypto.PQCSignature;
+import com.nt219.ksm.crypto.impl.EcdsaSecp256k1Service;
+import com.nt219.ksm.crypto.impl.FalconService;
+import com.nt219.ksm.process.PQCProcessService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho PublicKeyVerifier (verify bằng public key, cache khóa theo fingerprint)
+ */
+public class PublicKeyVerifierTest {
+
+    private static final String MESSAGE = "FROM:vietcombank|TO:bidv|AMOUNT:1000000";
+    private static final FalconService FALCON = new FalconService();
+
+    private static PQCKeyPair keyPair;
+    private static PQCSignature signature;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    public static void signOnce() throws Exception {
+        keyPair = FALCON.generateKeyPair(PQCAlgorithm.FALCON_512);
+        signature = FALCON.sign(MESSAGE.getBytes(StandardCharsets.UTF_8), keyPair.getPrivateKey(), PQCAlgorithm.FALCON_512);
+    }
+
+    @Test
+    public void testVerifyWithSuppliedPublicKey() throws Exception {
+        PublicKeyVerifier verifier = new PublicKeyVerifier(dir, 8);
+        TrustedPublicKey key = verifier.parse(keyPair.getPublicKey(), PQCAlgorithm.FALCON_512);
+
+        assertFalse(key.isRegistered());
+        assertTrue(verifier.verify(MESSAGE, signature, key, null));
+        assertFalse(verifier.verify(MESSAGE + "0", signature, key, null));
+        assertSame(key, verifier.parse(keyPair.getPublicKey(), PQCAlgorithm.FALCON_512));
+        assertEquals(1L, verifier.getStats().get("cacheHits"));
+        // Khóa gửi kèm request không được coi là đã đăng ký
+        assertNull(verifier.find(key.getFingerprint()));
+    }
+
+    @Test
+    public void testRegisteredKeySurvivesRestartAndEviction() throws Exception {
+        PublicKeyVerifier verifier = new PublicKeyVerifier(dir, 2);
+        String fingerprint = verifier.register(keyPair.getPublicKey(), PQCAlgorithm.FALCON_512, null, "0xbank").getFingerprint();
+        for (int i = 0; i < 3; i++) {
+            verifier.parse(FALCON.generateKeyPair(PQCAlgorithm.FALCON_512).getPublicKey(), PQCAlgorithm.FALCON_512);
+        }
+        assertEquals(2, verifier.getStats().get("cachedKeys"));
+        assertTrue((long) verifier.getStats().get("evictions") >= 2);
+
+        TrustedPublicKey reloaded = verifier.find(fingerprint);
+        assertEquals("0xbank", reloaded.getOwner());
+        assertTrue(verifier.verify(MESSAGE, signature, reloaded, null));
+        assertEquals(1L, verifier.getStats().get("diskLoads"));
+
+        PublicKeyVerifier restarted = new PublicKeyVerifier(dir, 2);
+        assertEquals(1L, restarted.getStats().get("registeredKeys"));
+        TrustedPublicKey key = restarted.find(fingerprint);
+        assertArrayEquals(keyPair.getPublicKey(), key.getPublicKey());
+        assertEquals(PQCAlgorithm.FALCON_512, key.getAlgorithm());
+
+        assertTrue(restarted.remove(fingerprint));
+        assertNull(restarted.find(fingerprint));
+        assertEquals(0L, restarted.getStats().get("registeredKeys"));
+    }
+
+    @Test
+    public void testHybridUsesRegisteredClassicalKey() throws Exception {
+        EcdsaSecp256k1Service ecdsa = new EcdsaSecp256k1Service();
+        PQCKeyPair classical = ecdsa.generateKeyPair();
+        PQCKeyPair other = ecdsa.generateKeyPair();
+        byte[] digest = PQCProcessService.canonicalDigest(MESSAGE);
+        PQCSignature hybrid = FALCON.sign(digest, keyPair.getPrivateKey(), PQCAlgorithm.FALCON_512)
+            .withClassical(ecdsa.sign(digest, classical.getPrivateKey()), EcdsaSecp256k1Service.ALGORITHM);
+
+        PublicKeyVerifier verifier = new PublicKeyVerifier(dir, 8);
+        TrustedPublicKey registered = verifier.register(keyPair.getPublicKey(), PQCAlgorithm.FALCON_512, classical.getPublicKey(), null);
+        assertTrue(verifier.verify(MESSAGE, hybrid, registered, null));
+        // Khóa ECDSA của request không thay được khóa đã đăng ký
+        assertTrue(verifier.verify(MESSAGE, hybrid, registered, other.getPublicKey()));
+
+        TrustedPublicKey supplied = new PublicKeyVerifier(dir.resolve("other"), 8)
+            .parse(keyPair.getPublicKey(), PQCAlgorithm.FALCON_512);
+        assertFalse(verifier.verify(MESSAGE, hybrid, supplied, null));
+        assertFalse(verifier.verify(MESSAGE, hybrid, supplied, other.getPublicKey()));
+        assertTrue(verifier.verify(MESSAGE, hybrid, supplied, classical.getPublicKey()));
+    }
+
+    @Test
+    public void testExpandsEachCachedKeyOnce() throws Exception {
+        PublicKeyVerifier verifier = new PublicKeyVerifier(dir, 8);
+        for (int i = 0; i < 5; i++) {
+            TrustedPublicKey key = verifier.parse(keyPair.getPublicKey(), PQCAlgorithm.FALCON_512);
+            assertTrue(verifier.verify(MESSAGE, signature, key, null));
+            assertFalse(verifier.verify(MESSAGE + i, signature, key, null));
+        }
+        assertEquals(1L, verifier.getStats().get("keyExpansions"));
+
+        PublicKeyVerifier uncached = new PublicKeyVerifier(dir.resolve("uncached"), 8, false);
+        TrustedPublicKey key = uncached.parse(keyPair.getPublicKey(), PQCAlgorithm.FALCON_512);
+        assertTrue(uncached.verify(MESSAGE, signature, key, null));
+        assertNull(key.getVerifier());
+        assertEquals(0L, uncached.getStats().get("keyExpansions"));
+    }
+
+    @Test
+    public void testRejectsInvalidInput() throws Exception {
+        PublicKeyVerifier verifier = new PublicKeyVerifier(dir, 8);
+        assertThrows(IllegalArgumentException.class, () -> verifier.find("../../etc/passwd"));
+        assertThrows(IllegalArgumentException.class,
+            () -> verifier.parse(keyPair.getPublicKey(), PQCAlgorithm.KYBER768));
+        // Khóa sai độ dài: verify trả false, không ném lỗi
+        TrustedPublicKey truncated = verifier.parse(new byte[100], PQCAlgorithm.FALCON_512);
+        assertFalse(verifier.verify(MESSAGE, signature, truncated, null));
+    }
+}